@@ -0,0 +1,49 @@
+package app.falcon.benchmarks.core;
+
+import app.falcon.core.util.JsonMapConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Both directions of {@link JsonMapConverter} on a metadata map of the kind
+ * stored in JSON columns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class JsonMapConverterBenchmark {
+
+    private static final Map<String, Object> METADATA = Map.of(
+            "did", "did:plc:eygmaihciaxprqvxpfvl6flk",
+            "handle", "falcon.bsky.social",
+            "tier", "GOLD",
+            "verified", true,
+            "score", 0.8125,
+            "roles", List.of("member", "moderator"),
+            "links", Map.of("github", "https://github.com/falcon", "web", "https://falcon.app"));
+
+    private JsonMapConverter converter;
+    private String column;
+
+    @Setup
+    public void setUp() {
+        converter = new JsonMapConverter();
+        column = converter.convertToDatabaseColumn(METADATA);
+    }
+
+    @Benchmark
+    public String toColumn() {
+        return converter.convertToDatabaseColumn(METADATA);
+    }
+
+    @Benchmark
+    public Map<String, Object> fromColumn() {
+        return converter.convertToEntityAttribute(column);
+    }
+}
@@ -0,0 +1,157 @@
+package app.falcon.benchmarks.gateway;
+
+import app.falcon.gateway.filter.AtprotoAuthFilter;
+import app.falcon.gateway.service.DidResolver;
+import app.falcon.gateway.service.PublicKeyCache;
+import app.falcon.gateway.service.VerifiedTokenCache;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One authenticated request through {@link AtprotoAuthFilter}: JWT decode, DID
+ * document lookup (stubbed, so always a cache hit) and signature
+ * verification, for both ATProto signing curves.
+ *
+ * <p>
+ * With {@code tokenCache=false} the stub reports its documents as already due
+ * for refetch, so nothing enters the {@link VerifiedTokenCache} and every
+ * request pays for full verification; with {@code true} every request after
+ * the first is a cache hit.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class AtprotoAuthFilterBenchmark {
+
+    private static final String DID = "did:plc:benchmark";
+    private static final BouncyCastleProvider BOUNCY_CASTLE = new BouncyCastleProvider();
+
+    @Param({ "ES256", "ES256K" })
+    public String alg;
+
+    @Param({ "false", "true" })
+    public boolean tokenCache;
+
+    private GatewayFilter filter;
+    private String authorization;
+
+    @Setup
+    public void setUp() throws Exception {
+        boolean k1 = "ES256K".equals(alg);
+        // SunEC dropped secp256k1 in JDK 16
+        KeyPairGenerator generator = k1
+                ? KeyPairGenerator.getInstance("EC", BOUNCY_CASTLE)
+                : KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec(k1 ? "secp256k1" : "secp256r1"));
+        KeyPair keys = generator.generateKeyPair();
+        ECPublicKey publicKey = (ECPublicKey) keys.getPublic();
+
+        String token = k1 ? signEs256k(keys) : JWT.create()
+                .withIssuer(DID)
+                .sign(Algorithm.ECDSA256(publicKey, (ECPrivateKey) keys.getPrivate()));
+        authorization = "Bearer " + token;
+
+        Map<String, Object> didDoc = Map.of(
+                "id", DID,
+                "verificationMethod", List.of(Map.of(
+                        "id", DID + "#atproto",
+                        "publicKeyJwk", Map.of(
+                                "kty", "EC",
+                                "crv", k1 ? "secp256k1" : "P-256",
+                                "x", coordinate(publicKey.getW().getAffineX()),
+                                "y", coordinate(publicKey.getW().getAffineY())))));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DidResolver didResolver = new StaticDidResolver(didDoc, tokenCache ? Duration.ofHours(1) : Duration.ZERO);
+        filter = new AtprotoAuthFilter(didResolver, new PublicKeyCache(didResolver, meterRegistry, 10_000),
+                new VerifiedTokenCache(didResolver, meterRegistry, 10_000), meterRegistry)
+                .apply(new AtprotoAuthFilter.Config());
+
+        MockServerWebExchange exchange = authenticate();
+        if (exchange.getResponse().getStatusCode() == HttpStatus.UNAUTHORIZED)
+            throw new IllegalStateException(alg + " token was rejected by the filter");
+    }
+
+    @Benchmark
+    public MockServerWebExchange verify() {
+        return authenticate();
+    }
+
+    private MockServerWebExchange authenticate() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.get("/api/trust/score").header("Authorization", authorization));
+        filter.filter(exchange, forwarded -> Mono.empty()).block();
+        return exchange;
+    }
+
+    /** java-jwt has no ES256K signer; sign the JWS R||S form directly. */
+    private static String signEs256k(KeyPair keys) throws Exception {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String header = encoder.encodeToString("{\"alg\":\"ES256K\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+        String payload = encoder.encodeToString(("{\"iss\":\"" + DID + "\"}").getBytes(StandardCharsets.UTF_8));
+
+        Signature signer = Signature.getInstance("SHA256withPLAIN-ECDSA", BOUNCY_CASTLE);
+        signer.initSign(keys.getPrivate());
+        signer.update((header + "." + payload).getBytes(StandardCharsets.UTF_8));
+        return header + "." + payload + "." + encoder.encodeToString(signer.sign());
+    }
+
+    /** Unsigned, left-padded 32-byte base64url coordinate as used in a JWK. */
+    private static String coordinate(BigInteger value) {
+        byte[] raw = value.toByteArray();
+        byte[] fixed = new byte[32];
+        int length = Math.min(raw.length, 32);
+        System.arraycopy(raw, raw.length - length, fixed, 32 - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
+    }
+
+    /** Serves one DID document from memory instead of the PLC directory. */
+    private static final class StaticDidResolver extends DidResolver {
+
+        private final Mono<Map<String, Object>> document;
+        private final Duration validity;
+
+        StaticDidResolver(Map<String, Object> document, Duration validity) {
+            super(WebClient.builder(), new SimpleMeterRegistry(), "http://localhost:1", Duration.ofHours(1),
+                    Duration.ofHours(24), Duration.ofSeconds(10), Duration.ofSeconds(2), 10_000);
+            this.document = Mono.just(document);
+            this.validity = validity;
+        }
+
+        @Override
+        public Mono<Map<String, Object>> resolve(String did) {
+            return document;
+        }
+
+        @Override
+        public Duration remainingValidity(String did) {
+            return validity;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package app.falcon.benchmarks.siv;
+
+import app.falcon.siv.ai.AiContextService;
+import app.falcon.siv.ai.AiContextService.AnalysisMode;
+import app.falcon.siv.ai.AnalysisCache;
+import app.falcon.siv.ai.AutonomousVoucher;
+import app.falcon.siv.ai.DidStateCache;
+import app.falcon.siv.ai.FalconAiClient;
+import app.falcon.siv.ai.NearDuplicateIndex;
+import app.falcon.siv.ai.PostQueue;
+import app.falcon.siv.ai.SovereignAgentService;
+import app.falcon.siv.repository.AiFactRepository;
+import app.falcon.siv.service.IntelligenceBiasIndex;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Per-post cost of {@code AiContextService} analysis against a local stub of
+ * an OpenAI-compatible server that answers after {@code latencyMs} and reports
+ * token usage as characters / 4.
+ *
+ * <ul>
+ * <li>{@code SEPARATE}: a tagging call and a moderation call per post</li>
+ * <li>{@code COMBINED}: one structured call returning both</li>
+ * </ul>
+ *
+ * {@code analyseBatch} sends {@value #BATCH} posts per call through the
+ * micro-batching path, which answers in the combined format whatever the mode.
+ * The score is the time to analyse one post; prompt and completion tokens per
+ * post are printed at the end of each trial. Run from the repository root, or
+ * point {@code -Dfalcon.benchmarks.agent-dir} at the agent files, so prompts
+ * carry the real identity block.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class AiAnalysisBenchmark {
+
+    private static final String TAGGING = """
+            {"tags":["opensource","java"],"summary":"Shipping an open source Java library.",\
+            "factType":"TAG","confidence":0.85,"reasoning":"Clear topic."}""";
+    private static final String MODERATION = """
+            {"isHarmful":false,"reason":"","confidence":0.05,"reasoning":"Friendly post."}""";
+    private static final String COMBINED = """
+            {"tags":["opensource","java"],"summary":"Shipping an open source Java library.",\
+            "confidence":0.85,"reasoning":"Clear topic.","isHarmful":false,"harmReason":"",\
+            "harmConfidence":0.05}""";
+
+    static final int BATCH = 8;
+
+    @Param({ "SEPARATE", "COMBINED" })
+    public AnalysisMode mode;
+
+    @Param({ "20" })
+    public int latencyMs;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HttpServer server;
+    private Consumer<PostQueue.Post> analyser;
+    private Consumer<List<PostQueue.Post>> batchAnalyser;
+    private long posts;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/chat/completions", this::complete);
+        server.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+
+        SovereignAgentService agent = new SovereignAgentService("did:plc:falcon-ai-agent", "Falcon Sovereign AI",
+                System.getProperty("falcon.benchmarks.agent-dir", "agent"));
+        FalconAiClient client = new FalconAiClient(WebClient.builder(), meterRegistry,
+                "http://localhost:" + server.getAddress().getPort() + "/v1", "local", "llama3.2");
+        AiFactRepository repository = facts();
+        for (int batchSize : new int[] { 1, BATCH }) {
+            new AiContextService(client, repository, agent, new AutonomousVoucher(WebClient.builder(), agent),
+                    new IntelligenceBiasIndex(repository), capturingQueue(batchSize),
+                    new AnalysisCache(client, agent, meterRegistry, 0, Duration.ZERO),
+                    new NearDuplicateIndex(meterRegistry, 0, 0.6, Duration.ZERO),
+                    new DidStateCache(meterRegistry, 50, DataSize.ofMegabytes(64)), meterRegistry, 0, mode);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        System.out.printf("%n%s: %.0f prompt + %.0f completion tokens per post%n", mode,
+                tokens("prompt") / posts, tokens("completion") / posts);
+    }
+
+    @Benchmark
+    public void analyse() {
+        analyser.accept(nextPost());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void analyseBatch() {
+        List<PostQueue.Post> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(nextPost());
+        }
+        batchAnalyser.accept(batch);
+    }
+
+    private PostQueue.Post nextPost() {
+        posts++;
+        return new PostQueue.Post("did:plc:" + (posts % 1000),
+                "Just shipped the first release of my open source Java library for the AT Protocol!",
+                Long.toString(posts), System.nanoTime());
+    }
+
+    /** A queue whose consumer is captured, so analysis runs on the benchmark thread instead of the workers. */
+    private PostQueue capturingQueue(int batchSize) {
+        return new PostQueue(meterRegistry, 1, 1, PostQueue.ShedPolicy.DROP_NEWEST, 1.0, 1.0, List.of(), batchSize,
+                Duration.ZERO) {
+            @Override
+            public synchronized void consume(Consumer<Post> analyser) {
+                AiAnalysisBenchmark.this.analyser = analyser;
+            }
+
+            @Override
+            public synchronized void consumeBatches(Consumer<List<Post>> analyser) {
+                batchAnalyser = analyser;
+            }
+        };
+    }
+
+    private void complete(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        String system = request.path("messages").get(0).path("content").asText();
+        int promptChars = 0;
+        for (JsonNode message : request.path("messages")) {
+            promptChars += message.path("content").asText().length();
+        }
+        String format = request.path("response_format").path("json_schema").path("name").asText("");
+        String answer = switch (format) {
+            case "post_batch_analysis" -> batchAnswer(request.path("messages").get(1).path("content").asText());
+            case "post_analysis" -> COMBINED;
+            default -> system.contains("determine if it contains harmful content") ? MODERATION : TAGGING;
+        };
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        byte[] body = objectMapper.writeValueAsBytes(Map.of(
+                "choices", List.of(Map.of("message", Map.of("role", "assistant", "content", answer))),
+                "usage", Map.of("prompt_tokens", promptChars / 4, "completion_tokens", answer.length() / 4)));
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    /** One {@link #COMBINED} result per item of the batch prompt's JSON array. */
+    private String batchAnswer(String prompt) throws IOException {
+        int items = objectMapper.readTree(prompt.substring(prompt.indexOf('['))).size();
+        StringBuilder answer = new StringBuilder("{\"results\":[");
+        for (int id = 0; id < items; id++) {
+            answer.append(id == 0 ? "" : ",").append("{\"id\":").append(id).append(',').append(COMBINED, 1,
+                    COMBINED.length());
+        }
+        return answer.append("]}").toString();
+    }
+
+    private double tokens(String type) {
+        return meterRegistry.get("falcon.siv.ai.tokens").tag("type", type).counter().count();
+    }
+
+    /** A repository that only accepts the writes the analysis makes. */
+    private static AiFactRepository facts() {
+        return (AiFactRepository) Proxy.newProxyInstance(AiFactRepository.class.getClassLoader(),
+                new Class<?>[] { AiFactRepository.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "save" -> args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryAiFactRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,45 @@
+package app.falcon.benchmarks.siv;
+
+import app.falcon.siv.ai.ChannelMemory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ChannelMemory} with a full window: {@code add} evicts the oldest
+ * message on every call, {@code toPrompt} joins the whole window.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class ChannelMemoryBenchmark {
+
+    private static final String MESSAGE = "did:plc:eygmaihciaxprqvxpfvl6flk: "
+            + "Benchmarking the firehose: how many of these can one core parse per second?";
+
+    @Param({ "20", "200" })
+    public int window;
+
+    private ChannelMemory memory;
+
+    @Setup
+    public void setUp() {
+        memory = new ChannelMemory(window);
+        for (int i = 0; i < window; i++) {
+            memory.add(MESSAGE);
+        }
+    }
+
+    @Benchmark
+    public void add() {
+        memory.add(MESSAGE);
+    }
+
+    @Benchmark
+    public String toPrompt() {
+        return memory.toPrompt();
+    }
+}
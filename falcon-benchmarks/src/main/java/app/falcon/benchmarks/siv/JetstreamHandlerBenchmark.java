@@ -0,0 +1,64 @@
+package app.falcon.benchmarks.siv;
+
+import app.falcon.siv.service.JetstreamHandler;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-event cost of {@link JetstreamHandler#handleTextMessage} with AI
+ * processing disabled, i.e. JSON parsing and routing only. Payloads are
+ * shaped like the live Jetstream firehose.
+ *
+ * <ul>
+ * <li>{@code post}: an {@code app.bsky.feed.post} create, which is logged and
+ * dispatched</li>
+ * <li>{@code like}: an {@code app.bsky.feed.like} create, which is parsed and
+ * dropped — the bulk of the firehose</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class JetstreamHandlerBenchmark {
+
+    private static final String POST = """
+            {"did":"did:plc:eygmaihciaxprqvxpfvl6flk","time_us":1725911162329308,"kind":"commit",\
+            "commit":{"rev":"3l3qo2vutsw2b","operation":"create","collection":"app.bsky.feed.post",\
+            "rkey":"3l3qo2vuowo2b","record":{"$type":"app.bsky.feed.post","createdAt":"2024-09-09T19:46:02.102Z",\
+            "langs":["en"],"text":"Benchmarking the firehose: how many of these can one core parse per second?"},\
+            "cid":"bafyreidwaivazkwu67xztlmuobx35hs2lnfh3kolmgfmucldvhd3sgzcqi"}}""";
+
+    private static final String LIKE = """
+            {"did":"did:plc:ikvaup2d6dj4e7zqz3ysmh3p","time_us":1725911162331447,"kind":"commit",\
+            "commit":{"rev":"3l3qo2vv2jd2s","operation":"create","collection":"app.bsky.feed.like",\
+            "rkey":"3l3qo2vuvqc2s","record":{"$type":"app.bsky.feed.like","createdAt":"2024-09-09T19:46:02.203Z",\
+            "subject":{"cid":"bafyreidc6sydkkbchcyg62v77wbhzvb2mvytlmsychqgwf2xojjtirmzj4",\
+            "uri":"at://did:plc:wa7b35aakoll7hugkrjtf3xf/app.bsky.feed.post/3l3pte3p2e325"}},\
+            "cid":"bafyreifrn3pfk3ke4wgsuzqp6xvvh2vmzj5sg6t5f2p3bfvjyfm7yuwmbi"}}""";
+
+    private JetstreamHandler handler;
+    private TextMessage post;
+    private TextMessage like;
+
+    @Setup
+    public void setUp() {
+        handler = new JetstreamHandler();
+        post = new TextMessage(POST);
+        like = new TextMessage(LIKE);
+    }
+
+    @Benchmark
+    public void post() throws Exception {
+        handler.handleMessage(null, post);
+    }
+
+    @Benchmark
+    public void like() throws Exception {
+        handler.handleMessage(null, like);
+    }
+}
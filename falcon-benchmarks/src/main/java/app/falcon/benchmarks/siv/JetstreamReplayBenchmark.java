@@ -0,0 +1,83 @@
+package app.falcon.benchmarks.siv;
+
+import app.falcon.siv.service.JetstreamEventParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays {@code jetstream/capture.jsonl}, 2,000 synthetic events shaped like
+ * the firehose (mostly likes, follows and reposts, roughly a fifth post
+ * creates, a few deletes, identity and account events), through both ways of
+ * reading an event. It is not a recording: post texts mix English with
+ * Japanese, Korean, Arabic, Russian, Portuguese and German, emoji, newlines,
+ * quotes and backslashes, with {@code <}, {@code >} and {@code &} escaped as
+ * Jetstream does, and in some posts every non-ASCII character as a JSON
+ * Unicode escape. Scores are messages per second; run with {@code -prof gc}
+ * and {@code gc.alloc.rate.norm} is bytes allocated per message.
+ *
+ * <ul>
+ * <li>{@code tree}: {@code ObjectMapper.readTree} and {@code path()} chains,
+ * as {@code JetstreamHandler} used to do</li>
+ * <li>{@code streaming}: {@link JetstreamEventParser}</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class JetstreamReplayBenchmark {
+
+    private static final int EVENTS = 2000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JetstreamEventParser parser = new JetstreamEventParser();
+    private List<String> capture;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                JetstreamReplayBenchmark.class.getResourceAsStream("/jetstream/capture.jsonl"),
+                StandardCharsets.UTF_8))) {
+            capture = reader.lines().filter(line -> !line.isBlank()).toList();
+        }
+        if (capture.size() != EVENTS)
+            throw new IllegalStateException("Expected " + EVENTS + " events, found " + capture.size());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void tree(Blackhole blackhole) throws IOException {
+        for (String payload : capture) {
+            JsonNode node = objectMapper.readTree(payload);
+            if ("commit".equals(node.path("kind").asText())) {
+                String did = node.path("did").asText();
+                String collection = node.path("commit").path("collection").asText();
+                String operation = node.path("commit").path("operation").asText();
+                if ("app.bsky.feed.post".equals(collection) && "create".equals(operation)) {
+                    blackhole.consume(did);
+                    blackhole.consume(node.path("commit").path("record").path("text").asText());
+                    blackhole.consume(node.path("seq").asText(null));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void streaming(Blackhole blackhole) throws IOException {
+        for (String payload : capture) {
+            blackhole.consume(parser.parse(payload));
+        }
+    }
+}
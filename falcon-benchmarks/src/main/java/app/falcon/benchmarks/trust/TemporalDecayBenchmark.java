@@ -0,0 +1,94 @@
+package app.falcon.benchmarks.trust;
+
+import app.falcon.core.domain.TrustRelation;
+import app.falcon.trust.graph.EdgeRow;
+import app.falcon.trust.graph.TrustGraph;
+import app.falcon.trust.service.TemporalDecay;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of applying temporal decay across one viewer's fan-out.
+ *
+ * <ul>
+ * <li>{@code durationPerEdge}: the original per-relation
+ * {@code Duration.between(timestamp, Instant.now())} plus {@code Math.exp}</li>
+ * <li>{@code expPerEdge}: epoch-millis arrays, still one {@code Math.exp} per
+ * edge</li>
+ * <li>{@code decayTable}: epoch-day ints from the resident graph and the
+ * precomputed {@link TemporalDecay} table</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class TemporalDecayBenchmark {
+
+    private static final double LEGACY_DECAY_LAMBDA = 0.005;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    @Param({ "10", "1000", "100000" })
+    public int fanOut;
+
+    private List<TrustRelation> relations;
+    private TrustRelation.TrustType[] types;
+    private long[] timestampMillis;
+    private EdgeRow row;
+
+    @Setup
+    public void setUp() {
+        relations = TrustGraphs.fanOut(fanOut, 0, 1);
+        types = relations.stream().map(TrustRelation::getType).toArray(TrustRelation.TrustType[]::new);
+        timestampMillis = relations.stream().mapToLong(r -> r.getTimestamp().toEpochMilli()).toArray();
+
+        TrustGraph graph = TrustGraphs.load(relations);
+        row = graph.row(graph.idOf(TrustGraphs.VIEWER));
+    }
+
+    @Benchmark
+    public double durationPerEdge() {
+        double sum = 0.0;
+        for (TrustRelation relation : relations) {
+            long daysOld = Duration.between(relation.getTimestamp(), Instant.now()).toDays();
+            sum += scoreForType(relation.getType()) * Math.exp(-LEGACY_DECAY_LAMBDA * daysOld);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double expPerEdge() {
+        long now = System.currentTimeMillis();
+        double sum = 0.0;
+        for (int i = 0; i < timestampMillis.length; i++) {
+            long daysOld = (now - timestampMillis[i]) / MILLIS_PER_DAY;
+            sum += scoreForType(types[i]) * Math.exp(-LEGACY_DECAY_LAMBDA * daysOld);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double decayTable() {
+        int today = TemporalDecay.today();
+        double sum = 0.0;
+        for (int i = 0; i < row.size(); i++) {
+            sum += scoreForType(row.type(i)) * TemporalDecay.weight(today - row.epochDay(i));
+        }
+        return sum;
+    }
+
+    private static double scoreForType(TrustRelation.TrustType type) {
+        return switch (type) {
+            case TRUST -> 1.0;
+            case DISTRUST -> -0.8;
+            case BLOCK -> -1.0;
+            case MUTE -> -0.3;
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package app.falcon.benchmarks.trust;
+
+import app.falcon.core.domain.TrustRelation;
+import app.falcon.trust.graph.TrustGraph;
+import app.falcon.trust.repository.TrustRelationRepository;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic trust graphs for the benchmarks, loaded into a real
+ * {@link TrustGraph} through an in-memory repository.
+ */
+final class TrustGraphs {
+
+    static final String VIEWER = "did:plc:viewer";
+
+    private TrustGraphs() {
+    }
+
+    /**
+     * The viewer trusts {@code fanOut} bridges; every bridge relates to
+     * {@code bridgeDegree} of {@code targets} shared targets. Relation ages are
+     * spread over the last two years.
+     */
+    static List<TrustRelation> fanOut(int fanOut, int bridgeDegree, int targets) {
+        SplittableRandom random = new SplittableRandom(42);
+        TrustRelation.TrustType[] types = TrustRelation.TrustType.values();
+        Instant now = Instant.now();
+        List<TrustRelation> relations = new ArrayList<>(fanOut * (1 + bridgeDegree));
+
+        for (int b = 0; b < fanOut; b++) {
+            String bridge = "did:plc:bridge" + b;
+            relations.add(relation(VIEWER, bridge, TrustRelation.TrustType.TRUST, now, random));
+            int first = random.nextInt(targets);
+            for (int k = 0; k < bridgeDegree; k++) {
+                String target = "did:plc:target" + ((first + k) % targets);
+                relations.add(relation(bridge, target, types[random.nextInt(types.length)], now, random));
+            }
+        }
+        return relations;
+    }
+
+    private static TrustRelation relation(String source, String target, TrustRelation.TrustType type, Instant now,
+            SplittableRandom random) {
+        return TrustRelation.builder()
+                .sourceDid(source)
+                .targetDid(target)
+                .type(type)
+                .timestamp(now.minus(Duration.ofHours(random.nextInt(2 * 365 * 24))))
+                .build();
+    }
+
+    static TrustGraph load(List<TrustRelation> relations) {
+        TrustGraph graph = new TrustGraph(repository(relations), 4096);
+        graph.load();
+        return graph;
+    }
+
+    /** A repository that only answers the reads the services make. */
+    static TrustRelationRepository repository(List<TrustRelation> relations) {
+        return (TrustRelationRepository) Proxy.newProxyInstance(TrustRelationRepository.class.getClassLoader(),
+                new Class<?>[] { TrustRelationRepository.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findAll" -> relations;
+                    case "findBySourceDidAndTargetDid" -> relations.stream()
+                            .filter(r -> r.getSourceDid().equals(args[0]) && r.getTargetDid().equals(args[1]))
+                            .findFirst();
+                    case "save" -> args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryTrustRelationRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
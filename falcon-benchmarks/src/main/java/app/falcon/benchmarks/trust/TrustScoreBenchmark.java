@@ -0,0 +1,114 @@
+package app.falcon.benchmarks.trust;
+
+import app.falcon.core.domain.TrustRelation;
+import app.falcon.trust.graph.TrustGraph;
+import app.falcon.trust.service.GlobalTrustJob;
+import app.falcon.trust.service.IntelligenceBiasClient;
+import app.falcon.trust.service.TrustGraphService;
+import app.falcon.trust.service.ViewerTrustCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TrustGraphService#calculateTrustScore} against an in-memory graph
+ * where the viewer trusts {@code fanOut} bridges, each relating to
+ * {@value #BRIDGE_DEGREE} targets.
+ *
+ * <ul>
+ * <li>{@code direct}: target is one of the viewer's own relations</li>
+ * <li>{@code transitive}: target is two hops away, viewer vector already
+ * cached</li>
+ * <li>{@code transitiveColdViewer}: as above, but the viewer's vector is
+ * invalidated first so every call pays the full fan-out</li>
+ * </ul>
+ *
+ * The intelligence bias is stubbed to neutral so only the graph work is
+ * measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class TrustScoreBenchmark {
+
+    private static final int BRIDGE_DEGREE = 10;
+    private static final int TARGETS = 100_000;
+
+    @Param({ "10", "1000", "100000" })
+    public int fanOut;
+
+    private TrustGraph graph;
+    private ViewerTrustCache viewerTrust;
+    private TrustGraphService service;
+    private int viewer;
+    private String directTarget;
+    private String transitiveTarget;
+
+    @Setup
+    public void setUp() {
+        List<TrustRelation> relations = TrustGraphs.fanOut(fanOut, BRIDGE_DEGREE, TARGETS);
+        graph = TrustGraphs.load(relations);
+        viewerTrust = new ViewerTrustCache(graph, new SimpleMeterRegistry(), DataSize.ofMegabytes(256),
+                Duration.ofHours(1));
+        GlobalTrustJob globalTrust = new GlobalTrustJob(graph, new SimpleMeterRegistry(), TrustGraphs.VIEWER, List.of(), 0.15, 50,
+                1e-6, 0);
+        globalTrust.recompute();
+        service = new TrustGraphService(TrustGraphs.repository(relations), graph, new NeutralBiasClient(),
+                globalTrust, viewerTrust, 0.5);
+
+        viewer = graph.idOf(TrustGraphs.VIEWER);
+        directTarget = "did:plc:bridge" + (fanOut / 2);
+        transitiveTarget = graph.didOf(graph.row(graph.idOf("did:plc:bridge0")).target(0));
+        service.calculateTrustScore(TrustGraphs.VIEWER, transitiveTarget);
+    }
+
+    @Benchmark
+    public double direct() {
+        return service.calculateTrustScore(TrustGraphs.VIEWER, directTarget);
+    }
+
+    @Benchmark
+    public double transitive() {
+        return service.calculateTrustScore(TrustGraphs.VIEWER, transitiveTarget);
+    }
+
+    @Benchmark
+    public double transitiveColdViewer() {
+        viewerTrust.invalidate(viewer);
+        return service.calculateTrustScore(TrustGraphs.VIEWER, transitiveTarget);
+    }
+
+    /** Answers every bias lookup with the neutral value, never touching the network. */
+    private static final class NeutralBiasClient extends IntelligenceBiasClient {
+
+        private static final double NEUTRAL_BIAS = 1.0;
+
+        NeutralBiasClient() {
+            super(WebClient.builder(), new SimpleMeterRegistry(), "http://localhost:1", Duration.ofMinutes(1),
+                    Duration.ofSeconds(5), 10_000, Duration.ofMillis(500), Duration.ofMillis(5), 500);
+        }
+
+        @Override
+        public double getBias(String did) {
+            return NEUTRAL_BIAS;
+        }
+
+        @Override
+        public Map<String, Double> getBiases(Collection<String> dids) {
+            Map<String, Double> biases = new HashMap<>();
+            dids.forEach(did -> biases.put(did, NEUTRAL_BIAS));
+            return biases;
+        }
+    }
+}
@@ -1,24 +1,26 @@
 package app.falcon.gateway.filter;
 
 import app.falcon.gateway.service.DidResolver;
+import app.falcon.gateway.service.EcCurve;
+import app.falcon.gateway.service.PublicKeyCache;
+import app.falcon.gateway.service.VerifiedTokenCache;
 import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
 
-import java.math.BigInteger;
-import java.security.AlgorithmParameters;
-import java.security.KeyFactory;
-import java.security.Signature;
+import java.nio.charset.StandardCharsets;
 import java.security.interfaces.ECPublicKey;
-import java.security.spec.*;
 import java.util.Base64;
-import java.util.List;
 import java.util.Map;
 
 @Component
@@ -26,10 +28,22 @@ import java.util.Map;
 public class AtprotoAuthFilter extends AbstractGatewayFilterFactory<AtprotoAuthFilter.Config> {
 
     private final DidResolver didResolver;
+    private final PublicKeyCache publicKeys;
+    private final VerifiedTokenCache verifiedTokens;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> verifyTimers;
 
-    public AtprotoAuthFilter(DidResolver didResolver) {
+    public AtprotoAuthFilter(DidResolver didResolver, PublicKeyCache publicKeys, VerifiedTokenCache verifiedTokens,
+            MeterRegistry meterRegistry) {
         super(Config.class);
         this.didResolver = didResolver;
+        this.publicKeys = publicKeys;
+        this.verifiedTokens = verifiedTokens;
+        this.meterRegistry = meterRegistry;
+        this.verifyTimers = Map.of(
+                "ES256", verifyTimer("ES256", meterRegistry),
+                "ES256K", verifyTimer("ES256K", meterRegistry),
+                "other", verifyTimer("other", meterRegistry));
     }
 
     @Override
@@ -45,6 +59,12 @@ public class AtprotoAuthFilter extends AbstractGatewayFilterFactory<AtprotoAuthF
 
             String token = authHeader.substring(7);
 
+            // A token already verified against the current DID document needs no second ECDSA check
+            String verifiedDid = verifiedTokens.lookup(token);
+            if (verifiedDid != null) {
+                return forward(exchange, chain, verifiedDid);
+            }
+
             // Decode first to extract the DID (issuer/subject) before full verification
             final DecodedJWT unverifiedJwt;
             try {
@@ -68,19 +88,21 @@ public class AtprotoAuthFilter extends AbstractGatewayFilterFactory<AtprotoAuthF
             // Resolve DID document then verify the JWT signature against the public key
             return didResolver.resolve(userDid)
                     .flatMap(didDoc -> {
+                        Timer.Sample sample = Timer.start(meterRegistry);
                         try {
-                            verifyJwtSignature(token, unverifiedJwt, didDoc);
+                            verifyJwtSignature(userDid, unverifiedJwt, didDoc);
                         } catch (Exception e) {
                             throw new RuntimeException("JWT signature verification failed: " + e.getMessage(), e);
+                        } finally {
+                            sample.stop(verifyTimers.getOrDefault(String.valueOf(unverifiedJwt.getAlgorithm()),
+                                    verifyTimers.get("other")));
                         }
 
                         log.info("JWT signature verified for DID: {}", userDid);
+                        verifiedTokens.put(token, userDid, unverifiedJwt.getExpiresAtAsInstant(),
+                                didResolver.remainingValidity(userDid));
 
-                        var modifiedRequest = exchange.getRequest().mutate()
-                                .header("X-Falcon-Viewer-DID", userDid)
-                                .build();
-
-                        return chain.filter(exchange.mutate().request(modifiedRequest).build());
+                        return forward(exchange, chain, userDid);
                     })
                     .onErrorResume(e -> {
                         log.error("Authentication failed for DID {}: {}", userDid, e.getMessage());
@@ -90,89 +112,40 @@ public class AtprotoAuthFilter extends AbstractGatewayFilterFactory<AtprotoAuthF
         };
     }
 
-    /**
-     * Verifies the JWT signature against the verificationMethod keys in the DID
-     * document.
-     * Supports P-256 (ES256) via java-jwt, and secp256k1 (ES256K) via JCA directly.
-     */
-    private void verifyJwtSignature(String token, DecodedJWT jwt, Map<String, Object> didDoc) throws Exception {
-        String alg = jwt.getAlgorithm(); // "ES256" or "ES256K"
-
-        if ("ES256".equals(alg)) {
-            ECPublicKey publicKey = extractEcPublicKey(didDoc, "P-256", "secp256r1");
-            Algorithm algorithm = Algorithm.ECDSA256(publicKey, null);
-            algorithm.verify(jwt);
-        } else if ("ES256K".equals(alg)) {
-            // java-jwt doesn't expose ECDSA256K, verify via JCA
-            ECPublicKey publicKey = extractEcPublicKey(didDoc, "secp256k1", "secp256k1");
-            verifyEs256k(token, publicKey);
-        } else {
-            throw new JWTVerificationException("Unsupported JWT algorithm: " + alg);
-        }
-    }
-
-    /** Manual ES256K verification using JCA Signature. */
-    private void verifyEs256k(String token, ECPublicKey publicKey) throws Exception {
-        String[] parts = token.split("\\.");
-        if (parts.length != 3)
-            throw new JWTVerificationException("Invalid JWT format");
+    private Mono<Void> forward(ServerWebExchange exchange, GatewayFilterChain chain, String userDid) {
+        var modifiedRequest = exchange.getRequest().mutate()
+                .header("X-Falcon-Viewer-DID", userDid)
+                .build();
 
-        byte[] headerAndPayload = (parts[0] + "." + parts[1]).getBytes(java.nio.charset.StandardCharsets.UTF_8);
-        byte[] signatureBytes = Base64.getUrlDecoder().decode(parts[2]);
-
-        Signature sig = Signature.getInstance("SHA256withECDSA");
-        sig.initVerify(publicKey);
-        sig.update(headerAndPayload);
+        return chain.filter(exchange.mutate().request(modifiedRequest).build());
+    }
 
-        if (!sig.verify(signatureBytes)) {
-            throw new JWTVerificationException("ES256K signature verification failed");
-        }
+    private static Timer verifyTimer(String alg, MeterRegistry meterRegistry) {
+        return Timer.builder("falcon.gateway.auth.verify")
+                .description("JWT signature verification, excluding DID resolution")
+                .tag("alg", alg)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     /**
-     * Extracts an EC public key from a DID document's verificationMethod array.
-     *
-     * @param didDoc       the parsed DID document
-     * @param jwtCurveName the "crv" value to match in the JWK (e.g. "P-256" or
-     *                     "secp256k1")
-     * @param jcaCurveName the JCA standard curve name (e.g. "secp256r1" or
-     *                     "secp256k1")
+     * Verifies the JWT signature against the verificationMethod key on the
+     * token's curve: P-256 for ES256, secp256k1 for ES256K.
      */
-    @SuppressWarnings("unchecked")
-    private ECPublicKey extractEcPublicKey(Map<String, Object> didDoc,
-            String jwtCurveName,
-            String jcaCurveName) throws Exception {
-        List<Map<String, Object>> verificationMethods = (List<Map<String, Object>>) didDoc.get("verificationMethod");
-
-        if (verificationMethods == null || verificationMethods.isEmpty()) {
-            throw new IllegalArgumentException("No verificationMethod found in DID document");
-        }
-
-        for (Map<String, Object> vm : verificationMethods) {
-            Map<String, Object> jwk = (Map<String, Object>) vm.get("publicKeyJwk");
-            if (jwk != null && jwtCurveName.equals(jwk.get("crv"))) {
-                return buildEcPublicKey((String) jwk.get("x"), (String) jwk.get("y"), jcaCurveName);
-            }
+    private void verifyJwtSignature(String did, DecodedJWT jwt, Map<String, Object> didDoc) throws Exception {
+        String alg = jwt.getAlgorithm();
+        EcCurve curve = EcCurve.forAlgorithm(alg);
+        if (curve == null) {
+            throw new JWTVerificationException("Unsupported JWT algorithm: " + alg);
         }
 
-        throw new IllegalArgumentException(
-                "No %s verificationMethod found in DID document for DID: %s"
-                        .formatted(jwtCurveName, didDoc.get("id")));
-    }
-
-    private ECPublicKey buildEcPublicKey(String xBase64Url, String yBase64Url, String jcaCurveName) throws Exception {
-        byte[] xBytes = Base64.getUrlDecoder().decode(xBase64Url);
-        byte[] yBytes = Base64.getUrlDecoder().decode(yBase64Url);
-
-        BigInteger x = new BigInteger(1, xBytes);
-        BigInteger y = new BigInteger(1, yBytes);
+        ECPublicKey publicKey = publicKeys.keyFor(did, didDoc, curve);
+        byte[] signingInput = (jwt.getHeader() + "." + jwt.getPayload()).getBytes(StandardCharsets.US_ASCII);
+        byte[] signature = Base64.getUrlDecoder().decode(jwt.getSignature());
 
-        AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
-        parameters.init(new ECGenParameterSpec(jcaCurveName));
-        ECParameterSpec ecParameterSpec = parameters.getParameterSpec(ECParameterSpec.class);
-
-        ECPublicKeySpec keySpec = new ECPublicKeySpec(new ECPoint(x, y), ecParameterSpec);
-        return (ECPublicKey) KeyFactory.getInstance("EC").generatePublic(keySpec);
+        if (!curve.verify(publicKey, signingInput, signature)) {
+            throw new JWTVerificationException(alg + " signature verification failed");
+        }
     }
 
     public static class Config {
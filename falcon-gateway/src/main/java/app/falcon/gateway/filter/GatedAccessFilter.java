@@ -1,23 +1,33 @@
 package app.falcon.gateway.filter;
 
-import org.springframework.beans.factory.annotation.Value;
+import app.falcon.gateway.service.AccessDecisionCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class GatedAccessFilter extends AbstractGatewayFilterFactory<GatedAccessFilter.Config> {
 
-    private final WebClient.Builder webClientBuilder;
-    private final String trustServiceUrl;
+    /** Tags of one {@code falcon.gateway.access.decision} timer. */
+    private record DecisionTags(String route, String outcome, AccessDecisionCache.Source source) {
+    }
+
+    private final AccessDecisionCache accessDecisions;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<DecisionTags, Timer> decisionTimers = new ConcurrentHashMap<>();
 
-    public GatedAccessFilter(WebClient.Builder webClientBuilder,
-            @Value("${falcon.services.trust-url}") String trustServiceUrl) {
+    public GatedAccessFilter(AccessDecisionCache accessDecisions, MeterRegistry meterRegistry) {
         super(Config.class);
-        this.webClientBuilder = webClientBuilder;
-        this.trustServiceUrl = trustServiceUrl;
+        this.accessDecisions = accessDecisions;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
@@ -33,21 +43,21 @@ public class GatedAccessFilter extends AbstractGatewayFilterFactory<GatedAccessF
                 return chain.filter(exchange);
             }
 
-            return webClientBuilder.build()
-                    .get()
-                    .uri(uriBuilder -> uriBuilder
-                            .scheme(parseScheme(trustServiceUrl))
-                            .host(parseHost(trustServiceUrl))
-                            .port(parsePort(trustServiceUrl))
-                            .path("/api/trust/membership/verify")
-                            .queryParam("userDid", userDid)
-                            .queryParam("serverId", serverIdStr)
-                            .queryParam("channelId", channelIdStr)
-                            .build())
-                    .retrieve()
-                    .bodyToMono(Boolean.class)
-                    .flatMap(isAuthorized -> {
-                        if (Boolean.TRUE.equals(isAuthorized)) {
+            final long serverId;
+            final long channelId;
+            try {
+                serverId = Long.parseLong(serverIdStr);
+                channelId = Long.parseLong(channelIdStr);
+            } catch (NumberFormatException e) {
+                exchange.getResponse().setStatusCode(HttpStatus.BAD_REQUEST);
+                return exchange.getResponse().setComplete();
+            }
+
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return accessDecisions.check(userDid, serverId, channelId)
+                    .flatMap(decision -> {
+                        sample.stop(decisionTimer(exchange, decision.allowed() ? "allow" : "deny", decision.source()));
+                        if (decision.allowed()) {
                             return chain.filter(exchange);
                         } else {
                             exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN);
@@ -55,6 +65,7 @@ public class GatedAccessFilter extends AbstractGatewayFilterFactory<GatedAccessF
                         }
                     })
                     .onErrorResume(e -> {
+                        sample.stop(decisionTimer(exchange, "error", AccessDecisionCache.Source.REMOTE));
                         // Fail closed — if trust-service is unreachable, deny access
                         exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
                         return exchange.getResponse().setComplete();
@@ -62,26 +73,17 @@ public class GatedAccessFilter extends AbstractGatewayFilterFactory<GatedAccessF
         };
     }
 
-    // Simple URL parsing helpers to avoid the URI-builder limitation with full URL
-    // strings
-    private String parseScheme(String url) {
-        return url.startsWith("https") ? "https" : "http";
-    }
-
-    private String parseHost(String url) {
-        String withoutScheme = url.replaceFirst("https?://", "");
-        int colonIdx = withoutScheme.indexOf(':');
-        return colonIdx >= 0 ? withoutScheme.substring(0, colonIdx) : withoutScheme;
-    }
-
-    private int parsePort(String url) {
-        String withoutScheme = url.replaceFirst("https?://", "");
-        int colonIdx = withoutScheme.indexOf(':');
-        if (colonIdx >= 0) {
-            String portStr = withoutScheme.substring(colonIdx + 1).replaceAll("/.*", "");
-            return Integer.parseInt(portStr);
-        }
-        return url.startsWith("https") ? 443 : 80;
+    /** Decision latency per route, outcome and source: local snapshot, cache or trust-service. */
+    private Timer decisionTimer(ServerWebExchange exchange, String outcome, AccessDecisionCache.Source source) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        DecisionTags tags = new DecisionTags(route != null ? route.getId() : "unknown", outcome, source);
+        return decisionTimers.computeIfAbsent(tags, t -> Timer.builder("falcon.gateway.access.decision")
+                .description("Latency of gated-channel access decisions")
+                .tag("route", t.route())
+                .tag("outcome", t.outcome())
+                .tag("source", t.source().name().toLowerCase())
+                .publishPercentileHistogram()
+                .register(meterRegistry));
     }
 
     public static class Config {
@@ -0,0 +1,264 @@
+package app.falcon.gateway.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Gated-channel access decisions from trust-service, cached per
+ * (user, server, channel).
+ *
+ * <p>
+ * Allowed decisions are kept for {@code allow-ttl} and denials for the shorter
+ * {@code deny-ttl}, so a user who was just granted a tier is not locked out for
+ * long. Concurrent checks of the same key share one request; failed checks are
+ * not cached. The cache also subscribes to trust-service's membership event
+ * stream and drops matching decisions as soon as a tier changes, and
+ * everything when the stream reconnects since events may have been missed.
+ * </p>
+ *
+ * <p>
+ * With {@code snapshot.enabled} the stream also carries trust-service's whole
+ * versioned tier table, and checks are evaluated locally against it without
+ * any call. Single tier changes arrive as deltas on top of it; a delta that
+ * does not directly follow the current version means one was missed, so the
+ * stream is reconnected to receive a full table again. The snapshot counts as
+ * stale once no event, heartbeats included, has arrived for
+ * {@code snapshot.max-staleness}, or after a reconnect until a new snapshot
+ * arrives; checks then fall back to the cached remote path.
+ * </p>
+ */
+@Component
+@Slf4j
+public class AccessDecisionCache {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> EVENT = new ParameterizedTypeReference<>() {
+    };
+
+    public record Key(String userDid, long serverId, long channelId) {
+    }
+
+    /** Decisions to drop as pushed by trust-service; a {@code null} field matches anything. */
+    public record Invalidation(String userDid, Long serverId, Long channelId) {
+
+        boolean matches(Key key) {
+            return (userDid == null || userDid.equals(key.userDid()))
+                    && (serverId == null || serverId == key.serverId())
+                    && (channelId == null || channelId == key.channelId());
+        }
+    }
+
+    /** Where a decision came from. */
+    public enum Source {
+        /** Evaluated locally against the membership snapshot. */
+        SNAPSHOT,
+        /** A cached answer from trust-service. */
+        CACHE,
+        /** A new call to trust-service, possibly shared with concurrent checks. */
+        REMOTE
+    }
+
+    public record Decision(boolean allowed, Source source) {
+    }
+
+    private final WebClient webClient;
+    private final Duration timeout;
+    private final Duration reconnectDelay;
+    private final boolean subscribe;
+    private final boolean snapshots;
+    private final long maxStalenessNanos;
+    private final Ticker ticker;
+    private final AsyncCache<Key, Boolean> cache;
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+
+    private final Counter invalidations;
+
+    private Disposable subscription;
+    private volatile MembershipSnapshot snapshot;
+    private volatile long lastEventNanos;
+
+    @Autowired
+    public AccessDecisionCache(WebClient.Builder webClientBuilder,
+            MeterRegistry meterRegistry,
+            @Value("${falcon.services.trust-url}") String trustServiceUrl,
+            @Value("${falcon.gateway.access.allow-ttl:30s}") Duration allowTtl,
+            @Value("${falcon.gateway.access.deny-ttl:5s}") Duration denyTtl,
+            @Value("${falcon.gateway.access.max-size:100000}") long maxSize,
+            @Value("${falcon.gateway.access.timeout:1s}") Duration timeout,
+            @Value("${falcon.gateway.access.invalidations.enabled:true}") boolean subscribe,
+            @Value("${falcon.gateway.access.invalidations.reconnect-delay:5s}") Duration reconnectDelay,
+            @Value("${falcon.gateway.access.snapshot.enabled:false}") boolean snapshots,
+            @Value("${falcon.gateway.access.snapshot.max-staleness:30s}") Duration maxStaleness,
+            @Value("${falcon.gateway.access.snapshot.max-size:16MB}") DataSize maxSnapshotSize) {
+        this(webClientBuilder, meterRegistry, trustServiceUrl, allowTtl, denyTtl, maxSize, timeout, subscribe,
+                reconnectDelay, snapshots, maxStaleness, maxSnapshotSize, Ticker.systemTicker());
+    }
+
+    /** With {@code ticker} timing both decision expiry and snapshot staleness. */
+    AccessDecisionCache(WebClient.Builder webClientBuilder, MeterRegistry meterRegistry, String trustServiceUrl,
+            Duration allowTtl, Duration denyTtl, long maxSize, Duration timeout, boolean subscribe,
+            Duration reconnectDelay, boolean snapshots, Duration maxStaleness, DataSize maxSnapshotSize,
+            Ticker ticker) {
+        this.webClient = webClientBuilder
+                .baseUrl(trustServiceUrl)
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize((int) maxSnapshotSize.toBytes()))
+                .build();
+        this.timeout = timeout;
+        this.subscribe = subscribe || snapshots;
+        this.reconnectDelay = reconnectDelay;
+        this.snapshots = snapshots;
+        this.maxStalenessNanos = maxStaleness.toNanos();
+        this.ticker = ticker;
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.<Key, Boolean>writing((key, allowed) -> allowed ? allowTtl : denyTtl))
+                .ticker(ticker)
+                .recordStats()
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "access-decisions");
+        this.invalidations = Counter.builder("falcon.gateway.access.invalidations")
+                .description("Membership invalidation events received from trust-service")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Subscribes to trust-service's membership events, reconnecting after
+     * {@code reconnect-delay} whenever the stream ends or fails.
+     */
+    @PostConstruct
+    public void start() {
+        if (!subscribe)
+            return;
+        subscription = webClient.get()
+                .uri("/api/trust/membership/events?snapshots=" + snapshots)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .retrieve()
+                .bodyToFlux(EVENT)
+                .doOnNext(this::onEvent)
+                .doOnError(e -> log.warn("Membership event stream failed: {}", e.getMessage()))
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, reconnectDelay))
+                .repeatWhen(completed -> completed.delayElements(reconnectDelay))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null)
+            subscription.dispose();
+    }
+
+    /**
+     * @return whether {@code userDid} may access the channel; errors if
+     *         trust-service cannot answer within {@code timeout}
+     */
+    public Mono<Decision> check(String userDid, long serverId, long channelId) {
+        MembershipSnapshot local = freshSnapshot();
+        if (local != null) {
+            return Mono.just(new Decision(local.allows(userDid, serverId, channelId), Source.SNAPSHOT));
+        }
+
+        Key key = new Key(userDid, serverId, channelId);
+        CompletableFuture<Boolean> cached = cache.getIfPresent(key);
+        if (cached != null && cached.isDone()) {
+            if (!cached.isCompletedExceptionally())
+                return Mono.just(new Decision(cached.join(), Source.CACHE));
+            // Caffeine drops failed futures on completion, but callers may see the failure first
+            cache.asMap().remove(key, cached);
+        }
+        // Shared future: cancelling one request must not abort the check for the others
+        return Mono.fromFuture(cache.get(key, (k, executor) -> fetch(k)), true)
+                .map(allowed -> new Decision(allowed, Source.REMOTE));
+    }
+
+    /** @return the membership snapshot if snapshots are enabled and it is not stale */
+    private MembershipSnapshot freshSnapshot() {
+        MembershipSnapshot current = snapshot;
+        if (current == null || ticker.read() - lastEventNanos > maxStalenessNanos)
+            return null;
+        return current;
+    }
+
+    /**
+     * @return how long the cached decision for {@code key} has left; until
+     *         Caffeine has taken in a completed check this is the far-off expiry
+     *         it gives pending ones
+     */
+    Optional<Duration> expiresIn(Key key) {
+        return cache.synchronous().policy().expireVariably().flatMap(policy -> policy.getExpiresAfter(key));
+    }
+
+    /** Drops every cached decision matched by {@code invalidation}. */
+    public void invalidate(Invalidation invalidation) {
+        cache.synchronous().asMap().keySet().removeIf(invalidation::matches);
+    }
+
+    private void onEvent(ServerSentEvent<String> event) {
+        lastEventNanos = ticker.read();
+        if ("connected".equals(event.event())) {
+            // A restarted trust-service numbers its versions from scratch
+            snapshot = null;
+            cache.synchronous().invalidateAll();
+        } else if ("snapshot".equals(event.event()) && event.data() != null) {
+            MembershipSnapshot received = objectMapper.readValue(event.data(), MembershipSnapshot.class);
+            MembershipSnapshot current = snapshot;
+            if (current == null || received.version() > current.version())
+                snapshot = received;
+        } else if ("delta".equals(event.event()) && event.data() != null) {
+            MembershipSnapshot.Delta delta = objectMapper.readValue(event.data(), MembershipSnapshot.Delta.class);
+            MembershipSnapshot current = snapshot;
+            if (current == null || delta.version() <= current.version())
+                return;
+            if (delta.version() != current.version() + 1) {
+                snapshot = null;
+                // Fails the stream, which reconnects and starts over from a full table
+                throw new IllegalStateException("Membership delta v" + delta.version()
+                        + " does not follow snapshot v" + current.version());
+            }
+            snapshot = current.apply(delta);
+        } else if ("invalidate".equals(event.event()) && event.data() != null) {
+            invalidations.increment();
+            invalidate(objectMapper.readValue(event.data(), Invalidation.class));
+        }
+    }
+
+    private CompletableFuture<Boolean> fetch(Key key) {
+        return webClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/api/trust/membership/verify")
+                        .queryParam("userDid", key.userDid())
+                        .queryParam("serverId", key.serverId())
+                        .queryParam("channelId", key.channelId())
+                        .build())
+                .retrieve()
+                .bodyToMono(Boolean.class)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Empty membership decision")))
+                .timeout(timeout)
+                .toFuture();
+    }
+}
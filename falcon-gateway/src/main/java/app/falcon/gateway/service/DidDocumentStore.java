@@ -0,0 +1,338 @@
+package app.falcon.gateway.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * On-disk tier behind {@link DidResolver}: an append-only log of resolved DID
+ * documents and their fetch time, so a restarted or newly added gateway starts
+ * warm instead of re-fetching every DID from the PLC directory.
+ *
+ * <p>
+ * Only an index of DID to file offset is held on the heap; documents are read
+ * back from the file on demand. The index is rebuilt by scanning the log on a
+ * background thread at startup and lookups simply miss until it is ready.
+ * Appends and the occasional compaction run on one writer thread, off the
+ * request path.
+ * </p>
+ *
+ * <p>
+ * Record layout: {@code int length | long fetchedAtMillis | short didLength |
+ * did | json}, where {@code length} covers everything after itself. A record
+ * with an empty JSON body is a tombstone.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "falcon.gateway.did.store", name = "enabled", havingValue = "true")
+@Slf4j
+public class DidDocumentStore {
+
+    private static final TypeReference<Map<String, Object>> DOCUMENT = new TypeReference<>() {
+    };
+    private static final int HEADER_BYTES = Long.BYTES + Short.BYTES;
+
+    /** A document read back from the log. */
+    public record Stored(Map<String, Object> document, Instant fetchedAt) {
+    }
+
+    /** Location and size of the latest record of a DID; {@code length} includes the length prefix. */
+    private record Entry(long offset, int length, boolean tombstone) {
+    }
+
+    private final Path path;
+    private final long compactionThreshold;
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private final ConcurrentHashMap<String, Entry> index = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "did-store-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private FileChannel channel;
+    private volatile boolean loaded;
+    private long liveBytes;
+
+    public DidDocumentStore(@Value("${falcon.gateway.did.store.path:data/did-documents.log}") Path path,
+            @Value("${falcon.gateway.did.store.compaction-threshold:64MB}") DataSize compactionThreshold) {
+        this.path = path;
+        this.compactionThreshold = compactionThreshold.toBytes();
+    }
+
+    /**
+     * Opens the log and starts rebuilding the index in the background.
+     */
+    @PostConstruct
+    public void open() {
+        try {
+            if (path.getParent() != null)
+                Files.createDirectories(path.getParent());
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open DID document store " + path, e);
+        }
+        writer.execute(this::load);
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(5, TimeUnit.SECONDS);
+        lock.writeLock().lock();
+        try {
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Whether the startup scan has finished; until then every lookup misses. */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /** Number of DIDs with a stored document. */
+    public int size() {
+        return (int) index.values().stream().filter(entry -> !entry.tombstone()).count();
+    }
+
+    /**
+     * @return the stored document of {@code did}, or {@code null} if there is
+     *         none or the index is still loading
+     */
+    public Stored get(String did) {
+        if (!loaded)
+            return null;
+        Entry entry = index.get(did);
+        if (entry == null || entry.tombstone())
+            return null;
+
+        ByteBuffer record = ByteBuffer.allocate(entry.length());
+        lock.readLock().lock();
+        try {
+            // The entry may have been moved by a compaction since it was looked up
+            Entry current = index.get(did);
+            if (current == null || current.tombstone())
+                return null;
+            if (!current.equals(entry)) {
+                entry = current;
+                record = ByteBuffer.allocate(entry.length());
+            }
+            readFully(record, entry.offset());
+        } catch (IOException e) {
+            log.warn("Failed to read stored DID document for {}: {}", did, e.getMessage());
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        record.flip();
+        record.getInt();
+        Instant fetchedAt = Instant.ofEpochMilli(record.getLong());
+        record.position(record.position() + Short.BYTES + (record.getShort(Integer.BYTES + Long.BYTES) & 0xFFFF));
+        Map<String, Object> document = objectMapper.readValue(record.array(), record.position(), record.remaining(),
+                DOCUMENT);
+        return new Stored(document, fetchedAt);
+    }
+
+    /** Appends {@code document} as the latest version for {@code did}, asynchronously. */
+    public void put(String did, Map<String, Object> document, Instant fetchedAt) {
+        byte[] json = objectMapper.writeValueAsBytes(document);
+        writer.execute(() -> append(did, json, fetchedAt));
+    }
+
+    /** Records that {@code did} has no valid document, asynchronously. */
+    public void remove(String did) {
+        writer.execute(() -> append(did, new byte[0], Instant.now()));
+    }
+
+    /** Waits until every earlier write, and the startup scan, has been applied. */
+    void flush() throws Exception {
+        writer.submit(() -> {
+        }).get();
+    }
+
+    private void append(String did, byte[] json, Instant fetchedAt) {
+        byte[] didBytes = did.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + HEADER_BYTES + didBytes.length + json.length);
+        record.putInt(record.capacity() - Integer.BYTES)
+                .putLong(fetchedAt.toEpochMilli())
+                .putShort((short) didBytes.length)
+                .put(didBytes)
+                .put(json)
+                .flip();
+
+        lock.writeLock().lock();
+        try {
+            long offset = channel.size();
+            while (record.hasRemaining()) {
+                channel.write(record, offset + record.position());
+            }
+            track(did, new Entry(offset, record.capacity(), json.length == 0));
+        } catch (IOException e) {
+            log.warn("Failed to store DID document for {}: {}", did, e.getMessage());
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (loaded && liveBytes * 2 < channelSize() && channelSize() > compactionThreshold) {
+            compact();
+        }
+    }
+
+    /** Scans the log, keeping the last record of each DID. Runs on the writer thread. */
+    private void load() {
+        long start = System.nanoTime();
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + HEADER_BYTES);
+        long offset = 0;
+        try {
+            long size = channel.size();
+            while (offset + header.capacity() <= size) {
+                header.clear();
+                readFully(header, offset);
+                int length = header.getInt(0);
+                int didLength = header.getShort(Integer.BYTES + Long.BYTES) & 0xFFFF;
+                if (length < HEADER_BYTES + didLength || offset + Integer.BYTES + length > size)
+                    break;
+
+                ByteBuffer didBytes = ByteBuffer.allocate(didLength);
+                readFully(didBytes, offset + header.capacity());
+                String did = new String(didBytes.array(), StandardCharsets.UTF_8);
+                boolean tombstone = length == HEADER_BYTES + didLength;
+                Entry entry = new Entry(offset, Integer.BYTES + length, tombstone);
+
+                // Records appended while loading are newer than anything still being scanned
+                lock.writeLock().lock();
+                try {
+                    Entry existing = index.get(did);
+                    if (existing == null || existing.offset() < offset)
+                        track(did, entry);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                offset += entry.length();
+            }
+            if (offset < size) {
+                log.warn("DID document store {} has a torn record at {}; truncating", path, offset);
+                lock.writeLock().lock();
+                try {
+                    channel.truncate(offset);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to load DID document store {}: {}", path, e.getMessage());
+        }
+
+        loaded = true;
+        log.info("DID document store loaded: {} documents, {} bytes in {} ms", size(), channelSize(),
+                (System.nanoTime() - start) / 1_000_000);
+        if (liveBytes * 2 < channelSize() && channelSize() > compactionThreshold) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the log with only the latest record of each live DID and swaps it
+     * in. Runs on the writer thread; readers are blocked only for the swap.
+     */
+    private void compact() {
+        long start = System.nanoTime();
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        Map<String, Entry> moved = new ConcurrentHashMap<>();
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = 0;
+            for (Map.Entry<String, Entry> live : index.entrySet()) {
+                Entry entry = live.getValue();
+                if (entry.tombstone())
+                    continue;
+                ByteBuffer record = ByteBuffer.allocate(entry.length());
+                readFully(record, entry.offset());
+                record.flip();
+                while (record.hasRemaining()) {
+                    position += out.write(record, position);
+                }
+                moved.put(live.getKey(), new Entry(position - entry.length(), entry.length(), false));
+            }
+            out.force(true);
+        } catch (IOException e) {
+            log.warn("DID document store compaction failed: {}", e.getMessage());
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            long before = channel.size();
+            channel.close();
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            index.keySet().retainAll(moved.keySet());
+            index.putAll(moved);
+            liveBytes = moved.values().stream().mapToLong(Entry::length).sum();
+            log.info("DID document store compacted: {} -> {} bytes in {} ms", before, channel.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot reopen DID document store " + path, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Points the index at {@code entry}. Caller holds the write lock. */
+    private void track(String did, Entry entry) {
+        Entry previous = index.put(did, entry);
+        if (previous != null && !previous.tombstone())
+            liveBytes -= previous.length();
+        if (!entry.tombstone())
+            liveBytes += entry.length();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of DID document store at " + position);
+        }
+    }
+
+    private long channelSize() {
+        lock.readLock().lock();
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            return 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -1,53 +1,274 @@
 package app.falcon.gateway.service;
 
-import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
+/**
+ * Resolves {@code did:plc} and {@code did:web} DIDs to their DID documents.
+ *
+ * <p>
+ * Documents are cached per DID and every caller asking for the same DID
+ * shares one in-flight fetch. A document older than {@code cache-ttl} is still
+ * served while a background refresh fetches the new one; only after
+ * {@code max-stale} is it dropped. If that refresh fails the old document is
+ * kept. A failed first fetch is cached for {@code failure-ttl}, so an
+ * unreachable directory costs each DID one {@code timeout} per
+ * {@code failure-ttl} instead of one per request.
+ * </p>
+ *
+ * <p>
+ * When a {@link DidDocumentStore} is configured, fetched documents are also
+ * written to disk and a cache miss is answered from there first, so the
+ * gateway starts warm after a restart. A stored document older than
+ * {@code cache-ttl} is served and refreshed just like a stale cached one.
+ * </p>
+ *
+ * <p>
+ * When a {@link PlcMirror} is configured and caught up, {@code did:plc}
+ * documents are loaded and refreshed from the mirror instead of the network;
+ * the mirror evicts a DID from the cache whenever its document changes.
+ * </p>
+ */
 @Service
 @Slf4j
 public class DidResolver {
 
+    private static final ParameterizedTypeReference<Map<String, Object>> DOCUMENT = new ParameterizedTypeReference<>() {
+    };
+
+    /** A fetched document, or the failure of the last attempt. */
+    private record Resolution(Map<String, Object> document, Throwable failure, Instant fetchedAt) {
+    }
+
     private final WebClient webClient;
-    private final Cache<String, Map<String, Object>> documentCache;
+    private final String plcUrl;
+    private final Duration documentTtl;
+    private final Duration maxStale;
+    private final Duration timeout;
+    private final AsyncLoadingCache<String, Resolution> documentCache;
+    private final List<Consumer<String>> invalidationListeners = new CopyOnWriteArrayList<>();
+
+    private final Timer fetchTimer;
+    private final Counter failures;
+
+    private DidDocumentStore documentStore;
+    private PlcMirror plcMirror;
 
-    public DidResolver(WebClient.Builder webClientBuilder) {
+    public DidResolver(WebClient.Builder webClientBuilder,
+            MeterRegistry meterRegistry,
+            @Value("${falcon.gateway.did.plc-url:https://plc.directory}") String plcUrl,
+            @Value("${falcon.gateway.did.cache-ttl:1h}") Duration documentTtl,
+            @Value("${falcon.gateway.did.max-stale:24h}") Duration maxStale,
+            @Value("${falcon.gateway.did.failure-ttl:10s}") Duration failureTtl,
+            @Value("${falcon.gateway.did.timeout:2s}") Duration timeout,
+            @Value("${falcon.gateway.did.max-size:10000}") long maxSize) {
         this.webClient = webClientBuilder.build();
-        // Cache DID documents for 1 hour to ensure "instantaneous" subsequent logins
+        this.plcUrl = plcUrl.endsWith("/") ? plcUrl : plcUrl + "/";
+        this.documentTtl = documentTtl;
+        this.maxStale = maxStale;
+        this.timeout = timeout;
+
         this.documentCache = Caffeine.newBuilder()
-                .expireAfterWrite(Duration.ofHours(1))
-                .maximumSize(10_000)
-                .build();
+                .maximumSize(maxSize)
+                .refreshAfterWrite(documentTtl)
+                .expireAfter(new Expiry<String, Resolution>() {
+                    @Override
+                    public long expireAfterCreate(String did, Resolution resolution, long currentTime) {
+                        if (resolution.failure() != null)
+                            return failureTtl.toNanos();
+                        Duration age = Duration.between(resolution.fetchedAt(), Instant.now());
+                        return Math.max(0, maxStale.minus(age).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String did, Resolution resolution, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(did, resolution, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String did, Resolution resolution, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                // Explicit invalidations notify the listeners themselves, before returning
+                .removalListener((String did, Resolution resolution, RemovalCause cause) -> {
+                    if (did != null && cause != RemovalCause.EXPLICIT)
+                        notifyInvalidated(did);
+                })
+                .recordStats()
+                .buildAsync(new AsyncCacheLoader<>() {
+                    @Override
+                    public CompletableFuture<Resolution> asyncLoad(String did, Executor executor) {
+                        Resolution mirrored = mirrored(did);
+                        if (mirrored != null)
+                            return CompletableFuture.completedFuture(mirrored);
+                        Resolution stored = load(did);
+                        if (stored != null)
+                            return CompletableFuture.completedFuture(stored);
+                        return fetch(did).exceptionally(e -> new Resolution(null, e, Instant.now()));
+                    }
+
+                    @Override
+                    public CompletableFuture<Resolution> asyncReload(String did, Resolution old, Executor executor) {
+                        Resolution mirrored = mirrored(did);
+                        if (mirrored != null)
+                            return CompletableFuture.completedFuture(mirrored);
+                        // A failed refresh completes exceptionally, which keeps the stale document in place
+                        return old.failure() != null ? asyncLoad(did, executor) : fetch(did);
+                    }
+                });
+
+        CaffeineCacheMetrics.monitor(meterRegistry, documentCache, "did-documents");
+        this.fetchTimer = Timer.builder("falcon.gateway.did.fetch")
+                .description("Latency of DID document fetches from the PLC directory or did:web hosts")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.failures = Counter.builder("falcon.gateway.did.fetch.failures")
+                .description("DID document fetches that failed or timed out")
+                .register(meterRegistry);
     }
 
-    public Mono<Map<String, Object>> resolve(String did) {
-        Map<String, Object> cached = documentCache.getIfPresent(did);
-        if (cached != null) {
-            return Mono.just(cached);
-        }
+    @Autowired(required = false)
+    void setDocumentStore(DidDocumentStore documentStore) {
+        this.documentStore = documentStore;
+    }
 
-        String url;
-        if (did.startsWith("did:plc:")) {
-            url = "https://plc.directory/" + did;
-        } else if (did.startsWith("did:web:")) {
-            url = "https://" + did.substring(8) + "/.well-known/did.json";
-        } else {
+    @Autowired(required = false)
+    void setPlcMirror(PlcMirror plcMirror) {
+        this.plcMirror = plcMirror;
+        plcMirror.onUpdate(this::evict);
+    }
+
+    /**
+     * Registers state derived from DID documents, to be dropped whenever a
+     * document leaves the cache by expiry, eviction, replacement or
+     * {@link #invalidate}. Invalidations, including those of a mirror update,
+     * reach the listeners before they return.
+     */
+    public void onInvalidate(Consumer<String> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    /** Forgets the cached document of {@code did} so the next resolve refetches it. */
+    public void invalidate(String did) {
+        evict(did);
+        if (documentStore != null)
+            documentStore.remove(did);
+    }
+
+    private void evict(String did) {
+        documentCache.synchronous().invalidate(did);
+        notifyInvalidated(did);
+    }
+
+    private void notifyInvalidated(String did) {
+        invalidationListeners.forEach(listener -> listener.accept(did));
+    }
+
+    /**
+     * @return how much longer the cached document of {@code did} is fresh
+     *         before a refresh is due, or {@link Duration#ZERO} if it is not
+     *         cached or already stale
+     */
+    public Duration remainingValidity(String did) {
+        CompletableFuture<Resolution> cached = documentCache.asMap().get(did);
+        if (cached == null || !cached.isDone() || cached.isCompletedExceptionally())
+            return Duration.ZERO;
+        Resolution resolution = cached.join();
+        if (resolution.failure() != null)
+            return Duration.ZERO;
+        Duration remaining = Duration.between(Instant.now(), resolution.fetchedAt().plus(documentTtl));
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    public Mono<Map<String, Object>> resolve(String did) {
+        if (urlOf(did) == null) {
             return Mono.error(new IllegalArgumentException("Unsupported DID method: " + did));
         }
 
+        // Shared future: cancelling one subscriber must not abort the fetch for the others
+        return Mono.fromFuture(documentCache.get(did), true)
+                .flatMap(resolution -> {
+                    if (resolution.failure() != null)
+                        return Mono.error(resolution.failure());
+                    // Documents loaded from disk can be stale from the moment they enter the cache
+                    if (resolution.fetchedAt().plus(documentTtl).isBefore(Instant.now()))
+                        documentCache.synchronous().refresh(did);
+                    return Mono.just(resolution.document());
+                });
+    }
+
+    /** @return the mirrored document of a {@code did:plc} if a caught-up mirror has it */
+    private Resolution mirrored(String did) {
+        if (plcMirror == null || !did.startsWith("did:plc:"))
+            return null;
+        Map<String, Object> document = plcMirror.get(did);
+        return document != null ? new Resolution(document, null, Instant.now()) : null;
+    }
+
+    /** @return the stored document of {@code did} if one is configured and not past {@code max-stale} */
+    private Resolution load(String did) {
+        if (documentStore == null)
+            return null;
+        DidDocumentStore.Stored stored = documentStore.get(did);
+        if (stored == null || stored.fetchedAt().plus(maxStale).isBefore(Instant.now()))
+            return null;
+        return new Resolution(stored.document(), null, stored.fetchedAt());
+    }
+
+    private CompletableFuture<Resolution> fetch(String did) {
+        Timer.Sample sample = Timer.start();
         return webClient.get()
-                .uri(url)
+                .uri(urlOf(did))
                 .retrieve()
-                .bodyToMono(Map.class)
-                .map(map -> (Map<String, Object>) map)
-                .doOnNext(doc -> documentCache.put(did, doc))
-                .doOnError(e -> log.error("Failed to resolve DID {}: {}", did, e.getMessage()))
-                .cache(); // Prevent multiple concurrent inflight requests for same DID
+                .bodyToMono(DOCUMENT)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Empty DID document for " + did)))
+                .timeout(timeout)
+                .map(doc -> {
+                    Instant fetchedAt = Instant.now();
+                    if (documentStore != null)
+                        documentStore.put(did, doc, fetchedAt);
+                    return new Resolution(doc, null, fetchedAt);
+                })
+                .doOnSuccess(resolution -> sample.stop(fetchTimer))
+                .doOnError(e -> {
+                    failures.increment();
+                    log.error("Failed to resolve DID {}: {}", did, e.getMessage());
+                })
+                .toFuture();
+    }
+
+    private String urlOf(String did) {
+        if (did.startsWith("did:plc:")) {
+            return plcUrl + did;
+        } else if (did.startsWith("did:web:")) {
+            return "https://" + did.substring(8) + "/.well-known/did.json";
+        }
+        return null;
     }
 }
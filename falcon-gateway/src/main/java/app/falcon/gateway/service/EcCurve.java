@@ -0,0 +1,95 @@
+package app.falcon.gateway.service;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.Provider;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+
+/**
+ * The two curves ATProto signs with, each holding the parts of ECDSA
+ * verification that can be prepared once: the curve parameters and, per
+ * thread, a {@link Signature} verifier.
+ *
+ * <p>
+ * JWS signatures are the raw 64-byte R||S concatenation (RFC 7518 §3.4), so
+ * verifiers use the P1363 signature format rather than DER. secp256k1 is
+ * served by BouncyCastle because SunEC no longer supports it.
+ * </p>
+ */
+public enum EcCurve {
+
+    P256("ES256", "P-256", "secp256r1", null, "SHA256withECDSAinP1363Format"),
+    SECP256K1("ES256K", "secp256k1", "secp256k1", new BouncyCastleProvider(), "SHA256withPLAIN-ECDSA");
+
+    private final String jwtAlgorithm;
+    private final String jwkCurve;
+    private final Provider provider;
+    private final ECParameterSpec parameters;
+    private final ThreadLocal<Signature> verifiers;
+
+    EcCurve(String jwtAlgorithm, String jwkCurve, String jcaCurve, Provider provider, String signatureAlgorithm) {
+        this.jwtAlgorithm = jwtAlgorithm;
+        this.jwkCurve = jwkCurve;
+        this.provider = provider;
+        try {
+            AlgorithmParameters algorithmParameters = provider != null
+                    ? AlgorithmParameters.getInstance("EC", provider)
+                    : AlgorithmParameters.getInstance("EC");
+            algorithmParameters.init(new ECGenParameterSpec(jcaCurve));
+            this.parameters = algorithmParameters.getParameterSpec(ECParameterSpec.class);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Curve " + jcaCurve + " is not available", e);
+        }
+        this.verifiers = ThreadLocal.withInitial(() -> {
+            try {
+                return provider != null
+                        ? Signature.getInstance(signatureAlgorithm, provider)
+                        : Signature.getInstance(signatureAlgorithm);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(signatureAlgorithm + " is not available", e);
+            }
+        });
+    }
+
+    /**
+     * @return the curve for a JWT {@code alg} header, or {@code null} if it is
+     *         not an ATProto signing algorithm
+     */
+    public static EcCurve forAlgorithm(String jwtAlgorithm) {
+        for (EcCurve curve : values()) {
+            if (curve.jwtAlgorithm.equals(jwtAlgorithm))
+                return curve;
+        }
+        return null;
+    }
+
+    /** The {@code crv} value identifying this curve in a JWK. */
+    public String jwkCurve() {
+        return jwkCurve;
+    }
+
+    public ECPublicKey publicKey(BigInteger x, BigInteger y) throws GeneralSecurityException {
+        KeyFactory keyFactory = provider != null ? KeyFactory.getInstance("EC", provider) : KeyFactory.getInstance("EC");
+        return (ECPublicKey) keyFactory.generatePublic(new ECPublicKeySpec(new ECPoint(x, y), parameters));
+    }
+
+    /**
+     * Verifies a raw R||S signature over {@code data} with this thread's
+     * verifier.
+     */
+    public boolean verify(ECPublicKey key, byte[] data, byte[] signature) throws GeneralSecurityException {
+        Signature verifier = verifiers.get();
+        verifier.initVerify(key);
+        verifier.update(data);
+        return verifier.verify(signature);
+    }
+}
@@ -0,0 +1,56 @@
+package app.falcon.gateway.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Copy of trust-service's versioned membership tier table, as pushed on its
+ * membership event stream, so gated-channel checks can be answered in the
+ * gateway. The rules mirror trust-service's {@code MembershipTiers}: an
+ * explicit member tier wins over the tier granted by the authority, which
+ * wins over FREE; missing and untiered channels are open; ELITE > PRO > FREE.
+ * Single authority tier changes arrive as {@link Delta}s between full tables.
+ *
+ * @param channelTiers   required tier by channel id, gated channels only
+ * @param memberTiers    explicit member tier by server id, then DID
+ * @param authorityTiers tier granted by the authority by DID
+ */
+public record MembershipSnapshot(long version, Map<Long, String> channelTiers,
+        Map<Long, Map<String, String>> memberTiers, Map<String, String> authorityTiers) {
+
+    /**
+     * Table {@code version}, which sets the authority tier of {@code userDid} to
+     * {@code authorityTier}, or removes it if {@code null}.
+     */
+    public record Delta(long version, String userDid, String authorityTier) {
+    }
+
+    /** @return the table of {@code delta}'s version, which must directly follow this one */
+    public MembershipSnapshot apply(Delta delta) {
+        Map<String, String> authority = new HashMap<>(authorityTiers);
+        if (delta.authorityTier() != null) {
+            authority.put(delta.userDid(), delta.authorityTier());
+        } else {
+            authority.remove(delta.userDid());
+        }
+        return new MembershipSnapshot(delta.version(), channelTiers, memberTiers, authority);
+    }
+
+    public boolean allows(String userDid, long serverId, long channelId) {
+        String requiredTier = channelTiers.get(channelId);
+        if (requiredTier == null || requiredTier.isBlank())
+            return true;
+
+        Map<String, String> members = memberTiers.get(serverId);
+        String userTier = members != null ? members.get(userDid) : null;
+        if (userTier == null)
+            userTier = authorityTiers.getOrDefault(userDid, "FREE");
+
+        if ("ELITE".equals(requiredTier)) {
+            return "ELITE".equals(userTier);
+        } else if ("PRO".equals(requiredTier)) {
+            return "PRO".equals(userTier) || "ELITE".equals(userTier);
+        }
+        return true;
+    }
+}
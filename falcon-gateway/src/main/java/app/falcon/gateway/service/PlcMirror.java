@@ -0,0 +1,316 @@
+package app.falcon.gateway.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Local mirror of the PLC directory, so {@code did:plc} documents are read
+ * from disk instead of fetched one HTTP request at a time.
+ *
+ * <p>
+ * The mirror replays the directory's operation export ({@code GET /export},
+ * JSON lines ordered by {@code createdAt}) page by page, and keeps the latest
+ * non-nullified operation of each DID rendered as a DID document in a
+ * {@link DidDocumentStore}. The {@code createdAt} of the last applied
+ * operation is saved as a cursor next to the log, so a restart continues where
+ * it stopped. An export dump can be imported from a local file first to skip
+ * the initial crawl.
+ * </p>
+ *
+ * <p>
+ * The mirror is only authoritative while it keeps up: {@link #get} answers
+ * nothing, and {@link DidResolver} uses the network, until it has reached the
+ * head of the export and whenever it last did so more than {@code max-lag}
+ * ago, for instance because polling has stalled or the directory is
+ * unreachable.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "falcon.gateway.plc-mirror", name = "enabled", havingValue = "true")
+@Slf4j
+public class PlcMirror {
+
+    private static final List<String> CONTEXT = List.of(
+            "https://www.w3.org/ns/did/v1",
+            "https://w3id.org/security/multikey/v1",
+            "https://w3id.org/security/suites/secp256k1-2019/v1");
+
+    private final WebClient webClient;
+    private final String exportUrl;
+    private final String importFile;
+    private final int pageSize;
+    private final Duration pollInterval;
+    private final Duration maxLag;
+    private final Clock clock;
+    private final Path cursorFile;
+    private final DidDocumentStore store;
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private final List<Consumer<String>> updateListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "plc-mirror");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter operations;
+
+    private volatile String cursor;
+    private volatile Instant caughtUpAt;
+
+    @Autowired
+    public PlcMirror(WebClient.Builder webClientBuilder,
+            MeterRegistry meterRegistry,
+            @Value("${falcon.gateway.plc-mirror.export-url:https://plc.directory/export}") String exportUrl,
+            @Value("${falcon.gateway.plc-mirror.path:data/plc-mirror.log}") Path path,
+            @Value("${falcon.gateway.plc-mirror.import-file:}") String importFile,
+            @Value("${falcon.gateway.plc-mirror.page-size:1000}") int pageSize,
+            @Value("${falcon.gateway.plc-mirror.poll-interval:60s}") Duration pollInterval,
+            @Value("${falcon.gateway.plc-mirror.max-lag:5m}") Duration maxLag,
+            @Value("${falcon.gateway.plc-mirror.compaction-threshold:1GB}") DataSize compactionThreshold) {
+        this(webClientBuilder, meterRegistry, exportUrl, path, importFile, pageSize, pollInterval, maxLag,
+                compactionThreshold, Clock.systemUTC());
+    }
+
+    PlcMirror(WebClient.Builder webClientBuilder, MeterRegistry meterRegistry, String exportUrl, Path path,
+            String importFile, int pageSize, Duration pollInterval, Duration maxLag, DataSize compactionThreshold,
+            Clock clock) {
+        this.webClient = webClientBuilder
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(64 * 1024 * 1024))
+                .build();
+        this.exportUrl = exportUrl;
+        this.importFile = importFile;
+        this.pageSize = pageSize;
+        this.pollInterval = pollInterval;
+        this.maxLag = maxLag;
+        this.clock = clock;
+        this.cursorFile = path.resolveSibling(path.getFileName() + ".cursor");
+        this.store = new DidDocumentStore(path, compactionThreshold);
+
+        this.operations = Counter.builder("falcon.gateway.plc-mirror.operations")
+                .description("PLC operations applied to the local mirror")
+                .register(meterRegistry);
+        Gauge.builder("falcon.gateway.plc-mirror.lag", this, mirror -> mirror.lag().toSeconds())
+                .description("Seconds between now and the createdAt of the last mirrored operation")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens the store and starts polling the export.
+     */
+    @PostConstruct
+    public void start() {
+        store.open();
+        try {
+            cursor = Files.exists(cursorFile) ? Files.readString(cursorFile).strip() : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read PLC mirror cursor " + cursorFile, e);
+        }
+        poller.scheduleWithFixedDelay(this::poll, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        poller.shutdownNow();
+        poller.awaitTermination(5, TimeUnit.SECONDS);
+        store.close();
+    }
+
+    /**
+     * @return the mirrored document of {@code did}, or {@code null} if it is not
+     *         mirrored or the mirror is not caught up to within {@code max-lag}
+     */
+    public Map<String, Object> get(String did) {
+        if (!isCaughtUp())
+            return null;
+        DidDocumentStore.Stored stored = store.get(did);
+        return stored != null ? stored.document() : null;
+    }
+
+    /** Whether the mirror has reached the head of the export within {@code max-lag}. */
+    public boolean isCaughtUp() {
+        Instant at = caughtUpAt;
+        return at != null && !at.plus(maxLag).isBefore(clock.instant());
+    }
+
+    /** Called with each DID whose document changed in the mirror. */
+    public void onUpdate(Consumer<String> listener) {
+        updateListeners.add(listener);
+    }
+
+    /**
+     * Fetches and applies export pages until a short page signals the head,
+     * first importing the configured dump if the mirror is still empty.
+     *
+     * @return the number of operations applied
+     */
+    public synchronized int catchUp() {
+        int applied = 0;
+        if (cursor == null && !importFile.isBlank()) {
+            applied += importFrom(Path.of(importFile));
+        }
+        while (true) {
+            String url = exportUrl + "?count=" + pageSize + (cursor != null ? "&after=" + cursor : "");
+            String page = webClient.get().uri(url).retrieve().bodyToMono(String.class).block(Duration.ofMinutes(1));
+            List<String> lines = page == null ? List.of() : page.lines().filter(line -> !line.isBlank()).toList();
+            applied += apply(lines);
+            if (lines.size() < pageSize) {
+                if (!isCaughtUp())
+                    log.info("PLC mirror caught up at {} ({} DIDs)", cursor, store.size());
+                caughtUpAt = clock.instant();
+                return applied;
+            }
+        }
+    }
+
+    /** Replays a local export dump (one operation per line). */
+    private int importFrom(Path dump) {
+        long start = System.nanoTime();
+        int applied = 0;
+        try (BufferedReader reader = Files.newBufferedReader(dump, StandardCharsets.UTF_8)) {
+            List<String> batch = new ArrayList<>(pageSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank())
+                    continue;
+                batch.add(line);
+                if (batch.size() == pageSize) {
+                    applied += apply(batch);
+                    batch.clear();
+                }
+            }
+            applied += apply(batch);
+        } catch (IOException e) {
+            log.error("Failed to import PLC export {}: {}", dump, e.getMessage());
+        }
+        log.info("PLC mirror imported {} operations from {} in {} ms", applied, dump,
+                (System.nanoTime() - start) / 1_000_000);
+        return applied;
+    }
+
+    private void poll() {
+        try {
+            catchUp();
+        } catch (Exception e) {
+            log.warn("PLC mirror catch-up failed at {}: {}", cursor, e.getMessage());
+        }
+    }
+
+    /** Applies one page of operations, then persists the cursor past it. */
+    private int apply(List<String> lines) {
+        if (lines.isEmpty())
+            return 0;
+
+        List<String> changed = new ArrayList<>(lines.size());
+        String last = cursor;
+        for (String line : lines) {
+            JsonNode entry = objectMapper.readTree(line);
+            last = entry.path("createdAt").asString();
+            if (entry.path("nullified").asBoolean(false))
+                continue;
+
+            String did = entry.path("did").asString();
+            JsonNode operation = entry.path("operation");
+            if ("plc_tombstone".equals(operation.path("type").asString())) {
+                store.remove(did);
+            } else {
+                store.put(did, documentOf(did, operation), Instant.parse(last));
+            }
+            changed.add(did);
+        }
+
+        try {
+            store.flush();
+            Path pending = cursorFile.resolveSibling(cursorFile.getFileName() + ".tmp");
+            Files.writeString(pending, last);
+            Files.move(pending, cursorFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot persist PLC mirror cursor " + cursorFile, e);
+        }
+        cursor = last;
+        operations.increment(lines.size());
+        changed.forEach(did -> updateListeners.forEach(listener -> listener.accept(did)));
+        return lines.size();
+    }
+
+    /**
+     * Renders a PLC operation as the DID document plc.directory would serve.
+     * Handles both current {@code plc_operation}s and legacy {@code create}
+     * operations.
+     */
+    private static Map<String, Object> documentOf(String did, JsonNode operation) {
+        List<String> alsoKnownAs = new ArrayList<>();
+        List<Map<String, Object>> verificationMethods = new ArrayList<>();
+        List<Map<String, Object>> services = new ArrayList<>();
+
+        if ("create".equals(operation.path("type").asString())) {
+            alsoKnownAs.add("at://" + operation.path("handle").asString());
+            verificationMethods.add(verificationMethod(did, "atproto", operation.path("signingKey").asString()));
+            services.add(service("atproto_pds", "AtprotoPersonalDataServer", operation.path("service").asString()));
+        } else {
+            operation.path("alsoKnownAs").forEach(aka -> alsoKnownAs.add(aka.asString()));
+            operation.path("verificationMethods").properties().forEach(
+                    method -> verificationMethods.add(verificationMethod(did, method.getKey(), method.getValue().asString())));
+            operation.path("services").properties().forEach(service -> services.add(service(service.getKey(),
+                    service.getValue().path("type").asString(), service.getValue().path("endpoint").asString())));
+        }
+
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("@context", CONTEXT);
+        document.put("id", did);
+        document.put("alsoKnownAs", alsoKnownAs);
+        document.put("verificationMethod", verificationMethods);
+        document.put("service", services);
+        return document;
+    }
+
+    private static Map<String, Object> verificationMethod(String did, String name, String didKey) {
+        return Map.of(
+                "id", did + "#" + name,
+                "type", "Multikey",
+                "controller", did,
+                "publicKeyMultibase", didKey.startsWith("did:key:") ? didKey.substring(8) : didKey);
+    }
+
+    private static Map<String, Object> service(String name, String type, String endpoint) {
+        return Map.of("id", "#" + name, "type", type, "serviceEndpoint", endpoint);
+    }
+
+    private Duration lag() {
+        String at = cursor;
+        return at == null ? Duration.ZERO : Duration.between(Instant.parse(at), clock.instant());
+    }
+}
@@ -0,0 +1,101 @@
+package app.falcon.gateway.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.interfaces.ECPublicKey;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ready-to-use verification keys, parsed once per DID and curve from the DID
+ * document's {@code verificationMethod} list.
+ *
+ * <p>
+ * Each entry remembers the document it was parsed from and is only returned
+ * for that same document, so a refetched document is always re-parsed. Entries
+ * are also dropped whenever {@link DidResolver} evicts or invalidates the
+ * document, keeping both caches in step.
+ * </p>
+ */
+@Component
+public class PublicKeyCache {
+
+    private record Key(String did, EcCurve curve) {
+    }
+
+    private record Parsed(Map<String, Object> document, ECPublicKey publicKey) {
+    }
+
+    private final Cache<Key, Parsed> cache;
+
+    public PublicKeyCache(DidResolver didResolver,
+            MeterRegistry meterRegistry,
+            @Value("${falcon.gateway.auth.key-cache.max-size:100000}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "did-public-keys");
+        didResolver.onInvalidate(this::invalidate);
+    }
+
+    /**
+     * @return the {@code curve} key of {@code did} from {@code didDoc}, parsed on
+     *         first use
+     * @throws IllegalArgumentException if the document has no key on that curve
+     */
+    public ECPublicKey keyFor(String did, Map<String, Object> didDoc, EcCurve curve) {
+        Key key = new Key(did, curve);
+        Parsed parsed = cache.getIfPresent(key);
+        if (parsed == null || parsed.document() != didDoc) {
+            parsed = new Parsed(didDoc, extractEcPublicKey(didDoc, curve));
+            cache.put(key, parsed);
+        }
+        return parsed.publicKey();
+    }
+
+    /** Drops the keys of {@code did} on every curve. */
+    public void invalidate(String did) {
+        for (EcCurve curve : EcCurve.values()) {
+            cache.invalidate(new Key(did, curve));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ECPublicKey extractEcPublicKey(Map<String, Object> didDoc, EcCurve curve) {
+        List<Map<String, Object>> verificationMethods = (List<Map<String, Object>>) didDoc.get("verificationMethod");
+
+        if (verificationMethods == null || verificationMethods.isEmpty()) {
+            throw new IllegalArgumentException("No verificationMethod found in DID document");
+        }
+
+        for (Map<String, Object> vm : verificationMethods) {
+            Map<String, Object> jwk = (Map<String, Object>) vm.get("publicKeyJwk");
+            if (jwk != null && curve.jwkCurve().equals(jwk.get("crv"))) {
+                try {
+                    return curve.publicKey(coordinate(jwk.get("x")), coordinate(jwk.get("y")));
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalArgumentException("Invalid %s key in DID document for DID: %s"
+                            .formatted(curve.jwkCurve(), didDoc.get("id")), e);
+                }
+            }
+        }
+
+        throw new IllegalArgumentException(
+                "No %s verificationMethod found in DID document for DID: %s"
+                        .formatted(curve.jwkCurve(), didDoc.get("id")));
+    }
+
+    private static BigInteger coordinate(Object base64Url) {
+        return new BigInteger(1, Base64.getUrlDecoder().decode((String) base64Url));
+    }
+}
@@ -0,0 +1,108 @@
+package app.falcon.gateway.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bearer tokens whose signature has already been checked, so a token that is
+ * presented again is accepted without another ECDSA verification.
+ *
+ * <p>
+ * Entries are keyed by the SHA-256 of the token, never the token itself, and
+ * live until the earlier of the JWT's {@code exp} and the moment the DID
+ * document it was verified against would be fetched again, so a rotated key
+ * is honoured no later than it would be without the cache. Whenever
+ * {@link DidResolver} drops or invalidates a DID's document, for instance on a
+ * PLC mirror update, every token verified for that DID is dropped with it.
+ * </p>
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private record Verified(String did, Instant expiresAt) {
+    }
+
+    private final Cache<String, Verified> cache;
+    // Token keys by DID; a DID's set is only emptied when its document is dropped
+    private final ConcurrentMap<String, Set<String>> keysByDid = new ConcurrentHashMap<>();
+
+    public VerifiedTokenCache(DidResolver didResolver,
+            MeterRegistry meterRegistry,
+            @Value("${falcon.gateway.auth.token-cache.max-size:100000}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.<String, Verified>creating(
+                        (key, verified) -> Duration.between(Instant.now(), verified.expiresAt())))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "verified-tokens");
+        didResolver.onInvalidate(this::invalidate);
+    }
+
+    /**
+     * @return the DID the token was verified for, or {@code null} if it has not
+     *         been verified or its entry has expired
+     */
+    public String lookup(String token) {
+        Verified verified = cache.getIfPresent(keyOf(token));
+        return verified != null && verified.expiresAt().isAfter(Instant.now()) ? verified.did() : null;
+    }
+
+    /**
+     * Records a successfully verified token.
+     *
+     * @param expiresAt           the JWT {@code exp}, or {@code null} if it has
+     *                            none
+     * @param documentValidity    how much longer the DID document used for
+     *                            verification stays cached
+     */
+    public void put(String token, String did, Instant expiresAt, Duration documentValidity) {
+        Instant until = Instant.now().plus(documentValidity);
+        if (expiresAt != null && expiresAt.isBefore(until))
+            until = expiresAt;
+        if (!until.isAfter(Instant.now()))
+            return;
+        String key = keyOf(token);
+        Verified verified = new Verified(did, until);
+        // Under the DID's map entry, so a concurrent invalidate cannot miss it
+        keysByDid.compute(did, (d, keys) -> {
+            Set<String> indexed = keys != null ? keys : ConcurrentHashMap.newKeySet();
+            indexed.add(key);
+            cache.put(key, verified);
+            return indexed;
+        });
+    }
+
+    /** Drops every token verified for {@code did}. */
+    public void invalidate(String did) {
+        keysByDid.computeIfPresent(did, (d, keys) -> {
+            cache.invalidateAll(keys);
+            return null;
+        });
+    }
+
+    private static String keyOf(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package app.falcon.gateway.filter;
+
+import app.falcon.gateway.service.DidResolver;
+import app.falcon.gateway.service.PublicKeyCache;
+import app.falcon.gateway.service.VerifiedTokenCache;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class AtprotoAuthFilterTest {
+
+    private static final String DID = "did:plc:alice";
+    private static final BouncyCastleProvider BOUNCY_CASTLE = new BouncyCastleProvider();
+
+    @Mock
+    private DidResolver didResolver;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> forwardedDids = new ArrayList<>();
+    private GatewayFilter filter;
+    private KeyPair keys;
+    private KeyPair k1Keys;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        keys = generator.generateKeyPair();
+        KeyPairGenerator k1Generator = KeyPairGenerator.getInstance("EC", BOUNCY_CASTLE);
+        k1Generator.initialize(new ECGenParameterSpec("secp256k1"));
+        k1Keys = k1Generator.generateKeyPair();
+
+        Map<String, Object> didDoc = Map.of(
+                "id", DID,
+                "verificationMethod", List.of(
+                        verificationMethod("#atproto", "secp256k1", (ECPublicKey) k1Keys.getPublic()),
+                        verificationMethod("#p256", "P-256", (ECPublicKey) keys.getPublic())));
+        when(didResolver.resolve(anyString())).thenReturn(Mono.just(didDoc));
+        when(didResolver.remainingValidity(anyString())).thenReturn(Duration.ofHours(1));
+
+        filter = new AtprotoAuthFilter(didResolver, new PublicKeyCache(didResolver, meterRegistry, 1_000),
+                new VerifiedTokenCache(didResolver, meterRegistry, 1_000), meterRegistry)
+                .apply(new AtprotoAuthFilter.Config());
+    }
+
+    @Test
+    void repeatedTokenSkipsVerification() {
+        String token = sign(keys, Instant.now().plusSeconds(600));
+
+        assertNull(authenticate(token));
+        assertNull(authenticate(token));
+
+        assertEquals(List.of(DID, DID), forwardedDids);
+        verify(didResolver, times(1)).resolve(DID);
+        assertEquals(1, meterRegistry.get("falcon.gateway.auth.verify").tag("alg", "ES256").timer().count());
+    }
+
+    @Test
+    void tokenIsNotCachedPastItsExpiry() {
+        String token = sign(keys, Instant.now().minusSeconds(1));
+
+        authenticate(token);
+        authenticate(token);
+
+        verify(didResolver, times(2)).resolve(DID);
+    }
+
+    @Test
+    void tokenIsNotCachedWhenTheDocumentIsAboutToBeRefetched() {
+        when(didResolver.remainingValidity(DID)).thenReturn(Duration.ZERO);
+        String token = sign(keys, Instant.now().plusSeconds(600));
+
+        authenticate(token);
+        authenticate(token);
+
+        verify(didResolver, times(2)).resolve(DID);
+    }
+
+    @Test
+    void es256kTokenIsVerifiedAgainstTheSecp256k1Key() throws Exception {
+        assertNull(authenticate(signEs256k(k1Keys)));
+        assertEquals(List.of(DID), forwardedDids);
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC", BOUNCY_CASTLE);
+        generator.initialize(new ECGenParameterSpec("secp256k1"));
+        assertEquals(HttpStatus.UNAUTHORIZED, authenticate(signEs256k(generator.generateKeyPair())));
+    }
+
+    @Test
+    void badSignatureIsRejectedEveryTime() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        String forged = sign(generator.generateKeyPair(), Instant.now().plusSeconds(600));
+
+        assertEquals(HttpStatus.UNAUTHORIZED, authenticate(forged));
+        assertEquals(HttpStatus.UNAUTHORIZED, authenticate(forged));
+
+        assertTrue(forwardedDids.isEmpty());
+        verify(didResolver, times(2)).resolve(DID);
+    }
+
+    private HttpStatus authenticate(String token) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.get("/api/trust/score").header("Authorization", "Bearer " + token));
+        filter.filter(exchange, forwarded -> {
+            forwardedDids.add(forwarded.getRequest().getHeaders().getFirst("X-Falcon-Viewer-DID"));
+            return Mono.empty();
+        }).block();
+        return (HttpStatus) exchange.getResponse().getStatusCode();
+    }
+
+    private static String sign(KeyPair keys, Instant expiresAt) {
+        return JWT.create()
+                .withIssuer(DID)
+                .withExpiresAt(expiresAt)
+                .sign(Algorithm.ECDSA256((ECPublicKey) keys.getPublic(), (ECPrivateKey) keys.getPrivate()));
+    }
+
+    private static String signEs256k(KeyPair keys) throws Exception {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String header = encoder.encodeToString("{\"alg\":\"ES256K\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+        String payload = encoder.encodeToString(("{\"iss\":\"" + DID + "\"}").getBytes(StandardCharsets.UTF_8));
+
+        Signature signer = Signature.getInstance("SHA256withPLAIN-ECDSA", BOUNCY_CASTLE);
+        signer.initSign(keys.getPrivate());
+        signer.update((header + "." + payload).getBytes(StandardCharsets.UTF_8));
+        return header + "." + payload + "." + encoder.encodeToString(signer.sign());
+    }
+
+    private static Map<String, Object> verificationMethod(String fragment, String crv, ECPublicKey publicKey) {
+        return Map.of(
+                "id", DID + fragment,
+                "publicKeyJwk", Map.of(
+                        "kty", "EC",
+                        "crv", crv,
+                        "x", coordinate(publicKey.getW().getAffineX()),
+                        "y", coordinate(publicKey.getW().getAffineY())));
+    }
+
+    private static String coordinate(BigInteger value) {
+        byte[] raw = value.toByteArray();
+        byte[] fixed = new byte[32];
+        int length = Math.min(raw.length, 32);
+        System.arraycopy(raw, raw.length - length, fixed, 32 - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
+    }
+}
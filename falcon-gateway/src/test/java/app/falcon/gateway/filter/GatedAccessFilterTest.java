@@ -0,0 +1,88 @@
+package app.falcon.gateway.filter;
+
+import app.falcon.gateway.service.AccessDecisionCache;
+import app.falcon.gateway.service.AccessDecisionCache.Source;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class GatedAccessFilterTest {
+
+    private static final String DID = "did:plc:alice";
+
+    @Mock
+    private AccessDecisionCache accessDecisions;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private GatewayFilter filter;
+    private boolean forwarded;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        filter = new GatedAccessFilter(accessDecisions, meterRegistry).apply(new GatedAccessFilter.Config());
+    }
+
+    @Test
+    void allowedDecisionForwardsAndIsTimedPerRoute() {
+        when(accessDecisions.check(DID, 1, 2)).thenReturn(Mono.just(new AccessDecisionCache.Decision(true, Source.CACHE)));
+
+        assertNull(request("serverId=1&channelId=2"));
+
+        assertTrue(forwarded);
+        assertEquals(1, meterRegistry.get("falcon.gateway.access.decision")
+                .tags("route", "chat-gated", "outcome", "allow", "source", "cache").timer().count());
+    }
+
+    @Test
+    void deniedDecisionIsForbidden() {
+        when(accessDecisions.check(DID, 1, 2))
+                .thenReturn(Mono.just(new AccessDecisionCache.Decision(false, Source.REMOTE)));
+
+        assertEquals(HttpStatus.FORBIDDEN, request("serverId=1&channelId=2"));
+        assertFalse(forwarded);
+    }
+
+    @Test
+    void failedDecisionFailsClosed() {
+        when(accessDecisions.check(DID, 1, 2)).thenReturn(Mono.error(new IllegalStateException("down")));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, request("serverId=1&channelId=2"));
+        assertFalse(forwarded);
+        assertEquals(1, meterRegistry.get("falcon.gateway.access.decision").tag("outcome", "error").timer().count());
+    }
+
+    @Test
+    void malformedIdsAreRejectedWithoutACheck() {
+        assertEquals(HttpStatus.BAD_REQUEST, request("serverId=1&channelId=general"));
+        assertFalse(forwarded);
+        verifyNoInteractions(accessDecisions);
+    }
+
+    private HttpStatus request(String query) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest
+                .get("/api/messages?" + query)
+                .header("X-Falcon-Viewer-DID", DID));
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR,
+                Route.async().id("chat-gated").uri(URI.create("http://localhost:8083")).predicate(e -> true).build());
+        filter.filter(exchange, e -> {
+            forwarded = true;
+            return Mono.empty();
+        }).block();
+        return (HttpStatus) exchange.getResponse().getStatusCode();
+    }
+}
@@ -0,0 +1,300 @@
+package app.falcon.gateway.service;
+
+import app.falcon.gateway.service.AccessDecisionCache.Source;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessDecisionCacheTest {
+
+    private static final String USER = "did:plc:alice";
+
+    /** Test ticker that only moves when told to, for decision expiry and snapshot staleness. */
+    private static final class FakeTicker implements Ticker {
+        private final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+
+        void advance(Duration duration) {
+            nanos.addAndGet(duration.toNanos());
+        }
+    }
+
+    private final FakeTicker ticker = new FakeTicker();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicInteger checks = new AtomicInteger();
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+    private final CountDownLatch subscribed = new CountDownLatch(1);
+    private volatile boolean allowed = true;
+    private volatile int status = 200;
+    private volatile long delayMillis;
+
+    private HttpServer trustStub;
+    private String trustUrl;
+    private AccessDecisionCache cache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Local stand-in for trust-service's membership endpoints
+        trustStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        trustStub.createContext("/api/trust/membership/verify", exchange -> {
+            checks.incrementAndGet();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] response = String.valueOf(allowed).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        trustStub.createContext("/api/trust/membership/events", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            try {
+                out.write("event:connected\ndata:\n\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                subscribed.countDown();
+                while (true) {
+                    out.write(events.take().getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        trustStub.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }));
+        trustStub.start();
+        trustUrl = "http://localhost:" + trustStub.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (cache != null)
+            cache.stop();
+        trustStub.stop(0);
+    }
+
+    private AccessDecisionCache newCache(Duration allowTtl, Duration denyTtl, boolean subscribe) {
+        return newCache(allowTtl, denyTtl, subscribe, false, Duration.ofSeconds(30));
+    }
+
+    private AccessDecisionCache newCache(Duration allowTtl, Duration denyTtl, boolean subscribe, boolean snapshots,
+            Duration maxStaleness) {
+        cache = new AccessDecisionCache(WebClient.builder(), meterRegistry, trustUrl, allowTtl, denyTtl,
+                1_000, Duration.ofSeconds(2), subscribe, Duration.ofMillis(100), snapshots, maxStaleness,
+                DataSize.ofMegabytes(1), ticker);
+        cache.start();
+        return cache;
+    }
+
+    private void push(String event, String data) throws InterruptedException {
+        events.put("event:" + event + "\ndata:" + data + "\n\n");
+    }
+
+    /**
+     * Waits for pushed events to reach the client, for at most five seconds.
+     * Only delivery is awaited; expiry and staleness follow {@link #ticker}.
+     */
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "event not handled within five seconds");
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Waits until Caffeine has taken in the completed check of {@code key}; only
+     * then is its expiry timed from the ticker's current reading.
+     */
+    private void awaitCached(AccessDecisionCache cache, AccessDecisionCache.Key key) throws InterruptedException {
+        await(() -> cache.expiresIn(key).filter(left -> left.toDays() < 1).isPresent());
+    }
+
+    @Test
+    void concurrentChecksShareOneRequestAndAreCached() throws Exception {
+        delayMillis = 200;
+        AccessDecisionCache cache = newCache(Duration.ofMinutes(1), Duration.ofMinutes(1), false);
+
+        int callers = 32;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        List<Future<AccessDecisionCache.Decision>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(pool.submit(() -> cache.check(USER, 1, 2).block(Duration.ofSeconds(5))));
+        }
+        for (Future<AccessDecisionCache.Decision> result : results) {
+            assertTrue(result.get().allowed());
+        }
+        pool.shutdown();
+
+        assertEquals(1, checks.get());
+        AccessDecisionCache.Decision again = cache.check(USER, 1, 2).block();
+        assertTrue(again.allowed());
+        assertEquals(Source.CACHE, again.source());
+        assertEquals(1, checks.get());
+    }
+
+    @Test
+    void denialsExpireSoonerThanGrants() throws Exception {
+        allowed = false;
+        AccessDecisionCache cache = newCache(Duration.ofMinutes(1), Duration.ofMillis(200), false);
+
+        assertFalse(cache.check(USER, 1, 2).block().allowed());
+        assertEquals(Source.CACHE, cache.check(USER, 1, 2).block().source());
+        assertEquals(1, checks.get());
+
+        allowed = true;
+        awaitCached(cache, new AccessDecisionCache.Key(USER, 1, 2));
+        ticker.advance(Duration.ofMillis(400));
+        assertTrue(cache.check(USER, 1, 2).block().allowed());
+        assertEquals(2, checks.get());
+
+        awaitCached(cache, new AccessDecisionCache.Key(USER, 1, 2));
+        ticker.advance(Duration.ofMillis(400));
+        assertEquals(Source.CACHE, cache.check(USER, 1, 2).block().source());
+        assertEquals(2, checks.get());
+    }
+
+    @Test
+    void failedChecksAreNotCached() {
+        status = 500;
+        AccessDecisionCache cache = newCache(Duration.ofMinutes(1), Duration.ofMinutes(1), false);
+
+        assertThrows(Exception.class, () -> cache.check(USER, 1, 2).block());
+
+        status = 200;
+        AccessDecisionCache.Decision decision = cache.check(USER, 1, 2).block();
+        assertTrue(decision.allowed());
+        assertEquals(Source.REMOTE, decision.source());
+        assertEquals(2, checks.get());
+    }
+
+    @Test
+    void pushedInvalidationDropsOnlyMatchingDecisions() throws Exception {
+        AccessDecisionCache cache = newCache(Duration.ofMinutes(1), Duration.ofMinutes(1), true);
+        assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+        // Events are handled in order: once this one is in, so is the connected event that clears the cache
+        push("invalidate", "{\"userDid\":\"did:plc:nobody\",\"serverId\":null,\"channelId\":null}");
+        await(() -> meterRegistry.get("falcon.gateway.access.invalidations").counter().count() == 1);
+
+        cache.check(USER, 1, 2).block();
+        cache.check(USER, 3, 4).block();
+        cache.check("did:plc:bob", 1, 2).block();
+        assertEquals(3, checks.get());
+
+        push("invalidate", "{\"userDid\":\"" + USER + "\",\"serverId\":null,\"channelId\":null}");
+
+        await(() -> cache.check(USER, 1, 2).block().source() != Source.CACHE);
+        assertEquals(Source.REMOTE, cache.check(USER, 3, 4).block().source());
+        assertEquals(Source.CACHE, cache.check("did:plc:bob", 1, 2).block().source());
+        assertEquals(5, checks.get());
+    }
+
+    @Test
+    void snapshotAnswersLocallyAndNewerVersionsReplaceIt() throws Exception {
+        AccessDecisionCache cache = newCache(Duration.ofMinutes(1), Duration.ofMinutes(1), false, true,
+                Duration.ofSeconds(30));
+        assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+        push("snapshot", snapshot(2, "FREE"));
+        // Checks before the snapshot arrives go to trust-service
+        await(() -> cache.check(USER, 1, 2).block().source() == Source.SNAPSHOT);
+        int remote = checks.get();
+
+        AccessDecisionCache.Decision decision = cache.check(USER, 1, 2).block();
+        assertEquals(Source.SNAPSHOT, decision.source());
+        assertFalse(decision.allowed());
+        assertTrue(cache.check(USER, 1, 3).block().allowed());
+
+        // An older snapshot arriving late must not replace the current one
+        push("snapshot", snapshot(1, "PRO"));
+        push("snapshot", snapshot(3, "PRO"));
+        await(() -> cache.check(USER, 1, 2).block().allowed());
+        assertTrue(cache.check(USER, 1, 2).block().allowed());
+        assertEquals(remote, checks.get());
+    }
+
+    @Test
+    void deltasUpdateTheSnapshotInVersionOrder() throws Exception {
+        String bob = "did:plc:bob";
+        AccessDecisionCache cache = newCache(Duration.ofMinutes(1), Duration.ofMinutes(1), false, true,
+                Duration.ofSeconds(30));
+        assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+        push("snapshot", snapshot(1, "FREE"));
+        await(() -> cache.check(bob, 1, 2).block().source() == Source.SNAPSHOT);
+        assertFalse(cache.check(bob, 1, 2).block().allowed());
+
+        // Already part of the table: ignored
+        push("delta", "{\"version\":1,\"userDid\":\"" + bob + "\",\"authorityTier\":\"ELITE\"}");
+        push("delta", "{\"version\":2,\"userDid\":\"" + bob + "\",\"authorityTier\":\"PRO\"}");
+        await(() -> cache.check(bob, 1, 2).block().allowed());
+        AccessDecisionCache.Decision decision = cache.check(bob, 1, 2).block();
+        assertEquals(Source.SNAPSHOT, decision.source());
+        assertTrue(decision.allowed());
+        // The explicit member tier still wins over the authority
+        assertFalse(cache.check(USER, 1, 2).block().allowed());
+
+        // A gap means a delta was missed: stop answering from the table
+        push("delta", "{\"version\":4,\"userDid\":\"" + bob + "\",\"authorityTier\":null}");
+        await(() -> cache.check(bob, 1, 2).block().source() != Source.SNAPSHOT);
+        assertEquals(Source.REMOTE, cache.check(USER, 1, 3).block().source());
+    }
+
+    @Test
+    void staleSnapshotFallsBackToTrustService() throws Exception {
+        AccessDecisionCache cache = newCache(Duration.ofMinutes(1), Duration.ofMinutes(1), false, true,
+                Duration.ofMillis(300));
+        assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+        push("snapshot", snapshot(1, "FREE"));
+        await(() -> cache.check(USER, 1, 3).block().source() == Source.SNAPSHOT);
+
+        ticker.advance(Duration.ofMillis(500));
+        AccessDecisionCache.Decision decision = cache.check(USER, 1, 2).block();
+        assertEquals(Source.REMOTE, decision.source());
+        assertTrue(decision.allowed());
+
+        // A heartbeat makes the snapshot fresh again
+        push("heartbeat", "");
+        await(() -> cache.check(USER, 1, 2).block().source() == Source.SNAPSHOT);
+        assertEquals(Source.SNAPSHOT, cache.check(USER, 1, 2).block().source());
+    }
+
+    /** Channel 2 requires PRO; {@code USER} holds {@code tier} on server 1. */
+    private static String snapshot(long version, String tier) {
+        return "{\"version\":" + version + ",\"builtAt\":\"2026-01-01T00:00:00Z\","
+                + "\"channelTiers\":{\"2\":\"PRO\"},"
+                + "\"memberTiers\":{\"1\":{\"" + USER + "\":\"" + tier + "\"}},"
+                + "\"authorityTiers\":{}}";
+    }
+}
@@ -0,0 +1,106 @@
+package app.falcon.gateway.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DidDocumentStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<DidDocumentStore> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (DidDocumentStore store : opened) {
+            store.close();
+        }
+    }
+
+    private DidDocumentStore open(DataSize compactionThreshold) throws Exception {
+        DidDocumentStore store = new DidDocumentStore(dir.resolve("did-documents.log"), compactionThreshold);
+        store.open();
+        store.flush();
+        opened.add(store);
+        return store;
+    }
+
+    @Test
+    void documentsSurviveARestart() throws Exception {
+        Instant fetchedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        DidDocumentStore store = open(DataSize.ofMegabytes(64));
+        store.put("did:plc:alice", Map.of("id", "did:plc:alice", "version", 1), fetchedAt);
+        store.put("did:plc:alice", Map.of("id", "did:plc:alice", "version", 2), fetchedAt);
+        store.put("did:plc:bob", Map.of("id", "did:plc:bob"), fetchedAt);
+        store.flush();
+        store.close();
+        opened.remove(store);
+
+        DidDocumentStore reopened = open(DataSize.ofMegabytes(64));
+        DidDocumentStore.Stored alice = reopened.get("did:plc:alice");
+        assertEquals(2, alice.document().get("version"));
+        assertEquals(fetchedAt, alice.fetchedAt());
+        assertEquals("did:plc:bob", reopened.get("did:plc:bob").document().get("id"));
+        assertNull(reopened.get("did:plc:carol"));
+        assertEquals(2, reopened.size());
+    }
+
+    @Test
+    void removedDocumentStaysRemovedAfterRestart() throws Exception {
+        DidDocumentStore store = open(DataSize.ofMegabytes(64));
+        store.put("did:plc:alice", Map.of("id", "did:plc:alice"), Instant.now());
+        store.remove("did:plc:alice");
+        store.flush();
+        assertNull(store.get("did:plc:alice"));
+        store.close();
+        opened.remove(store);
+
+        assertNull(open(DataSize.ofMegabytes(64)).get("did:plc:alice"));
+    }
+
+    @Test
+    void tornTailIsTruncated() throws Exception {
+        DidDocumentStore store = open(DataSize.ofMegabytes(64));
+        store.put("did:plc:alice", Map.of("id", "did:plc:alice"), Instant.now());
+        store.flush();
+        store.close();
+        opened.remove(store);
+
+        Path log = dir.resolve("did-documents.log");
+        long intact = Files.size(log);
+        Files.write(log, new byte[] { 0, 0, 1, 0, 0, 0 }, StandardOpenOption.APPEND);
+
+        DidDocumentStore reopened = open(DataSize.ofMegabytes(64));
+        assertEquals("did:plc:alice", reopened.get("did:plc:alice").document().get("id"));
+        assertEquals(intact, Files.size(log));
+    }
+
+    @Test
+    void compactionKeepsOnlyLatestDocuments() throws Exception {
+        DidDocumentStore store = open(DataSize.ofBytes(1));
+        for (int version = 0; version < 50; version++) {
+            store.put("did:plc:alice", Map.of("id", "did:plc:alice", "version", version), Instant.now());
+            store.put("did:plc:bob", Map.of("id", "did:plc:bob", "version", version), Instant.now());
+        }
+        store.remove("did:plc:bob");
+        store.flush();
+
+        assertEquals(49, store.get("did:plc:alice").document().get("version"));
+        assertNull(store.get("did:plc:bob"));
+        long compacted = Files.size(dir.resolve("did-documents.log"));
+        assertTrue(compacted < 4 * 128, "log was not compacted: " + compacted + " bytes");
+    }
+}
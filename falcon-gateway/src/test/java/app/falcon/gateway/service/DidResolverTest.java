@@ -0,0 +1,210 @@
+package app.falcon.gateway.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DidResolverTest {
+
+    private static final String DID = "did:plc:alice";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicInteger version = new AtomicInteger(1);
+    private volatile int status = 200;
+    private volatile long delayMillis;
+
+    private HttpServer plcStub;
+    private String plcUrl;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Local stand-in for plc.directory: serves a document whose version can be bumped
+        plcStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        plcStub.createContext("/", exchange -> {
+            fetches.incrementAndGet();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String did = exchange.getRequestURI().getPath().substring(1);
+            byte[] response = objectMapper.writeValueAsBytes(Map.of("id", did, "version", version.get()));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        plcStub.setExecutor(Executors.newCachedThreadPool());
+        plcStub.start();
+        plcUrl = "http://localhost:" + plcStub.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        plcStub.stop(0);
+    }
+
+    private DidResolver newResolver(Duration ttl, Duration failureTtl) {
+        return new DidResolver(WebClient.builder(), new SimpleMeterRegistry(), plcUrl, ttl, Duration.ofHours(1),
+                failureTtl, Duration.ofSeconds(2), 1_000);
+    }
+
+    @Test
+    void concurrentResolvesShareOneFetch() throws Exception {
+        delayMillis = 200;
+        DidResolver resolver = newResolver(Duration.ofHours(1), Duration.ofSeconds(10));
+
+        int callers = 32;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Map<String, Object>>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return resolver.resolve(DID).block(Duration.ofSeconds(5));
+            }));
+        }
+        start.countDown();
+        for (Future<Map<String, Object>> result : results) {
+            assertEquals(DID, result.get().get("id"));
+        }
+        pool.shutdown();
+
+        assertEquals(1, fetches.get());
+        assertTrue(resolver.remainingValidity(DID).compareTo(Duration.ofMinutes(59)) > 0);
+    }
+
+    @Test
+    void cancelledCallerDoesNotAbortSharedFetch() {
+        delayMillis = 200;
+        DidResolver resolver = newResolver(Duration.ofHours(1), Duration.ofSeconds(10));
+
+        resolver.resolve(DID).subscribe().dispose();
+        assertEquals(DID, resolver.resolve(DID).block(Duration.ofSeconds(5)).get("id"));
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void staleDocumentIsServedWhileRefreshing() throws Exception {
+        DidResolver resolver = newResolver(Duration.ofMillis(200), Duration.ofSeconds(10));
+        assertEquals(1, resolver.resolve(DID).block().get("version"));
+
+        Thread.sleep(300);
+        version.set(2);
+        delayMillis = 500;
+        assertEquals(Duration.ZERO, resolver.remainingValidity(DID));
+
+        long start = System.nanoTime();
+        assertEquals(1, resolver.resolve(DID).block().get("version"));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(250), "stale read waited for refresh");
+
+        Thread.sleep(800);
+        assertEquals(2, resolver.resolve(DID).block().get("version"));
+    }
+
+    @Test
+    void failedRefreshKeepsStaleDocument() throws Exception {
+        DidResolver resolver = newResolver(Duration.ofMillis(200), Duration.ofSeconds(10));
+        resolver.resolve(DID).block();
+
+        Thread.sleep(300);
+        status = 500;
+        resolver.resolve(DID).block();
+        Thread.sleep(300);
+
+        assertEquals(1, resolver.resolve(DID).block().get("version"));
+    }
+
+    @Test
+    void failuresAreNegativeCached() {
+        status = 500;
+        DidResolver resolver = newResolver(Duration.ofHours(1), Duration.ofSeconds(10));
+
+        assertThrows(RuntimeException.class, () -> resolver.resolve(DID).block());
+        assertThrows(RuntimeException.class, () -> resolver.resolve(DID).block());
+        assertEquals(1, fetches.get());
+
+        status = 200;
+        resolver.invalidate(DID);
+        assertEquals(DID, resolver.resolve(DID).block().get("id"));
+    }
+
+    @Test
+    void invalidationNotifiesListeners() throws Exception {
+        DidResolver resolver = newResolver(Duration.ofHours(1), Duration.ofSeconds(10));
+        CompletableFuture<String> invalidated = new CompletableFuture<>();
+        resolver.onInvalidate(invalidated::complete);
+        resolver.resolve(DID).block();
+
+        resolver.invalidate(DID);
+
+        assertEquals(DID, invalidated.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void storedDocumentsWarmANewResolver(@TempDir Path dir) throws Exception {
+        DidDocumentStore store = new DidDocumentStore(dir.resolve("did-documents.log"), DataSize.ofMegabytes(64));
+        store.open();
+        try {
+            DidResolver first = newResolver(Duration.ofHours(1), Duration.ofSeconds(10));
+            first.setDocumentStore(store);
+            first.resolve(DID).block();
+            store.flush();
+
+            DidResolver restarted = newResolver(Duration.ofHours(1), Duration.ofSeconds(10));
+            restarted.setDocumentStore(store);
+            assertEquals(DID, restarted.resolve(DID).block().get("id"));
+            assertEquals(1, fetches.get());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void staleStoredDocumentIsServedAndRefreshed(@TempDir Path dir) throws Exception {
+        DidDocumentStore store = new DidDocumentStore(dir.resolve("did-documents.log"), DataSize.ofMegabytes(64));
+        store.open();
+        try {
+            store.put(DID, Map.of("id", DID, "version", 0), Instant.now().minus(Duration.ofMinutes(30)));
+            store.flush();
+            DidResolver resolver = newResolver(Duration.ofMinutes(10), Duration.ofSeconds(10));
+            resolver.setDocumentStore(store);
+
+            assertEquals(0, resolver.resolve(DID).block().get("version"));
+            for (int i = 0; i < 50 && resolver.remainingValidity(DID).isZero(); i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(1, resolver.resolve(DID).block().get("version"));
+            assertEquals(1, fetches.get());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void unsupportedMethodIsRejectedWithoutFetching() {
+        DidResolver resolver = newResolver(Duration.ofHours(1), Duration.ofSeconds(10));
+
+        assertThrows(IllegalArgumentException.class, () -> resolver.resolve("did:key:z6Mk").block());
+        assertEquals(0, fetches.get());
+    }
+}
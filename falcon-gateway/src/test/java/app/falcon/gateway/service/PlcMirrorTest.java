@@ -0,0 +1,274 @@
+package app.falcon.gateway.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlcMirrorTest {
+
+    private static final String ALICE = "did:plc:alice";
+    private static final String BOB = "did:plc:bob";
+    private static final String CAROL = "did:plc:carol";
+
+    /** Test clock that can be moved forward to let the mirror fall behind. */
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.now();
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    /** The export, as lines ordered by createdAt. */
+    private final List<String> operations = new CopyOnWriteArrayList<>();
+    private final List<String> requestedCursors = new CopyOnWriteArrayList<>();
+    private final AtomicInteger documentFetches = new AtomicInteger();
+    private final List<PlcMirror> started = new ArrayList<>();
+    private final MutableClock clock = new MutableClock();
+
+    private HttpServer plcStub;
+    private String plcUrl;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Local stand-in for plc.directory: /export pages through the operations,
+        // anything else is a (counted) DID document fetch
+        plcStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        plcStub.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            byte[] response;
+            if (path.equals("/export")) {
+                Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+                String after = query.get("after");
+                requestedCursors.add(String.valueOf(after));
+                int count = Integer.parseInt(query.get("count"));
+                response = String.join("\n", operations.stream()
+                        .filter(line -> after == null || createdAt(line).compareTo(after) > 0)
+                        .limit(count)
+                        .toList()).getBytes(StandardCharsets.UTF_8);
+            } else {
+                documentFetches.incrementAndGet();
+                response = ("{\"id\":\"" + path.substring(1) + "\",\"source\":\"network\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        plcStub.setExecutor(Executors.newCachedThreadPool());
+        plcStub.start();
+        plcUrl = "http://localhost:" + plcStub.getAddress().getPort();
+
+        operations.add(create(ALICE, "zQ3shAliceOld", "alice.test", "2024-01-01T00:00:00.000Z"));
+        operations.add(operation(BOB, "zQ3shBob", "bob.test", false, "2024-01-02T00:00:00.000Z"));
+        operations.add(operation(ALICE, "zQ3shAliceNew", "alice.example", false, "2024-01-03T00:00:00.000Z"));
+        operations.add(operation(BOB, "zQ3shBobFork", "bob.fork", true, "2024-01-04T00:00:00.000Z"));
+        operations.add(operation(CAROL, "zQ3shCarol", "carol.test", false, "2024-01-05T00:00:00.000Z"));
+        operations.add(tombstone(CAROL, "2024-01-06T00:00:00.000Z"));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (PlcMirror mirror : started) {
+            mirror.stop();
+        }
+        plcStub.stop(0);
+    }
+
+    private PlcMirror start(String importFile) {
+        PlcMirror mirror = new PlcMirror(WebClient.builder(), new SimpleMeterRegistry(), plcUrl + "/export",
+                dir.resolve("plc-mirror.log"), importFile, 2, Duration.ofHours(1), Duration.ofMinutes(5),
+                DataSize.ofMegabytes(64), clock);
+        mirror.start();
+        started.add(mirror);
+        return mirror;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void catchUpKeepsLatestOperationOfEachDid() {
+        PlcMirror mirror = start("");
+        mirror.catchUp();
+
+        assertTrue(mirror.isCaughtUp());
+        Map<String, Object> alice = mirror.get(ALICE);
+        assertEquals(List.of("at://alice.example"), alice.get("alsoKnownAs"));
+        Map<String, Object> key = ((List<Map<String, Object>>) alice.get("verificationMethod")).get(0);
+        assertEquals(ALICE + "#atproto", key.get("id"));
+        assertEquals("zQ3shAliceNew", key.get("publicKeyMultibase"));
+
+        // The nullified fork is ignored, the tombstone removes the DID
+        assertEquals(List.of("at://bob.test"), mirror.get(BOB).get("alsoKnownAs"));
+        assertNull(mirror.get(CAROL));
+    }
+
+    @Test
+    void restartResumesFromSavedCursor() throws Exception {
+        start("").catchUp();
+        started.remove(0).stop();
+
+        operations.add(operation(BOB, "zQ3shBobRotated", "bob.test", false, "2024-01-07T00:00:00.000Z"));
+        requestedCursors.clear();
+        PlcMirror restarted = start("");
+        restarted.catchUp();
+
+        assertEquals("2024-01-06T00:00:00.000Z", requestedCursors.get(0));
+        assertEquals(ALICE, restarted.get(ALICE).get("id"));
+        assertTrue(restarted.get(BOB).toString().contains("zQ3shBobRotated"));
+    }
+
+    @Test
+    void exportDumpIsImportedBeforePolling() throws Exception {
+        Path dump = dir.resolve("plc-export.jsonl");
+        Files.write(dump, operations);
+
+        PlcMirror mirror = start(dump.toString());
+        mirror.catchUp();
+
+        assertEquals(ALICE, mirror.get(ALICE).get("id"));
+        assertFalse(requestedCursors.contains("null"), "crawled from the start despite the dump");
+    }
+
+    @Test
+    void resolverAnswersFromMirrorAndFollowsUpdates() {
+        PlcMirror mirror = start("");
+        mirror.catchUp();
+        DidResolver resolver = new DidResolver(WebClient.builder(), new SimpleMeterRegistry(), plcUrl,
+                Duration.ofHours(1), Duration.ofHours(24), Duration.ofSeconds(10), Duration.ofSeconds(2), 1_000);
+        resolver.setPlcMirror(mirror);
+
+        assertTrue(resolver.resolve(ALICE).block().toString().contains("zQ3shAliceNew"));
+
+        operations.add(operation(ALICE, "zQ3shAliceRotated", "alice.example", false, "2024-01-07T00:00:00.000Z"));
+        mirror.catchUp();
+        assertTrue(resolver.resolve(ALICE).block().toString().contains("zQ3shAliceRotated"));
+
+        // Unknown to the mirror: falls back to the directory
+        assertEquals("network", resolver.resolve("did:plc:dave").block().get("source"));
+        assertEquals(1, documentFetches.get());
+    }
+
+    @Test
+    void stalledMirrorFallsBackToDirectory() {
+        PlcMirror mirror = start("");
+        mirror.catchUp();
+        DidResolver resolver = new DidResolver(WebClient.builder(), new SimpleMeterRegistry(), plcUrl,
+                Duration.ofHours(1), Duration.ofHours(24), Duration.ofSeconds(10), Duration.ofSeconds(2), 1_000);
+        resolver.setPlcMirror(mirror);
+
+        clock.advance(Duration.ofMinutes(4));
+        assertTrue(mirror.isCaughtUp());
+        assertEquals(ALICE, mirror.get(ALICE).get("id"));
+
+        // No successful catch-up for longer than max-lag: the mirror is no longer trusted
+        clock.advance(Duration.ofMinutes(2));
+        assertFalse(mirror.isCaughtUp());
+        assertNull(mirror.get(ALICE));
+        assertEquals("network", resolver.resolve(ALICE).block().get("source"));
+        assertEquals(1, documentFetches.get());
+
+        mirror.catchUp();
+        assertTrue(mirror.isCaughtUp());
+        assertEquals(ALICE, mirror.get(ALICE).get("id"));
+    }
+
+    @Test
+    void mirrorUpdateRevokesVerifiedTokens() {
+        PlcMirror mirror = start("");
+        mirror.catchUp();
+        DidResolver resolver = new DidResolver(WebClient.builder(), new SimpleMeterRegistry(), plcUrl,
+                Duration.ofHours(1), Duration.ofHours(24), Duration.ofSeconds(10), Duration.ofSeconds(2), 1_000);
+        resolver.setPlcMirror(mirror);
+        VerifiedTokenCache tokens = new VerifiedTokenCache(resolver, new SimpleMeterRegistry(), 1_000);
+
+        resolver.resolve(ALICE).block();
+        tokens.put("alice-token", ALICE, null, resolver.remainingValidity(ALICE));
+        tokens.put("bob-token", BOB, null, Duration.ofHours(1));
+        assertEquals(ALICE, tokens.lookup("alice-token"));
+
+        // Alice rotates her key: the token checked against the old one must not be honoured
+        operations.add(operation(ALICE, "zQ3shAliceRotated", "alice.example", false, "2024-01-07T00:00:00.000Z"));
+        mirror.catchUp();
+
+        assertNull(tokens.lookup("alice-token"));
+        assertEquals(BOB, tokens.lookup("bob-token"));
+    }
+
+    private static String create(String did, String signingKey, String handle, String createdAt) {
+        return """
+                {"did":"%s","operation":{"type":"create","signingKey":"did:key:%s","recoveryKey":"did:key:zRecovery",\
+                "handle":"%s","service":"https://pds.test","prev":null,"sig":"x"},"cid":"c","nullified":false,\
+                "createdAt":"%s"}""".formatted(did, signingKey, handle, createdAt);
+    }
+
+    private static String operation(String did, String signingKey, String handle, boolean nullified,
+            String createdAt) {
+        return """
+                {"did":"%s","operation":{"type":"plc_operation","rotationKeys":["did:key:zRecovery"],\
+                "verificationMethods":{"atproto":"did:key:%s"},"alsoKnownAs":["at://%s"],\
+                "services":{"atproto_pds":{"type":"AtprotoPersonalDataServer","endpoint":"https://pds.test"}},\
+                "prev":"p","sig":"x"},"cid":"c","nullified":%s,"createdAt":"%s"}"""
+                .formatted(did, signingKey, handle, nullified, createdAt);
+    }
+
+    private static String tombstone(String did, String createdAt) {
+        return """
+                {"did":"%s","operation":{"type":"plc_tombstone","prev":"p","sig":"x"},"cid":"c","nullified":false,\
+                "createdAt":"%s"}""".formatted(did, createdAt);
+    }
+
+    private static String createdAt(String line) {
+        int at = line.indexOf("\"createdAt\":\"") + 13;
+        return line.substring(at, line.indexOf('"', at));
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            query.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+}
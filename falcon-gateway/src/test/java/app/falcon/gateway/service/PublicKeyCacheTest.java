@@ -0,0 +1,103 @@
+package app.falcon.gateway.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigInteger;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+
+class PublicKeyCacheTest {
+
+    private static final String DID = "did:plc:alice";
+
+    @Mock
+    private DidResolver didResolver;
+
+    private PublicKeyCache cache;
+    private Consumer<String> invalidationListener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        cache = new PublicKeyCache(didResolver, new SimpleMeterRegistry(), 1_000);
+
+        ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(didResolver).onInvalidate(listener.capture());
+        invalidationListener = listener.getValue();
+    }
+
+    @Test
+    void keyIsParsedOncePerDocument() throws Exception {
+        Map<String, Object> didDoc = didDoc(newKey());
+
+        ECPublicKey first = cache.keyFor(DID, didDoc, EcCurve.P256);
+        assertSame(first, cache.keyFor(DID, didDoc, EcCurve.P256));
+    }
+
+    @Test
+    void refetchedDocumentIsParsedAgain() throws Exception {
+        ECPublicKey rotated = newKey();
+        cache.keyFor(DID, didDoc(newKey()), EcCurve.P256);
+
+        assertEquals(rotated.getW(), cache.keyFor(DID, didDoc(rotated), EcCurve.P256).getW());
+    }
+
+    @Test
+    void documentInvalidationDropsParsedKeys() throws Exception {
+        Map<String, Object> didDoc = didDoc(newKey());
+        ECPublicKey first = cache.keyFor(DID, didDoc, EcCurve.P256);
+
+        invalidationListener.accept(DID);
+
+        ECPublicKey reparsed = cache.keyFor(DID, didDoc, EcCurve.P256);
+        assertNotSame(first, reparsed);
+        assertEquals(first.getW(), reparsed.getW());
+    }
+
+    @Test
+    void missingCurveIsRejected() throws Exception {
+        Map<String, Object> didDoc = didDoc(newKey());
+
+        assertThrows(IllegalArgumentException.class, () -> cache.keyFor(DID, didDoc, EcCurve.SECP256K1));
+    }
+
+    private static ECPublicKey newKey() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return (ECPublicKey) generator.generateKeyPair().getPublic();
+    }
+
+    private static Map<String, Object> didDoc(ECPublicKey publicKey) {
+        return Map.of(
+                "id", DID,
+                "verificationMethod", List.of(Map.of(
+                        "id", DID + "#atproto",
+                        "publicKeyJwk", Map.of(
+                                "kty", "EC",
+                                "crv", "P-256",
+                                "x", coordinate(publicKey.getW().getAffineX()),
+                                "y", coordinate(publicKey.getW().getAffineY())))));
+    }
+
+    private static String coordinate(BigInteger value) {
+        byte[] raw = value.toByteArray();
+        byte[] fixed = new byte[32];
+        int length = Math.min(raw.length, 32);
+        System.arraycopy(raw, raw.length - length, fixed, 32 - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
+    }
+}
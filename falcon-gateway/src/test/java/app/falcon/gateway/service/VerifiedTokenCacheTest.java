@@ -0,0 +1,67 @@
+package app.falcon.gateway.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class VerifiedTokenCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final VerifiedTokenCache cache = new VerifiedTokenCache(mock(DidResolver.class), meterRegistry,
+            1_000);
+
+    @Test
+    void verifiedTokenIsRecalledUntilItExpires() {
+        cache.put("token-a", "did:plc:alice", Instant.now().plusSeconds(60), Duration.ofHours(1));
+        cache.put("token-b", "did:plc:bob", Instant.now().minusSeconds(1), Duration.ofHours(1));
+
+        assertEquals("did:plc:alice", cache.lookup("token-a"));
+        assertNull(cache.lookup("token-b"));
+        assertNull(cache.lookup("token-c"));
+    }
+
+    @Test
+    void entryIsBoundedByDocumentValidity() throws Exception {
+        cache.put("token-a", "did:plc:alice", null, Duration.ofMillis(500));
+        cache.put("token-b", "did:plc:bob", Instant.now().plusSeconds(3600), Duration.ZERO);
+
+        assertEquals("did:plc:alice", cache.lookup("token-a"));
+        assertNull(cache.lookup("token-b"));
+
+        Thread.sleep(700);
+        assertNull(cache.lookup("token-a"));
+    }
+
+    @Test
+    void invalidationDropsOnlyThatDidsTokens() {
+        cache.put("token-a", "did:plc:alice", null, Duration.ofHours(1));
+        cache.put("token-a2", "did:plc:alice", null, Duration.ofHours(1));
+        cache.put("token-b", "did:plc:bob", null, Duration.ofHours(1));
+
+        cache.invalidate("did:plc:alice");
+
+        assertNull(cache.lookup("token-a"));
+        assertNull(cache.lookup("token-a2"));
+        assertEquals("did:plc:bob", cache.lookup("token-b"));
+
+        cache.put("token-a", "did:plc:alice", null, Duration.ofHours(1));
+        assertEquals("did:plc:alice", cache.lookup("token-a"));
+    }
+
+    @Test
+    void hitsAndMissesAreExported() {
+        cache.put("token-a", "did:plc:alice", null, Duration.ofHours(1));
+        cache.lookup("token-a");
+        cache.lookup("token-z");
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "verified-tokens").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "verified-tokens").tag("result", "miss")
+                .functionCounter().count());
+    }
+}
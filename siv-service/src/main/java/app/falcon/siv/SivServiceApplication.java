@@ -3,9 +3,11 @@ package app.falcon.siv;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
 @SpringBootApplication(scanBasePackages = "app.falcon")
+@EnableScheduling
 public class SivServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(SivServiceApplication.class, args);
@@ -2,157 +2,472 @@ package app.falcon.siv.ai;
 
 import app.falcon.core.domain.AiFact;
 import app.falcon.siv.repository.AiFactRepository;
+import app.falcon.siv.service.IntelligenceBiasIndex;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The core AI engine — processes AT Protocol Jetstream events through the LLM.
+ * Posts go through a {@link PostQueue}, which bounds both the backlog and the
+ * number of LLM calls in flight; each DID's rolling memory and rate limit live
+ * in the {@link DidStateCache}.
+ *
+ * <p>
+ * With {@code falcon.ai.analysis-mode=SEPARATE} each post costs two calls, one
+ * for tagging and one for moderation. {@code COMBINED} asks for both in one
+ * structured-output call against {@link #ANALYSIS_SCHEMA}, read leniently in
+ * case the provider wraps the JSON; an answer that still cannot be used falls
+ * back to the two separate calls.
+ * </p>
+ *
+ * <p>
+ * With {@code falcon.ai.batch.max-size} above one the queue hands over posts
+ * in batches, and each batch goes out as a single multi-item prompt against
+ * {@link #BATCH_SCHEMA}. Results are matched back to their post by
+ * {@code id}; a post whose result is missing or unusable is analysed on its
+ * own according to the analysis mode, as is every post of a batch whose call
+ * failed. Identical posts in a batch are sent once and share the result.
+ * </p>
+ *
+ * <p>
+ * Complete analyses are kept in the {@link AnalysisCache}. A post whose text
+ * was analysed before reuses that result without an LLM call, and the facts
+ * written for it carry the cache key and original event in
+ * {@code metadataJson}. Failing an exact hit, the {@link NearDuplicateIndex}
+ * may find a cluster representative whose tags and summary are reused; its
+ * similarity and the cluster's size are added to the metadata. Its moderation
+ * verdict is reused only if it was harmful, otherwise the post is still
+ * moderated on its own.
+ * </p>
  */
 @Service
 @Slf4j
 @ConditionalOnProperty(name = "falcon.ai.enabled", havingValue = "true", matchIfMissing = false)
 public class AiContextService {
 
+    public enum AnalysisMode {
+        SEPARATE, COMBINED
+    }
+
+    /** Strict JSON schema of a {@code COMBINED} analysis. */
+    static final Map<String, Object> ANALYSIS_SCHEMA = Map.of(
+            "type", "object",
+            "additionalProperties", false,
+            "required", List.of("tags", "summary", "confidence", "reasoning", "isHarmful", "harmReason",
+                    "harmConfidence"),
+            "properties", Map.of(
+                    "tags", Map.of("type", "array", "items", Map.of("type", "string")),
+                    "summary", Map.of("type", "string"),
+                    "confidence", Map.of("type", "number"),
+                    "reasoning", Map.of("type", "string"),
+                    "isHarmful", Map.of("type", "boolean"),
+                    "harmReason", Map.of("type", "string"),
+                    "harmConfidence", Map.of("type", "number")));
+
+    /** Strict JSON schema of a batch analysis: one {@link #ANALYSIS_SCHEMA} result per post id. */
+    static final Map<String, Object> BATCH_SCHEMA = Map.of(
+            "type", "object",
+            "additionalProperties", false,
+            "required", List.of("results"),
+            "properties", Map.of(
+                    "results", Map.of("type", "array", "items", withId(ANALYSIS_SCHEMA))));
+
+    /** Completion tokens allowed per post of a batch. */
+    private static final int BATCH_TOKENS_PER_POST = 160;
+
+    /** A batched post that passed the rate limit. */
+    private record Admitted(PostQueue.Post post, ChannelMemory memory) {
+    }
+
     private final FalconAiClient aiClient;
     private final AiFactRepository factRepository;
     private final SovereignAgentService agentService;
     private final AutonomousVoucher autonomousVoucher;
+    private final IntelligenceBiasIndex biasIndex;
+    private final PostQueue postQueue;
+    private final AnalysisCache analysisCache;
+    private final NearDuplicateIndex nearDuplicates;
+    private final DidStateCache didStates;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    private final int contextWindowSize;
-    private final long rateLimitSeconds;
-    private final int maxTrackedDids;
-
-    private final ConcurrentHashMap<String, ChannelMemory> memories = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Instant> lastProcessed = new ConcurrentHashMap<>();
-    private final java.util.concurrent.ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Duration rateLimit;
+    private final AnalysisMode analysisMode;
+    private final Timer analysisTimer;
+    private final Counter fallbacks;
+    private final Timer batchItemTimer;
 
     public AiContextService(
             FalconAiClient aiClient,
             AiFactRepository factRepository,
             SovereignAgentService agentService,
             AutonomousVoucher autonomousVoucher,
-            @Value("${falcon.ai.context-window-size:50}") int contextWindowSize,
+            IntelligenceBiasIndex biasIndex,
+            PostQueue postQueue,
+            AnalysisCache analysisCache,
+            NearDuplicateIndex nearDuplicates,
+            DidStateCache didStates,
+            MeterRegistry meterRegistry,
             @Value("${falcon.ai.rate-limit-seconds:60}") long rateLimitSeconds,
-            @Value("${falcon.ai.max-tracked-dids:5000}") int maxTrackedDids) {
+            @Value("${falcon.ai.analysis-mode:SEPARATE}") AnalysisMode analysisMode) {
         this.aiClient = aiClient;
         this.factRepository = factRepository;
         this.agentService = agentService;
         this.autonomousVoucher = autonomousVoucher;
-        this.contextWindowSize = contextWindowSize;
-        this.rateLimitSeconds = rateLimitSeconds;
-        this.maxTrackedDids = maxTrackedDids;
+        this.biasIndex = biasIndex;
+        this.analysisCache = analysisCache;
+        this.nearDuplicates = nearDuplicates;
+        this.didStates = didStates;
+        this.rateLimit = Duration.ofSeconds(rateLimitSeconds);
+        this.analysisMode = analysisMode;
+        this.analysisTimer = Timer.builder("falcon.siv.ai.analysis")
+                .description("LLM time spent analysing one post")
+                .tag("mode", analysisMode.name().toLowerCase())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder("falcon.siv.ai.analysis.fallbacks")
+                .description("Combined analyses and batch items that could not be used and were redone per post")
+                .register(meterRegistry);
+        this.batchItemTimer = Timer.builder("falcon.siv.ai.batch.item")
+                .description("LLM time of a batch call divided by the posts in it")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.postQueue = postQueue;
+        if (postQueue.batching()) {
+            postQueue.consumeBatches(this::analyseBatch);
+        } else {
+            postQueue.consume(post -> analysePost(post.did(), post.text(), post.eventId()));
+        }
     }
 
     public void processPost(String did, String text, String eventId) {
         if (text == null || text.isBlank())
             return;
 
-        executor.submit(() -> {
-            try {
-                analysePost(did, text, eventId);
-            } catch (Exception e) {
-                log.warn("AI analysis failed for DID {}: {}", did, e.getMessage());
-            }
-        });
+        postQueue.offer(did, text, eventId);
     }
 
     private void analysePost(String did, String text, String eventId) {
-        Instant last = lastProcessed.get(did);
-        if (last != null && last.plusSeconds(rateLimitSeconds).isAfter(Instant.now())) {
-            getOrCreateMemory(did).add(text);
+        ChannelMemory memory = didStates.admit(did, text, rateLimit);
+        if (memory != null)
+            analyse(did, text, memory, eventId);
+    }
+
+    private void analyseBatch(List<PostQueue.Post> posts) {
+        List<Admitted> admitted = new ArrayList<>(posts.size());
+        for (PostQueue.Post post : posts) {
+            ChannelMemory memory = didStates.admit(post.did(), post.text(), rateLimit);
+            if (memory != null)
+                admitted.add(new Admitted(post, memory));
+        }
+        admitted.removeIf(item -> replayCached(item.post().did(), item.post().text(), item.post().eventId()));
+
+        // Identical posts share one analysis, asked for on behalf of the first of them
+        Map<String, List<Admitted>> byText = new LinkedHashMap<>();
+        for (Admitted item : admitted)
+            byText.computeIfAbsent(AnalysisCache.normalise(item.post().text()), k -> new ArrayList<>()).add(item);
+        List<List<Admitted>> groups = new ArrayList<>(byText.values());
+        boolean[] answered = new boolean[groups.size()];
+
+        if (groups.size() > 1) {
+            List<Admitted> leads = groups.stream().map(group -> group.get(0)).toList();
+            long start = System.nanoTime();
+            String response = aiClient.completeJson(agentService.buildBatchAnalysisSystemPrompt(),
+                    batchPrompt(leads), "post_batch_analysis", BATCH_SCHEMA,
+                    BATCH_TOKENS_PER_POST * leads.size()).block();
+            batchItemTimer.record((System.nanoTime() - start) / leads.size(), TimeUnit.NANOSECONDS);
+
+            // A blank answer is how the client reports a failed call: every post falls back below
+            JsonNode json = response == null || response.isBlank() ? null : readLenient(response);
+            if (json != null) {
+                for (JsonNode result : json.path("results")) {
+                    int id = result.path("id").asInt(-1);
+                    JsonNode harmful = result.path("isHarmful");
+                    if (id < 0 || id >= leads.size() || answered[id] || !harmful.isBoolean())
+                        continue;
+                    answered[id] = true;
+                    AnalysisCache.Moderation moderation = combinedModeration(result);
+                    for (Admitted item : groups.get(id)) {
+                        recordTags(item.post().did(), result, item.post().eventId(), null);
+                        recordModeration(item.post().did(), moderation, item.post().eventId(), null);
+                    }
+                    remember(leads.get(id).post().text(), result, moderation, leads.get(id).post().eventId());
+                }
+            }
+        }
+
+        for (int i = 0; i < answered.length; i++) {
+            if (answered[i])
+                continue;
+            List<Admitted> group = groups.get(i);
+            PostQueue.Post lead = group.get(0).post();
+            if (groups.size() > 1) {
+                log.warn("No usable batch result for {}, analysing it on its own", lead.did());
+                fallbacks.increment();
+            }
+            analyseUncached(lead.did(), lead.text(), group.get(0).memory(), lead.eventId());
+            // Its duplicates are answered from the cache, if the analysis succeeded
+            for (Admitted duplicate : group.subList(1, group.size()))
+                analyse(duplicate.post().did(), duplicate.post().text(), duplicate.memory(),
+                        duplicate.post().eventId());
+        }
+    }
+
+    private void analyse(String did, String text, ChannelMemory memory, String eventId) {
+        if (!replayCached(did, text, eventId))
+            analyseUncached(did, text, memory, eventId);
+    }
+
+    /** Asks the LLM, for a post the cache has already been consulted about. */
+    private void analyseUncached(String did, String text, ChannelMemory memory, String eventId) {
+        Timer.Sample sample = Timer.start();
+        if (analysisMode == AnalysisMode.COMBINED) {
+            analyseCombined(did, text, memory, eventId);
+        } else {
+            analyseSeparately(did, text, memory, eventId);
+        }
+        sample.stop(analysisTimer);
+    }
+
+    private void analyseSeparately(String did, String text, ChannelMemory memory, String eventId) {
+        JsonNode tagging = tagPost(did, text, memory, eventId);
+        AnalysisCache.Moderation moderation = moderatePost(did, text, eventId);
+        if (tagging != null && moderation != null)
+            remember(text, tagging, moderation, eventId);
+    }
+
+    private void remember(String text, JsonNode tagging, AnalysisCache.Moderation moderation, String eventId) {
+        analysisCache.put(text, tagging, moderation, eventId);
+        nearDuplicates.add(text);
+    }
+
+    /**
+     * Writes the facts of a cached analysis of {@code text} or of a near
+     * duplicate of it, if there is one. A near duplicate reuses the tags and
+     * summary, but is moderated afresh unless the cached verdict was harmful.
+     *
+     * @return whether the cache had an answer
+     */
+    private boolean replayCached(String did, String text, String eventId) {
+        AnalysisCache.Analysis cached = analysisCache.get(text);
+        NearDuplicateIndex.Match match = null;
+        if (cached == null) {
+            match = nearDuplicates.match(text);
+            if (match != null) {
+                cached = analysisCache.peek(match.representative());
+                if (cached != null) {
+                    match = nearDuplicates.confirm(match);
+                } else {
+                    // Evicted or expired: the representative can no longer answer for its cluster
+                    nearDuplicates.forget(match);
+                }
+            }
+        }
+        if (cached == null)
+            return false;
+
+        ObjectNode cache = objectMapper.createObjectNode()
+                .put("key", cached.key())
+                .put("sourceEventId", cached.sourceEventId())
+                .put("analysedAt", cached.analysedAt().toString());
+        if (match != null) {
+            cache.putObject("nearDuplicate")
+                    .put("similarity", match.similarity())
+                    .put("clusterSize", match.clusterSize());
+        }
+        String provenance = objectMapper.createObjectNode().set("cache", cache).toString();
+        recordTags(did, cached.tagging(), eventId, provenance);
+        if (match != null && !cached.moderation().harmful()) {
+            // A few inserted words keep a post similar but can make it harmful: only a harmful verdict carries over
+            moderatePost(did, text, eventId);
+        } else {
+            recordModeration(did, cached.moderation(), eventId, provenance);
+        }
+        return true;
+    }
+
+    private void analyseCombined(String did, String text, ChannelMemory memory, String eventId) {
+        String response = aiClient.completeJson(agentService.buildAnalysisSystemPrompt(),
+                analysisPrompt(text, memory), "post_analysis", ANALYSIS_SCHEMA).block();
+
+        if (response == null || response.isBlank())
+            return;
+
+        JsonNode json = readLenient(response);
+        if (json == null) {
+            log.warn("Unusable combined AI analysis for {}, falling back to separate calls", did);
+            fallbacks.increment();
+            analyseSeparately(did, text, memory, eventId);
             return;
         }
 
-        if (memories.size() >= maxTrackedDids && !memories.containsKey(did)) {
-            String evictKey = memories.keys().nextElement();
-            memories.remove(evictKey);
-            lastProcessed.remove(evictKey);
+        recordTags(did, json, eventId, null);
+        AnalysisCache.Moderation moderation = json.path("isHarmful").isBoolean() ? combinedModeration(json) : null;
+        if (moderation != null) {
+            recordModeration(did, moderation, eventId, null);
+        } else {
+            fallbacks.increment();
+            moderation = moderatePost(did, text, eventId);
         }
+        if (moderation != null)
+            remember(text, json, moderation, eventId);
+    }
 
-        ChannelMemory memory = getOrCreateMemory(did);
-        memory.add(text);
-        lastProcessed.put(did, Instant.now());
+    /** The moderation fields of a combined or batched analysis result. */
+    private static AnalysisCache.Moderation combinedModeration(JsonNode json) {
+        return new AnalysisCache.Moderation(json.path("isHarmful").asBoolean(),
+                json.path("harmConfidence").asDouble(0.0), json.path("harmReason").asText(""),
+                json.path("reasoning").asText(""));
+    }
 
-        tagPost(did, text, memory, eventId);
-        moderatePost(did, text, eventId);
+    /**
+     * Reads a JSON object from a model answer, also when it is wrapped in a
+     * markdown fence or surrounded by prose.
+     *
+     * @return the object, or {@code null} if there is none
+     */
+    private JsonNode readLenient(String response) {
+        try {
+            JsonNode json = objectMapper.readTree(response);
+            if (json != null && json.isObject())
+                return json;
+        } catch (Exception e) {
+            // Not bare JSON; look for an object inside
+        }
+        int start = response.indexOf('{');
+        int end = response.lastIndexOf('}');
+        if (start < 0 || end <= start)
+            return null;
+        try {
+            JsonNode json = objectMapper.readTree(response.substring(start, end + 1));
+            return json.isObject() ? json : null;
+        } catch (Exception e) {
+            return null;
+        }
     }
 
-    private void tagPost(String did, String text, ChannelMemory memory, String eventId) {
-        String userPrompt = "Analyse this AT Protocol post:\n\n%s\n\nConversation context:\n%s"
+    private String batchPrompt(List<Admitted> admitted) {
+        List<Map<String, Object>> items = new ArrayList<>(admitted.size());
+        for (int i = 0; i < admitted.size(); i++) {
+            Admitted item = admitted.get(i);
+            items.add(Map.of("id", i, "post", item.post().text(), "context", item.memory().toPrompt()));
+        }
+        try {
+            return "Analyse these AT Protocol posts:\n\n" + objectMapper.writeValueAsString(items);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot serialise batch prompt", e);
+        }
+    }
+
+    private static Map<String, Object> withId(Map<String, Object> schema) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> properties = new LinkedHashMap<>((Map<String, Object>) schema.get("properties"));
+        properties.put("id", Map.of("type", "integer"));
+        @SuppressWarnings("unchecked")
+        List<String> required = new ArrayList<>((List<String>) schema.get("required"));
+        required.add(0, "id");
+        return Map.of(
+                "type", "object",
+                "additionalProperties", false,
+                "required", required,
+                "properties", properties);
+    }
+
+    private static String analysisPrompt(String text, ChannelMemory memory) {
+        return "Analyse this AT Protocol post:\n\n%s\n\nConversation context:\n%s"
                 .formatted(text, memory.toPrompt());
+    }
 
+    /** @return the tagging answer, or {@code null} if there was none */
+    private JsonNode tagPost(String did, String text, ChannelMemory memory, String eventId) {
         String response = aiClient.complete(
-                agentService.buildTaggingSystemPrompt(), userPrompt).block();
+                agentService.buildTaggingSystemPrompt(), analysisPrompt(text, memory)).block();
 
         if (response == null || response.isBlank())
-            return;
+            return null;
 
         try {
             JsonNode json = objectMapper.readTree(response);
-            String summary = json.path("summary").asText("");
-            double confidence = json.path("confidence").asDouble(0.7);
-            String reasoning = json.path("reasoning").asText("");
-
-            json.path("tags").forEach(tagNode -> {
-                String tag = tagNode.asText().toLowerCase().trim();
-                if (!tag.isBlank()) {
-                    saveAiFact(did, AiFact.FactType.TAG, tag, confidence, reasoning, eventId);
-                }
-            });
+            recordTags(did, json, eventId, null);
+            return json;
+        } catch (Exception e) {
+            log.warn("Failed to parse AI tagging response for {}: {}", did, e.getMessage());
+            return null;
+        }
+    }
 
-            if (!summary.isBlank()) {
-                saveAiFact(did, AiFact.FactType.SUMMARY, summary, confidence, reasoning, eventId);
-            }
+    private void recordTags(String did, JsonNode json, String eventId, String metadataJson) {
+        String summary = json.path("summary").asText("");
+        double confidence = json.path("confidence").asDouble(0.7);
+        String reasoning = json.path("reasoning").asText("");
 
-            // Heuristic for AI-driven highlights
-            if (confidence > 0.9
-                    && (summary.toLowerCase().contains("contribution") || summary.toLowerCase().contains("standard"))) {
-                saveAiFact(did, AiFact.FactType.HIGHLIGHT, summary, confidence,
-                        "Autonomous high-value signal detection.", eventId);
+        json.path("tags").forEach(tagNode -> {
+            String tag = tagNode.asText().toLowerCase().trim();
+            if (!tag.isBlank()) {
+                saveAiFact(did, AiFact.FactType.TAG, tag, confidence, reasoning, eventId, metadataJson);
             }
+        });
 
-        } catch (Exception e) {
-            log.warn("Failed to parse AI tagging response for {}: {}", did, e.getMessage());
+        if (!summary.isBlank()) {
+            saveAiFact(did, AiFact.FactType.SUMMARY, summary, confidence, reasoning, eventId, metadataJson);
+        }
+
+        // Heuristic for AI-driven highlights
+        if (confidence > 0.9
+                && (summary.toLowerCase().contains("contribution") || summary.toLowerCase().contains("standard"))) {
+            saveAiFact(did, AiFact.FactType.HIGHLIGHT, summary, confidence,
+                    "Autonomous high-value signal detection.", eventId, metadataJson);
         }
     }
 
-    private void moderatePost(String did, String text, String eventId) {
+    /** @return the moderation verdict, or {@code null} if there was none */
+    private AnalysisCache.Moderation moderatePost(String did, String text, String eventId) {
         String response = aiClient.complete(
                 agentService.buildModerationSystemPrompt(), text).block();
 
         if (response == null || response.isBlank())
-            return;
+            return null;
 
         try {
             JsonNode json = objectMapper.readTree(response);
-            boolean isHarmful = json.path("isHarmful").asBoolean(false);
-            double confidence = json.path("confidence").asDouble(0.0);
-            String reason = json.path("reason").asText("");
-            String reasoning = json.path("reasoning").asText("");
+            AnalysisCache.Moderation moderation = new AnalysisCache.Moderation(
+                    json.path("isHarmful").asBoolean(false),
+                    json.path("confidence").asDouble(0.0),
+                    json.path("reason").asText(""),
+                    json.path("reasoning").asText(""));
 
-            if (isHarmful && confidence >= 0.75) {
-                saveAiFact(did, AiFact.FactType.WARNING, reason, confidence, reasoning, eventId);
-            }
+            recordModeration(did, moderation, eventId, null);
+            return moderation;
         } catch (Exception e) {
             log.warn("Failed to parse AI moderation response for {}: {}", did, e.getMessage());
+            return null;
         }
     }
 
-    private ChannelMemory getOrCreateMemory(String did) {
-        return memories.computeIfAbsent(did, k -> new ChannelMemory(contextWindowSize));
+    private void recordModeration(String did, AnalysisCache.Moderation moderation, String eventId,
+            String metadataJson) {
+        if (moderation.harmful() && moderation.confidence() >= 0.75) {
+            saveAiFact(did, AiFact.FactType.WARNING, moderation.reason(), moderation.confidence(),
+                    moderation.reasoning(), eventId, metadataJson);
+        }
     }
 
     private void saveAiFact(String did, AiFact.FactType factType, String content, double confidence, String reasoning,
-            String eventId) {
+            String eventId, String metadataJson) {
         AiFact fact = AiFact.builder()
                 .channelId(did)
                 .sourceDid(did)
@@ -161,9 +476,11 @@ public class AiContextService {
                 .confidence(confidence)
                 .reasoning(reasoning)
                 .sourceEventId(eventId)
+                .metadataJson(metadataJson)
                 .agentDid(agentService.getAgentDid())
                 .build();
         factRepository.save(fact);
+        biasIndex.record(fact);
 
         autonomousVoucher.evaluateVouch(fact);
     }
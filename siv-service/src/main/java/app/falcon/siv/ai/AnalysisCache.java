@@ -0,0 +1,126 @@
+package app.falcon.siv.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Analysis results by post content, so reposts, spam waves and copy-pasted
+ * announcements reach the LLM once.
+ *
+ * <p>
+ * Entries are keyed on the SHA-256 of the normalised text (NFKC, lower case,
+ * whitespace collapsed) together with the agent's prompt version and the
+ * model, so editing the agent files, switching memory state or changing model
+ * starts afresh. The conversation context a post was first analysed with is not
+ * part of the key. Entries are bounded by {@code max-size} and expire
+ * {@code ttl} after being written; {@code max-size: 0} disables the cache.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "falcon.ai.enabled", havingValue = "true", matchIfMissing = false)
+public class AnalysisCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /** The moderation half of an analysis. */
+    public record Moderation(boolean harmful, double confidence, String reason, String reasoning) {
+    }
+
+    /**
+     * A complete analysis: the tagging JSON ({@code tags}, {@code summary},
+     * {@code confidence}, {@code reasoning}) and the moderation verdict, with
+     * the event that first produced it.
+     */
+    public record Analysis(String key, JsonNode tagging, Moderation moderation, String sourceEventId,
+            Instant analysedAt) {
+    }
+
+    private record Key(String model, String promptVersion, String textHash) {
+    }
+
+    private final FalconAiClient aiClient;
+    private final SovereignAgentService agentService;
+    private final boolean enabled;
+    private final Cache<Key, Analysis> cache;
+
+    public AnalysisCache(FalconAiClient aiClient,
+            SovereignAgentService agentService,
+            MeterRegistry meterRegistry,
+            @Value("${falcon.ai.cache.max-size:100000}") long maxSize,
+            @Value("${falcon.ai.cache.ttl:1h}") Duration ttl) {
+        this.aiClient = aiClient;
+        this.agentService = agentService;
+        this.enabled = maxSize > 0;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "ai-analysis");
+        Gauge.builder("falcon.siv.ai.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .description("Share of analysed posts answered from the content-hash cache")
+                .register(meterRegistry);
+    }
+
+    /** @return the cached analysis of {@code text}, or {@code null} */
+    public Analysis get(String text) {
+        return enabled ? cache.getIfPresent(key(text)) : null;
+    }
+
+    /**
+     * Like {@link #get}, but left out of the hit and miss statistics, for
+     * looking up a near duplicate's representative after {@code text} itself
+     * has already been counted.
+     */
+    public Analysis peek(String text) {
+        return enabled ? cache.policy().getIfPresentQuietly(key(text)) : null;
+    }
+
+    /** Caches a complete analysis of {@code text} first seen in {@code eventId}. */
+    public void put(String text, JsonNode tagging, Moderation moderation, String eventId) {
+        if (!enabled)
+            return;
+        Key key = key(text);
+        cache.put(key, new Analysis(key.textHash(), tagging, moderation, eventId, Instant.now()));
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private Key key(String text) {
+        return new Key(aiClient.getModel(), agentService.getPromptVersion(), hash(normalise(text)));
+    }
+
+    static String normalise(String text) {
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        return WHITESPACE.matcher(folded).replaceAll(" ").strip();
+    }
+
+    private static String hash(String normalised) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(normalised.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -13,6 +13,7 @@ public class ChannelMemory {
 
     private final int maxSize;
     private final Deque<String> messages;
+    private long chars;
 
     public ChannelMemory(int maxSize) {
         this.maxSize = maxSize;
@@ -24,9 +25,10 @@ public class ChannelMemory {
      */
     public synchronized void add(String message) {
         if (messages.size() >= maxSize) {
-            messages.pollFirst();
+            chars -= messages.pollFirst().length();
         }
         messages.addLast(message);
+        chars += message.length();
     }
 
     /**
@@ -40,4 +42,9 @@ public class ChannelMemory {
     public synchronized int size() {
         return messages.size();
     }
+
+    /** Total length of the buffered messages, in chars. */
+    public synchronized long chars() {
+        return chars;
+    }
 }
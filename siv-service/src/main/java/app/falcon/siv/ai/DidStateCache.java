@@ -0,0 +1,116 @@
+package app.falcon.siv.ai;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Per-DID analysis state: the rolling {@link ChannelMemory} and when the DID
+ * was last sent to the LLM, kept together in one bounded cache.
+ *
+ * <p>
+ * The cache is bounded by an estimate of its heap footprint,
+ * {@code falcon.ai.did-state.max-size}, rather than by a DID count, since a
+ * DID's memory window can hold anything from one short post to
+ * {@code context-window-size} long ones. Eviction is Caffeine's W-TinyLFU, so
+ * DIDs that post often stay resident while one-off DIDs from the long tail of
+ * the firehose are dropped first. Every update goes through the cache, which
+ * re-weighs the entry as its window fills.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "falcon.ai.enabled", havingValue = "true", matchIfMissing = false)
+public class DidStateCache {
+
+    /** Fixed cost of an entry: key and value objects, deque and cache node. */
+    static final int ENTRY_OVERHEAD = 256;
+    /** Cost of a buffered message beyond its chars. */
+    static final int MESSAGE_OVERHEAD = 56;
+
+    private static final class DidState {
+        final ChannelMemory memory;
+        long lastAnalysedNanos;
+        boolean analysed;
+
+        DidState(int windowSize) {
+            this.memory = new ChannelMemory(windowSize);
+        }
+    }
+
+    private final int windowSize;
+    private final Cache<String, DidState> cache;
+    private final Policy.Eviction<String, DidState> eviction;
+
+    public DidStateCache(MeterRegistry meterRegistry,
+            @Value("${falcon.ai.context-window-size:50}") int windowSize,
+            @Value("${falcon.ai.did-state.max-size:64MB}") DataSize maxSize) {
+        this.windowSize = windowSize;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String did, DidState state) -> weigh(did, state.memory))
+                .recordStats()
+                .build();
+        this.eviction = cache.policy().eviction().orElseThrow();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "did-state");
+        Gauge.builder("falcon.siv.ai.did-state.bytes", eviction, e -> e.weightedSize().orElse(0))
+                .description("Estimated heap held by per-DID memory windows")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds {@code text} to the DID's memory window and claims an LLM call for
+     * it unless the last one was less than {@code rateLimit} ago.
+     *
+     * @return the memory to analyse against, or {@code null} if the DID is
+     *         rate limited
+     */
+    public ChannelMemory admit(String did, String text, Duration rateLimit) {
+        long now = System.nanoTime();
+        ChannelMemory[] admitted = new ChannelMemory[1];
+        cache.asMap().compute(did, (key, state) -> {
+            if (state == null)
+                state = new DidState(windowSize);
+            state.memory.add(text);
+            if (!state.analysed || now - state.lastAnalysedNanos >= rateLimit.toNanos()) {
+                state.analysed = true;
+                state.lastAnalysedNanos = now;
+                admitted[0] = state.memory;
+            }
+            return state;
+        });
+        return admitted[0];
+    }
+
+    /** @return the DID's memory window, or {@code null} if it is not held */
+    public ChannelMemory memoryOf(String did) {
+        DidState state = cache.getIfPresent(did);
+        return state != null ? state.memory : null;
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /** Estimated heap held by all entries, after pending evictions. */
+    public long weightedSize() {
+        cache.cleanUp();
+        return eviction.weightedSize().orElse(0);
+    }
+
+    static int weigh(String did, ChannelMemory memory) {
+        long bytes = ENTRY_OVERHEAD + 2L * did.length()
+                + (long) memory.size() * MESSAGE_OVERHEAD + 2 * memory.chars();
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+}
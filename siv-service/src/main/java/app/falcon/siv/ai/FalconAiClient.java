@@ -2,6 +2,9 @@ package app.falcon.siv.ai;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -28,17 +31,27 @@ import java.util.Map;
  * Switch between them with a single change to {@code falcon.ai.base-url} and
  * {@code falcon.ai.api-key}.
  * </p>
+ *
+ * <p>
+ * Token usage reported by the provider is counted in
+ * {@code falcon.siv.ai.tokens}, tagged {@code prompt} or {@code completion}.
+ * </p>
  */
 @Component
 @Slf4j
 public class FalconAiClient {
 
     private final WebClient webClient;
+    @Getter
     private final String model;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    private final Counter promptTokens;
+    private final Counter completionTokens;
+
     public FalconAiClient(
             WebClient.Builder webClientBuilder,
+            MeterRegistry meterRegistry,
             @Value("${falcon.ai.base-url:http://localhost:11434/v1}") String baseUrl,
             @Value("${falcon.ai.api-key:local}") String apiKey,
             @Value("${falcon.ai.model:llama3.2}") String model) {
@@ -48,6 +61,8 @@ public class FalconAiClient {
                 .defaultHeader("Authorization", "Bearer " + apiKey)
                 .defaultHeader("Content-Type", "application/json")
                 .build();
+        this.promptTokens = tokens(meterRegistry, "prompt");
+        this.completionTokens = tokens(meterRegistry, "completion");
     }
 
     /**
@@ -58,14 +73,44 @@ public class FalconAiClient {
      * @return the model's text response, or empty on error
      */
     public Mono<String> complete(String systemPrompt, String userPrompt) {
-        Map<String, Object> body = Map.of(
+        return send(Map.of(
                 "model", model,
-                "messages", List.of(
-                        Map.of("role", "system", "content", systemPrompt),
-                        Map.of("role", "user", "content", userPrompt)),
+                "messages", messages(systemPrompt, userPrompt),
                 "max_tokens", 256,
-                "temperature", 0.3);
+                "temperature", 0.3));
+    }
+
+    /**
+     * Sends a chat completion request whose answer must be a JSON object
+     * matching {@code schema}, using the provider's structured output
+     * ({@code response_format} of type {@code json_schema}).
+     *
+     * @param schemaName name of the schema, as shown to the provider
+     * @param schema     a strict JSON schema for the response object
+     * @return the model's JSON response, or empty on error
+     */
+    public Mono<String> completeJson(String systemPrompt, String userPrompt, String schemaName,
+            Map<String, Object> schema) {
+        return completeJson(systemPrompt, userPrompt, schemaName, schema, 384);
+    }
 
+    /**
+     * Like {@link #completeJson(String, String, String, Map)}, for answers that
+     * need more than the default token budget.
+     */
+    public Mono<String> completeJson(String systemPrompt, String userPrompt, String schemaName,
+            Map<String, Object> schema, int maxTokens) {
+        return send(Map.of(
+                "model", model,
+                "messages", messages(systemPrompt, userPrompt),
+                "max_tokens", maxTokens,
+                "temperature", 0.3,
+                "response_format", Map.of(
+                        "type", "json_schema",
+                        "json_schema", Map.of("name", schemaName, "strict", true, "schema", schema))));
+    }
+
+    private Mono<String> send(Map<String, Object> body) {
         return webClient.post()
                 .uri("/chat/completions")
                 .bodyValue(body)
@@ -74,6 +119,9 @@ public class FalconAiClient {
                 .map(response -> {
                     try {
                         JsonNode root = objectMapper.readTree(response);
+                        JsonNode usage = root.path("usage");
+                        promptTokens.increment(usage.path("prompt_tokens").asDouble(0));
+                        completionTokens.increment(usage.path("completion_tokens").asDouble(0));
                         return root.path("choices").get(0)
                                 .path("message").path("content").asText();
                     } catch (Exception e) {
@@ -86,4 +134,17 @@ public class FalconAiClient {
                     return Mono.just("");
                 });
     }
+
+    private static List<Map<String, String>> messages(String systemPrompt, String userPrompt) {
+        return List.of(
+                Map.of("role", "system", "content", systemPrompt),
+                Map.of("role", "user", "content", userPrompt));
+    }
+
+    private static Counter tokens(MeterRegistry meterRegistry, String type) {
+        return Counter.builder("falcon.siv.ai.tokens")
+                .description("LLM tokens reported by the provider")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
 }
@@ -0,0 +1,340 @@
+package app.falcon.siv.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * MinHash LSH index of recently analysed posts, so that the variants of a spam
+ * campaign that change a word or two reuse the tagging of the first one.
+ *
+ * <p>
+ * A post's shingles are its adjacent normalised word pairs, summarised by a
+ * {@value #HASHES}-value MinHash signature. The signature is cut into
+ * {@value #BANDS} bands of {@value #ROWS} rows; only entries sharing a whole
+ * band with a post are compared, and a match needs an estimated Jaccard
+ * similarity of at least {@code min-similarity}. Changing one word in twenty
+ * leaves a similarity of about 0.8; a pair at 0.7 shares a band 99% of the
+ * time, one at 0.3 only 12%. Posts shorter than {@value #MIN_WORDS} words are
+ * not indexed, as a single changed word already makes them different posts.
+ * </p>
+ *
+ * <p>
+ * Entries live in a ring of {@code max-entries} slots with doubly linked band
+ * chains, so memory is fixed at startup (about half a kilobyte per entry plus
+ * the representative's text) and the oldest representative is overwritten
+ * first. Entries older than {@code ttl} are ignored. A match only counts once
+ * the caller has {@link #confirm confirmed} that the representative's analysis
+ * is still available, which grows its cluster; the size is reported with the
+ * confirmed match and in {@code falcon.siv.ai.near-duplicates.cluster.size}.
+ * A representative whose analysis is gone is {@link #forget forgotten}.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "falcon.ai.enabled", havingValue = "true", matchIfMissing = false)
+public class NearDuplicateIndex {
+
+    static final int HASHES = 64;
+    static final int BANDS = 16;
+    static final int ROWS = HASHES / BANDS;
+    static final int MIN_WORDS = 6;
+
+    private static final int NONE = -1;
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * A near duplicate of {@code representative} with estimated Jaccard
+     * {@code similarity}, in a cluster of {@code clusterSize} posts: before the
+     * match is confirmed, not counting the post itself. {@code slot} identifies
+     * the entry to {@link #confirm} and {@link #forget}.
+     */
+    public record Match(String representative, double similarity, int clusterSize, int slot) {
+    }
+
+    private final Clock clock;
+    private final int capacity;
+    private final int minMatchingHashes;
+    private final long ttlMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Ring of entries; slot 'next' is overwritten by the following add
+    private final int[] signatures;
+    private final long[] addedAt;
+    private final int[] clusterSizes;
+    private final String[] representatives;
+    private int next;
+    private int size;
+
+    // Per band: chain heads by bucket, and prev/next links per slot
+    private final int bucketMask;
+    private final int[][] heads = new int[BANDS][];
+    private final int[][] nextInBand = new int[BANDS][];
+    private final int[][] prevInBand = new int[BANDS][];
+
+    private final Counter hits;
+    private final Counter misses;
+    private final DistributionSummary clusterSize;
+
+    @Autowired
+    public NearDuplicateIndex(MeterRegistry meterRegistry,
+            @Value("${falcon.ai.near-duplicates.max-entries:20000}") int maxEntries,
+            @Value("${falcon.ai.near-duplicates.min-similarity:0.6}") double minSimilarity,
+            @Value("${falcon.ai.near-duplicates.ttl:1h}") Duration ttl) {
+        this(meterRegistry, maxEntries, minSimilarity, ttl, Clock.systemUTC());
+    }
+
+    NearDuplicateIndex(MeterRegistry meterRegistry, int maxEntries, double minSimilarity, Duration ttl,
+            Clock clock) {
+        if (maxEntries < 0 || minSimilarity <= 0 || minSimilarity > 1)
+            throw new IllegalArgumentException("falcon.ai.near-duplicates.max-entries must not be negative and "
+                    + "min-similarity must be in (0, 1], got " + maxEntries + " and " + minSimilarity);
+        this.clock = clock;
+        this.capacity = maxEntries;
+        this.minMatchingHashes = (int) Math.ceil(minSimilarity * HASHES);
+        this.ttlMillis = ttl.toMillis();
+        this.signatures = new int[maxEntries * HASHES];
+        this.addedAt = new long[maxEntries];
+        this.clusterSizes = new int[maxEntries];
+        this.representatives = new String[maxEntries];
+        int buckets = maxEntries > 0 ? Integer.highestOneBit(Math.max(1, maxEntries - 1)) << 1 : 0;
+        this.bucketMask = buckets - 1;
+        for (int band = 0; band < BANDS; band++) {
+            heads[band] = new int[buckets];
+            Arrays.fill(heads[band], NONE);
+            nextInBand[band] = new int[maxEntries];
+            prevInBand[band] = new int[maxEntries];
+        }
+
+        this.hits = lookups(meterRegistry, "hit");
+        this.misses = lookups(meterRegistry, "miss");
+        this.clusterSize = DistributionSummary.builder("falcon.siv.ai.near-duplicates.cluster.size")
+                .description("Size of the near-duplicate cluster a post joined")
+                .register(meterRegistry);
+        Gauge.builder("falcon.siv.ai.near-duplicates.entries", this, NearDuplicateIndex::size)
+                .description("Representatives held in the near-duplicate index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Finds the most similar live representative of {@code text}. The match is
+     * counted only when passed to {@link #confirm}.
+     *
+     * @return the match, or {@code null} if none is similar enough
+     */
+    public Match match(String text) {
+        if (capacity == 0)
+            return null;
+        int[] signature = signature(text);
+        if (signature == null) {
+            misses.increment();
+            return null;
+        }
+
+        Match match = null;
+        lock.lock();
+        try {
+            long now = clock.millis();
+            int best = NONE;
+            int bestMatching = minMatchingHashes - 1;
+            for (int band = 0; band < BANDS && bestMatching < HASHES; band++) {
+                for (int slot = heads[band][bucketOf(signature, 0, band)]; slot != NONE;
+                        slot = nextInBand[band][slot]) {
+                    if (slot == best || now - addedAt[slot] >= ttlMillis)
+                        continue;
+                    int matching = matching(signature, slot);
+                    if (matching > bestMatching) {
+                        best = slot;
+                        bestMatching = matching;
+                    }
+                }
+            }
+            if (best != NONE)
+                match = new Match(representatives[best], (double) bestMatching / HASHES, clusterSizes[best], best);
+        } finally {
+            lock.unlock();
+        }
+
+        if (match == null)
+            misses.increment();
+        return match;
+    }
+
+    /**
+     * Counts the post of a {@link #match} whose representative's analysis was
+     * reused into the representative's cluster.
+     *
+     * @return the match with the grown cluster size
+     */
+    public Match confirm(Match match) {
+        int size;
+        lock.lock();
+        try {
+            // The slot may have been overwritten since; the cluster went with it
+            size = representatives[match.slot()] == match.representative()
+                    ? ++clusterSizes[match.slot()]
+                    : match.clusterSize() + 1;
+        } finally {
+            lock.unlock();
+        }
+        hits.increment();
+        clusterSize.record(size);
+        return new Match(match.representative(), match.similarity(), size, match.slot());
+    }
+
+    /**
+     * Drops the representative of a {@link #match} whose analysis is no longer
+     * available, and counts the lookup as a miss.
+     */
+    public void forget(Match match) {
+        lock.lock();
+        try {
+            int slot = match.slot();
+            if (representatives[slot] == match.representative()) {
+                unlink(slot);
+                representatives[slot] = null;
+                size--;
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+    }
+
+    /** Indexes {@code text} as the representative of a new cluster. */
+    public void add(String text) {
+        if (capacity == 0)
+            return;
+        int[] signature = signature(text);
+        if (signature == null)
+            return;
+
+        lock.lock();
+        try {
+            int slot = next;
+            next = (next + 1) % capacity;
+            if (representatives[slot] != null) {
+                unlink(slot);
+            } else {
+                size++;
+            }
+            System.arraycopy(signature, 0, signatures, slot * HASHES, HASHES);
+            addedAt[slot] = clock.millis();
+            clusterSizes[slot] = 1;
+            representatives[slot] = text;
+            for (int band = 0; band < BANDS; band++) {
+                int bucket = bucketOf(signatures, slot * HASHES, band);
+                int head = heads[band][bucket];
+                nextInBand[band][slot] = head;
+                prevInBand[band][slot] = NONE;
+                if (head != NONE)
+                    prevInBand[band][head] = slot;
+                heads[band][bucket] = slot;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Caller holds the lock. */
+    private void unlink(int slot) {
+        for (int band = 0; band < BANDS; band++) {
+            int prev = prevInBand[band][slot];
+            int after = nextInBand[band][slot];
+            if (prev == NONE) {
+                heads[band][bucketOf(signatures, slot * HASHES, band)] = after;
+            } else {
+                nextInBand[band][prev] = after;
+            }
+            if (after != NONE)
+                prevInBand[band][after] = prev;
+        }
+    }
+
+    /** Caller holds the lock. */
+    private int matching(int[] signature, int slot) {
+        int matching = 0;
+        for (int i = 0, offset = slot * HASHES; i < HASHES; i++) {
+            if (signature[i] == signatures[offset + i])
+                matching++;
+        }
+        return matching;
+    }
+
+    private int bucketOf(int[] signature, int offset, int band) {
+        long h = band;
+        for (int row = offset + band * ROWS, end = row + ROWS; row < end; row++) {
+            h = mix(h * 31 + signature[row]);
+        }
+        return (int) h & bucketMask;
+    }
+
+    /**
+     * The MinHash signature of {@code text}'s adjacent word pairs.
+     *
+     * @return the signature, or {@code null} for text under {@value #MIN_WORDS}
+     *         words
+     */
+    static int[] signature(String text) {
+        String[] words = NON_WORD.split(AnalysisCache.normalise(text));
+        int start = words.length > 0 && words[0].isEmpty() ? 1 : 0;
+        if (words.length - start < MIN_WORDS)
+            return null;
+
+        int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        long previous = hash(words[start]);
+        for (int i = start + 1; i < words.length; i++) {
+            long word = hash(words[i]);
+            long shingle = mix(previous * 31 + word);
+            for (int h = 0; h < HASHES; h++) {
+                signature[h] = Math.min(signature[h], (int) mix(shingle + h * 0x9e3779b97f4a7c15L) >>> 1);
+            }
+            previous = word;
+        }
+        return signature;
+    }
+
+    /** 64-bit FNV-1a over the word's chars, finished with a murmur3 mix. */
+    private static long hash(String word) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < word.length(); i++) {
+            h ^= word.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("falcon.siv.ai.near-duplicates.lookups")
+                .description("Near-duplicate lookups for posts missing from the exact cache")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,280 @@
+package app.falcon.siv.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Bounded hand-off between the Jetstream handler and the LLM.
+ *
+ * <p>
+ * {@link #offer} never blocks: when the queue is full a post is shed according
+ * to {@code shed-policy} — {@code DROP_OLDEST} makes room by dropping the
+ * oldest queued post, {@code DROP_NEWEST} rejects the incoming one, and
+ * {@code SAMPLE} additionally admits only a {@code sample-rate} fraction of
+ * posts once the queue is {@code sample-threshold} full. Posts from
+ * {@code priority-dids} are never sampled, are served first and displace
+ * ordinary posts when the queue is full.
+ * </p>
+ *
+ * <p>
+ * A fixed set of {@code max-concurrent-calls} virtual threads drains the
+ * queue, which bounds the number of LLM calls in flight. With
+ * {@code falcon.ai.batch.max-size} above one, a consumer can take posts in
+ * batches instead: a worker hands over a batch once it holds
+ * {@code max-size} posts or {@code max-wait} after its first one.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "falcon.ai.enabled", havingValue = "true", matchIfMissing = false)
+@Slf4j
+public class PostQueue {
+
+    public enum ShedPolicy {
+        DROP_OLDEST, DROP_NEWEST, SAMPLE
+    }
+
+    /** A queued post; {@code enqueuedAt} is a {@link System#nanoTime()} reading. */
+    public record Post(String did, String text, String eventId, long enqueuedAt) {
+    }
+
+    private final int capacity;
+    private final int maxConcurrentCalls;
+    private final ShedPolicy shedPolicy;
+    private final int sampleThreshold;
+    private final double sampleRate;
+    private final Set<String> priorityDids;
+    private final int batchSize;
+    private final Duration batchWait;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayDeque<Post> priority = new ArrayDeque<>();
+    private final ArrayDeque<Post> ordinary = new ArrayDeque<>();
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final Counter droppedOldest;
+    private final Counter droppedNewest;
+    private final Counter sampledOut;
+    private final Timer lag;
+    private final DistributionSummary batchSizes;
+    private final Timer batchFill;
+
+    public PostQueue(MeterRegistry meterRegistry,
+            @Value("${falcon.ai.queue.capacity:10000}") int capacity,
+            @Value("${falcon.ai.queue.max-concurrent-calls:8}") int maxConcurrentCalls,
+            @Value("${falcon.ai.queue.shed-policy:DROP_OLDEST}") ShedPolicy shedPolicy,
+            @Value("${falcon.ai.queue.sample-threshold:0.5}") double sampleThreshold,
+            @Value("${falcon.ai.queue.sample-rate:0.1}") double sampleRate,
+            @Value("${falcon.ai.queue.priority-dids:}") List<String> priorityDids,
+            @Value("${falcon.ai.batch.max-size:1}") int batchSize,
+            @Value("${falcon.ai.batch.max-wait:200ms}") Duration batchWait) {
+        if (capacity < 1 || maxConcurrentCalls < 1 || batchSize < 1)
+            throw new IllegalArgumentException(
+                    "falcon.ai.queue capacity, max-concurrent-calls and falcon.ai.batch.max-size must be positive");
+        this.capacity = capacity;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.shedPolicy = shedPolicy;
+        this.sampleThreshold = (int) Math.ceil(capacity * sampleThreshold);
+        this.sampleRate = sampleRate;
+        this.priorityDids = Set.copyOf(priorityDids.stream().filter(did -> !did.isBlank()).toList());
+        this.batchSize = batchSize;
+        this.batchWait = batchWait;
+
+        this.droppedOldest = dropped(meterRegistry, "oldest");
+        this.droppedNewest = dropped(meterRegistry, "newest");
+        this.sampledOut = dropped(meterRegistry, "sampled");
+        Gauge.builder("falcon.siv.ai.queue.depth", this, PostQueue::depth)
+                .description("Posts waiting for an LLM call")
+                .register(meterRegistry);
+        this.lag = Timer.builder("falcon.siv.ai.post.lag")
+                .description("Time from a post being queued to its analysis completing")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("falcon.siv.ai.batch.size")
+                .description("Posts per batch handed to the LLM")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchFill = Timer.builder("falcon.siv.ai.batch.fill")
+                .description("Time from a batch's first post to the batch being handed over")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts the workers, each handing one post at a time to {@code analyser}.
+     * Posts offered before this are kept until then.
+     */
+    public synchronized void consume(Consumer<Post> analyser) {
+        if (!workers.isEmpty())
+            throw new IllegalStateException("PostQueue already has a consumer");
+        for (int i = 0; i < maxConcurrentCalls; i++) {
+            workers.add(Thread.ofVirtual().name("ai-worker-" + i).start(() -> work(analyser)));
+        }
+    }
+
+    /**
+     * Like {@link #consume}, but each worker hands over up to
+     * {@code falcon.ai.batch.max-size} posts at a time.
+     */
+    public synchronized void consumeBatches(Consumer<List<Post>> analyser) {
+        if (!workers.isEmpty())
+            throw new IllegalStateException("PostQueue already has a consumer");
+        for (int i = 0; i < maxConcurrentCalls; i++) {
+            workers.add(Thread.ofVirtual().name("ai-worker-" + i).start(() -> workBatches(analyser)));
+        }
+    }
+
+    /** Whether batches of more than one post are configured. */
+    public boolean batching() {
+        return batchSize > 1;
+    }
+
+    /**
+     * Queues a post, shedding one if the queue is full.
+     *
+     * @return {@code false} if this post was shed
+     */
+    public boolean offer(String did, String text, String eventId) {
+        Post post = new Post(did, text, eventId, System.nanoTime());
+        boolean prioritized = priorityDids.contains(did);
+        lock.lock();
+        try {
+            int depth = priority.size() + ordinary.size();
+            if (!prioritized && shedPolicy == ShedPolicy.SAMPLE && depth >= sampleThreshold
+                    && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+                sampledOut.increment();
+                return false;
+            }
+            if (depth >= capacity) {
+                ArrayDeque<Post> victims = prioritized && ordinary.isEmpty() ? priority : ordinary;
+                boolean dropOldest = (prioritized && !ordinary.isEmpty()) || shedPolicy == ShedPolicy.DROP_OLDEST;
+                if (!dropOldest || victims.isEmpty()) {
+                    droppedNewest.increment();
+                    return false;
+                }
+                victims.pollFirst();
+                droppedOldest.increment();
+            }
+            (prioritized ? priority : ordinary).addLast(post);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int depth() {
+        lock.lock();
+        try {
+            return priority.size() + ordinary.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        workers.forEach(Thread::interrupt);
+    }
+
+    private void work(Consumer<Post> analyser) {
+        while (!Thread.currentThread().isInterrupted()) {
+            Post post;
+            try {
+                post = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                analyser.accept(post);
+            } catch (RuntimeException e) {
+                log.warn("AI analysis failed for DID {}: {}", post.did(), e.getMessage());
+            }
+            lag.record(System.nanoTime() - post.enqueuedAt(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void workBatches(Consumer<List<Post>> analyser) {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Post> batch;
+            try {
+                batch = takeBatch();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                analyser.accept(batch);
+            } catch (RuntimeException e) {
+                log.warn("AI analysis failed for a batch of {} posts: {}", batch.size(), e.getMessage());
+            }
+            long now = System.nanoTime();
+            for (Post post : batch) {
+                lag.record(now - post.enqueuedAt(), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /** Waits for a first post, then for up to {@code batchSize} posts or {@code batchWait}. */
+    private List<Post> takeBatch() throws InterruptedException {
+        List<Post> batch = new ArrayList<>(batchSize);
+        lock.lock();
+        try {
+            while (priority.isEmpty() && ordinary.isEmpty()) {
+                notEmpty.await();
+            }
+            long start = System.nanoTime();
+            long remaining = batchWait.toNanos();
+            while (true) {
+                while (batch.size() < batchSize && !(priority.isEmpty() && ordinary.isEmpty())) {
+                    batch.add(!priority.isEmpty() ? priority.pollFirst() : ordinary.pollFirst());
+                }
+                if (batch.size() >= batchSize || remaining <= 0)
+                    break;
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            batchFill.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+        batchSizes.record(batch.size());
+        return batch;
+    }
+
+    private Post take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (priority.isEmpty() && ordinary.isEmpty()) {
+                notEmpty.await();
+            }
+            return !priority.isEmpty() ? priority.pollFirst() : ordinary.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Counter dropped(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("falcon.siv.ai.queue.dropped")
+                .description("Posts shed before reaching the LLM")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -6,8 +6,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -42,6 +47,7 @@ public class SovereignAgentService {
 
     private final AtomicReference<AgentMemoryState> memoryState =
             new AtomicReference<>(AgentMemoryState.PERSISTENT);
+    private volatile String promptVersion;
 
     public SovereignAgentService(
             @Value("${falcon.ai.agent-did:did:plc:falcon-ai-agent}") String agentDid,
@@ -52,6 +58,7 @@ public class SovereignAgentService {
         this.soul = loadFile(agentDir, "soul.md");
         this.personality = loadFile(agentDir, "personality.md");
         this.persistence = loadFile(agentDir, "persistence.md");
+        this.promptVersion = hashPrompts();
         log.info("Sovereign AI Agent initialized: {} ({})", agentName, agentDid);
         log.info("Agent identity loaded — soul: {}, personality: {}, persistence: {}",
                 soul.isBlank() ? "not found" : "ok",
@@ -81,10 +88,33 @@ public class SovereignAgentService {
 
     public AgentMemoryState setMemoryState(AgentMemoryState state) {
         AgentMemoryState previous = memoryState.getAndSet(state);
+        promptVersion = hashPrompts();
         log.info("Agent memory state changed: {} -> {}", previous, state);
         return state;
     }
 
+    /**
+     * A short hash of every analysis system prompt as currently built; it
+     * changes whenever the agent files, the memory state or a prompt template
+     * does.
+     */
+    public String getPromptVersion() {
+        return promptVersion;
+    }
+
+    private String hashPrompts() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String prompt : List.of(buildTaggingSystemPrompt(), buildModerationSystemPrompt(),
+                    buildAnalysisSystemPrompt(), buildBatchAnalysisSystemPrompt())) {
+                digest.update(prompt.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private String buildIdentityBlock() {
         StringBuilder sb = new StringBuilder();
         sb.append("You are ").append(agentName).append(", a Sovereign AI agent for the Falcon decentralized communication platform.\n");
@@ -118,6 +148,58 @@ public class SovereignAgentService {
                 """;
     }
 
+    /**
+     * Tagging and moderation in one prompt, for
+     * {@code falcon.ai.analysis-mode=COMBINED}.
+     */
+    public String buildAnalysisSystemPrompt() {
+        return buildIdentityBlock() + """
+
+                Your mission: analyse AT Protocol social posts, extract structured intelligence and
+                determine whether the post contains harmful content.
+
+                Respond ONLY with compact JSON in exactly this format:
+                {"tags":["tag1","tag2"],"summary":"one sentence","confidence":0.85,"reasoning":"why",\
+                "isHarmful":false,"harmReason":"","harmConfidence":0.0}
+
+                Rules:
+                - tags: 1-5 lowercase single-word topic labels. No jargon, no duplicates.
+                - summary: max 20 words describing the main idea.
+                - confidence: your certainty about tags and summary, 0.0–1.0.
+                - reasoning: one sentence explaining your confidence level.
+                - isHarmful: true only for clear harassment, hate speech, or threats in the post itself,
+                  not in its conversation context. When uncertain, prefer false.
+                - harmReason: short reason when isHarmful is true, otherwise "".
+                - harmConfidence: your certainty about isHarmful, 0.0–1.0.
+                - No markdown, no explanation, just the JSON object.
+                """;
+    }
+
+    public String buildBatchAnalysisSystemPrompt() {
+        return buildIdentityBlock() + """
+
+                Your mission: analyse a batch of AT Protocol social posts, extract structured intelligence
+                and determine whether each post contains harmful content. The posts are given as a JSON
+                array of {"id":0,"post":"...","context":"..."} items and are unrelated to each other.
+
+                Respond ONLY with compact JSON in exactly this format, one result per post:
+                {"results":[{"id":0,"tags":["tag1","tag2"],"summary":"one sentence","confidence":0.85,\
+                "reasoning":"why","isHarmful":false,"harmReason":"","harmConfidence":0.0}]}
+
+                Rules:
+                - id: the id of the post the result is for.
+                - tags: 1-5 lowercase single-word topic labels. No jargon, no duplicates.
+                - summary: max 20 words describing the main idea.
+                - confidence: your certainty about tags and summary, 0.0–1.0.
+                - reasoning: one sentence explaining your confidence level.
+                - isHarmful: true only for clear harassment, hate speech, or threats in the post itself,
+                  not in its context or in other posts. When uncertain, prefer false.
+                - harmReason: short reason when isHarmful is true, otherwise "".
+                - harmConfidence: your certainty about isHarmful, 0.0–1.0.
+                - No markdown, no explanation, just the JSON object.
+                """;
+    }
+
     public String buildSummarySystemPrompt() {
         return buildIdentityBlock() + """
 
@@ -1,9 +1,14 @@
 package app.falcon.siv.api;
 
+import app.falcon.siv.api.dto.BiasBatchRequest;
 import app.falcon.siv.service.IntelligenceVettingService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.HashMap;
 import java.util.Map;
 
 @RestController
@@ -13,6 +18,9 @@ public class IntelligenceController {
 
     private final IntelligenceVettingService vettingService;
 
+    @Value("${falcon.intelligence.max-bias-batch-size:500}")
+    private int maxBiasBatchSize;
+
     @GetMapping("/bias/{did}")
     public Map<String, Object> getIntelligenceBias(@PathVariable String did) {
         double bias = vettingService.calculateBias(did);
@@ -21,4 +29,24 @@ public class IntelligenceController {
                 "bias", bias,
                 "vettedAt", java.time.Instant.now().toString());
     }
+
+    /**
+     * Bulk variant of {@link #getIntelligenceBias} so trust-service can score a
+     * whole timeline with one request. At most
+     * {@code falcon.intelligence.max-bias-batch-size} DIDs.
+     */
+    @PostMapping("/bias")
+    public Map<String, Object> getIntelligenceBiases(@RequestBody BiasBatchRequest request) {
+        if (request.dids() != null && request.dids().size() > maxBiasBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most %d DIDs per request".formatted(maxBiasBatchSize));
+        }
+        Map<String, Double> biases = new HashMap<>();
+        if (request.dids() != null) {
+            request.dids().forEach(did -> biases.computeIfAbsent(did, vettingService::calculateBias));
+        }
+        return Map.of(
+                "biases", biases,
+                "vettedAt", java.time.Instant.now().toString());
+    }
 }
@@ -0,0 +1,9 @@
+package app.falcon.siv.api.dto;
+
+import java.util.List;
+
+/**
+ * Request DTO for the POST /api/intelligence/bias endpoint.
+ */
+public record BiasBatchRequest(List<String> dids) {
+}
@@ -4,6 +4,8 @@ import app.falcon.core.domain.AiFact;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,4 +16,6 @@ public interface AiFactRepository extends JpaRepository<AiFact, Long> {
     List<AiFact> findTop20BySourceDidOrderByCreatedAtDesc(String sourceDid);
 
     List<AiFact> findByAgentDidAndFactType(String agentDid, AiFact.FactType factType);
+
+    List<AiFact> findByFactTypeInAndCreatedAtAfter(Collection<AiFact.FactType> factTypes, Instant createdAt);
 }
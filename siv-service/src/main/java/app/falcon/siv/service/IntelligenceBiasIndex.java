@@ -0,0 +1,280 @@
+package app.falcon.siv.service;
+
+import app.falcon.core.domain.AiFact;
+import app.falcon.siv.repository.AiFactRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Materialised Intelligence Bias I(v), maintained incrementally as HIGHLIGHT
+ * and WARNING facts are saved.
+ *
+ * <p>
+ * Each DID with at least one live fact owns a slot in a compact table of
+ * {@value #BUCKETS} half-hour buckets covering the last 24 hours. A fact adds
+ * its bias delta to the bucket of its {@code createdAt}; {@link #expire()}
+ * zeroes buckets as they fall out of the window, so reads are a single hash
+ * probe plus an array load. DIDs are keyed by a 64-bit hash; a collision would
+ * merge two DIDs' biases, which at 2<sup>64</sup> is accepted.
+ * </p>
+ *
+ * <p>
+ * Facts age out up to one bucket (30 min) early, and unlike the old query the
+ * aggregate is not capped at the 20 most recent facts.
+ * </p>
+ */
+@Component
+@Slf4j
+public class IntelligenceBiasIndex {
+
+    static final int BUCKETS = 48;
+    static final long BUCKET_MILLIS = Duration.ofHours(24).toMillis() / BUCKETS;
+
+    private static final double HIGHLIGHT_WEIGHT = 0.1;
+    private static final double WARNING_WEIGHT = -0.2;
+
+    private final AiFactRepository repository;
+    private final Clock clock;
+    private final StampedLock lock = new StampedLock();
+
+    // Open-addressing DID-hash -> slot table (linear probing, 0 = empty)
+    private long[] keys = new long[1024];
+    private int[] slotOf = new int[1024];
+    private int size;
+
+    // Per-slot rows of BUCKETS contributions, plus their running sum
+    private float[] buckets = new float[256 * BUCKETS];
+    private double[] totals = new double[256];
+    private int slotCount;
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+
+    /** Absolute index of the newest bucket already swept. */
+    private long currentBucket;
+
+    @Autowired
+    public IntelligenceBiasIndex(AiFactRepository repository) {
+        this(repository, Clock.systemUTC());
+    }
+
+    IntelligenceBiasIndex(AiFactRepository repository, Clock clock) {
+        this.repository = repository;
+        this.clock = clock;
+        this.currentBucket = bucketOf(clock.millis());
+    }
+
+    /**
+     * Warm start: replays the last 24 hours of HIGHLIGHT and WARNING facts.
+     */
+    @PostConstruct
+    public void load() {
+        Instant cutoff = clock.instant().minus(Duration.ofHours(24));
+        List<AiFact> facts = repository.findByFactTypeInAndCreatedAtAfter(
+                EnumSet.of(AiFact.FactType.HIGHLIGHT, AiFact.FactType.WARNING), cutoff);
+        facts.forEach(this::record);
+        log.info("Intelligence bias index loaded: {} facts, {} DIDs", facts.size(), size);
+    }
+
+    /**
+     * Folds a newly saved fact into its author's bias. TAG and SUMMARY facts are
+     * neutral and ignored.
+     */
+    public void record(AiFact fact) {
+        double weight = switch (fact.getFactType()) {
+            case HIGHLIGHT -> HIGHLIGHT_WEIGHT;
+            case WARNING -> WARNING_WEIGHT;
+            default -> 0.0;
+        };
+        if (weight == 0.0 || fact.getSourceDid() == null)
+            return;
+
+        double confidence = fact.getConfidence() != null ? fact.getConfidence() : 0.5;
+        long stamp = lock.writeLock();
+        try {
+            advance(bucketOf(clock.millis()));
+            long bucket = Math.min(bucketOf(fact.getCreatedAt().toEpochMilli()), currentBucket);
+            if (bucket <= currentBucket - BUCKETS)
+                return; // already older than the window
+
+            int slot = slotFor(keyOf(fact.getSourceDid()));
+            float delta = (float) (weight * confidence);
+            buckets[slot * BUCKETS + ringIndex(bucket)] += delta;
+            totals[slot] += delta;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return I(v) in [0.5, 1.5]; 1.0 for DIDs with no live facts
+     */
+    public double biasOf(String did) {
+        long key = keyOf(did);
+        double total;
+        long stamp = lock.readLock();
+        try {
+            int idx = find(key);
+            total = idx >= 0 ? totals[slotOf[idx]] : 0.0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return Math.max(0.5, Math.min(1.5, 1.0 + total));
+    }
+
+    /**
+     * Drops buckets that have left the 24-hour window.
+     */
+    @Scheduled(fixedDelayString = "${falcon.intelligence.bias-expiry-interval-ms:60000}")
+    public void expire() {
+        long stamp = lock.writeLock();
+        try {
+            advance(bucketOf(clock.millis()));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Caller holds the write lock. */
+    private void advance(long nowBucket) {
+        if (nowBucket <= currentBucket)
+            return;
+
+        long steps = Math.min(nowBucket - currentBucket, BUCKETS);
+        for (long b = nowBucket - steps + 1; b <= nowBucket; b++) {
+            int ring = ringIndex(b);
+            for (int i = 0; i < slotCount; i++) {
+                buckets[i * BUCKETS + ring] = 0f;
+            }
+        }
+        currentBucket = nowBucket;
+
+        // Recompute totals from the surviving buckets and release empty slots
+        for (int idx = 0; idx < keys.length; idx++) {
+            if (keys[idx] == 0)
+                continue;
+            int slot = slotOf[idx];
+            double total = 0.0;
+            boolean empty = true;
+            for (int b = slot * BUCKETS, end = b + BUCKETS; b < end; b++) {
+                total += buckets[b];
+                empty &= buckets[b] == 0f;
+            }
+            totals[slot] = total;
+            if (empty) {
+                remove(idx);
+                release(slot);
+                idx--; // backward shift may have moved another key into idx
+            }
+        }
+    }
+
+    private int slotFor(long key) {
+        int idx = find(key);
+        if (idx >= 0)
+            return slotOf[idx];
+
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+            idx = find(key);
+        }
+        int slot = allocate();
+        keys[-idx - 1] = key;
+        slotOf[-idx - 1] = slot;
+        size++;
+        return slot;
+    }
+
+    /** @return the table index of {@code key}, or {@code -(insertion point) - 1} */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int idx = (int) (key ^ (key >>> 32)) & mask;
+        while (keys[idx] != 0) {
+            if (keys[idx] == key)
+                return idx;
+            idx = (idx + 1) & mask;
+        }
+        return -idx - 1;
+    }
+
+    /** Linear-probing delete with backward shift, so no tombstones are needed. */
+    private void remove(int idx) {
+        int mask = keys.length - 1;
+        int hole = idx;
+        int next = (hole + 1) & mask;
+        while (keys[next] != 0) {
+            int home = (int) (keys[next] ^ (keys[next] >>> 32)) & mask;
+            // Move next into the hole unless its home lies cyclically in (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                slotOf[hole] = slotOf[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = 0;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldSlots = slotOf;
+        keys = new long[capacity];
+        slotOf = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int idx = -find(oldKeys[i]) - 1;
+                keys[idx] = oldKeys[i];
+                slotOf[idx] = oldSlots[i];
+            }
+        }
+    }
+
+    private int allocate() {
+        if (freeCount > 0)
+            return freeSlots[--freeCount];
+        if (slotCount == totals.length) {
+            totals = Arrays.copyOf(totals, slotCount * 2);
+            buckets = Arrays.copyOf(buckets, slotCount * 2 * BUCKETS);
+        }
+        return slotCount++;
+    }
+
+    private void release(int slot) {
+        totals[slot] = 0.0;
+        if (freeCount == freeSlots.length)
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+    }
+
+    private static long bucketOf(long epochMillis) {
+        return Math.floorDiv(epochMillis, BUCKET_MILLIS);
+    }
+
+    private static int ringIndex(long bucket) {
+        return (int) Math.floorMod(bucket, (long) BUCKETS);
+    }
+
+    /** 64-bit FNV-1a over the DID's chars, finished with a murmur3 mix. */
+    static long keyOf(String did) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < did.length(); i++) {
+            h ^= did.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
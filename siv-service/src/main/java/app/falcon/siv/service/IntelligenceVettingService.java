@@ -1,54 +1,24 @@
 package app.falcon.siv.service;
 
-import app.falcon.core.domain.AiFact;
-import app.falcon.siv.repository.AiFactRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-import java.util.List;
-
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class IntelligenceVettingService {
 
-    private final AiFactRepository repository;
+    private final IntelligenceBiasIndex biasIndex;
 
     /**
      * Calculates the Intelligence Bias I(v) for a target DID.
-     * I(v) is a multiplier in [0.5, 1.5] based on semantic highlights and warnings.
+     * I(v) is a multiplier in [0.5, 1.5] based on semantic highlights and warnings
+     * from the last 24 hours, read from the materialised {@link IntelligenceBiasIndex}.
      */
     public double calculateBias(String targetDid) {
-        List<AiFact> recentFacts = repository.findTop20BySourceDidOrderByCreatedAtDesc(targetDid);
-
-        if (recentFacts.isEmpty()) {
-            return 1.0;
-        }
-
-        Instant cutoff = Instant.now().minus(24, ChronoUnit.HOURS);
-        double bias = 1.0;
-
-        for (AiFact fact : recentFacts) {
-            if (fact.getCreatedAt().isBefore(cutoff))
-                continue;
-
-            double confidence = fact.getConfidence() != null ? fact.getConfidence() : 0.5;
-
-            switch (fact.getFactType()) {
-                case HIGHLIGHT -> bias += 0.1 * confidence;
-                case WARNING -> bias -= 0.2 * confidence;
-                // TAG and SUMMARY are neutral for trust bias calculation
-                default -> {
-                }
-            }
-        }
-
-        // Clamp to [0.5, 1.5]
-        double finalizedBias = Math.max(0.5, Math.min(1.5, bias));
-        log.debug("Intelligence bias for {}: {} (raw: {})", targetDid, finalizedBias, bias);
-        return finalizedBias;
+        double bias = biasIndex.biasOf(targetDid);
+        log.debug("Intelligence bias for {}: {}", targetDid, bias);
+        return bias;
     }
 }
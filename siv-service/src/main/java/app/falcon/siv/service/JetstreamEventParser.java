@@ -0,0 +1,222 @@
+package app.falcon.siv.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Streaming reader for Jetstream events that only materialises the
+ * {@code app.bsky.feed.post} creates {@link JetstreamHandler} acts on.
+ *
+ * <p>
+ * Nearly all of the firehose is likes, reposts and follows. Rather than
+ * building a {@code JsonNode} tree per message, this walks the tokens, checks
+ * {@code kind}, {@code commit.collection} and {@code commit.operation} against
+ * their expected values in place and stops reading as soon as one of them
+ * differs. Values needed later ({@code did}, {@code seq}, and the record text
+ * if it precedes the collection) are copied into per-thread buffers, so no
+ * strings are created until the event is known to match.
+ * </p>
+ *
+ * <p>
+ * Field order does not matter for correctness, but Jetstream's usual order
+ * ({@code did}, {@code time_us}, {@code kind}, {@code commit} with
+ * {@code operation} and {@code collection} before {@code record}) is the one
+ * that lets non-matching events exit earliest. {@code time_us}, the
+ * Jetstream cursor, is read from every event, so a caller can checkpoint its
+ * position in the stream.
+ * </p>
+ */
+public class JetstreamEventParser {
+
+    public static final String POST_COLLECTION = "app.bsky.feed.post";
+
+    /** The fields of a matching event; {@code seq} is {@code null} when absent. */
+    public record Post(String did, String text, String seq) {
+    }
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private static final LongConsumer NO_CURSOR = timeUs -> {
+    };
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Returns the post carried by {@code payload}, or {@code null} if it is not
+     * an {@code app.bsky.feed.post} create.
+     *
+     * @throws IOException if the payload is not valid JSON up to the point
+     *                     where it could be classified
+     */
+    public Post parse(String payload) throws IOException {
+        return parse(payload, NO_CURSOR);
+    }
+
+    /**
+     * Like {@link #parse(String)}, and also hands the event's {@code time_us}
+     * to {@code cursor} for every event that has one, matching or not.
+     */
+    public Post parse(String payload, LongConsumer cursor) throws IOException {
+        Scratch scratch = SCRATCH.get();
+        scratch.reset();
+        try (JsonParser parser = FACTORY.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                return null;
+            boolean skip = false;
+            boolean timeSeen = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("time_us".equals(name)) {
+                    if (value == JsonToken.VALUE_NUMBER_INT) {
+                        cursor.accept(parser.getLongValue());
+                        timeSeen = true;
+                    }
+                } else if (skip) {
+                    parser.skipChildren();
+                    continue;
+                } else {
+                    switch (name) {
+                        case "kind" -> {
+                            skip = !textEquals(parser, value, "commit");
+                            scratch.commitKind = !skip;
+                        }
+                        case "did" -> scratch.did.copy(parser, value);
+                        case "seq" -> scratch.seq.copy(parser, value);
+                        case "commit" -> {
+                            if (value != JsonToken.START_OBJECT) {
+                                skip = true;
+                                parser.skipChildren();
+                            } else if (!readCommit(parser, scratch)) {
+                                skip = true;
+                                if (!timeSeen)
+                                    skipRest(parser);
+                            }
+                        }
+                        default -> parser.skipChildren();
+                    }
+                }
+                // Nothing else to read once the event is known not to match
+                if (skip && timeSeen)
+                    return null;
+            }
+        }
+        if (!scratch.commitKind || !scratch.post || !scratch.did.present)
+            return null;
+        return new Post(scratch.did.string(), scratch.text.present ? scratch.text.string() : "",
+                scratch.seq.present ? scratch.seq.string() : null);
+    }
+
+    /**
+     * Reads the commit object; returns {@code false} as soon as it cannot be a
+     * post create, with the parser left inside the object.
+     */
+    private static boolean readCommit(JsonParser parser, Scratch scratch) throws IOException {
+        boolean collection = false;
+        boolean operation = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (name) {
+                case "collection" -> {
+                    if (!textEquals(parser, value, POST_COLLECTION))
+                        return false;
+                    collection = true;
+                }
+                case "operation" -> {
+                    if (!textEquals(parser, value, "create"))
+                        return false;
+                    operation = true;
+                }
+                case "record" -> {
+                    if (value == JsonToken.START_OBJECT)
+                        readRecord(parser, scratch);
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        scratch.post = collection && operation;
+        return scratch.post;
+    }
+
+    /** Skips the remaining fields of the object the parser is in. */
+    private static void skipRest(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+        }
+    }
+
+    private static void readRecord(JsonParser parser, Scratch scratch) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("text".equals(name)) {
+                scratch.text.copy(parser, value);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /** Compares a string value without creating a {@link String} for it. */
+    private static boolean textEquals(JsonParser parser, JsonToken value, String expected) throws IOException {
+        if (value != JsonToken.VALUE_STRING)
+            return false;
+        int length = parser.getTextLength();
+        if (length != expected.length())
+            return false;
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != expected.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /** Reusable per-thread state for one {@link #parse} call. */
+    private static final class Scratch {
+        final Chars did = new Chars();
+        final Chars seq = new Chars();
+        final Chars text = new Chars();
+        boolean commitKind;
+        boolean post;
+
+        void reset() {
+            did.present = false;
+            seq.present = false;
+            text.present = false;
+            commitKind = false;
+            post = false;
+        }
+    }
+
+    /** A growable copy of one scalar value's text. */
+    private static final class Chars {
+        char[] buffer = new char[256];
+        int length;
+        boolean present;
+
+        void copy(JsonParser parser, JsonToken value) throws IOException {
+            if (!value.isScalarValue() || value == JsonToken.VALUE_NULL) {
+                parser.skipChildren();
+                return;
+            }
+            length = parser.getTextLength();
+            if (length > buffer.length)
+                buffer = Arrays.copyOf(buffer, Math.max(length, buffer.length * 2));
+            System.arraycopy(parser.getTextCharacters(), parser.getTextOffset(), buffer, 0, length);
+            present = true;
+        }
+
+        String string() {
+            return new String(buffer, 0, length);
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package app.falcon.siv.service;
 
 import app.falcon.siv.ai.AiContextService;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -10,23 +8,32 @@ import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
 
 /**
  * Processes raw AT Protocol Jetstream WebSocket events.
  *
  * <p>
  * On each {@code app.bsky.feed.post} commit, the text is dispatched to
- * {@link AiContextService#processPost} which runs on a virtual thread — this
- * handler
- * never blocks regardless of AI response time.
+ * {@link AiContextService#processPost}, which queues it for a bounded pool of
+ * virtual-thread workers — this handler never blocks regardless of AI response
+ * time. Messages are read with
+ * {@link JetstreamEventParser}, which drops every other event without building
+ * a JSON tree. When ingestion is sharded, posts from DIDs owned by another
+ * {@link JetstreamShard} are dropped as well.
  * </p>
  */
 @Component
 @Slf4j
 public class JetstreamHandler extends TextWebSocketHandler {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JetstreamEventParser parser = new JetstreamEventParser();
+    private final List<LongConsumer> eventListeners = new CopyOnWriteArrayList<>();
+    private final LongConsumer eventSeen = this::eventSeen;
+    private final JetstreamShard shard;
 
     /**
      * Optional — AI processing is only active when {@code falcon.ai.enabled=true}.
@@ -35,36 +42,46 @@ public class JetstreamHandler extends TextWebSocketHandler {
     @Autowired(required = false)
     private AiContextService aiContextService;
 
+    public JetstreamHandler() {
+        this(JetstreamShard.ALL);
+    }
+
+    @Autowired
+    public JetstreamHandler(JetstreamShard shard) {
+        this.shard = shard;
+    }
+
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
         String payload = message.getPayload();
         try {
-            JsonNode node = objectMapper.readTree(payload);
-
-            String kind = node.path("kind").asText();
-            if ("commit".equals(kind)) {
-                String did = node.path("did").asText();
-                String collection = node.path("commit").path("collection").asText();
-                String operation = node.path("commit").path("operation").asText();
-
-                if ("app.bsky.feed.post".equals(collection) && "create".equals(operation)) {
-                    String text = node.path("commit").path("record").path("text").asText();
-                    String seq = node.path("seq").asText(null);
-                    log.info("🌊 Jetstream Post from {}: {}", did, text);
+            JetstreamEventParser.Post post = parser.parse(payload, eventSeen);
+            if (post != null && shard.owns(post.did())) {
+                log.info("🌊 Jetstream Post from {}: {}", post.did(), post.text());
 
-                    // Dispatch to AI context engine asynchronously (virtual thread, non-blocking)
-                    Optional.ofNullable(aiContextService)
-                            .ifPresent(ai -> ai.processPost(did, text, seq));
-                }
+                // Dispatch to AI context engine asynchronously (bounded queue, non-blocking)
+                Optional.ofNullable(aiContextService)
+                        .ifPresent(ai -> ai.processPost(post.did(), post.text(), post.seq()));
             }
         } catch (Exception e) {
             log.warn("Failed to parse Jetstream message: {}", e.getMessage());
         }
     }
 
+    /** Called with the {@code time_us} of every event received, posts or not. */
+    public void onEvent(LongConsumer listener) {
+        eventListeners.add(listener);
+    }
+
+    private void eventSeen(long timeUs) {
+        for (LongConsumer listener : eventListeners) {
+            listener.accept(timeUs);
+        }
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        log.info("✅ Jetstream connection established!");
+        log.info("✅ Jetstream connection established! (shard {})", shard);
     }
 
     @Override
@@ -1,27 +1,270 @@
 package app.falcon.siv.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.socket.client.WebSocketConnectionManager;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps a Jetstream subscription open and resumable.
+ *
+ * <p>
+ * The {@code time_us} of the last event received is the cursor. It is written
+ * to {@code cursor-file} every {@code checkpoint-interval} and on shutdown, and
+ * every connection, including the first one after a restart, asks Jetstream to
+ * replay from it, rewound by {@code cursor-rewind} so events still in flight
+ * on the socket when the connection dropped are seen again.
+ * </p>
+ *
+ * <p>
+ * The cursor marks when an event was received, not when it was handled: posts
+ * waiting in the AI {@code PostQueue} are behind the cursor already, and those
+ * still queued at shutdown or in a crash are not replayed. The rewind does not
+ * cover them either, as the queue can hold far more than a few seconds of
+ * posts.
+ * </p>
+ *
+ * <p>
+ * When a connection fails or closes, the next endpoint in {@code endpoints} is
+ * tried after an exponential backoff with jitter, from
+ * {@code reconnect.initial-delay} up to {@code reconnect.max-delay}; the
+ * backoff resets once events flow again.
+ * </p>
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class JetstreamService {
 
-    private final JetstreamHandler jetstreamHandler;
-    private static final String JETSTREAM_URL = "wss://jetstream1.us-east.bsky.network/subscribe?wantedCollections=app.bsky.feed.post";
+    private final List<String> endpoints;
+    private final List<String> wantedCollections;
+    private final List<String> wantedDids;
+    private final Path cursorFile;
+    private final Duration checkpointInterval;
+    private final Duration cursorRewind;
+    private final Duration initialDelay;
+    private final Duration maxDelay;
+    private final StandardWebSocketClient client;
+    private final WebSocketHandlerDecorator sessionHandler;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "jetstream");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean reconnectPending = new AtomicBoolean();
+
+    private final Counter events;
+    private final Counter reconnects;
+
+    private volatile long cursor;
+    private volatile long checkpointed;
+    private volatile int failures;
+    private volatile int endpointIndex;
+    private volatile WebSocketSession session;
+    private volatile boolean stopped;
+
+    public JetstreamService(JetstreamHandler jetstreamHandler,
+            MeterRegistry meterRegistry,
+            @Value("${falcon.jetstream.endpoints:wss://jetstream1.us-east.bsky.network/subscribe,wss://jetstream2.us-east.bsky.network/subscribe}") List<String> endpoints,
+            @Value("${falcon.jetstream.wanted-collections:app.bsky.feed.post}") List<String> wantedCollections,
+            @Value("${falcon.jetstream.wanted-dids:}") List<String> wantedDids,
+            @Value("${falcon.jetstream.cursor-file:data/jetstream.cursor}") Path cursorFile,
+            @Value("${falcon.jetstream.checkpoint-interval:5s}") Duration checkpointInterval,
+            @Value("${falcon.jetstream.cursor-rewind:5s}") Duration cursorRewind,
+            @Value("${falcon.jetstream.reconnect.initial-delay:1s}") Duration initialDelay,
+            @Value("${falcon.jetstream.reconnect.max-delay:60s}") Duration maxDelay,
+            @Value("${falcon.jetstream.max-message-size:1MB}") DataSize maxMessageSize) {
+        this.endpoints = endpoints.stream().filter(endpoint -> !endpoint.isBlank()).toList();
+        this.wantedCollections = wantedCollections.stream().filter(collection -> !collection.isBlank()).toList();
+        this.wantedDids = wantedDids.stream().filter(did -> !did.isBlank()).toList();
+        this.cursorFile = cursorFile;
+        this.checkpointInterval = checkpointInterval;
+        this.cursorRewind = cursorRewind;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        if (this.endpoints.isEmpty())
+            throw new IllegalArgumentException("falcon.jetstream.endpoints must not be empty");
 
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.setDefaultMaxTextMessageBufferSize((int) maxMessageSize.toBytes());
+        this.client = new StandardWebSocketClient(container);
+        this.sessionHandler = new WebSocketHandlerDecorator(jetstreamHandler) {
+            @Override
+            public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+                super.handleTransportError(session, exception);
+                if (session.isOpen())
+                    session.close(CloseStatus.SERVER_ERROR);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                super.afterConnectionClosed(session, closeStatus);
+                log.warn("Jetstream connection closed ({}), resuming from {}", closeStatus, cursor);
+                JetstreamService.this.session = null;
+                scheduleReconnect();
+            }
+        };
+        jetstreamHandler.onEvent(this::eventSeen);
+
+        this.events = Counter.builder("falcon.siv.jetstream.events")
+                .description("Jetstream events received")
+                .register(meterRegistry);
+        this.reconnects = Counter.builder("falcon.siv.jetstream.reconnects")
+                .description("Jetstream reconnection attempts after a failed or closed connection")
+                .register(meterRegistry);
+        Gauge.builder("falcon.siv.jetstream.lag", this, service -> service.lag().toMillis() / 1000.0)
+                .description("Seconds between now and the time_us of the last Jetstream event received")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads the checkpoint, connects and starts checkpointing.
+     */
     @PostConstruct
     public void connect() {
-        log.info("🚀 Initializing Jetstream connection to {}...", JETSTREAM_URL);
+        try {
+            cursor = Files.exists(cursorFile) ? Long.parseLong(Files.readString(cursorFile).strip()) : 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read Jetstream cursor " + cursorFile, e);
+        }
+        checkpointed = cursor;
+        scheduler.scheduleWithFixedDelay(this::checkpoint, checkpointInterval.toMillis(),
+                checkpointInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.execute(this::open);
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        stopped = true;
+        WebSocketSession open = session;
+        if (open != null && open.isOpen())
+            open.close(CloseStatus.GOING_AWAY);
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        checkpoint();
+    }
+
+    /** The {@code time_us} of the last event received, {@code 0} before the first one. */
+    public long cursor() {
+        return cursor;
+    }
+
+    /**
+     * The subscription URL for {@code endpoint}, replaying from the cursor minus
+     * {@code cursor-rewind} when there is one.
+     */
+    URI subscribeUri(String endpoint) {
+        StringBuilder uri = new StringBuilder(endpoint);
+        char separator = endpoint.indexOf('?') < 0 ? '?' : '&';
+        for (String collection : wantedCollections) {
+            uri.append(separator).append("wantedCollections=").append(URLEncoder.encode(collection, StandardCharsets.UTF_8));
+            separator = '&';
+        }
+        for (String did : wantedDids) {
+            uri.append(separator).append("wantedDids=").append(URLEncoder.encode(did, StandardCharsets.UTF_8));
+            separator = '&';
+        }
+        long from = cursor;
+        if (from > 0)
+            uri.append(separator).append("cursor=").append(Math.max(0, from - cursorRewind.toNanos() / 1000));
+        return URI.create(uri.toString());
+    }
+
+    private void open() {
+        if (stopped)
+            return;
+        URI uri = subscribeUri(endpoints.get(endpointIndex % endpoints.size()));
+        log.info("🚀 Connecting to Jetstream at {}...", uri);
+        client.execute(sessionHandler, null, uri).whenComplete((connected, error) -> {
+            if (error != null) {
+                log.warn("Jetstream connection to {} failed: {}", uri, error.getMessage());
+                scheduleReconnect();
+            } else {
+                session = connected;
+                if (stopped)
+                    close(connected);
+            }
+        });
+    }
+
+    private void scheduleReconnect() {
+        if (stopped || !reconnectPending.compareAndSet(false, true))
+            return;
+        reconnects.increment();
+        endpointIndex++;
+        long delay = Math.min(maxDelay.toMillis(), initialDelay.toMillis() << Math.min(failures++, 16));
+        delay = (long) (delay * ThreadLocalRandom.current().nextDouble(0.8, 1.2));
+        try {
+            scheduler.schedule(() -> {
+                reconnectPending.set(false);
+                open();
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    private void eventSeen(long timeUs) {
+        events.increment();
+        failures = 0;
+        cursor = timeUs;
+    }
+
+    /** Persists the cursor if it moved since the last checkpoint. */
+    private void checkpoint() {
+        long at = cursor;
+        if (at == checkpointed)
+            return;
+        try {
+            if (cursorFile.getParent() != null)
+                Files.createDirectories(cursorFile.getParent());
+            Path pending = cursorFile.resolveSibling(cursorFile.getFileName() + ".tmp");
+            Files.writeString(pending, Long.toString(at));
+            Files.move(pending, cursorFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpointed = at;
+        } catch (IOException e) {
+            log.warn("Cannot persist Jetstream cursor {}: {}", cursorFile, e.getMessage());
+        }
+    }
+
+    private static void close(WebSocketSession session) {
+        try {
+            session.close(CloseStatus.GOING_AWAY);
+        } catch (IOException e) {
+            log.debug("Closing Jetstream session: {}", e.getMessage());
+        }
+    }
 
-        StandardWebSocketClient client = new StandardWebSocketClient();
-        WebSocketConnectionManager manager = new WebSocketConnectionManager(client, jetstreamHandler, JETSTREAM_URL);
-        manager.setAutoStartup(true);
-        manager.start();
+    private Duration lag() {
+        long at = cursor;
+        return at == 0 ? Duration.ZERO : Duration.ofNanos(System.currentTimeMillis() * 1_000_000 - at * 1000);
     }
 }
@@ -0,0 +1,61 @@
+package app.falcon.siv.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The slice of the firehose this instance is responsible for.
+ *
+ * <p>
+ * With {@code falcon.jetstream.shard.count} instances each configured with a
+ * distinct {@code index}, every DID is owned by exactly one of them, so its
+ * posts, rolling {@code ChannelMemory} and rate limit all live on one node. The
+ * owner is the 64-bit FNV-1a hash of the DID modulo the count, which is the
+ * same on every JVM; changing the count moves DIDs between shards.
+ * </p>
+ */
+@Component
+public class JetstreamShard {
+
+    /** A single shard that owns every DID. */
+    public static final JetstreamShard ALL = new JetstreamShard(0, 1);
+
+    private final int index;
+    private final int count;
+
+    public JetstreamShard(@Value("${falcon.jetstream.shard.index:0}") int index,
+            @Value("${falcon.jetstream.shard.count:1}") int count) {
+        if (count < 1 || index < 0 || index >= count)
+            throw new IllegalArgumentException(
+                    "falcon.jetstream.shard.index must be in [0, count), got " + index + " of " + count);
+        this.index = index;
+        this.count = count;
+    }
+
+    public int index() {
+        return index;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public boolean owns(String did) {
+        return count == 1 || shardOf(did, count) == index;
+    }
+
+    /** The shard that owns {@code did} among {@code count}. */
+    public static int shardOf(String did, int count) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < did.length(); i++) {
+            hash ^= did.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return (int) Long.remainderUnsigned(hash, count);
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
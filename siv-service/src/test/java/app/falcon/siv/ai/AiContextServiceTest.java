@@ -2,16 +2,25 @@ package app.falcon.siv.ai;
 
 import app.falcon.core.domain.AiFact;
 import app.falcon.siv.repository.AiFactRepository;
+import app.falcon.siv.service.IntelligenceBiasIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.util.unit.DataSize;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class AiContextServiceTest {
@@ -22,6 +31,8 @@ class AiContextServiceTest {
     private AiFactRepository factRepository;
     @Mock
     private AutonomousVoucher autonomousVoucher;
+    @Mock
+    private IntelligenceBiasIndex biasIndex;
 
     private SovereignAgentService agentService;
     private AiContextService aiContextService;
@@ -30,13 +41,15 @@ class AiContextServiceTest {
     private static final String TEST_DID = "did:plc:alice";
     private static final String TAGGING_RESPONSE = "{\"tags\":[\"developer\",\"opensource\"],\"summary\":\"A post about open source development.\",\"factType\":\"TAG\",\"confidence\":0.9,\"reasoning\":\"test logic\"}";
     private static final String SAFE_RESPONSE = "{\"isHarmful\":false,\"reason\":\"\",\"confidence\":0.0,\"reasoning\":\"test logic\"}";
+    private static final String COMBINED_RESPONSE = "{\"tags\":[\"developer\"],\"summary\":\"A post about open source.\",\"confidence\":0.9,\"reasoning\":\"test logic\",\"isHarmful\":true,\"harmReason\":\"Explicit harassment.\",\"harmConfidence\":0.92}";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
         agentService = new SovereignAgentService(AGENT_DID, "Test AI Agent", "agent");
-        aiContextService = new AiContextService(aiClient, factRepository, agentService, autonomousVoucher,
-                50, 60, 5000);
+        aiContextService = service(AiContextService.AnalysisMode.SEPARATE);
 
         when(aiClient.complete(anyString(), anyString()))
                 .thenReturn(Mono.just(TAGGING_RESPONSE))
@@ -118,4 +131,244 @@ class AiContextServiceTest {
                 .anyMatch(f -> f.getFactType() == AiFact.FactType.WARNING);
         assertTrue(hasWarning, "Expected a WARNING AiFact for harmful content");
     }
+
+    @Test
+    void combinedModeAnalysesWithOneCall() throws InterruptedException {
+        AiContextService combined = service(AiContextService.AnalysisMode.COMBINED);
+        when(aiClient.completeJson(anyString(), anyString(), eq("post_analysis"), any()))
+                .thenReturn(Mono.just(COMBINED_RESPONSE));
+
+        combined.processPost(TEST_DID, "This is a harmful message about open source.", "seq_combined");
+
+        ArgumentCaptor<AiFact> captor = ArgumentCaptor.forClass(AiFact.class);
+        verify(factRepository, timeout(2000).times(3)).save(captor.capture());
+        assertEquals(List.of(AiFact.FactType.TAG, AiFact.FactType.SUMMARY, AiFact.FactType.WARNING),
+                captor.getAllValues().stream().map(AiFact::getFactType).toList());
+        assertEquals("Explicit harassment.", captor.getAllValues().get(2).getContent());
+        verify(aiClient, never()).complete(anyString(), anyString());
+        // The timer stops once the analysis has been cached, just after the facts are saved
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (meterRegistry.get("falcon.siv.ai.analysis").tag("mode", "combined").timer().count() == 0
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, meterRegistry.get("falcon.siv.ai.analysis").tag("mode", "combined").timer().count());
+    }
+
+    @Test
+    void combinedModeReadsFencedJson() {
+        AiContextService combined = service(AiContextService.AnalysisMode.COMBINED);
+        when(aiClient.completeJson(anyString(), anyString(), anyString(), any()))
+                .thenReturn(Mono.just("Here you go:\n```json\n" + COMBINED_RESPONSE + "\n```"));
+
+        combined.processPost(TEST_DID, "Fenced answer please.", "seq_fenced");
+
+        verify(factRepository, timeout(2000).times(3)).save(any(AiFact.class));
+        verify(aiClient, never()).complete(anyString(), anyString());
+    }
+
+    @Test
+    void unusableCombinedAnswerFallsBackToSeparateCalls() {
+        AiContextService combined = service(AiContextService.AnalysisMode.COMBINED);
+        when(aiClient.completeJson(anyString(), anyString(), anyString(), any()))
+                .thenReturn(Mono.just("I cannot answer in JSON today."));
+
+        combined.processPost(TEST_DID, "Please fall back.", "seq_fallback");
+
+        verify(aiClient, timeout(2000).times(2)).complete(anyString(), anyString());
+        verify(factRepository, timeout(2000).atLeast(2)).save(any(AiFact.class));
+        assertEquals(1, meterRegistry.get("falcon.siv.ai.analysis.fallbacks").counter().count());
+    }
+
+    @Test
+    void batchedPostsShareOneCallAndAreMatchedById() {
+        when(aiClient.completeJson(anyString(), anyString(), eq("post_batch_analysis"), any(), anyInt()))
+                .thenReturn(Mono.just("{\"results\":["
+                        + "{\"id\":1,\"tags\":[\"music\"],\"summary\":\"\",\"confidence\":0.8,\"reasoning\":\"r\","
+                        + "\"isHarmful\":false,\"harmReason\":\"\",\"harmConfidence\":0.0},"
+                        + "{\"id\":0,\"tags\":[\"java\"],\"summary\":\"\",\"confidence\":0.8,\"reasoning\":\"r\","
+                        + "\"isHarmful\":true,\"harmReason\":\"Threat.\",\"harmConfidence\":0.9}]}"));
+        AiContextService batched = batchedService(2);
+
+        batched.processPost(TEST_DID, "Java post.", "seq_a");
+        batched.processPost("did:plc:bob", "Music post.", "seq_b");
+
+        ArgumentCaptor<AiFact> facts = ArgumentCaptor.forClass(AiFact.class);
+        verify(factRepository, timeout(2000).times(3)).save(facts.capture());
+        verify(aiClient, times(1)).completeJson(anyString(), anyString(), anyString(), any(), anyInt());
+        verify(aiClient, never()).complete(anyString(), anyString());
+        assertTrue(facts.getAllValues().stream().anyMatch(f -> f.getSourceDid().equals(TEST_DID)
+                && f.getFactType() == AiFact.FactType.TAG && f.getContent().equals("java")));
+        assertTrue(facts.getAllValues().stream().anyMatch(f -> f.getSourceDid().equals(TEST_DID)
+                && f.getFactType() == AiFact.FactType.WARNING && f.getSourceEventId().equals("seq_a")));
+        assertTrue(facts.getAllValues().stream().anyMatch(f -> f.getSourceDid().equals("did:plc:bob")
+                && f.getContent().equals("music") && f.getSourceEventId().equals("seq_b")));
+        assertEquals(2, meterRegistry.get("falcon.siv.ai.batch.size").summary().max());
+        assertEquals(1, meterRegistry.get("falcon.siv.ai.batch.item").timer().count());
+    }
+
+    @Test
+    void postsMissingFromTheBatchAnswerAreAnalysedOnTheirOwn() {
+        when(aiClient.completeJson(anyString(), anyString(), eq("post_batch_analysis"), any(), anyInt()))
+                .thenReturn(Mono.just("{\"results\":[{\"id\":0,\"tags\":[\"java\"],\"summary\":\"\","
+                        + "\"confidence\":0.8,\"reasoning\":\"r\",\"isHarmful\":false,\"harmReason\":\"\","
+                        + "\"harmConfidence\":0.0}]}"));
+        AiContextService batched = batchedService(2);
+
+        batched.processPost(TEST_DID, "Java post.", "seq_a");
+        batched.processPost("did:plc:bob", "Forgotten post.", "seq_b");
+
+        verify(aiClient, timeout(2000).times(2)).complete(anyString(), anyString());
+        verify(factRepository, timeout(2000).atLeast(3)).save(any(AiFact.class));
+        assertEquals(1, meterRegistry.get("falcon.siv.ai.analysis.fallbacks").counter().count());
+        // Each post is looked up in the cache once, not again on its fallback
+        assertEquals(2, meterRegistry.get("cache.gets").tag("cache", "ai-analysis").tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    void failedBatchCallFallsBackToAnalysingEachPost() {
+        when(aiClient.completeJson(anyString(), anyString(), eq("post_batch_analysis"), any(), anyInt()))
+                .thenReturn(Mono.just(""));
+        when(aiClient.complete(anyString(), anyString()))
+                .thenReturn(Mono.just(TAGGING_RESPONSE), Mono.just(SAFE_RESPONSE),
+                        Mono.just(TAGGING_RESPONSE), Mono.just(SAFE_RESPONSE));
+        AiContextService batched = batchedService(2);
+
+        batched.processPost(TEST_DID, "Java post.", "seq_a");
+        batched.processPost("did:plc:bob", "Music post.", "seq_b");
+
+        verify(aiClient, timeout(2000).times(4)).complete(anyString(), anyString());
+        verify(factRepository, timeout(2000).times(6)).save(any(AiFact.class));
+        assertEquals(2, meterRegistry.get("falcon.siv.ai.analysis.fallbacks").counter().count());
+    }
+
+    @Test
+    void identicalPostsInABatchAreSentOnce() {
+        when(aiClient.completeJson(anyString(), anyString(), eq("post_batch_analysis"), any(), anyInt()))
+                .thenReturn(Mono.just("{\"results\":["
+                        + "{\"id\":0,\"tags\":[\"airdrop\"],\"summary\":\"\",\"confidence\":0.8,\"reasoning\":\"r\","
+                        + "\"isHarmful\":false,\"harmReason\":\"\",\"harmConfidence\":0.0},"
+                        + "{\"id\":1,\"tags\":[\"music\"],\"summary\":\"\",\"confidence\":0.8,\"reasoning\":\"r\","
+                        + "\"isHarmful\":false,\"harmReason\":\"\",\"harmConfidence\":0.0}]}"));
+        AiContextService batched = batchedService(3);
+
+        batched.processPost(TEST_DID, "Free airdrop, claim now!", "seq_a");
+        batched.processPost("did:plc:bob", "Music post.", "seq_b");
+        batched.processPost("did:plc:carol", "free  AIRDROP, claim now!", "seq_c");
+
+        ArgumentCaptor<AiFact> facts = ArgumentCaptor.forClass(AiFact.class);
+        verify(factRepository, timeout(2000).times(3)).save(facts.capture());
+        ArgumentCaptor<String> prompt = ArgumentCaptor.forClass(String.class);
+        verify(aiClient).completeJson(anyString(), prompt.capture(), anyString(), any(), eq(320));
+        assertFalse(prompt.getValue().contains("free  AIRDROP"),
+                prompt.getValue());
+        assertTrue(facts.getAllValues().stream().anyMatch(f -> f.getSourceDid().equals("did:plc:carol")
+                && f.getContent().equals("airdrop") && f.getSourceEventId().equals("seq_c")));
+        verify(aiClient, never()).complete(anyString(), anyString());
+    }
+
+    @Test
+    void repeatedTextIsAnsweredFromTheCacheWithProvenance() {
+        aiContextService.processPost(TEST_DID, "Big  giveaway! Click here", "seq_first");
+        verify(factRepository, timeout(2000).times(3)).save(any(AiFact.class));
+
+        aiContextService.processPost("did:plc:bob", "BIG giveaway!\nclick here ", "seq_repost");
+
+        ArgumentCaptor<AiFact> facts = ArgumentCaptor.forClass(AiFact.class);
+        verify(factRepository, timeout(2000).times(6)).save(facts.capture());
+        verify(aiClient, times(2)).complete(anyString(), anyString());
+        List<AiFact> reposted = facts.getAllValues().subList(3, 6);
+        assertTrue(reposted.stream().allMatch(f -> f.getSourceDid().equals("did:plc:bob")
+                && f.getSourceEventId().equals("seq_repost")
+                && f.getMetadataJson().contains("\"sourceEventId\":\"seq_first\"")));
+        assertNull(facts.getAllValues().get(0).getMetadataJson());
+        assertEquals(0.5, meterRegistry.get("falcon.siv.ai.cache.hit.ratio").gauge().value());
+    }
+
+    @Test
+    void nearDuplicateReusesTheClusterRepresentativesAnalysis() {
+        aiContextService.processPost(TEST_DID,
+                "Claim your free airdrop now at example dot com before the snapshot closes tonight", "seq_first");
+        awaitIndexed(1);
+
+        aiContextService.processPost("did:plc:bob",
+                "Claim your free airdrop today at example dot com before the snapshot closes tonight", "seq_variant");
+
+        ArgumentCaptor<AiFact> facts = ArgumentCaptor.forClass(AiFact.class);
+        verify(factRepository, timeout(2000).times(6)).save(facts.capture());
+        // Tagging is reused, but the clean verdict is not: the variant is still moderated
+        verify(aiClient, timeout(2000).times(3)).complete(anyString(), anyString());
+        String metadata = facts.getAllValues().get(5).getMetadataJson();
+        assertTrue(metadata.contains("\"sourceEventId\":\"seq_first\""), metadata);
+        assertTrue(metadata.contains("\"clusterSize\":2"), metadata);
+        // Both posts missed the exact cache; the representative lookup is not counted again
+        assertEquals(0.0, meterRegistry.get("falcon.siv.ai.cache.hit.ratio").gauge().value());
+        assertEquals(1, meterRegistry.get("falcon.siv.ai.near-duplicates.lookups").tag("result", "hit").counter()
+                .count());
+    }
+
+    @Test
+    void nearDuplicateWithAnInsertedHarmfulWordIsNotReplayedAsClean() {
+        String benign = "Had a lovely walk by the river this morning with the dog and the kids before the rain came";
+        String variant = "Had a lovely walk by the river this morning with the dog and the kids before the slur rain came";
+        when(aiClient.complete(anyString(), anyString()))
+                .thenReturn(Mono.just(TAGGING_RESPONSE))
+                .thenReturn(Mono.just(SAFE_RESPONSE))
+                .thenReturn(Mono.just(
+                        "{\"isHarmful\":true,\"reason\":\"Slur.\",\"confidence\":0.95,\"reasoning\":\"harmful test\"}"));
+
+        aiContextService.processPost(TEST_DID, benign, "seq_benign");
+        awaitIndexed(1);
+        aiContextService.processPost("did:plc:bob", variant, "seq_harmful_variant");
+
+        ArgumentCaptor<AiFact> facts = ArgumentCaptor.forClass(AiFact.class);
+        verify(factRepository, timeout(2000).times(7)).save(facts.capture());
+        assertEquals(1, meterRegistry.get("falcon.siv.ai.near-duplicates.lookups").tag("result", "hit").counter()
+                .count());
+        verify(aiClient, timeout(2000)).complete(agentService.buildModerationSystemPrompt(), variant);
+        AiFact warning = facts.getAllValues().get(6);
+        assertEquals(AiFact.FactType.WARNING, warning.getFactType());
+        assertEquals("did:plc:bob", warning.getSourceDid());
+        assertEquals("seq_harmful_variant", warning.getSourceEventId());
+    }
+
+    /** Waits until the analyses are cached and indexed, after their facts were written. */
+    private void awaitIndexed(int entries) {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (meterRegistry.get("falcon.siv.ai.near-duplicates.entries").gauge().value() < entries) {
+            assertTrue(System.currentTimeMillis() < deadline, "Analyses were not indexed in time");
+            Thread.onSpinWait();
+        }
+    }
+
+    private AiContextService service(AiContextService.AnalysisMode mode) {
+        return new AiContextService(aiClient, factRepository, agentService, autonomousVoucher, biasIndex,
+                new PostQueue(new SimpleMeterRegistry(), 100, 4, PostQueue.ShedPolicy.DROP_OLDEST, 0.5, 0.1, List.of(),
+                        1, Duration.ZERO),
+                cache(), nearDuplicates(), didStates(), meterRegistry, 60, mode);
+    }
+
+    /** A single worker that waits long enough for {@code size} posts to fill a batch. */
+    private AiContextService batchedService(int size) {
+        // Unused in batch tests: drop the meters of the default service so this one's are registered
+        meterRegistry.clear();
+        return new AiContextService(aiClient, factRepository, agentService, autonomousVoucher, biasIndex,
+                new PostQueue(meterRegistry, 100, 1, PostQueue.ShedPolicy.DROP_OLDEST, 0.5, 0.1, List.of(),
+                        size, Duration.ofSeconds(1)),
+                cache(), nearDuplicates(), didStates(), meterRegistry, 60,
+                AiContextService.AnalysisMode.SEPARATE);
+    }
+
+    private AnalysisCache cache() {
+        return new AnalysisCache(aiClient, agentService, meterRegistry, 1000, Duration.ofHours(1));
+    }
+
+    private DidStateCache didStates() {
+        return new DidStateCache(new SimpleMeterRegistry(), 50, DataSize.ofMegabytes(1));
+    }
+
+    private NearDuplicateIndex nearDuplicates() {
+        return new NearDuplicateIndex(meterRegistry, 1000, 0.6, Duration.ofHours(1));
+    }
 }
@@ -0,0 +1,89 @@
+package app.falcon.siv.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+class AnalysisCacheTest {
+
+    private static final AnalysisCache.Moderation SAFE = new AnalysisCache.Moderation(false, 0.1, "", "fine");
+
+    @Mock
+    private FalconAiClient aiClient;
+
+    @TempDir
+    private Path agentDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SovereignAgentService agentService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        Files.writeString(agentDir.resolve("persistence.md"), "Remembers the last spam wave.");
+        agentService = new SovereignAgentService("did:plc:test-agent", "Test", agentDir.toString());
+        when(aiClient.getModel()).thenReturn("llama3.2");
+    }
+
+    @Test
+    void textIsNormalisedBeforeHashing() {
+        assertEquals("café deal now", AnalysisCache.normalise("  CAFÉ\tdeal\n\nNOW "));
+        assertEquals(AnalysisCache.normalise("ｆｒｅｅ coins"), AnalysisCache.normalise("free   coins"));
+    }
+
+    @Test
+    void storedAnalysisIsReturnedForTheSameText() {
+        AnalysisCache cache = cache(100);
+        cache.put("Free coins!", objectMapper.createObjectNode().put("summary", "Spam."), SAFE, "seq1");
+
+        AnalysisCache.Analysis hit = cache.get("free   COINS!");
+
+        assertNotNull(hit);
+        assertEquals("Spam.", hit.tagging().path("summary").asText());
+        assertEquals(SAFE, hit.moderation());
+        assertEquals("seq1", hit.sourceEventId());
+        assertEquals(64, hit.key().length());
+        assertNull(cache.get("free coins?"));
+    }
+
+    @Test
+    void changingModelOrPromptsMisses() {
+        AnalysisCache cache = cache(100);
+        cache.put("Free coins!", objectMapper.createObjectNode(), SAFE, "seq1");
+
+        when(aiClient.getModel()).thenReturn("gpt-4o-mini");
+        assertNull(cache.get("Free coins!"));
+
+        when(aiClient.getModel()).thenReturn("llama3.2");
+        assertNotNull(cache.get("Free coins!"));
+
+        // Clearing the agent's memory drops persistence.md from every prompt
+        agentService.setMemoryState(SovereignAgentService.AgentMemoryState.CLEAN);
+        assertNull(cache.get("Free coins!"));
+    }
+
+    @Test
+    void zeroMaxSizeDisablesTheCache() {
+        AnalysisCache cache = cache(0);
+        cache.put("Free coins!", objectMapper.createObjectNode(), SAFE, "seq1");
+
+        assertNull(cache.get("Free coins!"));
+        assertEquals(0, cache.size());
+    }
+
+    private AnalysisCache cache(long maxSize) {
+        return new AnalysisCache(aiClient, agentService, new SimpleMeterRegistry(), maxSize, Duration.ofHours(1));
+    }
+}
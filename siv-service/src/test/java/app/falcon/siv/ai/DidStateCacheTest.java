@@ -0,0 +1,81 @@
+package app.falcon.siv.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DidStateCacheTest {
+
+    private static final String POST = "Just shipped the first release of my open source Java library for the "
+            + "AT Protocol, feedback and issues very welcome!";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void rateLimitedPostsStillReachTheMemoryWindow() {
+        DidStateCache states = new DidStateCache(meterRegistry, 3, DataSize.ofMegabytes(1));
+
+        ChannelMemory first = states.admit("did:plc:alice", "first", Duration.ofMinutes(1));
+        ChannelMemory second = states.admit("did:plc:alice", "second", Duration.ofMinutes(1));
+        ChannelMemory other = states.admit("did:plc:bob", "hello", Duration.ofMinutes(1));
+
+        assertNotNull(first);
+        assertNull(second);
+        assertNotNull(other);
+        assertEquals("first\nsecond", states.memoryOf("did:plc:alice").toPrompt());
+        assertNotNull(states.admit("did:plc:alice", "third", Duration.ZERO));
+    }
+
+    @Test
+    void entriesAreReweighedAsTheirWindowFills() {
+        DidStateCache states = new DidStateCache(meterRegistry, 50, DataSize.ofMegabytes(1));
+        for (int i = 0; i < 10; i++) {
+            states.admit("did:plc:alice", POST, Duration.ZERO);
+        }
+
+        ChannelMemory memory = states.memoryOf("did:plc:alice");
+        assertEquals(DidStateCache.weigh("did:plc:alice", memory), states.weightedSize());
+        assertEquals(states.weightedSize(), meterRegistry.get("falcon.siv.ai.did-state.bytes").gauge().value());
+    }
+
+    /**
+     * One million distinct DIDs, plus one DID posting every thousandth event,
+     * through an 8 MB cache: the estimate stays within budget, the heap stops
+     * growing once the cache is full, and the frequent poster is kept.
+     */
+    @Test
+    void heapStaysBoundedUnderAMillionDistinctDids() {
+        long budget = DataSize.ofMegabytes(8).toBytes();
+        DidStateCache states = new DidStateCache(meterRegistry, 50, DataSize.ofBytes(budget));
+        String hot = "did:plc:hot";
+
+        long warmedUp = 0;
+        for (int i = 0; i < 1_000_000; i++) {
+            states.admit("did:plc:" + Integer.toString(i, 36), POST + i, Duration.ofMinutes(1));
+            if (i % 1000 == 0)
+                states.admit(hot, POST, Duration.ofMinutes(1));
+            if (i == 100_000)
+                warmedUp = usedHeapAfterGc();
+        }
+        long steadyState = usedHeapAfterGc();
+
+        assertTrue(states.weightedSize() <= budget, "weighted size " + states.weightedSize());
+        assertTrue(states.size() < 50_000, "entries " + states.size());
+        assertNotNull(states.memoryOf(hot), "frequent DID was evicted");
+        // Unbounded, the other 900k DIDs would add about 450 MB
+        long growth = steadyState - warmedUp;
+        assertTrue(growth < DataSize.ofMegabytes(32).toBytes(), "heap grew by " + growth / 1024 / 1024 + " MB");
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,131 @@
+package app.falcon.siv.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearDuplicateIndexTest {
+
+    private static final String SPAM = "Claim your free airdrop now at example dot com before the snapshot closes";
+
+    /** Test clock that can be moved forward to age representatives out. */
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.now();
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+    }
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void variantsJoinTheRepresentativesCluster() {
+        NearDuplicateIndex index = index(100, Clock.systemUTC());
+        index.add(SPAM);
+
+        NearDuplicateIndex.Match first = index.confirm(index.match(
+                "CLAIM your free airdrop today at example dot com before the snapshot closes!!"));
+        NearDuplicateIndex.Match second = index.confirm(index.match(
+                "Claim your free airdrop now at example dot org before the snapshot closes"));
+
+        assertEquals(SPAM, first.representative());
+        assertTrue(first.similarity() >= 0.6, "similarity " + first.similarity());
+        assertEquals(2, first.clusterSize());
+        assertEquals(3, second.clusterSize());
+        assertEquals(2, meterRegistry.get("falcon.siv.ai.near-duplicates.lookups").tag("result", "hit").counter()
+                .count());
+        assertEquals(3, meterRegistry.get("falcon.siv.ai.near-duplicates.cluster.size").summary().max());
+    }
+
+    @Test
+    void unconfirmedMatchesAreNotCounted() {
+        NearDuplicateIndex index = index(100, Clock.systemUTC());
+        index.add(SPAM);
+
+        NearDuplicateIndex.Match match = index.match(SPAM);
+
+        assertEquals(1, match.clusterSize());
+        assertEquals(1, index.match(SPAM).clusterSize());
+        assertEquals(0, meterRegistry.get("falcon.siv.ai.near-duplicates.lookups").tag("result", "hit").counter()
+                .count());
+        assertEquals(2, index.confirm(match).clusterSize());
+    }
+
+    @Test
+    void forgottenRepresentativeNoLongerMatches() {
+        NearDuplicateIndex index = index(100, Clock.systemUTC());
+        index.add(SPAM);
+
+        index.forget(index.match(SPAM));
+
+        assertNull(index.match(SPAM));
+        assertEquals(0, index.size());
+        assertEquals(2, meterRegistry.get("falcon.siv.ai.near-duplicates.lookups").tag("result", "miss").counter()
+                .count());
+        index.add(SPAM);
+        assertEquals(1, index.size());
+        assertNotNull(index.match(SPAM));
+    }
+
+    @Test
+    void unrelatedAndShortPostsDoNotMatch() {
+        NearDuplicateIndex index = index(100, Clock.systemUTC());
+        index.add(SPAM);
+        index.add("gm everyone");
+
+        assertNull(index.match("Just shipped the first release of my open source Java library for the AT Protocol"));
+        assertNull(index.match("gm everyone!"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void oldestRepresentativeIsOverwrittenWhenFull() {
+        NearDuplicateIndex index = index(2, Clock.systemUTC());
+        index.add(SPAM);
+        index.add("Just shipped the first release of my open source Java library for the AT Protocol");
+        index.add("Our community call starts in ten minutes, bring your questions about the new relay");
+
+        assertEquals(2, index.size());
+        assertNull(index.match(SPAM));
+        assertNotNull(index.match("Our community call starts in five minutes, bring your questions about the new relay"));
+    }
+
+    @Test
+    void representativesExpireAfterTheTtl() {
+        MutableClock clock = new MutableClock();
+        NearDuplicateIndex index = index(100, clock);
+        index.add(SPAM);
+
+        clock.advance(Duration.ofMinutes(59));
+        assertNotNull(index.match(SPAM));
+        clock.advance(Duration.ofMinutes(2));
+        assertNull(index.match(SPAM));
+    }
+
+    private NearDuplicateIndex index(int maxEntries, Clock clock) {
+        return new NearDuplicateIndex(meterRegistry, maxEntries, 0.6, Duration.ofHours(1), clock);
+    }
+}
@@ -0,0 +1,173 @@
+package app.falcon.siv.ai;
+
+import app.falcon.siv.ai.PostQueue.ShedPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostQueueTest {
+
+    private static final String VIP = "did:plc:vip";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> analysed = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private PostQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        queue.stop();
+    }
+
+    @Test
+    void dropOldestKeepsTheNewestPosts() throws InterruptedException {
+        queue = queue(2, ShedPolicy.DROP_OLDEST);
+        startBlockedWorker();
+
+        for (String text : List.of("a", "b", "c", "d")) {
+            assertTrue(queue.offer("did:plc:alice", text, null));
+        }
+
+        assertEquals(2, queue.depth());
+        assertEquals(2, dropped("oldest"));
+        assertEquals(List.of("busy", "c", "d"), drain(3));
+    }
+
+    @Test
+    void dropNewestRejectsWhenFull() throws InterruptedException {
+        queue = queue(2, ShedPolicy.DROP_NEWEST);
+        startBlockedWorker();
+
+        assertTrue(queue.offer("did:plc:alice", "a", null));
+        assertTrue(queue.offer("did:plc:alice", "b", null));
+        assertFalse(queue.offer("did:plc:alice", "c", null));
+
+        assertEquals(1, dropped("newest"));
+        assertEquals(List.of("busy", "a", "b"), drain(3));
+    }
+
+    @Test
+    void samplingShedsOrdinaryPostsAboveTheThresholdButNotPriorityOnes() throws InterruptedException {
+        queue = new PostQueue(meterRegistry, 4, 1, ShedPolicy.SAMPLE, 0.5, 0.0, List.of(VIP), 1, Duration.ZERO);
+        startBlockedWorker();
+
+        assertTrue(queue.offer("did:plc:alice", "a", null));
+        assertTrue(queue.offer("did:plc:alice", "b", null));
+        assertFalse(queue.offer("did:plc:alice", "c", null));
+        assertTrue(queue.offer(VIP, "v", null));
+
+        assertEquals(1, dropped("sampled"));
+        assertEquals(3, queue.depth());
+    }
+
+    @Test
+    void priorityDidsAreServedFirstAndDisplaceOrdinaryPosts() throws InterruptedException {
+        queue = new PostQueue(meterRegistry, 2, 1, ShedPolicy.DROP_NEWEST, 1.0, 1.0, List.of(VIP), 1, Duration.ZERO);
+        startBlockedWorker();
+
+        assertTrue(queue.offer("did:plc:alice", "a", null));
+        assertTrue(queue.offer("did:plc:alice", "b", null));
+        assertTrue(queue.offer(VIP, "v", null));
+
+        assertEquals(1, dropped("oldest"));
+        assertEquals(List.of("busy", "v", "b"), drain(3));
+    }
+
+    @Test
+    void llmCallsAreLimitedToMaxConcurrentCalls() throws InterruptedException {
+        queue = new PostQueue(meterRegistry, 100, 3, ShedPolicy.DROP_NEWEST, 1.0, 1.0, List.of(), 1, Duration.ZERO);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(20);
+        queue.consume(post -> {
+            peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+            done.countDown();
+        });
+
+        for (int i = 0; i < 20; i++) {
+            queue.offer("did:plc:" + i, "post", null);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, peak.get());
+        // Lag is recorded once the analysis has returned
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("falcon.siv.ai.post.lag").timer().count() < 20 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(20, meterRegistry.get("falcon.siv.ai.post.lag").timer().count());
+    }
+
+    @Test
+    void batchesAreHandedOverWhenFullOrAfterMaxWait() throws InterruptedException {
+        queue = new PostQueue(meterRegistry, 100, 1, ShedPolicy.DROP_NEWEST, 1.0, 1.0, List.of(VIP), 3,
+                Duration.ofMillis(300));
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        for (String text : List.of("a", "b", "c", "d")) {
+            queue.offer("did:plc:alice", text, null);
+        }
+        queue.offer(VIP, "v", null);
+
+        queue.consumeBatches(batch -> batches.add(batch.stream().map(PostQueue.Post::text).toList()));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (batches.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of(List.of("v", "a", "b"), List.of("c", "d")), batches);
+        assertEquals(2, meterRegistry.get("falcon.siv.ai.batch.size").summary().count());
+        // The partial batch waited out max-wait before being handed over
+        assertTrue(meterRegistry.get("falcon.siv.ai.batch.fill").timer().max(TimeUnit.MILLISECONDS) >= 250);
+    }
+
+    private PostQueue queue(int capacity, ShedPolicy policy) {
+        return new PostQueue(meterRegistry, capacity, 1, policy, 1.0, 1.0, List.of(VIP), 1, Duration.ZERO);
+    }
+
+    /** Starts the single worker and parks it on a first post, so later ones stay queued. */
+    private void startBlockedWorker() throws InterruptedException {
+        CountDownLatch busy = new CountDownLatch(1);
+        queue.consume(post -> {
+            analysed.add(post.text());
+            if ("busy".equals(post.text())) {
+                busy.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        queue.offer("did:plc:alice", "busy", null);
+        assertTrue(busy.await(5, TimeUnit.SECONDS));
+    }
+
+    private List<String> drain(int expected) throws InterruptedException {
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (analysed.size() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return analysed;
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get("falcon.siv.ai.queue.dropped").tag("reason", reason).counter().count();
+    }
+}
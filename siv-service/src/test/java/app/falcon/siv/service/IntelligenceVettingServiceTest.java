@@ -4,15 +4,21 @@ import app.falcon.core.domain.AiFact;
 import app.falcon.siv.repository.AiFactRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 class IntelligenceVettingServiceTest {
@@ -20,20 +26,56 @@ class IntelligenceVettingServiceTest {
     @Mock
     private AiFactRepository repository;
 
-    @InjectMocks
+    private MutableClock clock;
+    private IntelligenceBiasIndex biasIndex;
     private IntelligenceVettingService vettingService;
 
     private static final String TARGET_DID = "did:plc:target";
 
+    /** Test clock that can be moved forward to age facts out. */
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.now();
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+    }
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        clock = new MutableClock();
+        when(repository.findByFactTypeInAndCreatedAtAfter(any(), any())).thenReturn(List.of());
+        biasIndex = new IntelligenceBiasIndex(repository, clock);
+        biasIndex.load();
+        vettingService = new IntelligenceVettingService(biasIndex);
+    }
+
+    /** Feeds facts into the index the way AiContextService does when saving them. */
+    private void givenFacts(AiFact... facts) {
+        for (AiFact fact : facts) {
+            biasIndex.record(fact);
+        }
     }
 
     @Test
     void calculateBias_NoFacts_ReturnsNeutralBias() {
-        when(repository.findTop20BySourceDidOrderByCreatedAtDesc(TARGET_DID))
-                .thenReturn(List.of());
+        givenFacts();
 
         double bias = vettingService.calculateBias(TARGET_DID);
 
@@ -43,13 +85,13 @@ class IntelligenceVettingServiceTest {
     @Test
     void calculateBias_OnlyOldFacts_ReturnsNeutralBias() {
         AiFact oldFact = AiFact.builder()
+                .sourceDid(TARGET_DID)
                 .factType(AiFact.FactType.HIGHLIGHT)
                 .confidence(0.99)
-                .createdAt(Instant.now().minus(25, ChronoUnit.HOURS))
+                .createdAt(clock.instant().minus(25, ChronoUnit.HOURS))
                 .build();
 
-        when(repository.findTop20BySourceDidOrderByCreatedAtDesc(TARGET_DID))
-                .thenReturn(List.of(oldFact));
+        givenFacts(oldFact);
 
         double bias = vettingService.calculateBias(TARGET_DID);
 
@@ -59,13 +101,13 @@ class IntelligenceVettingServiceTest {
     @Test
     void calculateBias_RecentHighlight_IncreasesBias() {
         AiFact highlight = AiFact.builder()
+                .sourceDid(TARGET_DID)
                 .factType(AiFact.FactType.HIGHLIGHT)
                 .confidence(0.8) // + 0.1 * 0.8 = +0.08
-                .createdAt(Instant.now().minus(1, ChronoUnit.HOURS))
+                .createdAt(clock.instant().minus(1, ChronoUnit.HOURS))
                 .build();
 
-        when(repository.findTop20BySourceDidOrderByCreatedAtDesc(TARGET_DID))
-                .thenReturn(List.of(highlight));
+        givenFacts(highlight);
 
         double bias = vettingService.calculateBias(TARGET_DID);
 
@@ -75,13 +117,13 @@ class IntelligenceVettingServiceTest {
     @Test
     void calculateBias_RecentWarning_DecreasesBias() {
         AiFact warning = AiFact.builder()
+                .sourceDid(TARGET_DID)
                 .factType(AiFact.FactType.WARNING)
                 .confidence(0.9) // - 0.2 * 0.9 = -0.18
-                .createdAt(Instant.now().minus(1, ChronoUnit.HOURS))
+                .createdAt(clock.instant().minus(1, ChronoUnit.HOURS))
                 .build();
 
-        when(repository.findTop20BySourceDidOrderByCreatedAtDesc(TARGET_DID))
-                .thenReturn(List.of(warning));
+        givenFacts(warning);
 
         double bias = vettingService.calculateBias(TARGET_DID);
 
@@ -91,18 +133,19 @@ class IntelligenceVettingServiceTest {
     @Test
     void calculateBias_TagsAndSummaries_AreNeutral() {
         AiFact tag = AiFact.builder()
+                .sourceDid(TARGET_DID)
                 .factType(AiFact.FactType.TAG)
                 .confidence(0.9)
-                .createdAt(Instant.now())
+                .createdAt(clock.instant())
                 .build();
         AiFact summary = AiFact.builder()
+                .sourceDid(TARGET_DID)
                 .factType(AiFact.FactType.SUMMARY)
                 .confidence(0.9)
-                .createdAt(Instant.now())
+                .createdAt(clock.instant())
                 .build();
 
-        when(repository.findTop20BySourceDidOrderByCreatedAtDesc(TARGET_DID))
-                .thenReturn(List.of(tag, summary));
+        givenFacts(tag, summary);
 
         double bias = vettingService.calculateBias(TARGET_DID);
 
@@ -115,13 +158,13 @@ class IntelligenceVettingServiceTest {
         // 1 highlight @ 1.0 confidence = +0.1. We need 6 of them to reach +0.6 (total
         // 1.6).
         AiFact highlight = AiFact.builder()
+                .sourceDid(TARGET_DID)
                 .factType(AiFact.FactType.HIGHLIGHT)
                 .confidence(1.0)
-                .createdAt(Instant.now())
+                .createdAt(clock.instant())
                 .build();
 
-        when(repository.findTop20BySourceDidOrderByCreatedAtDesc(TARGET_DID))
-                .thenReturn(List.of(highlight, highlight, highlight, highlight, highlight, highlight));
+        givenFacts(highlight, highlight, highlight, highlight, highlight, highlight);
 
         double bias = vettingService.calculateBias(TARGET_DID);
 
@@ -134,16 +177,86 @@ class IntelligenceVettingServiceTest {
         // 1 warning @ 1.0 confidence = -0.2. We need 3 of them to reach -0.6 (total
         // 0.4).
         AiFact warning = AiFact.builder()
+                .sourceDid(TARGET_DID)
                 .factType(AiFact.FactType.WARNING)
                 .confidence(1.0)
-                .createdAt(Instant.now())
+                .createdAt(clock.instant())
                 .build();
 
-        when(repository.findTop20BySourceDidOrderByCreatedAtDesc(TARGET_DID))
-                .thenReturn(List.of(warning, warning, warning));
+        givenFacts(warning, warning, warning);
 
         double bias = vettingService.calculateBias(TARGET_DID);
 
         assertEquals(0.5, bias, "Bias should be clamped to a minimum of 0.5");
     }
+
+    @Test
+    void calculateBias_FactsAgeOutOfWindow() {
+        AiFact warning = AiFact.builder()
+                .sourceDid(TARGET_DID)
+                .factType(AiFact.FactType.WARNING)
+                .confidence(1.0)
+                .createdAt(clock.instant())
+                .build();
+        givenFacts(warning);
+        assertEquals(0.8, vettingService.calculateBias(TARGET_DID), 0.001);
+
+        clock.advance(Duration.ofHours(24));
+        biasIndex.expire();
+
+        assertEquals(1.0, vettingService.calculateBias(TARGET_DID), "Warnings older than 24 hours should expire");
+    }
+
+    @Test
+    void calculateBias_WarmStartReplaysRecentFacts() {
+        AiFact highlight = AiFact.builder()
+                .sourceDid(TARGET_DID)
+                .factType(AiFact.FactType.HIGHLIGHT)
+                .confidence(0.5)
+                .createdAt(clock.instant().minus(2, ChronoUnit.HOURS))
+                .build();
+        when(repository.findByFactTypeInAndCreatedAtAfter(any(), any())).thenReturn(List.of(highlight));
+
+        IntelligenceBiasIndex warm = new IntelligenceBiasIndex(repository, clock);
+        warm.load();
+
+        assertEquals(1.05, new IntelligenceVettingService(warm).calculateBias(TARGET_DID), 0.001);
+    }
+
+    @Test
+    void calculateBias_DoesNotQueryDatabase() {
+        biasIndex.record(AiFact.builder()
+                .sourceDid(TARGET_DID)
+                .factType(AiFact.FactType.HIGHLIGHT)
+                .confidence(1.0)
+                .createdAt(clock.instant())
+                .build());
+
+        vettingService.calculateBias(TARGET_DID);
+        vettingService.calculateBias("did:plc:other");
+
+        // Only the single warm-start query from setUp
+        verify(repository).findByFactTypeInAndCreatedAtAfter(any(), any());
+        verifyNoMoreInteractions(repository);
+    }
+
+    @Test
+    void calculateBias_ExpiryKeepsOtherDidsIntact() {
+        for (int i = 0; i < 5_000; i++) {
+            biasIndex.record(AiFact.builder().sourceDid("did:plc:old" + i)
+                    .factType(AiFact.FactType.WARNING).confidence(1.0).createdAt(clock.instant()).build());
+        }
+        clock.advance(Duration.ofHours(12));
+        for (int i = 0; i < 5_000; i++) {
+            biasIndex.record(AiFact.builder().sourceDid("did:plc:new" + i)
+                    .factType(AiFact.FactType.HIGHLIGHT).confidence(1.0).createdAt(clock.instant()).build());
+        }
+        clock.advance(Duration.ofHours(13));
+        biasIndex.expire();
+
+        for (int i = 0; i < 5_000; i++) {
+            assertEquals(1.0, vettingService.calculateBias("did:plc:old" + i), 0.001);
+            assertEquals(1.1, vettingService.calculateBias("did:plc:new" + i), 0.001);
+        }
+    }
 }
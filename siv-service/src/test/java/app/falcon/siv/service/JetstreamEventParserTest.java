@@ -0,0 +1,89 @@
+package app.falcon.siv.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JetstreamEventParserTest {
+
+    private static final String POST = """
+            {"did":"did:plc:alice","time_us":1725911162329308,"kind":"commit",\
+            "commit":{"rev":"3l3qo2vutsw2b","operation":"create","collection":"app.bsky.feed.post",\
+            "rkey":"3l3qo2vuowo2b","record":{"$type":"app.bsky.feed.post","langs":["en"],\
+            "facets":[{"features":[{"uri":"https://falcon.app"}]}],"text":"hello \\"firehose\\""},\
+            "cid":"bafyreidwaivazkwu67xztlmuobx35hs2lnfh3kolmgfmucldvhd3sgzcqi"},"seq":42}""";
+
+    private final JetstreamEventParser parser = new JetstreamEventParser();
+
+    @Test
+    void extractsPostCreates() throws IOException {
+        JetstreamEventParser.Post post = parser.parse(POST);
+
+        assertEquals(new JetstreamEventParser.Post("did:plc:alice", "hello \"firehose\"", "42"), post);
+    }
+
+    @Test
+    void skipsOtherCollectionsOperationsAndKinds() throws IOException {
+        assertNull(parser.parse(POST.replace("app.bsky.feed.post\",\"rkey", "app.bsky.feed.like\",\"rkey")));
+        assertNull(parser.parse(POST.replace("\"create\"", "\"delete\"")));
+        assertNull(parser.parse(POST.replace("\"kind\":\"commit\"", "\"kind\":\"identity\"")));
+        assertNull(parser.parse("""
+                {"did":"did:plc:alice","time_us":1725911162329308,"kind":"account",\
+                "account":{"active":true,"did":"did:plc:alice","seq":1409753013}}"""));
+    }
+
+    @Test
+    void fieldOrderDoesNotMatter() throws IOException {
+        JetstreamEventParser.Post post = parser.parse("""
+                {"seq":"7","commit":{"record":{"text":"late"},"collection":"app.bsky.feed.post",\
+                "operation":"create"},"kind":"commit","did":"did:plc:bob"}""");
+
+        assertEquals(new JetstreamEventParser.Post("did:plc:bob", "late", "7"), post);
+    }
+
+    @Test
+    void missingTextAndSeqMatchTheTreeDefaults() throws IOException {
+        JetstreamEventParser.Post post = parser.parse("""
+                {"did":"did:plc:carol","kind":"commit",\
+                "commit":{"operation":"create","collection":"app.bsky.feed.post","record":{}}}""");
+
+        assertEquals(new JetstreamEventParser.Post("did:plc:carol", "", null), post);
+    }
+
+    @Test
+    void valuesFromAPreviousEventDoNotLeak() throws IOException {
+        parser.parse(POST);
+
+        assertNull(parser.parse("""
+                {"kind":"commit","commit":{"operation":"create","collection":"app.bsky.feed.post"}}"""));
+    }
+
+    @Test
+    void longValuesGrowTheBuffers() throws IOException {
+        String text = "x".repeat(3000);
+
+        assertEquals(text, parser.parse(POST.replace("hello \\\"firehose\\\"", text)).text());
+    }
+
+    @Test
+    void reportsTimeOfEveryEvent() throws IOException {
+        List<Long> times = new ArrayList<>();
+
+        parser.parse(POST, times::add);
+        parser.parse(POST.replace("\"create\"", "\"delete\""), times::add);
+        parser.parse("""
+                {"did":"did:plc:alice","kind":"commit","commit":{"collection":"app.bsky.feed.like",\
+                "operation":"create","record":{"subject":{"cid":"x"}}},"time_us":1725911162329309}""", times::add);
+
+        assertEquals(List.of(1725911162329308L, 1725911162329308L, 1725911162329309L), times);
+    }
+
+    @Test
+    void malformedJsonFails() {
+        assertThrows(IOException.class, () -> parser.parse("{\"did\":\"did:plc:alice\",\"kind\":"));
+    }
+}
@@ -0,0 +1,304 @@
+package app.falcon.siv.service;
+
+import app.falcon.siv.ai.AiContextService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class JetstreamServiceTest {
+
+    private static final long THIRD = 1725911162332308L;
+    private static final long LAST = 1725911162335308L;
+
+    @Mock
+    private AiContextService aiContextService;
+
+    @TempDir
+    private Path dir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<JetstreamService> services = new ArrayList<>();
+    private final List<JetstreamStub> stubs = new ArrayList<>();
+    private JetstreamHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        handler = new JetstreamHandler();
+        ReflectionTestUtils.setField(handler, "aiContextService", aiContextService);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (JetstreamService service : services) {
+            service.stop();
+        }
+        for (JetstreamStub stub : stubs) {
+            stub.close();
+        }
+    }
+
+    @Test
+    void replaysEventsAndCheckpointsTheCursor() throws Exception {
+        JetstreamStub stub = stub(false);
+        JetstreamService service = start(List.of(stub.endpoint()), Duration.ofSeconds(5));
+
+        await(() -> service.cursor() == LAST);
+        await(() -> checkpoint().equals(Long.toString(LAST)));
+
+        verify(aiContextService).processPost("did:plc:alice", "first post from the replay", null);
+        verify(aiContextService).processPost("did:plc:carol", "second post from the replay", null);
+        verify(aiContextService, timeout(5000)).processPost("did:plc:bob", "third post from the replay", null);
+        assertEquals(6, meterRegistry.get("falcon.siv.jetstream.events").counter().count());
+        assertTrue(meterRegistry.get("falcon.siv.jetstream.lag").gauge().value() > 0);
+
+        URI request = stub.requests.get(0);
+        assertEquals("/subscribe", request.getPath());
+        assertEquals("wantedCollections=app.bsky.feed.post&wantedDids=did%3Aplc%3Aalice&wantedDids=did%3Aplc%3Abob",
+                request.getRawQuery());
+    }
+
+    @Test
+    void reconnectsAfterCloseFromTheRewoundCheckpoint() throws Exception {
+        JetstreamStub stub = stub(true);
+        JetstreamService service = start(List.of(stub.endpoint()), Duration.ofNanos(1_000_000));
+
+        await(() -> stub.requests.size() >= 2);
+
+        assertNull(stub.cursorOf(0));
+        assertEquals(LAST - 1000, stub.cursorOf(1));
+        assertEquals(LAST, service.cursor());
+        assertTrue(meterRegistry.get("falcon.siv.jetstream.reconnects").counter().count() >= 1);
+        // Only the last event is replayed after the rewind; it is seen again, not lost
+        verify(aiContextService, timeout(5000).atLeast(2)).processPost("did:plc:bob", "third post from the replay", null);
+        verify(aiContextService, times(1)).processPost(eq("did:plc:alice"), anyString(), any());
+    }
+
+    @Test
+    void resumesFromThePersistedCursorAfterARestart() throws Exception {
+        Files.writeString(dir.resolve("jetstream.cursor"), Long.toString(THIRD));
+        JetstreamStub stub = stub(false);
+        JetstreamService service = start(List.of(stub.endpoint()), Duration.ZERO);
+
+        await(() -> service.cursor() == LAST);
+
+        assertEquals(THIRD, stub.cursorOf(0));
+        assertEquals(3, meterRegistry.get("falcon.siv.jetstream.events").counter().count());
+        verify(aiContextService, timeout(5000)).processPost("did:plc:bob", "third post from the replay", null);
+        verify(aiContextService, never()).processPost(eq("did:plc:alice"), anyString(), any());
+    }
+
+    @Test
+    void failsOverToTheNextEndpoint() throws Exception {
+        int unused;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            unused = socket.getLocalPort();
+        }
+        JetstreamStub stub = stub(false);
+        JetstreamService service = start(List.of("ws://localhost:" + unused + "/subscribe", stub.endpoint()),
+                Duration.ZERO);
+
+        await(() -> service.cursor() == LAST);
+
+        assertEquals(1, stub.requests.size());
+        assertTrue(meterRegistry.get("falcon.siv.jetstream.reconnects").counter().count() >= 1);
+        assertNull(stub.cursorOf(0));
+    }
+
+    @Test
+    void shardedInstancesSplitTheStreamByDid() throws Exception {
+        JetstreamStub stub = stub(false);
+        List<AiContextService> shards = new ArrayList<>();
+        List<JetstreamService> instances = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            AiContextService ai = mock(AiContextService.class);
+            JetstreamHandler shardHandler = new JetstreamHandler(new JetstreamShard(i, 3));
+            ReflectionTestUtils.setField(shardHandler, "aiContextService", ai);
+            shards.add(ai);
+            instances.add(start(shardHandler, new SimpleMeterRegistry(), List.of(stub.endpoint()), Duration.ZERO,
+                    dir.resolve("jetstream-" + i + ".cursor")));
+        }
+
+        for (JetstreamService instance : instances) {
+            await(() -> instance.cursor() == LAST);
+        }
+
+        // Every instance reads the whole stream but only handles the DIDs it owns
+        verify(shards.get(0), timeout(5000)).processPost("did:plc:alice", "first post from the replay", null);
+        verify(shards.get(1), timeout(5000)).processPost("did:plc:carol", "second post from the replay", null);
+        verify(shards.get(1), timeout(5000)).processPost("did:plc:bob", "third post from the replay", null);
+        verifyNoMoreInteractions(shards.toArray());
+    }
+
+    private JetstreamService start(List<String> endpoints, Duration rewind) {
+        return start(handler, meterRegistry, endpoints, rewind, dir.resolve("jetstream.cursor"));
+    }
+
+    private JetstreamService start(JetstreamHandler handler, SimpleMeterRegistry meterRegistry,
+            List<String> endpoints, Duration rewind, Path cursorFile) {
+        JetstreamService service = new JetstreamService(handler, meterRegistry, endpoints,
+                List.of("app.bsky.feed.post"), List.of("did:plc:alice", "did:plc:bob"),
+                cursorFile, Duration.ofMillis(50), rewind,
+                Duration.ofMillis(20), Duration.ofMillis(200), DataSize.ofMegabytes(1));
+        services.add(service);
+        service.connect();
+        return service;
+    }
+
+    private JetstreamStub stub(boolean closeAfterReplay) throws Exception {
+        JetstreamStub stub = new JetstreamStub(Files.readAllLines(
+                Path.of(JetstreamServiceTest.class.getResource("/jetstream/replay.jsonl").toURI())), closeAfterReplay);
+        stubs.add(stub);
+        return stub;
+    }
+
+    private String checkpoint() {
+        try {
+            Path file = dir.resolve("jetstream.cursor");
+            return Files.exists(file) ? Files.readString(file) : "";
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Minimal Jetstream stand-in: accepts WebSocket upgrades and sends the
+     * fixture's events newer than the {@code cursor} parameter as text frames,
+     * then either holds the connection or closes it.
+     */
+    private static final class JetstreamStub implements AutoCloseable {
+
+        private static final Pattern TIME_US = Pattern.compile("\"time_us\":(\\d+)");
+
+        final List<URI> requests = new CopyOnWriteArrayList<>();
+        private final List<String> events;
+        private final boolean closeAfterReplay;
+        private final ServerSocket server;
+        private final List<Socket> open = new CopyOnWriteArrayList<>();
+
+        JetstreamStub(List<String> events, boolean closeAfterReplay) throws IOException {
+            this.events = events.stream().filter(line -> !line.isBlank()).toList();
+            this.closeAfterReplay = closeAfterReplay;
+            this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::accept, "jetstream-stub");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        String endpoint() {
+            return "ws://localhost:" + server.getLocalPort() + "/subscribe";
+        }
+
+        Long cursorOf(int request) {
+            String query = requests.get(request).getRawQuery();
+            for (String param : query.split("&")) {
+                if (param.startsWith("cursor="))
+                    return Long.parseLong(param.substring(7));
+            }
+            return null;
+        }
+
+        private void accept() {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    open.add(socket);
+                    serve(socket);
+                } catch (Exception e) {
+                    // Closed, or the client went away
+                }
+            }
+        }
+
+        private void serve(Socket socket) throws Exception {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            URI uri = URI.create(reader.readLine().split(" ")[1]);
+            String key = null;
+            for (String header = reader.readLine(); header != null && !header.isEmpty(); header = reader.readLine()) {
+                if (header.regionMatches(true, 0, "Sec-WebSocket-Key:", 0, 18))
+                    key = header.substring(18).strip();
+            }
+            requests.add(uri);
+            String accept = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1")
+                    .digest((key + "258EAFA5-E914-47DA-95CA-C5AB0DC85B11").getBytes(StandardCharsets.ISO_8859_1)));
+
+            OutputStream out = socket.getOutputStream();
+            out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            Long cursor = cursorOf(requests.size() - 1);
+            for (String event : events) {
+                Matcher timeUs = TIME_US.matcher(event);
+                if (cursor == null || (timeUs.find() && Long.parseLong(timeUs.group(1)) > cursor))
+                    frame(out, 0x81, event.getBytes(StandardCharsets.UTF_8));
+            }
+            out.flush();
+            if (closeAfterReplay) {
+                frame(out, 0x88, new byte[] { 0x03, (byte) 0xE8 });
+                out.flush();
+                socket.close();
+            }
+        }
+
+        private static void frame(OutputStream out, int opcode, byte[] payload) throws IOException {
+            out.write(opcode);
+            if (payload.length < 126) {
+                out.write(payload.length);
+            } else {
+                out.write(126);
+                out.write(payload.length >>> 8);
+                out.write(payload.length & 0xFF);
+            }
+            out.write(payload);
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+            for (Socket socket : open) {
+                socket.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package app.falcon.siv.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JetstreamShardTest {
+
+    @Test
+    void everyDidIsOwnedByExactlyOneShard() {
+        List<JetstreamShard> shards = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            shards.add(new JetstreamShard(i, 4));
+        }
+        int[] owned = new int[4];
+
+        for (int n = 0; n < 10_000; n++) {
+            String did = "did:plc:" + Integer.toString(n * 7919, 36);
+            int owners = 0;
+            for (JetstreamShard shard : shards) {
+                if (shard.owns(did)) {
+                    owners++;
+                    owned[shard.index()]++;
+                }
+            }
+            assertEquals(1, owners, did);
+        }
+        for (int count : owned) {
+            assertTrue(count > 2_250 && count < 2_750, "Unbalanced shards: " + count);
+        }
+    }
+
+    @Test
+    void ownershipIsStableAcrossNodes() {
+        // Every instance must agree on the owner, so the hash is pinned
+        assertEquals(3, JetstreamShard.shardOf("did:plc:alice", 4));
+        assertEquals(0, JetstreamShard.shardOf("did:plc:bob", 4));
+        assertEquals(2, JetstreamShard.shardOf("did:plc:carol", 4));
+    }
+
+    @Test
+    void singleShardOwnsEverything() {
+        assertTrue(JetstreamShard.ALL.owns("did:plc:alice"));
+        assertTrue(new JetstreamShard(0, 1).owns("did:plc:bob"));
+    }
+
+    @Test
+    void invalidShardsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new JetstreamShard(2, 2));
+        assertThrows(IllegalArgumentException.class, () -> new JetstreamShard(-1, 2));
+        assertThrows(IllegalArgumentException.class, () -> new JetstreamShard(0, 0));
+    }
+}
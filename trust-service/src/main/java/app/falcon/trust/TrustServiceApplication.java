@@ -2,8 +2,10 @@ package app.falcon.trust;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(scanBasePackages = "app.falcon")
+@EnableScheduling
 public class TrustServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(TrustServiceApplication.class, args);
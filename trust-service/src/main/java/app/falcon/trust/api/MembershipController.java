@@ -1,8 +1,17 @@
 package app.falcon.trust.api;
 
+import app.falcon.trust.api.dto.MembershipVerifyRequest;
+import app.falcon.trust.api.dto.MembershipVerifyResponse;
+import app.falcon.trust.service.MembershipEvents;
 import app.falcon.trust.service.MembershipService;
+import app.falcon.trust.service.MembershipTierIndex;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/trust/membership")
@@ -10,6 +19,11 @@ import org.springframework.web.bind.annotation.*;
 public class MembershipController {
 
     private final MembershipService membershipService;
+    private final MembershipEvents membershipEvents;
+    private final MembershipTierIndex tierIndex;
+
+    @Value("${falcon.trust.membership.batch.max-checks:100000}")
+    private int maxBatchChecks;
 
     @GetMapping("/verify")
     public boolean verify(@RequestParam String userDid,
@@ -17,4 +31,33 @@ public class MembershipController {
             @RequestParam Long channelId) {
         return membershipService.verifyAccess(userDid, serverId, channelId);
     }
+
+    /**
+     * Checks many users against many channels of one server in one call, e.g.
+     * to find who may receive a channel broadcast. At most
+     * {@code falcon.trust.membership.batch.max-checks} user/channel pairs.
+     */
+    @PostMapping("/verify")
+    public MembershipVerifyResponse verifyBatch(@RequestBody MembershipVerifyRequest request) {
+        if (request.serverId() == null || request.userDids() == null || request.userDids().isEmpty()
+                || request.channelIds() == null || request.channelIds().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "serverId, userDids and channelIds must not be empty");
+        }
+        if ((long) request.userDids().size() * request.channelIds().size() > maxBatchChecks) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most %d user/channel pairs per request".formatted(maxBatchChecks));
+        }
+        return new MembershipVerifyResponse(request.serverId(),
+                membershipService.verifyAccess(request.serverId(), request.userDids(), request.channelIds()));
+    }
+
+    /**
+     * Stream of membership invalidations for gateways caching access decisions,
+     * plus the versioned tier table and its deltas with {@code snapshots=true}.
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@RequestParam(defaultValue = "false") boolean snapshots) {
+        return membershipEvents.subscribe(snapshots ? tierIndex::current : null);
+    }
 }
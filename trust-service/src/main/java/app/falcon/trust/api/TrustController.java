@@ -3,12 +3,22 @@ package app.falcon.trust.api;
 import app.falcon.core.domain.TrustRelation;
 import app.falcon.trust.api.dto.TrustRelationResponse;
 import app.falcon.trust.api.dto.TrustScoreResponse;
+import app.falcon.trust.api.dto.TrustScoresRequest;
 import app.falcon.trust.service.EasService;
 import app.falcon.trust.service.TrustGraphService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.ObjectMapper;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -17,8 +27,15 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class TrustController {
 
+    /** Targets scored per chunk on the NDJSON endpoint before the chunk is flushed. */
+    private static final int STREAM_CHUNK_SIZE = 256;
+
     private final TrustGraphService trustGraphService;
     private final EasService easService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${falcon.trust.batch.max-targets:5000}")
+    private int maxBatchTargets;
 
     @GetMapping("/score/{targetDid}")
     public TrustScoreResponse getTrustScore(
@@ -29,6 +46,62 @@ public class TrustController {
         return TrustScoreResponse.of(targetDid, score);
     }
 
+    /**
+     * Scores up to {@code falcon.trust.batch.max-targets} DIDs for one viewer, e.g.
+     * every author on a timeline.
+     */
+    @PostMapping(value = "/scores", produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<TrustScoreResponse> getTrustScores(
+            @RequestBody TrustScoresRequest request,
+            @RequestHeader(value = "X-Falcon-Viewer-DID", required = false) String viewerDid) {
+
+        List<String> targetDids = validateBatch(request);
+        double[] scores = trustGraphService.calculateTrustScores(viewerDid, targetDids);
+
+        List<TrustScoreResponse> responses = new ArrayList<>(scores.length);
+        for (int i = 0; i < scores.length; i++) {
+            responses.add(TrustScoreResponse.of(targetDids.get(i), scores[i]));
+        }
+        return responses;
+    }
+
+    /**
+     * Streaming variant of {@link #getTrustScores}: one JSON object per line,
+     * flushed every {@value #STREAM_CHUNK_SIZE} targets so the client can start
+     * rendering before the whole list is scored.
+     */
+    @PostMapping(value = "/scores", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamTrustScores(
+            @RequestBody TrustScoresRequest request,
+            @RequestHeader(value = "X-Falcon-Viewer-DID", required = false) String viewerDid) {
+
+        List<String> targetDids = validateBatch(request);
+        StreamingResponseBody body = out -> {
+            for (int from = 0; from < targetDids.size(); from += STREAM_CHUNK_SIZE) {
+                List<String> chunk = targetDids.subList(from, Math.min(targetDids.size(), from + STREAM_CHUNK_SIZE));
+                double[] scores = trustGraphService.calculateTrustScores(viewerDid, chunk);
+                for (int i = 0; i < scores.length; i++) {
+                    out.write(objectMapper.writeValueAsBytes(TrustScoreResponse.of(chunk.get(i), scores[i])));
+                    out.write('\n');
+                }
+                out.flush();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private List<String> validateBatch(TrustScoresRequest request) {
+        List<String> targetDids = request.targetDids();
+        if (targetDids == null || targetDids.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "targetDids must not be empty");
+        }
+        if (targetDids.size() > maxBatchTargets) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most %d targetDids per request".formatted(maxBatchTargets));
+        }
+        return targetDids;
+    }
+
     @PostMapping("/relation")
     public TrustRelationResponse setRelation(
             @RequestBody Map<String, String> request,
@@ -0,0 +1,10 @@
+package app.falcon.trust.api.dto;
+
+import java.util.List;
+
+/**
+ * Request DTO for the POST /api/trust/membership/verify endpoint: every user is
+ * checked against every channel of the server.
+ */
+public record MembershipVerifyRequest(Long serverId, List<String> userDids, List<Long> channelIds) {
+}
@@ -0,0 +1,12 @@
+package app.falcon.trust.api.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response DTO for the POST /api/trust/membership/verify endpoint.
+ *
+ * @param allowed the users allowed into each requested channel
+ */
+public record MembershipVerifyResponse(Long serverId, Map<Long, List<String>> allowed) {
+}
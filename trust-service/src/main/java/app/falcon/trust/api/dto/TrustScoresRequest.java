@@ -0,0 +1,9 @@
+package app.falcon.trust.api.dto;
+
+import java.util.List;
+
+/**
+ * Request DTO for the POST /api/trust/scores endpoint.
+ */
+public record TrustScoresRequest(List<String> targetDids) {
+}
@@ -0,0 +1,60 @@
+package app.falcon.trust.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps DIDs to dense, stable {@code int} ids so the trust graph can be held in
+ * primitive arrays instead of per-edge objects.
+ *
+ * <p>
+ * Ids are never reused. Lookups are lock-free; only the first sighting of a
+ * DID takes the lock.
+ * </p>
+ */
+public final class DidInterner {
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] dids = new String[1024];
+    private volatile int size;
+
+    /**
+     * @return the id for {@code did}, or {@code -1} if it has never been interned
+     */
+    public int idOf(String did) {
+        Integer id = ids.get(did);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the id for {@code did}, assigning the next free id on first sight.
+     */
+    public int intern(String did) {
+        Integer id = ids.get(did);
+        if (id != null)
+            return id;
+
+        synchronized (this) {
+            id = ids.get(did);
+            if (id != null)
+                return id;
+
+            int next = size;
+            if (next == dids.length) {
+                dids = Arrays.copyOf(dids, next * 2);
+            }
+            dids[next] = did;
+            size = next + 1;
+            ids.put(did, next);
+            return next;
+        }
+    }
+
+    public String didOf(int id) {
+        return dids[id];
+    }
+
+    public int size() {
+        return size;
+    }
+}
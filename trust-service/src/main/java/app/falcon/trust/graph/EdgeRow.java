@@ -0,0 +1,109 @@
+package app.falcon.trust.graph;
+
+import app.falcon.core.domain.TrustRelation;
+
+import java.util.Arrays;
+
+/**
+ * Read-only view of one source's outgoing trust edges, sorted by target id.
+ *
+ * <p>
+ * A row either points into the shared CSR arrays of a {@link TrustAdjacency}
+ * or into a small private copy written by {@link TrustGraph#put}. In both cases
+ * the backing arrays are never mutated after the row is published.
+ * </p>
+ */
+public final class EdgeRow {
+
+    private static final TrustRelation.TrustType[] TYPES = TrustRelation.TrustType.values();
+
+    final int[] targets;
+    final byte[] types;
+    final float[] weights;
+    final int[] epochDays;
+    final int from;
+    final int to;
+
+    EdgeRow(int[] targets, byte[] types, float[] weights, int[] epochDays, int from, int to) {
+        this.targets = targets;
+        this.types = types;
+        this.weights = weights;
+        this.epochDays = epochDays;
+        this.from = from;
+        this.to = to;
+    }
+
+    public int size() {
+        return to - from;
+    }
+
+    public int target(int i) {
+        return targets[from + i];
+    }
+
+    public TrustRelation.TrustType type(int i) {
+        return TYPES[types[from + i]];
+    }
+
+    /**
+     * @return the explicit relation weight, or {@code NaN} when none was recorded
+     */
+    public float weight(int i) {
+        return weights[from + i];
+    }
+
+    /**
+     * @return the UTC day the relation was last written, as days since the epoch
+     */
+    public int epochDay(int i) {
+        return epochDays[from + i];
+    }
+
+    /**
+     * @return the position of {@code target} in this row, or {@code -1}
+     */
+    public int indexOf(int target) {
+        int idx = Arrays.binarySearch(targets, from, to, target);
+        return idx >= 0 ? idx - from : -1;
+    }
+
+    /**
+     * Returns a private copy of this row with the edge to {@code target} inserted
+     * or replaced.
+     */
+    EdgeRow with(int target, byte type, float weight, int epochDay) {
+        int size = size();
+        int idx = Arrays.binarySearch(targets, from, to, target);
+        boolean replace = idx >= 0;
+        int at = (replace ? idx : -idx - 1) - from;
+        int newSize = replace ? size : size + 1;
+
+        int[] t = new int[newSize];
+        byte[] ty = new byte[newSize];
+        float[] w = new float[newSize];
+        int[] ds = new int[newSize];
+
+        System.arraycopy(targets, from, t, 0, at);
+        System.arraycopy(types, from, ty, 0, at);
+        System.arraycopy(weights, from, w, 0, at);
+        System.arraycopy(epochDays, from, ds, 0, at);
+
+        int tail = size - at - (replace ? 1 : 0);
+        int srcTail = from + at + (replace ? 1 : 0);
+        System.arraycopy(targets, srcTail, t, at + 1, tail);
+        System.arraycopy(types, srcTail, ty, at + 1, tail);
+        System.arraycopy(weights, srcTail, w, at + 1, tail);
+        System.arraycopy(epochDays, srcTail, ds, at + 1, tail);
+
+        t[at] = target;
+        ty[at] = type;
+        w[at] = weight;
+        ds[at] = epochDay;
+        return new EdgeRow(t, ty, w, ds, 0, newSize);
+    }
+
+    static EdgeRow single(int target, byte type, float weight, int epochDay) {
+        return new EdgeRow(new int[] { target }, new byte[] { type }, new float[] { weight },
+                new int[] { epochDay }, 0, 1);
+    }
+}
@@ -0,0 +1,13 @@
+package app.falcon.trust.graph;
+
+import app.falcon.core.domain.TrustRelation;
+
+/**
+ * Local trust carried by a single edge, as seen by {@link EigenTrust}.
+ * Non-positive values mean the edge does not propagate trust.
+ */
+@FunctionalInterface
+public interface EdgeWeigher {
+
+    double weigh(TrustRelation.TrustType type, int epochDay);
+}
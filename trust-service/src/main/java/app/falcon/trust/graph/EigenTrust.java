@@ -0,0 +1,262 @@
+package app.falcon.trust.graph;
+
+import app.falcon.core.domain.TrustRelation;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * Global trust over the whole graph, computed EigenTrust-style as a
+ * personalised PageRank seeded from a set of pre-trusted DIDs.
+ *
+ * <p>
+ * Each node's positive local trust is normalised to sum to one and the vector
+ * t<sub>k+1</sub> = (1 - a) C<sup>T</sup> t<sub>k</sub> + a p is iterated until
+ * its L1 change drops below a tolerance. Mass held by nodes that trust nobody
+ * is returned to the seeds, so t always sums to one.
+ * </p>
+ *
+ * <p>
+ * The incoming edges are laid out once as a transposed CSR of primitive
+ * arrays, so an iteration is a pull over contiguous memory with no
+ * synchronisation: node ranges are split into chunks of roughly equal edge
+ * count and swept in parallel on a {@link ForkJoinPool}.
+ * </p>
+ */
+public final class EigenTrust {
+
+    private static final TrustRelation.TrustType[] TYPES = TrustRelation.TrustType.values();
+    private static final long MIN_CHUNK_COST = 1 << 16;
+
+    private final int nodeCount;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final float[] inWeights;
+    private final boolean[] dangling;
+    private final double[] pretrust;
+    private final int[] chunkStart;
+    private final ForkJoinPool pool;
+
+    /** Outcome of {@link #run}; {@code trust} is indexed by node id and sums to one. */
+    public record Result(double[] trust, int iterations, double residual) {
+    }
+
+    private EigenTrust(int nodeCount, int[] inOffsets, int[] inSources, float[] inWeights, boolean[] dangling,
+            double[] pretrust, ForkJoinPool pool) {
+        this.nodeCount = nodeCount;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.inWeights = inWeights;
+        this.dangling = dangling;
+        this.pretrust = pretrust;
+        this.pool = pool;
+        this.chunkStart = chunks(inOffsets, nodeCount, pool.getParallelism());
+    }
+
+    /**
+     * Transposes {@code adjacency} into the iteration layout.
+     *
+     * @param seeds node ids of the pre-trusted DIDs; when empty, every node is
+     *              equally pre-trusted and the result is plain PageRank
+     */
+    public static EigenTrust of(TrustAdjacency adjacency, EdgeWeigher weigher, int[] seeds, ForkJoinPool pool) {
+        int n = adjacency.nodeCount();
+        int[] offsets = adjacency.offsets;
+        int[] targets = adjacency.targets;
+        byte[] types = adjacency.types;
+        int[] epochDays = adjacency.epochDays;
+
+        // Local trust of every edge, and each source's total, one row per task
+        float[] local = new float[adjacency.edgeCount()];
+        double[] outSum = new double[n];
+        pool.submit(() -> IntStream.range(0, n).parallel().forEach(s -> {
+            double sum = 0.0;
+            for (int e = offsets[s]; e < offsets[s + 1]; e++) {
+                double w = weigher.weigh(TYPES[types[e]], epochDays[e]);
+                if (w > 0) {
+                    local[e] = (float) w;
+                    sum += w;
+                }
+            }
+            outSum[s] = sum;
+        })).join();
+
+        int[] inOffsets = new int[n + 1];
+        for (int e = 0; e < local.length; e++) {
+            if (local[e] > 0)
+                inOffsets[targets[e] + 1]++;
+        }
+        for (int j = 0; j < n; j++) {
+            inOffsets[j + 1] += inOffsets[j];
+        }
+
+        int[] inSources = new int[inOffsets[n]];
+        float[] inWeights = new float[inOffsets[n]];
+        int[] cursor = Arrays.copyOf(inOffsets, n);
+        boolean[] dangling = new boolean[n];
+        for (int s = 0; s < n; s++) {
+            if (outSum[s] == 0) {
+                dangling[s] = true;
+                continue;
+            }
+            for (int e = offsets[s]; e < offsets[s + 1]; e++) {
+                if (local[e] > 0) {
+                    int at = cursor[targets[e]]++;
+                    inSources[at] = s;
+                    inWeights[at] = (float) (local[e] / outSum[s]);
+                }
+            }
+        }
+
+        double[] pretrust = new double[n];
+        int seedCount = 0;
+        for (int seed : seeds) {
+            if (seed >= 0 && seed < n && pretrust[seed] == 0) {
+                pretrust[seed] = 1;
+                seedCount++;
+            }
+        }
+        if (seedCount == 0) {
+            Arrays.fill(pretrust, 1.0 / Math.max(1, n));
+        } else {
+            for (int j = 0; j < n; j++) {
+                pretrust[j] /= seedCount;
+            }
+        }
+
+        return new EigenTrust(n, inOffsets, inSources, inWeights, dangling, pretrust, pool);
+    }
+
+    /**
+     * @param teleport      probability a of jumping back to the pre-trusted
+     *                      seeds at each step
+     * @param maxIterations upper bound on sweeps
+     * @param tolerance     stop once the L1 change of an iteration falls below
+     *                      this
+     */
+    public Result run(double teleport, int maxIterations, double tolerance) {
+        if (nodeCount == 0)
+            return new Result(new double[0], 0, 0.0);
+
+        double[] trust = pretrust.clone();
+        double[] next = new double[nodeCount];
+        double danglingMass = 0.0;
+        for (int j = 0; j < nodeCount; j++) {
+            if (dangling[j])
+                danglingMass += trust[j];
+        }
+
+        int chunks = chunkStart.length - 1;
+        double[] partialDelta = new double[chunks];
+        double[] partialDangling = new double[chunks];
+        double residual = Double.POSITIVE_INFINITY;
+        int iterations = 0;
+
+        while (iterations < maxIterations && residual >= tolerance) {
+            double jump = teleport + (1 - teleport) * danglingMass;
+            pool.invoke(new Sweep(0, chunks, trust, next, 1 - teleport, jump, partialDelta, partialDangling));
+
+            residual = 0.0;
+            danglingMass = 0.0;
+            for (int c = 0; c < chunks; c++) {
+                residual += partialDelta[c];
+                danglingMass += partialDangling[c];
+            }
+            double[] swap = trust;
+            trust = next;
+            next = swap;
+            iterations++;
+        }
+        return new Result(trust, iterations, residual);
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /** Edges that carry positive trust. */
+    public int edgeCount() {
+        return inSources.length;
+    }
+
+    /** Bytes held by the iteration layout, including the two trust vectors of a run. */
+    public long footprintBytes() {
+        return 4L * inOffsets.length + 8L * inSources.length + nodeCount + 8L * pretrust.length
+                + 16L * nodeCount + 4L * chunkStart.length;
+    }
+
+    /** One parallel sweep over chunks {@code [lo, hi)}, split in halves down to single chunks. */
+    private final class Sweep extends RecursiveAction {
+
+        private final int lo;
+        private final int hi;
+        private final double[] trust;
+        private final double[] next;
+        private final double follow;
+        private final double jump;
+        private final double[] partialDelta;
+        private final double[] partialDangling;
+
+        Sweep(int lo, int hi, double[] trust, double[] next, double follow, double jump, double[] partialDelta,
+                double[] partialDangling) {
+            this.lo = lo;
+            this.hi = hi;
+            this.trust = trust;
+            this.next = next;
+            this.follow = follow;
+            this.jump = jump;
+            this.partialDelta = partialDelta;
+            this.partialDangling = partialDangling;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Sweep(lo, mid, trust, next, follow, jump, partialDelta, partialDangling),
+                        new Sweep(mid, hi, trust, next, follow, jump, partialDelta, partialDangling));
+                return;
+            }
+
+            double delta = 0.0;
+            double danglingMass = 0.0;
+            for (int j = chunkStart[lo], end = chunkStart[lo + 1]; j < end; j++) {
+                double sum = 0.0;
+                for (int e = inOffsets[j], stop = inOffsets[j + 1]; e < stop; e++) {
+                    sum += inWeights[e] * trust[inSources[e]];
+                }
+                double value = follow * sum + jump * pretrust[j];
+                next[j] = value;
+                delta += Math.abs(value - trust[j]);
+                if (dangling[j])
+                    danglingMass += value;
+            }
+            partialDelta[lo] = delta;
+            partialDangling[lo] = danglingMass;
+        }
+    }
+
+    /**
+     * Splits the nodes into contiguous chunks of roughly equal cost (in-edges
+     * plus nodes), about eight per worker so stragglers even out.
+     */
+    private static int[] chunks(int[] inOffsets, int nodeCount, int parallelism) {
+        long total = (long) inOffsets[nodeCount] + nodeCount;
+        long target = Math.max(MIN_CHUNK_COST, total / (parallelism * 8L));
+
+        int[] starts = new int[(int) Math.min(nodeCount, total / target + 2) + 1];
+        int count = 0;
+        long cost = 0;
+        for (int j = 0; j < nodeCount; j++) {
+            if (cost == 0)
+                starts[count++] = j;
+            cost += inOffsets[j + 1] - inOffsets[j] + 1;
+            if (cost >= target)
+                cost = 0;
+        }
+        starts[count] = nodeCount;
+        return Arrays.copyOf(starts, count + 1);
+    }
+}
@@ -0,0 +1,163 @@
+package app.falcon.trust.graph;
+
+import app.falcon.core.domain.TrustRelation;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed-sparse-row (CSR) adjacency of the trust graph.
+ *
+ * <p>
+ * The outgoing edges of node {@code s} live at
+ * {@code [offsets[s], offsets[s + 1])} in the parallel {@code targets},
+ * {@code types}, {@code weights} and {@code epochDays} arrays, sorted by
+ * target id so a single edge can be found with a binary search.
+ * </p>
+ */
+public final class TrustAdjacency {
+
+    static final TrustAdjacency EMPTY = new TrustAdjacency(new int[1], new int[0], new byte[0], new float[0],
+            new int[0]);
+
+    final int[] offsets;
+    final int[] targets;
+    final byte[] types;
+    final float[] weights;
+    final int[] epochDays;
+
+    TrustAdjacency(int[] offsets, int[] targets, byte[] types, float[] weights, int[] epochDays) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.types = types;
+        this.weights = weights;
+        this.epochDays = epochDays;
+    }
+
+    public int nodeCount() {
+        return offsets.length - 1;
+    }
+
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    public int degree(int source) {
+        return source < nodeCount() ? offsets[source + 1] - offsets[source] : 0;
+    }
+
+    /**
+     * @return the outgoing edges of {@code source}, or {@code null} if it has none
+     */
+    public EdgeRow row(int source) {
+        if (source >= nodeCount())
+            return null;
+        int from = offsets[source];
+        int to = offsets[source + 1];
+        return from == to ? null : new EdgeRow(targets, types, weights, epochDays, from, to);
+    }
+
+    public static Builder builder(int expectedEdges) {
+        return new Builder(expectedEdges);
+    }
+
+    /**
+     * Accumulates edges in growable primitive arrays and lays them out as CSR.
+     * Each (source, target) pair must be added at most once.
+     */
+    public static final class Builder {
+
+        private int[] sources;
+        private int[] targets;
+        private byte[] types;
+        private float[] weights;
+        private int[] epochDays;
+        private int size;
+
+        private Builder(int expectedEdges) {
+            int capacity = Math.max(16, expectedEdges);
+            this.sources = new int[capacity];
+            this.targets = new int[capacity];
+            this.types = new byte[capacity];
+            this.weights = new float[capacity];
+            this.epochDays = new int[capacity];
+        }
+
+        public Builder add(int source, int target, TrustRelation.TrustType type, float weight, int epochDay) {
+            if (size == sources.length) {
+                int capacity = size * 2;
+                sources = Arrays.copyOf(sources, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                types = Arrays.copyOf(types, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+                epochDays = Arrays.copyOf(epochDays, capacity);
+            }
+            sources[size] = source;
+            targets[size] = target;
+            types[size] = (byte) type.ordinal();
+            weights[size] = weight;
+            epochDays[size] = epochDay;
+            size++;
+            return this;
+        }
+
+        /**
+         * Counting-sorts the edges by source, then sorts each row by target.
+         *
+         * @param nodeCount number of interned ids; every source must be below it
+         */
+        public TrustAdjacency build(int nodeCount) {
+            int[] offsets = new int[nodeCount + 1];
+            for (int i = 0; i < size; i++) {
+                offsets[sources[i] + 1]++;
+            }
+            for (int s = 0; s < nodeCount; s++) {
+                offsets[s + 1] += offsets[s];
+            }
+
+            int[] t = new int[size];
+            byte[] ty = new byte[size];
+            float[] w = new float[size];
+            int[] ds = new int[size];
+            int[] cursor = Arrays.copyOf(offsets, nodeCount);
+            for (int i = 0; i < size; i++) {
+                int at = cursor[sources[i]]++;
+                t[at] = targets[i];
+                ty[at] = types[i];
+                w[at] = weights[i];
+                ds[at] = epochDays[i];
+            }
+
+            long[] scratch = new long[0];
+            for (int s = 0; s < nodeCount; s++) {
+                int from = offsets[s];
+                int len = offsets[s + 1] - from;
+                if (len < 2)
+                    continue;
+                if (scratch.length < len)
+                    scratch = new long[Math.max(len, scratch.length * 2)];
+                sortRow(t, ty, w, ds, from, len, scratch);
+            }
+
+            return new TrustAdjacency(offsets, t, ty, w, ds);
+        }
+
+        /** Sorts one row by target, carrying the parallel arrays along. */
+        private static void sortRow(int[] t, byte[] ty, float[] w, int[] ds, int from, int len, long[] scratch) {
+            for (int i = 0; i < len; i++) {
+                scratch[i] = ((long) t[from + i] << 32) | i;
+            }
+            Arrays.sort(scratch, 0, len);
+
+            byte[] ty0 = Arrays.copyOfRange(ty, from, from + len);
+            float[] w0 = Arrays.copyOfRange(w, from, from + len);
+            int[] ds0 = Arrays.copyOfRange(ds, from, from + len);
+            for (int i = 0; i < len; i++) {
+                int src = (int) scratch[i];
+                t[from + i] = (int) (scratch[i] >>> 32);
+                ty[from + i] = ty0[src];
+                w[from + i] = w0[src];
+                ds[from + i] = ds0[src];
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package app.falcon.trust.graph;
+
+import app.falcon.core.domain.TrustRelation;
+import app.falcon.trust.repository.TrustRelationRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resident, in-memory copy of the {@code trust_relations} table.
+ *
+ * <p>
+ * The bulk of the graph is an immutable {@link TrustAdjacency} built at
+ * startup. Writes from {@link #put} never touch it; instead the written
+ * source's row is copied into a small overlay, which readers consult first.
+ * Once the overlay holds more than {@code compactionThreshold} rows it is
+ * merged into a fresh CSR and swapped in.
+ * </p>
+ *
+ * <p>
+ * Reads are lock-free. Writes are serialised on the graph monitor.
+ * </p>
+ */
+@Component
+@Slf4j
+public class TrustGraph {
+
+    private final TrustRelationRepository repository;
+    private final int compactionThreshold;
+    private final DidInterner interner = new DidInterner();
+    private final ConcurrentHashMap<Integer, EdgeRow> overlay = new ConcurrentHashMap<>();
+
+    private volatile TrustAdjacency base = TrustAdjacency.EMPTY;
+    private volatile long edgeCount;
+
+    public TrustGraph(TrustRelationRepository repository,
+            @Value("${falcon.trust.graph.compaction-threshold:4096}") int compactionThreshold) {
+        this.repository = repository;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * (Re)loads the whole graph from the database.
+     */
+    @PostConstruct
+    public void load() {
+        long start = System.nanoTime();
+        List<TrustRelation> relations = repository.findAll();
+
+        synchronized (this) {
+            TrustAdjacency.Builder builder = TrustAdjacency.builder(relations.size());
+            for (TrustRelation relation : relations) {
+                builder.add(interner.intern(relation.getSourceDid()),
+                        interner.intern(relation.getTargetDid()),
+                        relation.getType(),
+                        weightOf(relation),
+                        epochDayOf(relation));
+            }
+            base = builder.build(interner.size());
+            overlay.clear();
+            edgeCount = base.edgeCount();
+        }
+
+        log.info("Trust graph loaded: {} DIDs, {} edges in {} ms",
+                interner.size(), edgeCount, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Applies an inserted or updated relation to the in-memory graph.
+     */
+    public synchronized void put(TrustRelation relation) {
+        int source = interner.intern(relation.getSourceDid());
+        int target = interner.intern(relation.getTargetDid());
+        byte type = (byte) relation.getType().ordinal();
+        float weight = weightOf(relation);
+        int epochDay = epochDayOf(relation);
+
+        EdgeRow current = row(source);
+        EdgeRow updated;
+        if (current == null) {
+            updated = EdgeRow.single(target, type, weight, epochDay);
+        } else {
+            updated = current.with(target, type, weight, epochDay);
+        }
+        if (updated.size() != (current == null ? 0 : current.size())) {
+            edgeCount++;
+        }
+        overlay.put(source, updated);
+
+        if (overlay.size() > compactionThreshold) {
+            compact();
+        }
+    }
+
+    /**
+     * @return the outgoing edges of node {@code source}, or {@code null} if it has
+     *         none
+     */
+    public EdgeRow row(int source) {
+        EdgeRow written = overlay.get(source);
+        return written != null ? written : base.row(source);
+    }
+
+    /**
+     * @return a consistent, immutable CSR of the whole graph, folding any pending
+     *         overlay rows in first
+     */
+    public synchronized TrustAdjacency adjacency() {
+        if (!overlay.isEmpty()) {
+            compact();
+        }
+        return base;
+    }
+
+    /**
+     * @return the node id of {@code did}, or {@code -1} if the DID has no edges
+     *         in or out
+     */
+    public int idOf(String did) {
+        return did == null ? -1 : interner.idOf(did);
+    }
+
+    public String didOf(int id) {
+        return interner.didOf(id);
+    }
+
+    public int nodeCount() {
+        return interner.size();
+    }
+
+    public long edgeCount() {
+        return edgeCount;
+    }
+
+    /** Merges the overlay rows into a new CSR. Caller holds the monitor. */
+    private void compact() {
+        long start = System.nanoTime();
+        TrustAdjacency old = base;
+        int nodeCount = interner.size();
+
+        int[] offsets = new int[nodeCount + 1];
+        for (int s = 0; s < nodeCount; s++) {
+            EdgeRow written = overlay.get(s);
+            offsets[s + 1] = offsets[s] + (written != null ? written.size() : old.degree(s));
+        }
+
+        int edges = offsets[nodeCount];
+        int[] targets = new int[edges];
+        byte[] types = new byte[edges];
+        float[] weights = new float[edges];
+        int[] epochDays = new int[edges];
+        for (int s = 0; s < nodeCount; s++) {
+            EdgeRow row = row(s);
+            if (row == null)
+                continue;
+            int at = offsets[s];
+            int len = row.size();
+            System.arraycopy(row.targets, row.from, targets, at, len);
+            System.arraycopy(row.types, row.from, types, at, len);
+            System.arraycopy(row.weights, row.from, weights, at, len);
+            System.arraycopy(row.epochDays, row.from, epochDays, at, len);
+        }
+
+        // Publish the new base before dropping overlay rows so a reader that misses
+        // the overlay is guaranteed to see the merged row.
+        base = new TrustAdjacency(offsets, targets, types, weights, epochDays);
+        overlay.clear();
+
+        log.debug("Trust graph compacted: {} edges in {} ms", edges, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static int epochDayOf(TrustRelation relation) {
+        return (int) Math.floorDiv(relation.getTimestamp().getEpochSecond(), 86_400L);
+    }
+
+    private static float weightOf(TrustRelation relation) {
+        return relation.getWeight() != null ? relation.getWeight().floatValue() : Float.NaN;
+    }
+}
@@ -0,0 +1,80 @@
+package app.falcon.trust.graph;
+
+import java.time.Instant;
+
+/**
+ * Immutable, versioned result of one global trust computation.
+ *
+ * <p>
+ * Scores are indexed by node id and normalised to [0, 1] on a log scale
+ * relative to the average node: a DID holding no more than its uniform share
+ * (1/n) of global trust scores 0, the most trusted DID scores 1. DIDs interned
+ * after the snapshot was computed score 0 until the next run.
+ * </p>
+ */
+public final class TrustRankSnapshot {
+
+    public static final TrustRankSnapshot EMPTY = new TrustRankSnapshot(0, Instant.EPOCH, new float[0], 0, 0.0);
+
+    private final long version;
+    private final Instant computedAt;
+    private final float[] scores;
+    private final int iterations;
+    private final double residual;
+
+    private TrustRankSnapshot(long version, Instant computedAt, float[] scores, int iterations, double residual) {
+        this.version = version;
+        this.computedAt = computedAt;
+        this.scores = scores;
+        this.iterations = iterations;
+        this.residual = residual;
+    }
+
+    public static TrustRankSnapshot of(long version, Instant computedAt, EigenTrust.Result result) {
+        double[] trust = result.trust();
+        int n = trust.length;
+
+        double max = 0.0;
+        for (double t : trust) {
+            max = Math.max(max, t);
+        }
+        double top = Math.log(max * n);
+
+        float[] scores = new float[n];
+        if (top > 0) {
+            for (int j = 0; j < n; j++) {
+                double relative = trust[j] * n;
+                scores[j] = relative > 1 ? (float) (Math.log(relative) / top) : 0f;
+            }
+        }
+        return new TrustRankSnapshot(version, computedAt, scores, result.iterations(), result.residual());
+    }
+
+    /**
+     * @return the normalised global trust of {@code node}, or 0 if it is unknown
+     *         to this snapshot
+     */
+    public double scoreOf(int node) {
+        return node >= 0 && node < scores.length ? scores[node] : 0.0;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public Instant computedAt() {
+        return computedAt;
+    }
+
+    public int nodeCount() {
+        return scores.length;
+    }
+
+    public int iterations() {
+        return iterations;
+    }
+
+    public double residual() {
+        return residual;
+    }
+}
@@ -2,8 +2,16 @@ package app.falcon.trust.repository;
 
 import app.falcon.core.domain.Channel;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface ChannelRepository extends JpaRepository<Channel, Long> {
+
+    /** Id and required tier of every gated channel. */
+    @Query("select new app.falcon.trust.repository.ChannelTier(c.id, c.requiredTier) "
+            + "from Channel c where c.requiredTier is not null and c.requiredTier <> ''")
+    List<ChannelTier> findChannelTiers();
 }
@@ -0,0 +1,7 @@
+package app.falcon.trust.repository;
+
+/**
+ * Projection of the columns of {@code Channel} that decide gated access.
+ */
+public record ChannelTier(Long channelId, String requiredTier) {
+}
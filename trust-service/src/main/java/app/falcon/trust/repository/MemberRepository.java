@@ -2,10 +2,17 @@ package app.falcon.trust.repository;
 
 import app.falcon.core.domain.Member;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface MemberRepository extends JpaRepository<Member, Long> {
     Optional<Member> findByDidAndServerId(String did, Long serverId);
+
+    /** Server, DID and tier of every member with an explicit tier. */
+    @Query("select new app.falcon.trust.repository.MemberTier(m.server.id, m.did, m.membershipTier) "
+            + "from Member m where m.membershipTier is not null")
+    List<MemberTier> findMemberTiers();
 }
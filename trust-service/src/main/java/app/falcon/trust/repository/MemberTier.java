@@ -0,0 +1,7 @@
+package app.falcon.trust.repository;
+
+/**
+ * Projection of the columns of {@code Member} that decide gated access.
+ */
+public record MemberTier(Long serverId, String did, String tier) {
+}
@@ -0,0 +1,105 @@
+package app.falcon.trust.service;
+
+import app.falcon.core.domain.TrustRelation;
+import app.falcon.trust.graph.EigenTrust;
+import app.falcon.trust.graph.TrustAdjacency;
+import app.falcon.trust.graph.TrustGraph;
+import app.falcon.trust.graph.TrustRankSnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Background job that periodically recomputes global trust over the whole
+ * {@link TrustGraph} with {@link EigenTrust}, seeded from the authority DID and
+ * any configured {@code seed-dids}.
+ *
+ * <p>
+ * Each run publishes a new immutable {@link TrustRankSnapshot} through a
+ * volatile field, so readers never lock and always see a complete result.
+ * </p>
+ */
+@Component
+@Slf4j
+public class GlobalTrustJob {
+
+    private final TrustGraph graph;
+    private final List<String> seedDids;
+    private final double teleport;
+    private final int maxIterations;
+    private final double tolerance;
+    private final ForkJoinPool pool;
+    private final Timer computeTimer;
+
+    private volatile TrustRankSnapshot snapshot = TrustRankSnapshot.EMPTY;
+
+    public GlobalTrustJob(TrustGraph graph,
+            MeterRegistry meterRegistry,
+            @Value("${falcon.trust.authority-did}") String authorityDid,
+            @Value("${falcon.trust.rank.seed-dids:}") List<String> seedDids,
+            @Value("${falcon.trust.rank.teleport:0.15}") double teleport,
+            @Value("${falcon.trust.rank.max-iterations:50}") int maxIterations,
+            @Value("${falcon.trust.rank.tolerance:1e-6}") double tolerance,
+            @Value("${falcon.trust.rank.parallelism:0}") int parallelism) {
+        this.graph = graph;
+        this.seedDids = Stream.concat(Stream.of(authorityDid), seedDids.stream())
+                .filter(did -> did != null && !did.isBlank())
+                .distinct()
+                .toList();
+        this.teleport = teleport;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.computeTimer = Timer.builder("falcon.trust.rank.compute")
+                .description("Time to recompute global trust over the whole graph")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the latest published snapshot; {@link TrustRankSnapshot#EMPTY}
+     *         until the first run completes
+     */
+    public TrustRankSnapshot snapshot() {
+        return snapshot;
+    }
+
+    @Scheduled(initialDelayString = "${falcon.trust.rank.initial-delay-ms:30000}",
+            fixedDelayString = "${falcon.trust.rank.interval-ms:300000}")
+    public synchronized void recompute() {
+        long start = System.nanoTime();
+        TrustAdjacency adjacency = graph.adjacency();
+        int[] seeds = seedDids.stream().mapToInt(graph::idOf).filter(id -> id >= 0).toArray();
+
+        int today = TemporalDecay.today();
+        EigenTrust eigenTrust = EigenTrust.of(adjacency,
+                (type, epochDay) -> type == TrustRelation.TrustType.TRUST
+                        ? TemporalDecay.weight(today - epochDay)
+                        : 0.0,
+                seeds, pool);
+        EigenTrust.Result result = eigenTrust.run(teleport, maxIterations, tolerance);
+
+        TrustRankSnapshot published = TrustRankSnapshot.of(snapshot.version() + 1, Instant.now(), result);
+        snapshot = published;
+
+        long elapsed = System.nanoTime() - start;
+        computeTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Global trust v{} computed: {} DIDs, {} trust edges, {} seeds, {} iterations (residual {}) in {} ms",
+                published.version(), eigenTrust.nodeCount(), eigenTrust.edgeCount(), seeds.length,
+                result.iterations(), String.format("%.2e", result.residual()), elapsed / 1_000_000);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,242 @@
+package app.falcon.trust.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Cached, batched client for siv-service's Intelligence Bias I(v).
+ *
+ * <p>
+ * Values are held in a bounded Caffeine cache for {@code cache-ttl}. Concurrent
+ * lookups of the same DID share one in-flight future. Single-DID misses are
+ * parked for up to {@code batch-window} and sent together to
+ * {@code POST /api/intelligence/bias}, so a burst of score requests for
+ * different authors costs one round trip instead of one each.
+ * </p>
+ *
+ * <p>
+ * If siv-service is slow or down the neutral bias (1.0) is returned and cached
+ * for {@code failure-ttl}, so an outage does not make every request wait for
+ * the timeout.
+ * </p>
+ */
+@Component
+@Slf4j
+public class IntelligenceBiasClient {
+
+    static final double NEUTRAL_BIAS = 1.0;
+
+    private record Bias(double value, boolean fallback) {
+    }
+
+    private final WebClient webClient;
+    private final Duration timeout;
+    private final Duration batchWindow;
+    private final int maxBatchSize;
+    private final AsyncLoadingCache<String, Bias> cache;
+    private final ScheduledExecutorService batchScheduler;
+
+    private final Timer fetchTimer;
+    private final DistributionSummary batchSize;
+    private final Counter fallbacks;
+
+    private final Object pendingLock = new Object();
+    private Map<String, CompletableFuture<Bias>> pending = new HashMap<>();
+
+    public IntelligenceBiasClient(WebClient.Builder webClientBuilder,
+            MeterRegistry meterRegistry,
+            @Value("${falcon.services.siv-url:http://localhost:8082}") String sivServiceUrl,
+            @Value("${falcon.trust.bias.cache-ttl:60s}") Duration cacheTtl,
+            @Value("${falcon.trust.bias.failure-ttl:5s}") Duration failureTtl,
+            @Value("${falcon.trust.bias.max-size:100000}") long maxSize,
+            @Value("${falcon.trust.bias.timeout:500ms}") Duration timeout,
+            @Value("${falcon.trust.bias.batch-window:5ms}") Duration batchWindow,
+            @Value("${falcon.trust.bias.max-batch-size:500}") int maxBatchSize) {
+        this.webClient = webClientBuilder.baseUrl(sivServiceUrl).build();
+        this.timeout = timeout;
+        this.batchWindow = batchWindow;
+        this.maxBatchSize = maxBatchSize;
+        this.batchScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "intelligence-bias-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.<String, Bias>writing(
+                        (did, bias) -> bias.fallback() ? failureTtl : cacheTtl))
+                .recordStats()
+                .buildAsync(new AsyncCacheLoader<>() {
+                    @Override
+                    public CompletableFuture<Bias> asyncLoad(String did, Executor executor) {
+                        return enqueue(did);
+                    }
+
+                    @Override
+                    public CompletableFuture<Map<String, Bias>> asyncLoadAll(Set<? extends String> dids,
+                            Executor executor) {
+                        // getBiases asks for at most max-batch-size DIDs at once
+                        return fetch(dids);
+                    }
+                });
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "intelligence-bias");
+        this.fetchTimer = Timer.builder("falcon.trust.bias.fetch")
+                .description("Latency of batched intelligence-bias requests to siv-service")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("falcon.trust.bias.batch.size")
+                .description("DIDs per intelligence-bias request")
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder("falcon.trust.bias.fallback")
+                .description("Lookups answered with the neutral bias because siv-service did not respond in time")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the bias for {@code did}, or 1.0 if it cannot be fetched within
+     *         {@code timeout}
+     */
+    public double getBias(String did) {
+        try {
+            return cache.get(did).get(timeout.toMillis(), TimeUnit.MILLISECONDS).value();
+        } catch (Exception e) {
+            fallbacks.increment();
+            log.warn("Failed to fetch intelligence bias for {}: {}. Falling back to 1.0", did, e.getMessage());
+            return NEUTRAL_BIAS;
+        }
+    }
+
+    /**
+     * Looks up many DIDs at once; cache misses are fetched together, in
+     * requests of at most {@code max-batch-size} DIDs. A request that does not
+     * answer within {@code timeout} only costs the DIDs it was fetching.
+     *
+     * @return a bias for every requested DID, 1.0 where none could be fetched
+     */
+    public Map<String, Double> getBiases(Collection<String> dids) {
+        List<String> all = List.copyOf(new LinkedHashSet<>(dids));
+        List<CompletableFuture<Map<String, Bias>>> chunks = new ArrayList<>();
+        for (int from = 0; from < all.size(); from += maxBatchSize) {
+            chunks.add(cache.getAll(all.subList(from, Math.min(all.size(), from + maxBatchSize))));
+        }
+        try {
+            CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // Whatever has not been answered by now falls back below
+        }
+
+        Map<String, Double> result = new HashMap<>();
+        int missing = 0;
+        for (String did : all) {
+            CompletableFuture<Bias> bias = cache.asMap().get(did);
+            if (bias != null && bias.isDone() && !bias.isCompletedExceptionally()) {
+                result.put(did, bias.join().value());
+            } else {
+                result.put(did, NEUTRAL_BIAS);
+                missing++;
+            }
+        }
+        if (missing > 0) {
+            fallbacks.increment(missing);
+            log.warn("Failed to fetch intelligence bias for {} of {} DIDs in time. Falling back to 1.0", missing,
+                    all.size());
+        }
+        return result;
+    }
+
+    /** Parks a single-DID miss until the batch fills up or the window closes. */
+    private CompletableFuture<Bias> enqueue(String did) {
+        CompletableFuture<Bias> future;
+        Map<String, CompletableFuture<Bias>> full = null;
+
+        synchronized (pendingLock) {
+            future = pending.computeIfAbsent(did, k -> new CompletableFuture<>());
+            if (pending.size() >= maxBatchSize) {
+                full = pending;
+                pending = new HashMap<>();
+            } else if (pending.size() == 1) {
+                batchScheduler.schedule(this::flushPending, batchWindow.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        if (full != null) {
+            dispatch(full);
+        }
+        return future;
+    }
+
+    private void flushPending() {
+        Map<String, CompletableFuture<Bias>> batch;
+        synchronized (pendingLock) {
+            if (pending.isEmpty())
+                return;
+            batch = pending;
+            pending = new HashMap<>();
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(Map<String, CompletableFuture<Bias>> batch) {
+        fetch(batch.keySet()).whenComplete((biases, error) -> batch.forEach(
+                (did, future) -> future.complete(biases != null ? biases.get(did) : new Bias(NEUTRAL_BIAS, true))));
+    }
+
+    private CompletableFuture<Map<String, Bias>> fetch(Collection<? extends String> dids) {
+        batchSize.record(dids.size());
+        Timer.Sample sample = Timer.start();
+
+        return webClient.post()
+                .uri("/api/intelligence/bias")
+                .bodyValue(Map.of("dids", List.copyOf(dids)))
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {
+                })
+                .timeout(timeout)
+                .map(res -> {
+                    Map<?, ?> raw = (Map<?, ?>) res.get("biases");
+                    Map<String, Bias> biases = new HashMap<>();
+                    for (String did : dids) {
+                        Object bias = raw != null ? raw.get(did) : null;
+                        biases.put(did, bias instanceof Number n
+                                ? new Bias(n.doubleValue(), false)
+                                : new Bias(NEUTRAL_BIAS, false));
+                    }
+                    return biases;
+                })
+                .onErrorResume(e -> {
+                    log.warn("Intelligence bias request for {} DIDs failed: {}", dids.size(), e.getMessage());
+                    fallbacks.increment(dids.size());
+                    Map<String, Bias> neutral = new HashMap<>();
+                    dids.forEach(did -> neutral.put(did, new Bias(NEUTRAL_BIAS, true)));
+                    return Mono.just(neutral);
+                })
+                .doFinally(signal -> sample.stop(fetchTimer))
+                .toFuture();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        batchScheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,197 @@
+package app.falcon.trust.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Pushes membership changes to subscribed gateways over server-sent events, so
+ * they can drop cached access decisions as soon as a tier changes instead of
+ * waiting for them to expire.
+ *
+ * <p>
+ * Every subscription starts with a {@code connected} event; a subscriber that
+ * reconnects may have missed invalidations and should drop everything it has
+ * cached when it sees one. Each {@code invalidate} event carries an
+ * {@link Invalidation} whose {@code null} fields match anything. A
+ * {@code heartbeat} is sent every {@code heartbeat-interval-ms}, so
+ * subscribers can tell a quiet stream from a dead one.
+ * </p>
+ *
+ * <p>
+ * Subscribers that ask for snapshots also receive the whole
+ * {@link MembershipTiers} table as a {@code snapshot} event right after
+ * connecting and again after every rebuild that changed it, and can evaluate
+ * access themselves. A single authority tier change is sent as a
+ * {@code delta} event instead, which applies to the table of the version just
+ * before it.
+ * </p>
+ *
+ * <p>
+ * Events are written by one sender thread in the order they were published,
+ * so publishing never blocks the caller on slow subscribers or on serialising
+ * the table.
+ * </p>
+ */
+@Component
+@Slf4j
+public class MembershipEvents {
+
+    /** Decisions to drop; a {@code null} field matches every value. */
+    public record Invalidation(String userDid, Long serverId, Long channelId) {
+    }
+
+    /**
+     * Table {@code version}, which sets the authority tier of {@code userDid} to
+     * {@code authorityTier}, or removes it if {@code null}.
+     */
+    public record Delta(long version, String userDid, String authorityTier) {
+    }
+
+    private record Subscriber(SseEmitter emitter, boolean snapshots) {
+    }
+
+    private final Duration timeout;
+    private final Executor sender;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private final Counter published;
+    private final Counter snapshots;
+    private final Counter deltas;
+
+    @Autowired
+    public MembershipEvents(MeterRegistry meterRegistry,
+            @Value("${falcon.trust.membership.events.timeout:30m}") Duration timeout) {
+        this(meterRegistry, timeout, Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "membership-events");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    MembershipEvents(MeterRegistry meterRegistry, Duration timeout, Executor sender) {
+        this.timeout = timeout;
+        this.sender = sender;
+
+        this.published = Counter.builder("falcon.trust.membership.invalidations")
+                .description("Membership invalidation events pushed to subscribers")
+                .register(meterRegistry);
+        this.snapshots = Counter.builder("falcon.trust.membership.snapshots")
+                .description("Membership tier snapshots pushed to subscribers")
+                .register(meterRegistry);
+        this.deltas = Counter.builder("falcon.trust.membership.deltas")
+                .description("Membership tier deltas pushed to subscribers")
+                .register(meterRegistry);
+        Gauge.builder("falcon.trust.membership.subscribers", subscribers, List::size)
+                .description("Open membership event streams")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a new event stream. It completes after {@code timeout}, after which
+     * the subscriber is expected to reconnect.
+     *
+     * @param snapshot supplies the current table, to be followed by every new
+     *                 one, or {@code null} for invalidations only
+     */
+    public SseEmitter subscribe(Supplier<MembershipTiers> snapshot) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter, snapshot != null);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscribers.remove(subscriber));
+        try {
+            emitter.send(SseEmitter.event().name("connected").data(""));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        subscribers.add(subscriber);
+        if (snapshot != null) {
+            // Read on the sender thread: every delta queued before is already part of it
+            sender.execute(() -> send(subscriber, snapshotEvent(snapshot.get())));
+        }
+        return emitter;
+    }
+
+    /** Sends {@code invalidation} to every open stream. */
+    public void publish(Invalidation invalidation) {
+        published.increment();
+        sender.execute(() -> {
+            for (Subscriber subscriber : subscribers) {
+                send(subscriber, SseEmitter.event().name("invalidate").data(invalidation));
+            }
+        });
+    }
+
+    /** Sends a new table to every stream that asked for snapshots. */
+    public void publishSnapshot(MembershipTiers snapshot) {
+        snapshots.increment();
+        sender.execute(() -> {
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.snapshots())
+                    send(subscriber, snapshotEvent(snapshot));
+            }
+        });
+    }
+
+    /**
+     * Sends a single-tier change to every stream that asked for snapshots.
+     * Deltas must be published in version order.
+     */
+    public void publishDelta(Delta delta) {
+        deltas.increment();
+        sender.execute(() -> {
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.snapshots())
+                    send(subscriber, SseEmitter.event().name("delta").id(String.valueOf(delta.version())).data(delta));
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${falcon.trust.membership.events.heartbeat-interval-ms:10000}")
+    public void heartbeat() {
+        sender.execute(() -> {
+            for (Subscriber subscriber : subscribers) {
+                send(subscriber, SseEmitter.event().name("heartbeat").data(""));
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (sender instanceof ExecutorService executor)
+            executor.shutdownNow();
+    }
+
+    private static SseEmitter.SseEventBuilder snapshotEvent(MembershipTiers snapshot) {
+        return SseEmitter.event().name("snapshot").id(String.valueOf(snapshot.version())).data(snapshot);
+    }
+
+    /** Sends one event, dropping the stream if it fails. */
+    private void send(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        try {
+            subscriber.emitter().send(event);
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping membership subscriber: {}", e.getMessage());
+            subscribers.remove(subscriber);
+            subscriber.emitter().completeWithError(e);
+        }
+    }
+}
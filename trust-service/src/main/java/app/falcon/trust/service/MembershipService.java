@@ -1,76 +1,44 @@
 package app.falcon.trust.service;
 
-import app.falcon.core.domain.Channel;
-import app.falcon.core.domain.Member;
-import app.falcon.core.domain.TrustRelation;
-import app.falcon.trust.repository.ChannelRepository;
-import app.falcon.trust.repository.MemberRepository;
-import app.falcon.trust.repository.TrustRelationRepository;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 @Slf4j
 public class MembershipService {
 
-    private final MemberRepository memberRepository;
-    private final ChannelRepository channelRepository;
-    private final TrustRelationRepository trustRelationRepository;
-    private final String authorityDid;
+    private final MembershipTierIndex tierIndex;
 
-    public MembershipService(MemberRepository memberRepository,
-            ChannelRepository channelRepository,
-            TrustRelationRepository trustRelationRepository,
-            @Value("${falcon.trust.authority-did}") String authorityDid) {
-        this.memberRepository = memberRepository;
-        this.channelRepository = channelRepository;
-        this.trustRelationRepository = trustRelationRepository;
-        this.authorityDid = authorityDid;
+    public MembershipService(MembershipTierIndex tierIndex) {
+        this.tierIndex = tierIndex;
     }
 
     public boolean verifyAccess(String userDid, Long serverId, Long channelId) {
-        Optional<Channel> channelOpt = channelRepository.findById(channelId);
-        if (channelOpt.isEmpty())
-            return true; // Channel doesn't exist, ignore
-
-        Channel channel = channelOpt.get();
-        String requiredTier = channel.getRequiredTier();
-
-        if (requiredTier == null || requiredTier.isBlank()) {
-            return true; // Open channel
-        }
-
-        String userTier = calculateTier(userDid, serverId);
-
-        // Simple hierarchy: ELITE > PRO > FREE
-        if ("ELITE".equals(requiredTier)) {
-            return "ELITE".equals(userTier);
-        } else if ("PRO".equals(requiredTier)) {
-            return "PRO".equals(userTier) || "ELITE".equals(userTier);
-        }
-
-        return true; // FREE or unknown tier
+        return tierIndex.current().allows(userDid, serverId, channelId);
     }
 
-    private String calculateTier(String userDid, Long serverId) {
-        // 1. Check explicit tier in Member record
-        Optional<Member> memberOpt = memberRepository.findByDidAndServerId(userDid, serverId);
-        if (memberOpt.isPresent() && memberOpt.get().getMembershipTier() != null) {
-            return memberOpt.get().getMembershipTier();
-        }
-
-        // 2. Logic: If Authority TRUSTS User with weight > 0.8 -> PRO
-        Optional<TrustRelation> relation = trustRelationRepository.findBySourceDidAndTargetDid(authorityDid, userDid);
-        if (relation.isPresent() && relation.get().getType() == TrustRelation.TrustType.TRUST) {
-            Double weight = relation.get().getWeight();
-            if (weight != null && weight > 0.8) {
-                return "PRO";
+    /**
+     * Checks every user against every channel of one server, all against the
+     * same {@link MembershipTiers} version.
+     *
+     * @return the users allowed into each channel, in request order
+     */
+    public Map<Long, List<String>> verifyAccess(Long serverId, List<String> userDids, List<Long> channelIds) {
+        MembershipTiers tiers = tierIndex.current();
+        Map<Long, List<String>> allowed = new LinkedHashMap<>();
+        for (Long channelId : channelIds) {
+            List<String> users = new ArrayList<>();
+            for (String userDid : userDids) {
+                if (tiers.allows(userDid, serverId, channelId))
+                    users.add(userDid);
             }
+            allowed.put(channelId, users);
         }
-
-        return "FREE";
+        return allowed;
     }
 }
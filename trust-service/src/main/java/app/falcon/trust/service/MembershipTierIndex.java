@@ -0,0 +1,207 @@
+package app.falcon.trust.service;
+
+import app.falcon.core.domain.TrustRelation;
+import app.falcon.trust.repository.ChannelRepository;
+import app.falcon.trust.repository.ChannelTier;
+import app.falcon.trust.repository.MemberRepository;
+import app.falcon.trust.repository.MemberTier;
+import app.falcon.trust.repository.TrustRelationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Precomputed {@link MembershipTiers}, so an access check is a few hash
+ * lookups instead of three queries.
+ *
+ * <p>
+ * The table is built from the gated channels, the members with an explicit
+ * tier and the authority's TRUST relations at startup, and rebuilt every
+ * {@code refresh-interval-ms} to pick up rows written outside this service.
+ * Relation writes through {@link TrustGraphService} update it immediately.
+ * Each change publishes a new snapshot through a volatile field and pushes
+ * the affected decisions to {@link MembershipEvents} subscribers, along with
+ * the whole snapshot after a rebuild or a {@link MembershipEvents.Delta} after
+ * a single relation change.
+ * </p>
+ */
+@Component
+@Slf4j
+public class MembershipTierIndex {
+
+    /** Weight above which an authority TRUST relation grants PRO. */
+    private static final double PRO_WEIGHT = 0.8;
+
+    private final MemberRepository memberRepository;
+    private final ChannelRepository channelRepository;
+    private final TrustRelationRepository trustRelationRepository;
+    private final MembershipEvents events;
+    private final String authorityDid;
+    private final int maxInvalidations;
+    private final Timer rebuildTimer;
+
+    private volatile MembershipTiers tiers = MembershipTiers.EMPTY;
+
+    public MembershipTierIndex(MemberRepository memberRepository,
+            ChannelRepository channelRepository,
+            TrustRelationRepository trustRelationRepository,
+            TrustGraphService trustGraphService,
+            MembershipEvents events,
+            MeterRegistry meterRegistry,
+            @Value("${falcon.trust.authority-did}") String authorityDid,
+            @Value("${falcon.trust.membership.index.max-invalidations:1000}") int maxInvalidations) {
+        this.memberRepository = memberRepository;
+        this.channelRepository = channelRepository;
+        this.trustRelationRepository = trustRelationRepository;
+        this.events = events;
+        this.authorityDid = authorityDid;
+        this.maxInvalidations = maxInvalidations;
+        this.rebuildTimer = Timer.builder("falcon.trust.membership.index.rebuild")
+                .description("Time to rebuild the membership tier table from the database")
+                .register(meterRegistry);
+
+        trustGraphService.onRelationChanged(this::relationChanged);
+    }
+
+    /** The latest published table. */
+    public MembershipTiers current() {
+        return tiers;
+    }
+
+    /**
+     * Reloads the whole table. Runs once before the service takes traffic, so
+     * checks never see an empty table that would open every channel.
+     */
+    @PostConstruct
+    @Scheduled(initialDelayString = "${falcon.trust.membership.index.refresh-interval-ms:60000}",
+            fixedDelayString = "${falcon.trust.membership.index.refresh-interval-ms:60000}")
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+
+        Map<Long, String> channelTiers = new HashMap<>();
+        for (ChannelTier channel : channelRepository.findChannelTiers()) {
+            channelTiers.put(channel.channelId(), channel.requiredTier());
+        }
+        Map<Long, Map<String, String>> memberTiers = new HashMap<>();
+        for (MemberTier member : memberRepository.findMemberTiers()) {
+            memberTiers.computeIfAbsent(member.serverId(), server -> new HashMap<>()).put(member.did(), member.tier());
+        }
+        Map<String, String> authorityTiers = new HashMap<>();
+        for (TrustRelation relation : trustRelationRepository.findBySourceDidAndType(authorityDid,
+                TrustRelation.TrustType.TRUST)) {
+            String tier = authorityTier(relation);
+            if (tier != null)
+                authorityTiers.put(relation.getTargetDid(), tier);
+        }
+
+        MembershipTiers previous = tiers;
+        MembershipTiers rebuilt = new MembershipTiers(previous.version() + 1, Instant.now(), Map.copyOf(channelTiers),
+                copyOf(memberTiers), Map.copyOf(authorityTiers));
+        List<MembershipEvents.Invalidation> changes = diff(previous, rebuilt);
+        // Keep the version stable while nothing changes, so subscribers are not told to refresh
+        if (previous == MembershipTiers.EMPTY || !changes.isEmpty())
+            tiers = rebuilt;
+
+        long elapsed = System.nanoTime() - start;
+        rebuildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.debug("Membership tiers v{} built: {} gated channels, {} servers, {} authority tiers, {} changes in {} ms",
+                tiers.version(), channelTiers.size(), memberTiers.size(), authorityTiers.size(), changes.size(),
+                elapsed / 1_000_000);
+
+        if (previous != MembershipTiers.EMPTY && !changes.isEmpty()) {
+            events.publishSnapshot(rebuilt);
+            publish(changes);
+        }
+    }
+
+    /** A relation from the authority decides the target's tier on every server. */
+    private synchronized void relationChanged(String sourceDid, String targetDid) {
+        if (!authorityDid.equals(sourceDid))
+            return;
+
+        String tier = trustRelationRepository.findBySourceDidAndTargetDid(sourceDid, targetDid)
+                .map(MembershipTierIndex::authorityTier)
+                .orElse(null);
+        MembershipTiers previous = tiers;
+        if (Objects.equals(tier, previous.authorityTiers().get(targetDid)))
+            return;
+
+        Map<String, String> authorityTiers = new HashMap<>(previous.authorityTiers());
+        if (tier != null) {
+            authorityTiers.put(targetDid, tier);
+        } else {
+            authorityTiers.remove(targetDid);
+        }
+        tiers = new MembershipTiers(previous.version() + 1, Instant.now(), previous.channelTiers(),
+                previous.memberTiers(), Map.copyOf(authorityTiers));
+        // Queued under the lock so deltas go out in version order; sent on the events thread
+        events.publishDelta(new MembershipEvents.Delta(tiers.version(), targetDid, tier));
+        events.publish(new MembershipEvents.Invalidation(targetDid, null, null));
+    }
+
+    private static String authorityTier(TrustRelation relation) {
+        if (relation.getType() != TrustRelation.TrustType.TRUST)
+            return null;
+        Double weight = relation.getWeight();
+        return weight != null && weight > PRO_WEIGHT ? "PRO" : null;
+    }
+
+    /** Invalidations covering every entry that differs between the two tables. */
+    private static List<MembershipEvents.Invalidation> diff(MembershipTiers before, MembershipTiers after) {
+        List<MembershipEvents.Invalidation> changes = new ArrayList<>();
+        for (Long channel : changedKeys(before.channelTiers(), after.channelTiers())) {
+            changes.add(new MembershipEvents.Invalidation(null, null, channel));
+        }
+        for (String did : changedKeys(before.authorityTiers(), after.authorityTiers())) {
+            changes.add(new MembershipEvents.Invalidation(did, null, null));
+        }
+        Set<Long> servers = new HashSet<>(before.memberTiers().keySet());
+        servers.addAll(after.memberTiers().keySet());
+        for (Long server : servers) {
+            for (String did : changedKeys(before.memberTiers().getOrDefault(server, Map.of()),
+                    after.memberTiers().getOrDefault(server, Map.of()))) {
+                changes.add(new MembershipEvents.Invalidation(did, server, null));
+            }
+        }
+        return changes;
+    }
+
+    private static <K> Set<K> changedKeys(Map<K, String> before, Map<K, String> after) {
+        Set<K> changed = new HashSet<>();
+        before.forEach((key, value) -> {
+            if (!value.equals(after.get(key)))
+                changed.add(key);
+        });
+        after.keySet().stream().filter(key -> !before.containsKey(key)).forEach(changed::add);
+        return changed;
+    }
+
+    /** Pushes {@code changes}, or a single drop-everything event if there are too many. */
+    private void publish(List<MembershipEvents.Invalidation> changes) {
+        if (changes.size() > maxInvalidations) {
+            events.publish(new MembershipEvents.Invalidation(null, null, null));
+        } else {
+            changes.forEach(events::publish);
+        }
+    }
+
+    private static Map<Long, Map<String, String>> copyOf(Map<Long, Map<String, String>> memberTiers) {
+        Map<Long, Map<String, String>> copy = new HashMap<>();
+        memberTiers.forEach((server, members) -> copy.put(server, Map.copyOf(members)));
+        return Map.copyOf(copy);
+    }
+}
@@ -0,0 +1,54 @@
+package app.falcon.trust.service;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Immutable, versioned table of everything a gated-channel check needs:
+ * the required tier of each gated channel and the tier of each DID per server.
+ *
+ * <p>
+ * A DID's tier on a server is its explicit {@code Member.membershipTier} if it
+ * has one, otherwise the tier granted by the authority's trust relation
+ * (which applies on every server), otherwise FREE. Channels that are missing
+ * or have no required tier are open.
+ * </p>
+ *
+ * @param channelTiers   required tier by channel id, gated channels only
+ * @param memberTiers    explicit member tier by server id, then DID
+ * @param authorityTiers tier granted by the authority by DID
+ */
+public record MembershipTiers(long version, Instant builtAt, Map<Long, String> channelTiers,
+        Map<Long, Map<String, String>> memberTiers, Map<String, String> authorityTiers) {
+
+    public static final MembershipTiers EMPTY = new MembershipTiers(0, Instant.EPOCH, Map.of(), Map.of(), Map.of());
+
+    public static final String FREE = "FREE";
+
+    /** @return the tier of {@code did} on {@code serverId} */
+    public String tierOf(String did, Long serverId) {
+        Map<String, String> members = memberTiers.get(serverId);
+        String explicit = members != null ? members.get(did) : null;
+        if (explicit != null)
+            return explicit;
+        return authorityTiers.getOrDefault(did, FREE);
+    }
+
+    /** @return whether {@code userDid} may access {@code channelId} on {@code serverId} */
+    public boolean allows(String userDid, Long serverId, Long channelId) {
+        String requiredTier = channelTiers.get(channelId);
+        if (requiredTier == null || requiredTier.isBlank())
+            return true; // Missing or open channel
+        return satisfies(tierOf(userDid, serverId), requiredTier);
+    }
+
+    /** Simple hierarchy: ELITE > PRO > FREE. */
+    static boolean satisfies(String userTier, String requiredTier) {
+        if ("ELITE".equals(requiredTier)) {
+            return "ELITE".equals(userTier);
+        } else if ("PRO".equals(requiredTier)) {
+            return "PRO".equals(userTier) || "ELITE".equals(userTier);
+        }
+        return true; // FREE or unknown tier
+    }
+}
@@ -0,0 +1,37 @@
+package app.falcon.trust.service;
+
+/**
+ * Exponential decay of a trust relation by its age in whole days, read from a
+ * precomputed table so scoring loops do no transcendental math or allocation.
+ */
+public final class TemporalDecay {
+
+    static final double DECAY_LAMBDA = 0.005; // ~0.5% decay per day
+    static final int TABLE_DAYS = 3650;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final double[] WEIGHTS = new double[TABLE_DAYS];
+
+    static {
+        for (int day = 0; day < TABLE_DAYS; day++) {
+            WEIGHTS[day] = Math.exp(-DECAY_LAMBDA * day);
+        }
+    }
+
+    private TemporalDecay() {
+    }
+
+    /**
+     * @param ageDays whole days since the relation was written; relations older
+     *                than the table, or dated in the future, fall back to
+     *                {@link Math#exp}
+     */
+    public static double weight(int ageDays) {
+        return ageDays >= 0 && ageDays < TABLE_DAYS ? WEIGHTS[ageDays] : Math.exp(-DECAY_LAMBDA * ageDays);
+    }
+
+    /** The current UTC day, as days since the epoch. */
+    public static int today() {
+        return (int) Math.floorDiv(System.currentTimeMillis(), MILLIS_PER_DAY);
+    }
+}
@@ -1,45 +1,61 @@
 package app.falcon.trust.service;
 
 import app.falcon.core.domain.TrustRelation;
+import app.falcon.trust.graph.EdgeRow;
+import app.falcon.trust.graph.TrustGraph;
+import app.falcon.trust.graph.TrustRankSnapshot;
 import app.falcon.trust.repository.TrustRelationRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class TrustGraphService {
 
-    private static final double DECAY_LAMBDA = 0.005; // ~0.5% decay per day
     private final TrustRelationRepository repository;
-    private final org.springframework.web.reactive.function.client.WebClient webClient;
-
-    @org.springframework.beans.factory.annotation.Value("${falcon.services.siv-url:http://localhost:8082}")
-    private String sivServiceUrl;
+    private final TrustGraph graph;
+    private final IntelligenceBiasClient biasClient;
+    private final GlobalTrustJob globalTrust;
+    private final ViewerTrustCache viewerTrust;
+    private final double globalTrustWeight;
+    private final List<BiConsumer<String, String>> relationListeners = new CopyOnWriteArrayList<>();
 
     public TrustGraphService(TrustRelationRepository repository,
-            org.springframework.web.reactive.function.client.WebClient.Builder webClientBuilder) {
+            TrustGraph graph,
+            IntelligenceBiasClient biasClient,
+            GlobalTrustJob globalTrust,
+            ViewerTrustCache viewerTrust,
+            @Value("${falcon.trust.rank.fallback-weight:0.5}") double globalTrustWeight) {
         this.repository = repository;
-        this.webClient = webClientBuilder.build();
+        this.graph = graph;
+        this.biasClient = biasClient;
+        this.globalTrust = globalTrust;
+        this.viewerTrust = viewerTrust;
+        this.globalTrustWeight = globalTrustWeight;
+    }
+
+    /**
+     * Registers state derived from trust relations, called with the source and
+     * target DID after every {@link #addRelation}.
+     */
+    public void onRelationChanged(BiConsumer<String, String> listener) {
+        relationListeners.add(listener);
     }
 
     public double calculateTrustScore(String viewerDid, String targetDid) {
         if (viewerDid == null || viewerDid.equals(targetDid))
             return 1.0;
 
-        double baseScore;
-        Optional<TrustRelation> direct = repository.findBySourceDidAndTargetDid(viewerDid, targetDid);
-        if (direct.isPresent()) {
-            baseScore = calculateWeightedScore(direct.get());
-        } else {
-            baseScore = calculateTransitiveScore(viewerDid, targetDid);
-        }
+        double baseScore = calculateBaseScore(viewerTrust.vectorOf(graph.idOf(viewerDid)), graph.idOf(targetDid),
+                globalTrust.snapshot());
 
         // Incorporate Sovereign Intelligence Bias I(v)
-        double intelligenceBias = fetchIntelligenceBias(targetDid);
+        double intelligenceBias = biasClient.getBias(targetDid);
 
         // Final Formula: S = clamp(Base * Bias, -1, 1)
         double aggregate = baseScore * intelligenceBias;
@@ -51,53 +67,55 @@ public class TrustGraphService {
         return Math.tanh(aggregate);
     }
 
-    private double calculateTransitiveScore(String viewerDid, String targetDid) {
-        List<TrustRelation> viewerTrusts = repository.findBySourceDidAndType(viewerDid, TrustRelation.TrustType.TRUST);
-        if (viewerTrusts.isEmpty())
-            return 0.0;
-
-        double sumWeightedScores = 0.0;
-        double sumViewerTrust = 0.0;
-
-        for (TrustRelation bridge : viewerTrusts) {
-            String bridgeDid = bridge.getTargetDid();
-            Optional<TrustRelation> bridgeToTarget = repository.findBySourceDidAndTargetDid(bridgeDid, targetDid);
+    /**
+     * Scores many targets for one viewer in a single pass: the viewer's trust
+     * vector is resolved once and shared by every target, and the intelligence
+     * bias of all targets is fetched in one request.
+     *
+     * @return scores in the same order as {@code targetDids}
+     */
+    public double[] calculateTrustScores(String viewerDid, List<String> targetDids) {
+        double[] scores = new double[targetDids.size()];
+        if (viewerDid == null) {
+            Arrays.fill(scores, 1.0);
+            return scores;
+        }
 
-            if (bridgeToTarget.isPresent()) {
-                double viewerToBridge = calculateWeightedScore(bridge);
-                double bridgeToTargetScore = calculateWeightedScore(bridgeToTarget.get());
+        Map<String, Double> biases = biasClient.getBiases(targetDids);
+        ViewerTrust vector = viewerTrust.vectorOf(graph.idOf(viewerDid));
+        TrustRankSnapshot global = globalTrust.snapshot();
 
-                sumWeightedScores += viewerToBridge * bridgeToTargetScore;
-                sumViewerTrust += Math.abs(viewerToBridge);
+        for (int i = 0; i < scores.length; i++) {
+            String targetDid = targetDids.get(i);
+            if (viewerDid.equals(targetDid)) {
+                scores[i] = 1.0;
+                continue;
             }
+            double baseScore = calculateBaseScore(vector, graph.idOf(targetDid), global);
+            scores[i] = Math.tanh(baseScore * biases.getOrDefault(targetDid, 1.0));
         }
-
-        return sumViewerTrust == 0 ? 0.0 : (sumWeightedScores / sumViewerTrust);
+        return scores;
     }
 
-    private double fetchIntelligenceBias(String targetDid) {
-        try {
-            return webClient.get()
-                    .uri(sivServiceUrl + "/api/intelligence/bias/" + targetDid)
-                    .retrieve()
-                    .bodyToMono(new org.springframework.core.ParameterizedTypeReference<Map<String, Object>>() {
-                    })
-                    .map(res -> ((Number) res.get("bias")).doubleValue())
-                    .block(java.time.Duration.ofMillis(500)); // Non-blocking with timeout for low latency
-        } catch (Exception e) {
-            log.warn("Failed to fetch intelligence bias for {}: {}. Falling back to 1.0", targetDid, e.getMessage());
-            return 1.0;
-        }
+    /**
+     * Direct relation if one exists, otherwise the two-hop score — both looked up
+     * in the viewer's cached {@link ViewerTrust} vector. Targets with no path of
+     * up to two hops fall back to a share of their global trust from the latest
+     * {@link TrustRankSnapshot}.
+     */
+    private double calculateBaseScore(ViewerTrust vector, int target, TrustRankSnapshot global) {
+        if (target < 0)
+            return 0.0;
+        double personal = vector.scoreOf(target);
+        return Double.isNaN(personal) ? globalTrustWeight * global.scoreOf(target) : personal;
     }
 
-    private double calculateWeightedScore(TrustRelation relation) {
-        double baseScore = scoreForType(relation.getType());
-        long daysOld = java.time.Duration.between(relation.getTimestamp(), java.time.Instant.now()).toDays();
-        double temporalWeight = Math.exp(-DECAY_LAMBDA * daysOld);
-        return baseScore * temporalWeight;
+    static double calculateWeightedScore(EdgeRow edges, int index, int today) {
+        double baseScore = scoreForType(edges.type(index));
+        return baseScore * TemporalDecay.weight(today - edges.epochDay(index));
     }
 
-    private double scoreForType(TrustRelation.TrustType type) {
+    static double scoreForType(TrustRelation.TrustType type) {
         return switch (type) {
             case TRUST -> 1.0;
             case DISTRUST -> -0.8;
@@ -113,6 +131,9 @@ public class TrustGraphService {
         relation.setType(type);
         relation.setTimestamp(java.time.Instant.now());
         repository.save(relation);
+        graph.put(relation);
+        viewerTrust.invalidate(graph.idOf(sourceDid));
+        relationListeners.forEach(listener -> listener.accept(sourceDid, targetDid));
         log.info("Trust relation updated: {} {} {}", sourceDid, type, targetDid);
     }
 }
@@ -0,0 +1,53 @@
+package app.falcon.trust.service;
+
+import java.util.Arrays;
+
+/**
+ * One viewer's personalised base scores over every DID reachable in one or two
+ * hops, precomputed by {@link ViewerTrustCache}.
+ *
+ * <p>
+ * {@code targets} is sorted so a score is a binary search; {@code bridges}
+ * lists the nodes whose rows the scores were derived from, so the vector can
+ * be invalidated when one of them changes.
+ * </p>
+ */
+final class ViewerTrust {
+
+    static final ViewerTrust EMPTY = new ViewerTrust(new int[0], new double[0], new int[0], 0);
+
+    private final int[] targets;
+    private final double[] scores;
+    private final int[] bridges;
+    private final long generation;
+
+    ViewerTrust(int[] targets, double[] scores, int[] bridges, long generation) {
+        this.targets = targets;
+        this.scores = scores;
+        this.bridges = bridges;
+        this.generation = generation;
+    }
+
+    /**
+     * @return the direct or two-hop base score, or {@code NaN} if {@code target}
+     *         is not reachable within two hops
+     */
+    double scoreOf(int target) {
+        int idx = Arrays.binarySearch(targets, target);
+        return idx >= 0 ? scores[idx] : Double.NaN;
+    }
+
+    int[] bridges() {
+        return bridges;
+    }
+
+    /** Identifies the build that produced this vector. */
+    long generation() {
+        return generation;
+    }
+
+    /** Approximate retained size, used as the cache weight. */
+    int weightBytes() {
+        return 64 + 12 * targets.length + 4 * bridges.length;
+    }
+}
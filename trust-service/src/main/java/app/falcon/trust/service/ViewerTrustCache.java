@@ -0,0 +1,208 @@
+package app.falcon.trust.service;
+
+import app.falcon.core.domain.TrustRelation;
+import app.falcon.trust.graph.EdgeRow;
+import app.falcon.trust.graph.TrustGraph;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded cache of each active viewer's {@link ViewerTrust} vector.
+ *
+ * <p>
+ * A vector is built from the viewer's own row and the rows of its TRUST
+ * bridges, so it only goes stale when one of those rows changes.
+ * {@link #invalidate} therefore drops the vector of the written source itself
+ * and of every cached viewer that uses the source as a bridge, leaving all
+ * other vectors in place. Entries are weighed by their size in bytes and also
+ * expire after {@code ttl} so temporal decay stays current.
+ * </p>
+ */
+@Component
+public class ViewerTrustCache {
+
+    private final TrustGraph graph;
+    private final Cache<Integer, ViewerTrust> cache;
+    private final ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, Long>> dependents = new ConcurrentHashMap<>();
+    private final AtomicLong generations = new AtomicLong();
+
+    private final Timer rebuildTimer;
+    private final Counter invalidations;
+
+    public ViewerTrustCache(TrustGraph graph,
+            MeterRegistry meterRegistry,
+            @Value("${falcon.trust.viewer-cache.max-weight:256MB}") DataSize maxWeight,
+            @Value("${falcon.trust.viewer-cache.ttl:1h}") Duration ttl) {
+        this.graph = graph;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight.toBytes())
+                .weigher((Integer viewer, ViewerTrust vector) -> vector.weightBytes())
+                .expireAfterWrite(ttl)
+                .removalListener((Integer viewer, ViewerTrust vector, RemovalCause cause) -> {
+                    if (viewer != null && vector != null)
+                        forget(viewer, vector);
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "viewer-trust");
+        this.rebuildTimer = Timer.builder("falcon.trust.viewer.rebuild")
+                .description("Time to rebuild one viewer's personalised trust vector")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.invalidations = Counter.builder("falcon.trust.viewer.invalidations")
+                .description("Viewer trust vectors dropped because a relation they depend on changed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the cached vector of {@code viewer}, building it on a miss;
+     *         {@link ViewerTrust#EMPTY} for unknown viewers or viewers with no
+     *         outgoing relations
+     */
+    ViewerTrust vectorOf(int viewer) {
+        if (viewer < 0 || graph.row(viewer) == null)
+            return ViewerTrust.EMPTY;
+        return cache.get(viewer, this::build);
+    }
+
+    /**
+     * Drops every cached vector that depends on the row of {@code source}.
+     */
+    public void invalidate(int source) {
+        if (source < 0)
+            return;
+        cache.invalidate(source);
+        Map<Integer, Long> viewers = dependents.remove(source);
+        if (viewers != null) {
+            cache.invalidateAll(viewers.keySet());
+            invalidations.increment(viewers.size());
+        }
+    }
+
+    /** @return whether a vector for {@code viewer} is currently cached */
+    boolean isCached(int viewer) {
+        return cache.getIfPresent(viewer) != null;
+    }
+
+    private ViewerTrust build(int viewer) {
+        long start = System.nanoTime();
+        int today = TemporalDecay.today();
+        long generation = generations.incrementAndGet();
+        EdgeRow viewerEdges = graph.row(viewer);
+        if (viewerEdges == null)
+            return ViewerTrust.EMPTY;
+
+        // Register as a dependent before reading any bridge row, so a concurrent
+        // write to a bridge is guaranteed to find and invalidate this vector.
+        int[] bridgeIds = new int[viewerEdges.size()];
+        int bridgeCount = 0;
+        for (int i = 0; i < viewerEdges.size(); i++) {
+            if (viewerEdges.type(i) == TrustRelation.TrustType.TRUST) {
+                int bridge = viewerEdges.target(i);
+                bridgeIds[bridgeCount++] = bridge;
+                dependents.compute(bridge, (k, viewers) -> {
+                    viewers = viewers != null ? viewers : new ConcurrentHashMap<>();
+                    viewers.put(viewer, generation);
+                    return viewers;
+                });
+            }
+        }
+        bridgeIds = Arrays.copyOf(bridgeIds, bridgeCount);
+
+        // Every (target, bridge) contribution, keyed by target so they can be
+        // grouped with one sort: high 32 bits target, low 32 bits contribution index
+        EdgeRow[] bridgeRows = new EdgeRow[bridgeCount];
+        double[] viewerToBridge = new double[bridgeCount];
+        int contributions = 0;
+        for (int i = 0, b = 0; i < viewerEdges.size(); i++) {
+            if (viewerEdges.type(i) != TrustRelation.TrustType.TRUST)
+                continue;
+            bridgeRows[b] = graph.row(viewerEdges.target(i));
+            viewerToBridge[b] = TrustGraphService.calculateWeightedScore(viewerEdges, i, today);
+            contributions += bridgeRows[b] == null ? 0 : bridgeRows[b].size();
+            b++;
+        }
+
+        long[] keys = new long[contributions];
+        double[] weighted = new double[contributions];
+        double[] trust = new double[contributions];
+        int at = 0;
+        for (int b = 0; b < bridgeCount; b++) {
+            EdgeRow row = bridgeRows[b];
+            if (row == null)
+                continue;
+            for (int j = 0; j < row.size(); j++) {
+                keys[at] = ((long) row.target(j) << 32) | at;
+                weighted[at] = viewerToBridge[b] * TrustGraphService.calculateWeightedScore(row, j, today);
+                trust[at] = Math.abs(viewerToBridge[b]);
+                at++;
+            }
+        }
+        Arrays.sort(keys);
+
+        // Merge direct relations (which take precedence) with the grouped two-hop sums
+        int[] targets = new int[viewerEdges.size() + contributions];
+        double[] scores = new double[targets.length];
+        int size = 0;
+        int d = 0;
+        int k = 0;
+        while (d < viewerEdges.size() || k < contributions) {
+            int directTarget = d < viewerEdges.size() ? viewerEdges.target(d) : Integer.MAX_VALUE;
+            int transitiveTarget = k < contributions ? (int) (keys[k] >>> 32) : Integer.MAX_VALUE;
+
+            if (directTarget <= transitiveTarget) {
+                targets[size] = directTarget;
+                scores[size++] = TrustGraphService.calculateWeightedScore(viewerEdges, d++, today);
+                while (k < contributions && (int) (keys[k] >>> 32) == directTarget)
+                    k++;
+            } else {
+                double sumWeightedScores = 0.0;
+                double sumViewerTrust = 0.0;
+                while (k < contributions && (int) (keys[k] >>> 32) == transitiveTarget) {
+                    int idx = (int) keys[k++];
+                    sumWeightedScores += weighted[idx];
+                    sumViewerTrust += trust[idx];
+                }
+                if (transitiveTarget == viewer)
+                    continue;
+                targets[size] = transitiveTarget;
+                scores[size++] = sumWeightedScores / sumViewerTrust;
+            }
+        }
+
+        ViewerTrust vector = new ViewerTrust(Arrays.copyOf(targets, size), Arrays.copyOf(scores, size), bridgeIds,
+                generation);
+        rebuildTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return vector;
+    }
+
+    /**
+     * Unregisters an evicted or invalidated vector from its bridges. A newer
+     * build of the same viewer may already have re-registered, so only entries
+     * still carrying this vector's generation are removed.
+     */
+    private void forget(int viewer, ViewerTrust vector) {
+        for (int bridge : vector.bridges()) {
+            dependents.computeIfPresent(bridge, (k, viewers) -> {
+                viewers.remove(viewer, vector.generation());
+                return viewers.isEmpty() ? null : viewers;
+            });
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package app.falcon.trust.graph;
+
+import app.falcon.core.domain.TrustRelation;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Iteration time and memory of {@link EigenTrust} on synthetic graphs with a
+ * skewed (preferential) in-degree distribution.
+ *
+ * <p>
+ * Excluded from the default build; run with
+ * {@code mvn -pl trust-service test -Pbenchmark}. Edge counts default to 1M,
+ * 10M and 50M and can be narrowed with
+ * {@code -Dfalcon.benchmark.edges=1000000,10000000}. The 50M graph needs a
+ * heap of about 2 GB.
+ * </p>
+ */
+@Tag("benchmark")
+class EigenTrustBenchmarkTest {
+
+    private static final int AVERAGE_DEGREE = 10;
+    private static final int ITERATIONS = 20;
+
+    static LongStream edgeCounts() {
+        return Arrays.stream(System.getProperty("falcon.benchmark.edges", "1000000,10000000,50000000").split(","))
+                .mapToLong(s -> Long.parseLong(s.trim()));
+    }
+
+    @ParameterizedTest(name = "{0} edges")
+    @MethodSource("edgeCounts")
+    void iterateGlobalTrust(long edges) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        TrustAdjacency adjacency = syntheticGraph((int) (edges / AVERAGE_DEGREE), AVERAGE_DEGREE);
+        System.gc();
+        long graphHeap = memory.getHeapMemoryUsage().getUsed();
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            long start = System.nanoTime();
+            EigenTrust eigenTrust = EigenTrust.of(adjacency, (type, epochDay) -> 1.0, new int[] { 0, 1, 2 }, pool);
+            long prepareNanos = System.nanoTime() - start;
+
+            eigenTrust.run(0.15, 2, 0); // warm-up
+            start = System.nanoTime();
+            EigenTrust.Result result = eigenTrust.run(0.15, ITERATIONS, 0);
+            long iterateNanos = System.nanoTime() - start;
+            long peakHeap = memory.getHeapMemoryUsage().getUsed();
+
+            assertEquals(ITERATIONS, result.iterations());
+            assertEquals(1.0, Arrays.stream(result.trust()).sum(), 1e-6);
+
+            System.out.printf(
+                    "EigenTrust %,d nodes / %,d edges, %d workers: prepare %,d ms, %.1f ms/iteration, "
+                            + "layout %,d MB, graph %,d MB, heap after run %,d MB%n",
+                    eigenTrust.nodeCount(), adjacency.edgeCount(), pool.getParallelism(),
+                    prepareNanos / 1_000_000, iterateNanos / 1e6 / ITERATIONS,
+                    eigenTrust.footprintBytes() >> 20, graphHeap >> 20, peakHeap >> 20);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Builds the CSR directly, bypassing {@link TrustAdjacency.Builder}, so the
+     * largest graphs fit in a modest heap. Targets are drawn with a quadratic
+     * bias towards low ids, giving a few heavily trusted hubs.
+     */
+    private static TrustAdjacency syntheticGraph(int nodes, int degree) {
+        int edges = nodes * degree;
+        int[] offsets = new int[nodes + 1];
+        int[] targets = new int[edges];
+        SplittableRandom random = new SplittableRandom(42);
+        int[] row = new int[degree];
+
+        int at = 0;
+        for (int s = 0; s < nodes; s++) {
+            for (int k = 0; k < degree; k++) {
+                double u = random.nextDouble();
+                row[k] = (int) (u * u * nodes);
+            }
+            Arrays.sort(row);
+            for (int k = 0; k < degree; k++) {
+                if (k == 0 || row[k] != row[k - 1])
+                    targets[at++] = row[k];
+            }
+            offsets[s + 1] = at;
+        }
+
+        byte[] types = new byte[at];
+        Arrays.fill(types, (byte) TrustRelation.TrustType.TRUST.ordinal());
+        float[] weights = new float[at];
+        Arrays.fill(weights, Float.NaN);
+        return new TrustAdjacency(offsets, Arrays.copyOf(targets, at), types, weights, new int[at]);
+    }
+}
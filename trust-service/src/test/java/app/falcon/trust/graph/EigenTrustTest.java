@@ -0,0 +1,98 @@
+package app.falcon.trust.graph;
+
+import app.falcon.core.domain.TrustRelation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EigenTrustTest {
+
+    private static final EdgeWeigher TRUST_ONLY = (type, epochDay) -> type == TrustRelation.TrustType.TRUST ? 1.0
+            : 0.0;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private static TrustAdjacency chain(int length) {
+        TrustAdjacency.Builder builder = TrustAdjacency.builder(length);
+        int today = (int) LocalDate.now(ZoneOffset.UTC).toEpochDay();
+        for (int i = 0; i + 1 < length; i++) {
+            builder.add(i, i + 1, TrustRelation.TrustType.TRUST, Float.NaN, today);
+        }
+        return builder.build(length);
+    }
+
+    @Test
+    void trustReachesBeyondTwoHopsAndFadesWithDistance() {
+        EigenTrust.Result result = EigenTrust.of(chain(5), TRUST_ONLY, new int[] { 0 }, pool).run(0.15, 500, 1e-12);
+
+        double[] trust = result.trust();
+        assertEquals(1.0, Arrays.stream(trust).sum(), 1e-9);
+        for (int i = 1; i < trust.length - 1; i++) {
+            assertTrue(trust[i] > trust[i + 1], "node " + i + " should outrank node " + (i + 1));
+        }
+        assertTrue(trust[4] > 0, "four hops from the seed should still carry trust");
+        assertTrue(result.residual() < 1e-12);
+    }
+
+    @Test
+    void negativeRelationsDoNotPropagateTrust() {
+        int today = (int) LocalDate.now(ZoneOffset.UTC).toEpochDay();
+        TrustAdjacency adjacency = TrustAdjacency.builder(4)
+                .add(0, 1, TrustRelation.TrustType.TRUST, Float.NaN, today)
+                .add(0, 2, TrustRelation.TrustType.BLOCK, Float.NaN, today)
+                .add(1, 3, TrustRelation.TrustType.DISTRUST, Float.NaN, today)
+                .build(4);
+
+        double[] trust = EigenTrust.of(adjacency, TRUST_ONLY, new int[] { 0 }, pool).run(0.15, 500, 1e-12).trust();
+
+        assertTrue(trust[1] > 0);
+        assertEquals(0.0, trust[2]);
+        assertEquals(0.0, trust[3]);
+    }
+
+    @Test
+    void parallelSweepMatchesSingleWorker() {
+        int nodes = 200_000;
+        TrustAdjacency.Builder builder = TrustAdjacency.builder(nodes * 3);
+        int today = (int) LocalDate.now(ZoneOffset.UTC).toEpochDay();
+        for (int s = 0; s < nodes; s++) {
+            builder.add(s, (s + 1) % nodes, TrustRelation.TrustType.TRUST, Float.NaN, today);
+            builder.add(s, (int) ((s * 31L + 7) % nodes), TrustRelation.TrustType.TRUST, Float.NaN, today);
+            builder.add(s, (s * 17) % 1000, TrustRelation.TrustType.TRUST, Float.NaN, today);
+        }
+        TrustAdjacency adjacency = builder.build(nodes);
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            double[] parallel = EigenTrust.of(adjacency, TRUST_ONLY, new int[0], pool).run(0.15, 20, 0).trust();
+            double[] sequential = EigenTrust.of(adjacency, TRUST_ONLY, new int[0], single).run(0.15, 20, 0).trust();
+            assertArrayEquals(sequential, parallel, 1e-15);
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    void snapshotNormalisesRelativeToAverageNode() {
+        EigenTrust.Result result = EigenTrust.of(chain(5), TRUST_ONLY, new int[] { 0 }, pool).run(0.15, 500, 1e-12);
+        TrustRankSnapshot snapshot = TrustRankSnapshot.of(7, Instant.now(), result);
+
+        assertEquals(7, snapshot.version());
+        assertEquals(1.0, snapshot.scoreOf(0), 1e-6);
+        assertTrue(snapshot.scoreOf(1) > 0 && snapshot.scoreOf(1) < 1);
+        assertEquals(0.0, snapshot.scoreOf(5), "ids beyond the snapshot score 0");
+        assertEquals(0.0, snapshot.scoreOf(-1));
+    }
+}
@@ -0,0 +1,68 @@
+package app.falcon.trust.graph;
+
+import app.falcon.core.domain.TrustRelation;
+import app.falcon.trust.repository.TrustRelationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+class TrustGraphTest {
+
+    @Mock
+    private TrustRelationRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private static TrustRelation relation(String source, String target, TrustRelation.TrustType type) {
+        return TrustRelation.builder().sourceDid(source).targetDid(target).type(type).build();
+    }
+
+    @Test
+    void loadBuildsRowsSortedByTarget() {
+        when(repository.findAll()).thenReturn(List.of(
+                relation("did:alice", "did:dave", TrustRelation.TrustType.TRUST),
+                relation("did:alice", "did:bob", TrustRelation.TrustType.BLOCK),
+                relation("did:alice", "did:carol", TrustRelation.TrustType.MUTE)));
+        TrustGraph graph = new TrustGraph(repository, 4096);
+        graph.load();
+
+        EdgeRow row = graph.row(graph.idOf("did:alice"));
+        assertEquals(3, row.size());
+        assertEquals(TrustRelation.TrustType.BLOCK, row.type(row.indexOf(graph.idOf("did:bob"))));
+        assertEquals(TrustRelation.TrustType.MUTE, row.type(row.indexOf(graph.idOf("did:carol"))));
+        assertEquals(TrustRelation.TrustType.TRUST, row.type(row.indexOf(graph.idOf("did:dave"))));
+        assertNull(graph.row(graph.idOf("did:bob")));
+        assertEquals(3, graph.edgeCount());
+    }
+
+    @Test
+    void putReplacesExistingEdgeAndSurvivesCompaction() {
+        when(repository.findAll()).thenReturn(List.of(
+                relation("did:alice", "did:bob", TrustRelation.TrustType.TRUST)));
+        TrustGraph graph = new TrustGraph(repository, 1);
+        graph.load();
+
+        graph.put(relation("did:alice", "did:bob", TrustRelation.TrustType.DISTRUST));
+        for (int i = 0; i < 10; i++) {
+            graph.put(relation("did:user" + i, "did:alice", TrustRelation.TrustType.TRUST));
+        }
+
+        EdgeRow alice = graph.row(graph.idOf("did:alice"));
+        assertEquals(1, alice.size());
+        assertEquals(TrustRelation.TrustType.DISTRUST, alice.type(alice.indexOf(graph.idOf("did:bob"))));
+        assertEquals(11, graph.edgeCount());
+        for (int i = 0; i < 10; i++) {
+            EdgeRow user = graph.row(graph.idOf("did:user" + i));
+            assertEquals(0, user.indexOf(graph.idOf("did:alice")));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package app.falcon.trust.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntelligenceBiasClientTest {
+
+    /** Requests including this DID are held until the test releases them. */
+    private static final String SLOW_DID = "did:plc:slow";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger largestRequest = new AtomicInteger();
+    private final ConcurrentHashMap<String, AtomicInteger> requestedDids = new ConcurrentHashMap<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private HttpServer sivStub;
+    private IntelligenceBiasClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Local stand-in for siv-service: every DID gets a bias of 1.25
+        sivStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        sivStub.createContext("/api/intelligence/bias", exchange -> {
+            requests.incrementAndGet();
+            JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+            if (body.toString().contains(SLOW_DID)) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            largestRequest.accumulateAndGet(body.path("dids").size(), Math::max);
+            Map<String, Double> biases = new HashMap<>();
+            body.path("dids").forEach(did -> {
+                requestedDids.computeIfAbsent(did.asText(), k -> new AtomicInteger()).incrementAndGet();
+                biases.put(did.asText(), 1.25);
+            });
+            byte[] response = objectMapper.writeValueAsBytes(Map.of("biases", biases));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        sivStub.setExecutor(Executors.newCachedThreadPool());
+        sivStub.start();
+
+        client = newClient("http://localhost:" + sivStub.getAddress().getPort());
+    }
+
+    private IntelligenceBiasClient newClient(String sivUrl) {
+        return newClient(sivUrl, Duration.ofSeconds(2), 500);
+    }
+
+    private IntelligenceBiasClient newClient(String sivUrl, Duration timeout, int maxBatchSize) {
+        return new IntelligenceBiasClient(WebClient.builder(), meterRegistry, sivUrl,
+                Duration.ofMinutes(1), Duration.ofSeconds(5), 10_000, timeout,
+                Duration.ofMillis(20), maxBatchSize);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        client.shutdown();
+        sivStub.stop(0);
+    }
+
+    @Test
+    void concurrentLookupsAreCoalescedAndBatched() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        List<Future<Double>> results = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String did = "did:plc:user" + (i % 10);
+            results.add(callers.submit(() -> client.getBias(did)));
+        }
+        for (Future<Double> result : results) {
+            assertEquals(1.25, result.get(), 1e-9);
+        }
+        callers.shutdown();
+
+        assertEquals(10, requestedDids.size());
+        requestedDids.forEach((did, count) -> assertEquals(1, count.get(), did + " fetched more than once"));
+        assertTrue(requests.get() < 10, "Expected misses to be batched, got " + requests.get() + " requests");
+    }
+
+    @Test
+    void cachedBiasIsServedWithoutRequest() {
+        assertEquals(1.25, client.getBias("did:plc:alice"), 1e-9);
+        int before = requests.get();
+
+        assertEquals(1.25, client.getBias("did:plc:alice"), 1e-9);
+        assertEquals(before, requests.get());
+    }
+
+    @Test
+    void bulkLookupFetchesOnlyMisses() {
+        client.getBias("did:plc:alice");
+        requestedDids.clear();
+
+        Map<String, Double> biases = client.getBiases(List.of("did:plc:alice", "did:plc:bob", "did:plc:carol"));
+
+        assertEquals(3, biases.size());
+        assertEquals(Set.of("did:plc:bob", "did:plc:carol"), requestedDids.keySet());
+    }
+
+    @Test
+    void bulkLookupIsSplitIntoMaxSizedRequests() {
+        List<String> dids = new ArrayList<>();
+        for (int i = 0; i < 1_201; i++) {
+            dids.add("did:plc:user" + i);
+        }
+
+        Map<String, Double> biases = client.getBiases(dids);
+
+        assertEquals(1_201, biases.size());
+        assertTrue(biases.values().stream().allMatch(bias -> bias == 1.25));
+        assertEquals(3, requests.get());
+        assertEquals(500, largestRequest.get());
+    }
+
+    @Test
+    void slowRequestOnlyCostsTheDidsItWasFetching() {
+        client.shutdown();
+        client = newClient("http://localhost:" + sivStub.getAddress().getPort(), Duration.ofMillis(300), 2);
+        client.getBias("did:plc:alice");
+
+        // Chunks: [alice, bob], [carol, slow], [dave]
+        Map<String, Double> biases = client.getBiases(
+                List.of("did:plc:alice", "did:plc:bob", "did:plc:carol", SLOW_DID, "did:plc:dave"));
+
+        assertEquals(1.25, biases.get("did:plc:alice"), 1e-9);
+        assertEquals(1.25, biases.get("did:plc:bob"), 1e-9);
+        assertEquals(1.25, biases.get("did:plc:dave"), 1e-9);
+        assertEquals(IntelligenceBiasClient.NEUTRAL_BIAS, biases.get("did:plc:carol"), 1e-9);
+        assertEquals(IntelligenceBiasClient.NEUTRAL_BIAS, biases.get(SLOW_DID), 1e-9);
+        // Counted per DID that fell back, not once per call
+        assertTrue(meterRegistry.get("falcon.trust.bias.fallback").counter().count() >= 2);
+    }
+
+    @Test
+    void unreachableSivServiceFallsBackToNeutral() {
+        IntelligenceBiasClient unreachable = newClient("http://localhost:1");
+        try {
+            assertEquals(IntelligenceBiasClient.NEUTRAL_BIAS, unreachable.getBias("did:plc:alice"), 1e-9);
+            assertEquals(IntelligenceBiasClient.NEUTRAL_BIAS,
+                    unreachable.getBiases(List.of("did:plc:bob")).get("did:plc:bob"), 1e-9);
+        } finally {
+            unreachable.shutdown();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package app.falcon.trust.service;
+
+import app.falcon.trust.api.MembershipController;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+class MembershipEventsTest {
+
+    @Mock
+    private MembershipService membershipService;
+    @Mock
+    private MembershipTierIndex tierIndex;
+
+    private MembershipEvents events;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        events = new MembershipEvents(new SimpleMeterRegistry(), Duration.ofMinutes(1), Runnable::run);
+        mockMvc = MockMvcBuilders.standaloneSetup(new MembershipController(membershipService, events, tierIndex)).build();
+    }
+
+    @Test
+    void publishedInvalidationsReachEverySubscriber() throws Exception {
+        MvcResult first = mockMvc.perform(get("/api/trust/membership/events")).andReturn();
+        MvcResult second = mockMvc.perform(get("/api/trust/membership/events")).andReturn();
+        assertTrue(first.getResponse().getContentAsString().contains("event:connected"));
+
+        events.publish(new MembershipEvents.Invalidation("did:plc:alice", null, null));
+
+        for (MvcResult stream : new MvcResult[] { first, second }) {
+            String body = stream.getResponse().getContentAsString();
+            assertTrue(body.contains("event:invalidate"));
+            assertTrue(body.contains("\"userDid\":\"did:plc:alice\""));
+        }
+    }
+
+    @Test
+    void nothingIsSentUntilSomethingChanges() throws Exception {
+        MvcResult stream = mockMvc.perform(get("/api/trust/membership/events")).andReturn();
+
+        assertFalse(stream.getResponse().getContentAsString().contains("event:invalidate"));
+    }
+
+    @Test
+    void snapshotSubscribersGetTheTableOnConnectAndOnEveryChange() throws Exception {
+        when(tierIndex.current()).thenReturn(tiers(1, "PRO"));
+        MvcResult snapshots = mockMvc.perform(get("/api/trust/membership/events").param("snapshots", "true"))
+                .andReturn();
+        MvcResult invalidationsOnly = mockMvc.perform(get("/api/trust/membership/events")).andReturn();
+
+        String body = snapshots.getResponse().getContentAsString();
+        assertTrue(body.contains("event:snapshot"));
+        assertTrue(body.contains("\"channelTiers\":{\"7\":\"PRO\"}"));
+
+        events.publishSnapshot(tiers(2, "ELITE"));
+        events.heartbeat();
+
+        body = snapshots.getResponse().getContentAsString();
+        assertTrue(body.contains("id:2"));
+        assertTrue(body.contains("\"channelTiers\":{\"7\":\"ELITE\"}"));
+        assertTrue(body.contains("event:heartbeat"));
+        String other = invalidationsOnly.getResponse().getContentAsString();
+        assertFalse(other.contains("event:snapshot"));
+        assertTrue(other.contains("event:heartbeat"));
+    }
+
+    @Test
+    void deltasReachOnlySnapshotSubscribers() throws Exception {
+        when(tierIndex.current()).thenReturn(tiers(1, "PRO"));
+        MvcResult snapshots = mockMvc.perform(get("/api/trust/membership/events").param("snapshots", "true"))
+                .andReturn();
+        MvcResult invalidationsOnly = mockMvc.perform(get("/api/trust/membership/events")).andReturn();
+
+        events.publishDelta(new MembershipEvents.Delta(2, "did:plc:alice", "PRO"));
+
+        String body = snapshots.getResponse().getContentAsString();
+        assertTrue(body.contains("event:delta"));
+        assertTrue(body.contains("id:2"));
+        assertTrue(body.contains("\"userDid\":\"did:plc:alice\",\"authorityTier\":\"PRO\""), body);
+        // The table itself went out once, on connect
+        assertEquals(1, body.split("event:snapshot", -1).length - 1);
+        assertFalse(invalidationsOnly.getResponse().getContentAsString().contains("event:delta"));
+    }
+
+    private static MembershipTiers tiers(long version, String channelTier) {
+        return new MembershipTiers(version, Instant.EPOCH, Map.of(7L, channelTier), Map.of(), Map.of());
+    }
+}
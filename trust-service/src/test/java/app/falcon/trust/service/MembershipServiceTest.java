@@ -1,17 +1,19 @@
 package app.falcon.trust.service;
 
-import app.falcon.core.domain.Channel;
-import app.falcon.core.domain.Member;
 import app.falcon.core.domain.TrustRelation;
 import app.falcon.trust.repository.ChannelRepository;
+import app.falcon.trust.repository.ChannelTier;
 import app.falcon.trust.repository.MemberRepository;
+import app.falcon.trust.repository.MemberTier;
 import app.falcon.trust.repository.TrustRelationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -26,22 +28,25 @@ class MembershipServiceTest {
     private ChannelRepository channelRepository;
     @Mock
     private TrustRelationRepository trustRelationRepository;
+    @Mock
+    private TrustGraphService trustGraphService;
+    @Mock
+    private MembershipEvents membershipEvents;
 
-    // Use explicit constructor so @Value-injected authorityDid is provided
-    // correctly
+    private MembershipTierIndex tierIndex;
     private MembershipService membershipService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        membershipService = new MembershipService(
-                memberRepository, channelRepository, trustRelationRepository, AUTHORITY_DID);
+        tierIndex = new MembershipTierIndex(memberRepository, channelRepository, trustRelationRepository,
+                trustGraphService, membershipEvents, new SimpleMeterRegistry(), AUTHORITY_DID, 1_000);
+        membershipService = new MembershipService(tierIndex);
     }
 
     @Test
     void testVerifyAccess_OpenChannel() {
-        Channel channel = Channel.builder().id(1L).requiredTier(null).build();
-        when(channelRepository.findById(1L)).thenReturn(Optional.of(channel));
+        tierIndex.rebuild();
 
         boolean result = membershipService.verifyAccess("did:user", 1L, 1L);
         assertTrue(result);
@@ -49,8 +54,7 @@ class MembershipServiceTest {
 
     @Test
     void testVerifyAccess_Gated_Pro_Success() {
-        Channel channel = Channel.builder().id(1L).requiredTier("PRO").build();
-        when(channelRepository.findById(1L)).thenReturn(Optional.of(channel));
+        when(channelRepository.findChannelTiers()).thenReturn(List.of(new ChannelTier(1L, "PRO")));
 
         // Authority trusts user with 0.9 weight
         TrustRelation relation = TrustRelation.builder()
@@ -59,9 +63,9 @@ class MembershipServiceTest {
                 .type(TrustRelation.TrustType.TRUST)
                 .weight(0.9)
                 .build();
-        when(trustRelationRepository.findBySourceDidAndTargetDid(AUTHORITY_DID, "did:user"))
-                .thenReturn(Optional.of(relation));
-        when(memberRepository.findByDidAndServerId("did:user", 1L)).thenReturn(Optional.empty());
+        when(trustRelationRepository.findBySourceDidAndType(AUTHORITY_DID, TrustRelation.TrustType.TRUST))
+                .thenReturn(List.of(relation));
+        tierIndex.rebuild();
 
         boolean result = membershipService.verifyAccess("did:user", 1L, 1L);
         assertTrue(result);
@@ -69,12 +73,8 @@ class MembershipServiceTest {
 
     @Test
     void testVerifyAccess_Gated_Pro_Failure() {
-        Channel channel = Channel.builder().id(1L).requiredTier("PRO").build();
-        when(channelRepository.findById(1L)).thenReturn(Optional.of(channel));
-
-        when(trustRelationRepository.findBySourceDidAndTargetDid(AUTHORITY_DID, "did:user"))
-                .thenReturn(Optional.empty());
-        when(memberRepository.findByDidAndServerId("did:user", 1L)).thenReturn(Optional.empty());
+        when(channelRepository.findChannelTiers()).thenReturn(List.of(new ChannelTier(1L, "PRO")));
+        tierIndex.rebuild();
 
         boolean result = membershipService.verifyAccess("did:user", 1L, 1L);
         assertFalse(result);
@@ -82,13 +82,26 @@ class MembershipServiceTest {
 
     @Test
     void testVerifyAccess_ExplicitTier() {
-        Channel channel = Channel.builder().id(1L).requiredTier("ELITE").build();
-        when(channelRepository.findById(1L)).thenReturn(Optional.of(channel));
-
-        Member member = Member.builder().did("did:user").membershipTier("ELITE").build();
-        when(memberRepository.findByDidAndServerId("did:user", 1L)).thenReturn(Optional.of(member));
+        when(channelRepository.findChannelTiers()).thenReturn(List.of(new ChannelTier(1L, "ELITE")));
+        when(memberRepository.findMemberTiers()).thenReturn(List.of(new MemberTier(1L, "did:user", "ELITE")));
+        tierIndex.rebuild();
 
         boolean result = membershipService.verifyAccess("did:user", 1L, 1L);
         assertTrue(result);
+        // Explicit tiers only apply on their own server
+        assertFalse(membershipService.verifyAccess("did:user", 2L, 1L));
+    }
+
+    @Test
+    void batchVerifyFiltersUsersPerChannel() {
+        when(channelRepository.findChannelTiers()).thenReturn(List.of(new ChannelTier(2L, "PRO")));
+        when(memberRepository.findMemberTiers()).thenReturn(List.of(new MemberTier(1L, "did:pro", "PRO")));
+        tierIndex.rebuild();
+
+        Map<Long, List<String>> allowed = membershipService.verifyAccess(1L,
+                List.of("did:free", "did:pro"), List.of(1L, 2L));
+
+        assertEquals(List.of("did:free", "did:pro"), allowed.get(1L));
+        assertEquals(List.of("did:pro"), allowed.get(2L));
     }
 }
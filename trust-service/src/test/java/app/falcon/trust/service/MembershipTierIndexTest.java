@@ -0,0 +1,117 @@
+package app.falcon.trust.service;
+
+import app.falcon.core.domain.TrustRelation;
+import app.falcon.trust.repository.ChannelRepository;
+import app.falcon.trust.repository.ChannelTier;
+import app.falcon.trust.repository.MemberRepository;
+import app.falcon.trust.repository.MemberTier;
+import app.falcon.trust.repository.TrustRelationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MembershipTierIndexTest {
+
+    private static final String AUTHORITY_DID = "did:plc:authority";
+    private static final String USER = "did:plc:alice";
+
+    @Mock
+    private MemberRepository memberRepository;
+    @Mock
+    private ChannelRepository channelRepository;
+    @Mock
+    private TrustRelationRepository trustRelationRepository;
+    @Mock
+    private TrustGraphService trustGraphService;
+    @Mock
+    private MembershipEvents events;
+
+    private MembershipTierIndex index;
+    private BiConsumer<String, String> relationChanged;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(channelRepository.findChannelTiers()).thenReturn(List.of(new ChannelTier(10L, "PRO")));
+        index = new MembershipTierIndex(memberRepository, channelRepository, trustRelationRepository,
+                trustGraphService, events, new SimpleMeterRegistry(), AUTHORITY_DID, 2);
+
+        ArgumentCaptor<BiConsumer<String, String>> listener = ArgumentCaptor.forClass(BiConsumer.class);
+        verify(trustGraphService).onRelationChanged(listener.capture());
+        relationChanged = listener.getValue();
+        index.rebuild();
+    }
+
+    @Test
+    void authorityTrustUpdatesTierAndPushesDeltaAndInvalidation() {
+        assertFalse(index.current().allows(USER, 1L, 10L));
+        long version = index.current().version();
+
+        when(trustRelationRepository.findBySourceDidAndTargetDid(AUTHORITY_DID, USER))
+                .thenReturn(Optional.of(relation(AUTHORITY_DID, 0.9)));
+        relationChanged.accept(AUTHORITY_DID, USER);
+
+        assertTrue(index.current().allows(USER, 1L, 10L));
+        assertEquals("PRO", index.current().tierOf(USER, 99L));
+        assertEquals(version + 1, index.current().version());
+        verify(events).publishDelta(new MembershipEvents.Delta(version + 1, USER, "PRO"));
+        verify(events, never()).publishSnapshot(any());
+        verify(events).publish(new MembershipEvents.Invalidation(USER, null, null));
+    }
+
+    @Test
+    void otherRelationsAreIgnored() {
+        relationChanged.accept("did:plc:bob", USER);
+
+        verify(trustRelationRepository, never()).findBySourceDidAndTargetDid(any(), any());
+        verify(events, never()).publish(any());
+        assertEquals(1, index.current().version());
+    }
+
+    @Test
+    void rebuildPushesOnlyChangedEntries() {
+        index.rebuild();
+        assertEquals(1, index.current().version());
+        verify(events, never()).publish(any());
+        verify(events, never()).publishSnapshot(any());
+
+        when(memberRepository.findMemberTiers()).thenReturn(List.of(new MemberTier(1L, USER, "ELITE")));
+        index.rebuild();
+
+        assertEquals(2, index.current().version());
+        assertEquals("ELITE", index.current().tierOf(USER, 1L));
+        verify(events).publishSnapshot(index.current());
+        verify(events).publish(new MembershipEvents.Invalidation(USER, 1L, null));
+    }
+
+    @Test
+    void largeRebuildDiffDropsEverything() {
+        when(channelRepository.findChannelTiers()).thenReturn(List.of(
+                new ChannelTier(11L, "PRO"), new ChannelTier(12L, "PRO"), new ChannelTier(13L, "ELITE")));
+        index.rebuild();
+
+        verify(events, times(1)).publish(any());
+        verify(events).publish(new MembershipEvents.Invalidation(null, null, null));
+    }
+
+    private static TrustRelation relation(String source, double weight) {
+        return TrustRelation.builder()
+                .sourceDid(source)
+                .targetDid(USER)
+                .type(TrustRelation.TrustType.TRUST)
+                .weight(weight)
+                .build();
+    }
+}
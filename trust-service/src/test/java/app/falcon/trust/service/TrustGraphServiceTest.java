@@ -1,15 +1,21 @@
 package app.falcon.trust.service;
 
 import app.falcon.core.domain.TrustRelation;
+import app.falcon.trust.graph.TrustGraph;
 import app.falcon.trust.repository.TrustRelationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -21,14 +27,42 @@ class TrustGraphServiceTest {
         private TrustRelationRepository repository;
 
         @Mock
-        private WebClient.Builder webClientBuilder;
+        private IntelligenceBiasClient biasClient;
 
-        @InjectMocks
+        private TrustGraph graph;
+        private GlobalTrustJob globalTrust;
+        private ViewerTrustCache viewerTrust;
         private TrustGraphService trustGraphService;
 
         @BeforeEach
         void setUp() {
                 MockitoAnnotations.openMocks(this);
+                graph = new TrustGraph(repository, 4096);
+                globalTrust = new GlobalTrustJob(graph, new SimpleMeterRegistry(), "did:authority", List.of(),
+                                0.15, 50, 1e-9, 1);
+                viewerTrust = new ViewerTrustCache(graph, new SimpleMeterRegistry(), DataSize.ofMegabytes(16),
+                                Duration.ofHours(1));
+                trustGraphService = new TrustGraphService(repository, graph, biasClient, globalTrust, viewerTrust,
+                                0.5);
+
+                // Neutral intelligence bias unless a test says otherwise
+                when(biasClient.getBias(anyString())).thenReturn(1.0);
+                when(biasClient.getBiases(anyList())).thenAnswer(inv -> {
+                        Map<String, Double> biases = new HashMap<>();
+                        inv.<List<String>>getArgument(0).forEach(did -> biases.put(did, 1.0));
+                        return biases;
+                });
+        }
+
+        @AfterEach
+        void tearDown() {
+                globalTrust.shutdown();
+        }
+
+        /** Seeds the resident graph the way it is loaded at startup. */
+        private void givenRelations(TrustRelation... relations) {
+                when(repository.findAll()).thenReturn(List.of(relations));
+                graph.load();
         }
 
         // ─── Self-trust ─────────────────────────────────────────────────────────────
@@ -50,10 +84,9 @@ class TrustGraphServiceTest {
                 TrustRelation rel = TrustRelation.builder()
                                 .sourceDid("did:alice").targetDid("did:bob")
                                 .type(TrustRelation.TrustType.TRUST).build();
-                when(repository.findBySourceDidAndTargetDid("did:alice", "did:bob"))
-                                .thenReturn(Optional.of(rel));
+                givenRelations(rel);
 
-                assertEquals(1.0, trustGraphService.calculateTrustScore("did:alice", "did:bob"));
+                assertEquals(Math.tanh(1.0), trustGraphService.calculateTrustScore("did:alice", "did:bob"), 1e-9);
         }
 
         @Test
@@ -61,10 +94,9 @@ class TrustGraphServiceTest {
                 TrustRelation rel = TrustRelation.builder()
                                 .sourceDid("did:alice").targetDid("did:bob")
                                 .type(TrustRelation.TrustType.DISTRUST).build();
-                when(repository.findBySourceDidAndTargetDid("did:alice", "did:bob"))
-                                .thenReturn(Optional.of(rel));
+                givenRelations(rel);
 
-                assertEquals(-0.8, trustGraphService.calculateTrustScore("did:alice", "did:bob"));
+                assertEquals(Math.tanh(-0.8), trustGraphService.calculateTrustScore("did:alice", "did:bob"), 1e-9);
         }
 
         @Test
@@ -72,10 +104,9 @@ class TrustGraphServiceTest {
                 TrustRelation rel = TrustRelation.builder()
                                 .sourceDid("did:alice").targetDid("did:bob")
                                 .type(TrustRelation.TrustType.BLOCK).build();
-                when(repository.findBySourceDidAndTargetDid("did:alice", "did:bob"))
-                                .thenReturn(Optional.of(rel));
+                givenRelations(rel);
 
-                assertEquals(-1.0, trustGraphService.calculateTrustScore("did:alice", "did:bob"));
+                assertEquals(Math.tanh(-1.0), trustGraphService.calculateTrustScore("did:alice", "did:bob"), 1e-9);
         }
 
         @Test
@@ -83,27 +114,36 @@ class TrustGraphServiceTest {
                 TrustRelation rel = TrustRelation.builder()
                                 .sourceDid("did:alice").targetDid("did:bob")
                                 .type(TrustRelation.TrustType.MUTE).build();
-                when(repository.findBySourceDidAndTargetDid("did:alice", "did:bob"))
-                                .thenReturn(Optional.of(rel));
+                givenRelations(rel);
 
-                assertEquals(-0.3, trustGraphService.calculateTrustScore("did:alice", "did:bob"));
+                assertEquals(Math.tanh(-0.3), trustGraphService.calculateTrustScore("did:alice", "did:bob"), 1e-9);
+        }
+
+        @Test
+        void directRelationDecaysWithAge() {
+                TrustRelation rel = TrustRelation.builder()
+                                .sourceDid("did:alice").targetDid("did:bob")
+                                .type(TrustRelation.TrustType.TRUST)
+                                .timestamp(Instant.now().minus(Duration.ofDays(100))).build();
+                givenRelations(rel);
+
+                assertEquals(Math.tanh(Math.exp(-0.5)), trustGraphService.calculateTrustScore("did:alice", "did:bob"),
+                                1e-9);
         }
 
         // ─── Bridge (transitive) trust ───────────────────────────────────────────────
 
         @Test
         void noBridgesReturnsZero() {
-                when(repository.findBySourceDidAndTargetDid("did:alice", "did:bob"))
-                                .thenReturn(Optional.empty());
-                when(repository.findBySourceDidAndType("did:alice", TrustRelation.TrustType.TRUST))
-                                .thenReturn(List.of());
+                givenRelations();
 
                 assertEquals(0.0, trustGraphService.calculateTrustScore("did:alice", "did:bob"));
         }
 
         @Test
-        void singleBridgeTrustProducesHalfScore() {
-                // alice trusts carol, carol trusts bob => score = 1.0 * 0.5 / 1 = 0.5
+        void singleBridgeTrustPropagatesFullBridgeScore() {
+                // alice trusts carol, carol trusts bob => base = 1.0 * 1.0 / 1 = 1.0, squashed
+                // by tanh
                 TrustRelation aliceToCarol = TrustRelation.builder()
                                 .sourceDid("did:alice").targetDid("did:carol")
                                 .type(TrustRelation.TrustType.TRUST).build();
@@ -111,14 +151,9 @@ class TrustGraphServiceTest {
                                 .sourceDid("did:carol").targetDid("did:bob")
                                 .type(TrustRelation.TrustType.TRUST).build();
 
-                when(repository.findBySourceDidAndTargetDid("did:alice", "did:bob"))
-                                .thenReturn(Optional.empty());
-                when(repository.findBySourceDidAndType("did:alice", TrustRelation.TrustType.TRUST))
-                                .thenReturn(List.of(aliceToCarol));
-                when(repository.findBySourceDidAndTargetDid("did:carol", "did:bob"))
-                                .thenReturn(Optional.of(carolToBob));
+                givenRelations(aliceToCarol, carolToBob);
 
-                assertEquals(0.5, trustGraphService.calculateTrustScore("did:alice", "did:bob"));
+                assertEquals(Math.tanh(1.0), trustGraphService.calculateTrustScore("did:alice", "did:bob"), 1e-9);
         }
 
         @Test
@@ -137,22 +172,80 @@ class TrustGraphServiceTest {
                                 .sourceDid("did:dave").targetDid("did:bob")
                                 .type(TrustRelation.TrustType.BLOCK).build();
 
-                when(repository.findBySourceDidAndTargetDid("did:alice", "did:bob"))
-                                .thenReturn(Optional.empty());
-                when(repository.findBySourceDidAndType("did:alice", TrustRelation.TrustType.TRUST))
-                                .thenReturn(List.of(aliceToCarol, aliceToDave));
-                when(repository.findBySourceDidAndTargetDid("did:carol", "did:bob"))
-                                .thenReturn(Optional.of(carolToBob));
-                when(repository.findBySourceDidAndTargetDid("did:dave", "did:bob"))
-                                .thenReturn(Optional.of(daveToBob));
-
-                // carol -> TRUST (score 1.0 * 0.5 = 0.5), dave -> BLOCK (score -1.0 * 0.5 =
-                // -0.5)
-                // aggregate = 0.5 + (-0.5) = 0.0 / 2 bridges = 0.0
+                givenRelations(aliceToCarol, aliceToDave, carolToBob, daveToBob);
+
+                // carol -> TRUST (score 1.0 * 1.0 = 1.0), dave -> BLOCK (score 1.0 * -1.0 =
+                // -1.0)
+                // aggregate = 1.0 + (-1.0) = 0.0 / 2 bridges = 0.0
                 double score = trustGraphService.calculateTrustScore("did:alice", "did:bob");
                 assertEquals(0.0, score, 0.0001);
         }
 
+        // ─── Global trust fallback ───────────────────────────────────────────────────
+
+        @Test
+        void beyondTwoHopsFallsBackToGlobalTrust() {
+                // alice -> carol -> dave -> bob: bob is three hops away from alice
+                givenRelations(
+                                TrustRelation.builder().sourceDid("did:alice").targetDid("did:carol")
+                                                .type(TrustRelation.TrustType.TRUST).build(),
+                                TrustRelation.builder().sourceDid("did:carol").targetDid("did:dave")
+                                                .type(TrustRelation.TrustType.TRUST).build(),
+                                TrustRelation.builder().sourceDid("did:dave").targetDid("did:bob")
+                                                .type(TrustRelation.TrustType.TRUST).build(),
+                                TrustRelation.builder().sourceDid("did:authority").targetDid("did:dave")
+                                                .type(TrustRelation.TrustType.TRUST).build());
+
+                assertEquals(0.0, trustGraphService.calculateTrustScore("did:alice", "did:bob"));
+
+                globalTrust.recompute();
+                double global = globalTrust.snapshot().scoreOf(graph.idOf("did:bob"));
+                assertTrue(global > 0);
+                assertEquals(Math.tanh(0.5 * global), trustGraphService.calculateTrustScore("did:alice", "did:bob"),
+                                1e-9);
+                assertEquals(trustGraphService.calculateTrustScore("did:alice", "did:bob"),
+                                trustGraphService.calculateTrustScores("did:alice", List.of("did:bob"))[0], 1e-9);
+        }
+
+        @Test
+        void twoHopPathTakesPrecedenceOverGlobalTrust() {
+                givenRelations(
+                                TrustRelation.builder().sourceDid("did:alice").targetDid("did:carol")
+                                                .type(TrustRelation.TrustType.TRUST).build(),
+                                TrustRelation.builder().sourceDid("did:carol").targetDid("did:bob")
+                                                .type(TrustRelation.TrustType.DISTRUST).build(),
+                                TrustRelation.builder().sourceDid("did:authority").targetDid("did:bob")
+                                                .type(TrustRelation.TrustType.TRUST).build());
+                globalTrust.recompute();
+
+                assertEquals(Math.tanh(-0.8), trustGraphService.calculateTrustScore("did:alice", "did:bob"), 1e-9);
+        }
+
+        // ─── Batch scoring ───────────────────────────────────────────────────────────
+
+        @Test
+        void batchScoresMatchSingleScores() {
+                TrustRelation aliceToCarol = TrustRelation.builder()
+                                .sourceDid("did:alice").targetDid("did:carol")
+                                .type(TrustRelation.TrustType.TRUST).build();
+                TrustRelation carolToBob = TrustRelation.builder()
+                                .sourceDid("did:carol").targetDid("did:bob")
+                                .type(TrustRelation.TrustType.TRUST).build();
+                TrustRelation aliceToEve = TrustRelation.builder()
+                                .sourceDid("did:alice").targetDid("did:eve")
+                                .type(TrustRelation.TrustType.BLOCK).build();
+                givenRelations(aliceToCarol, carolToBob, aliceToEve);
+
+                List<String> targets = List.of("did:bob", "did:eve", "did:alice", "did:unknown", "did:carol");
+                double[] scores = trustGraphService.calculateTrustScores("did:alice", targets);
+
+                assertEquals(targets.size(), scores.length);
+                for (int i = 0; i < targets.size(); i++) {
+                        assertEquals(trustGraphService.calculateTrustScore("did:alice", targets.get(i)), scores[i],
+                                        1e-9, targets.get(i));
+                }
+        }
+
         // ─── addRelation ─────────────────────────────────────────────────────────────
 
         @Test
@@ -178,4 +271,30 @@ class TrustGraphServiceTest {
                 verify(repository, times(1)).save(existing);
                 assertEquals(TrustRelation.TrustType.BLOCK, existing.getType());
         }
+
+        @Test
+        void addRelationIsVisibleWithoutReload() {
+                givenRelations();
+                when(repository.findBySourceDidAndTargetDid(anyString(), anyString()))
+                                .thenReturn(Optional.empty());
+
+                trustGraphService.addRelation("did:alice", "did:carol", TrustRelation.TrustType.TRUST);
+                trustGraphService.addRelation("did:carol", "did:bob", TrustRelation.TrustType.TRUST);
+
+                assertEquals(Math.tanh(1.0), trustGraphService.calculateTrustScore("did:alice", "did:bob"), 1e-9);
+                verify(repository, never()).findBySourceDidAndType(anyString(), any());
+        }
+
+        @Test
+        void bridgeRelationChangeRefreshesCachedViewer() {
+                givenRelations(TrustRelation.builder().sourceDid("did:alice").targetDid("did:carol")
+                                .type(TrustRelation.TrustType.TRUST).build());
+                when(repository.findBySourceDidAndTargetDid(anyString(), anyString()))
+                                .thenReturn(Optional.empty());
+                assertEquals(0.0, trustGraphService.calculateTrustScore("did:alice", "did:bob"));
+
+                trustGraphService.addRelation("did:carol", "did:bob", TrustRelation.TrustType.BLOCK);
+
+                assertEquals(Math.tanh(-1.0), trustGraphService.calculateTrustScore("did:alice", "did:bob"), 1e-9);
+        }
 }
@@ -0,0 +1,99 @@
+package app.falcon.trust.service;
+
+import app.falcon.core.domain.TrustRelation;
+import app.falcon.trust.graph.TrustGraph;
+import app.falcon.trust.repository.TrustRelationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+class ViewerTrustCacheTest {
+
+    @Mock
+    private TrustRelationRepository repository;
+
+    private TrustGraph graph;
+    private SimpleMeterRegistry meterRegistry;
+    private ViewerTrustCache cache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        // alice -> carol -> bob, dave -> erin -> bob
+        when(repository.findAll()).thenReturn(List.of(
+                relation("did:alice", "did:carol", TrustRelation.TrustType.TRUST),
+                relation("did:carol", "did:bob", TrustRelation.TrustType.TRUST),
+                relation("did:dave", "did:erin", TrustRelation.TrustType.TRUST),
+                relation("did:erin", "did:bob", TrustRelation.TrustType.DISTRUST)));
+        graph = new TrustGraph(repository, 4096);
+        graph.load();
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ViewerTrustCache(graph, meterRegistry, DataSize.ofMegabytes(1), Duration.ofHours(1));
+    }
+
+    private static TrustRelation relation(String source, String target, TrustRelation.TrustType type) {
+        return TrustRelation.builder().sourceDid(source).targetDid(target).type(type).build();
+    }
+
+    private int id(String did) {
+        return graph.idOf(did);
+    }
+
+    @Test
+    void vectorHoldsDirectAndTwoHopScores() {
+        ViewerTrust alice = cache.vectorOf(id("did:alice"));
+
+        assertEquals(1.0, alice.scoreOf(id("did:carol")), 1e-9);
+        assertEquals(1.0, alice.scoreOf(id("did:bob")), 1e-9);
+        assertTrue(Double.isNaN(alice.scoreOf(id("did:erin"))));
+        assertSame(alice, cache.vectorOf(id("did:alice")));
+    }
+
+    @Test
+    void bridgeWriteInvalidatesOnlyDependentViewers() {
+        cache.vectorOf(id("did:alice"));
+        cache.vectorOf(id("did:dave"));
+
+        graph.put(relation("did:carol", "did:frank", TrustRelation.TrustType.MUTE));
+        cache.invalidate(id("did:carol"));
+
+        assertFalse(cache.isCached(id("did:alice")));
+        assertTrue(cache.isCached(id("did:dave")));
+        assertEquals(-0.3, cache.vectorOf(id("did:alice")).scoreOf(id("did:frank")), 1e-9);
+    }
+
+    @Test
+    void ownWriteInvalidatesViewer() {
+        cache.vectorOf(id("did:alice"));
+        cache.vectorOf(id("did:dave"));
+
+        graph.put(relation("did:alice", "did:erin", TrustRelation.TrustType.TRUST));
+        cache.invalidate(id("did:alice"));
+
+        assertFalse(cache.isCached(id("did:alice")));
+        assertTrue(cache.isCached(id("did:dave")));
+        // erin is now both a direct relation and a bridge to bob
+        ViewerTrust alice = cache.vectorOf(id("did:alice"));
+        assertEquals(1.0, alice.scoreOf(id("did:erin")), 1e-9);
+        assertEquals((1.0 - 0.8) / 2, alice.scoreOf(id("did:bob")), 1e-9);
+    }
+
+    @Test
+    void exportsHitAndRebuildMetrics() {
+        cache.vectorOf(id("did:alice"));
+        cache.vectorOf(id("did:alice"));
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "viewer-trust").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1, meterRegistry.get("falcon.trust.viewer.rebuild").timer().count());
+    }
+}